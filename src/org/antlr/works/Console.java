@@ -6,7 +6,10 @@ import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.engine.GrammarEngineDelegate;
 import org.antlr.works.grammar.engine.GrammarEngineImpl;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.ConsoleHelper;
+import org.antlr.works.visualization.SDBatchRenderer;
+import org.antlr.works.visualization.SDCache;
 import org.antlr.works.visualization.SDGenerator;
 import org.antlr.works.visualization.serializable.SEncoder;
 import org.antlr.works.visualization.serializable.SXMLEncoder;
@@ -14,6 +17,8 @@ import org.antlr.xjlib.foundation.XJUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /*
 
@@ -48,10 +53,14 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 public class Console {
 
+    private List<String> files;
     private String file;
     private String outputDirectory;
     private String outputFile;
     private boolean verbose;
+    private boolean timing;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private SDCache cache;
 
     public static void main(String[] args) throws Exception {
         if(args.length == 0) {
@@ -68,10 +77,13 @@ public class Console {
     private static void printUsage() {
         StringBuilder sb = new StringBuilder();
         sb.append("Usage: java -cp antlrworks.jar org.antlr.works.Console [args]\n");
-        sb.append(" -f grammarFile : ").append("specify the input grammar file (*.g)\n");
-        sb.append(" -sd format : ").append("specify the format of the syntax diagram output file. For EPS, use 'eps'. For bitmap, use either 'png' or any available extensions\n");
-        sb.append(" -serialize outputFile : ").append("serialize all the syntax diagram of the specified files");
+        sb.append(" -f grammarFile : ").append("specify the input grammar file (*.g). Repeat to process several grammars, each one in its own sub-directory of the output directory\n");
+        sb.append(" -sd format : ").append("specify the format of the syntax diagram output file. For EPS, use 'eps'. For SVG, use 'svg'. For bitmap, use either 'png' or any available extensions\n");
+        sb.append(" -serialize outputFile : ").append("serialize all the syntax diagram of the specified files\n");
         sb.append(" -o outputDir : ").append("specify the output directory\n");
+        sb.append(" -j threads : ").append("specify the number of syntax diagrams rendered in parallel (default is the number of processors)\n");
+        sb.append(" -cache cacheDir : ").append("keep the syntax diagrams in this directory to render faster the rules that didn't change\n");
+        sb.append(" -timing : ").append("prints the time spent on each rule\n");
         sb.append(" -verbose : ").append("prints the operations\n");
         System.out.println(sb.toString());
     }
@@ -81,53 +93,112 @@ public class Console {
     }
 
     private void process(String args[]) throws Exception {
-        readArguments(args);
+        if(!readArguments(args))
+            return;
 
         String sdFormat = getArgumentValue(args, "-sd");
-        if(sdFormat != null) {
-            if(verbose) System.out.println("Generating syntax diagram in "+sdFormat);
-            generateSyntaxDiagrams(sdFormat);
-        }
-        if(hasArgument(args, "-serialize")) {
-            if(verbose) System.out.println("Serializing syntax diagram ");
-            serializeSyntaxDiagrams();
+        for(String f : files) {
+            file = f;
+            if(sdFormat != null) {
+                if(verbose) System.out.println("Generating syntax diagram of "+file+" in "+sdFormat);
+                String directory = outputDirectory;
+                if(files.size() > 1) {
+                    String name = XJUtils.getLastPathComponent(file);
+                    if(name.lastIndexOf('.') > 0)
+                        name = name.substring(0, name.lastIndexOf('.'));
+                    directory = XJUtils.concatPath(outputDirectory, name);
+                }
+                generateSyntaxDiagrams(sdFormat, directory);
+            }
+            if(hasArgument(args, "-serialize")) {
+                if(verbose) System.out.println("Serializing syntax diagram ");
+                serializeSyntaxDiagrams();
+            }
         }
     }
 
-    private void readArguments(String args[]) {
-        file = getArgumentValue(args, "-f");
-        if(file == null) {
+    private boolean readArguments(String args[]) {
+        files = new ArrayList<String>();
+        for(String f : getArgumentValues(args, "-f")) {
+            files.add(new File(f).getAbsolutePath());
+        }
+        if(files.isEmpty()) {
             System.err.println("File not specified (-f)");
-            return;
+            return false;
+        }
+        if(files.size() > 1 && hasArgument(args, "-serialize")) {
+            System.err.println("Only one file can be serialized (-serialize)");
+            return false;
         }
-        file = new File(file).getAbsolutePath();
 
         outputDirectory = getArgumentValue(args, "-o");
         if(outputDirectory == null && hasArgument(args, "-sd")) {
             System.err.println("Output directory not specified (-o)");
-            return;
+            return false;
         }
 
         outputFile = getArgumentValue(args, "-serialize");
         if(outputFile == null && hasArgument(args, "-serialize")) {
             System.err.println("Output file not specified (-serialize)");
-            return;
+            return false;
         }
         String v = getArgumentValue(args, "-verbose");
         if(v != null) {
             verbose = true;
         }
+        timing = hasArgument(args, "-timing");
+
+        String j = getArgumentValue(args, "-j");
+        if(j != null) {
+            try {
+                threads = Integer.parseInt(j);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number of threads (-j): "+j);
+                return false;
+            }
+        }
+
+        String cacheDirectory = getArgumentValue(args, "-cache");
+        if(cacheDirectory != null) {
+            cache = new SDCache(new File(cacheDirectory), AWPrefs.DEFAULT_SD_CACHE_SIZE*1024L*1024L);
+        }
+        return true;
     }
 
-    private void generateSyntaxDiagrams(String format) throws Exception {
-        processSyntaxDiagram(new GeneratePSDDelegate(format));
+    private void generateSyntaxDiagrams(String format, String directory) throws Exception {
+        GrammarEngine engine = createGrammarEngine();
+        new File(directory).mkdirs();
+
+        SDBatchRenderer renderer = new SDBatchRenderer(engine, threads);
+        renderer.setCache(cache);
+
+        long t = System.nanoTime();
+        List<SDBatchRenderer.Result> results = renderer.render(engine.getRuleNames(), format, directory);
+        t = System.nanoTime()-t;
+
+        int failures = 0;
+        for(SDBatchRenderer.Result result : results) {
+            if(!result.isSuccess()) {
+                failures++;
+                System.err.println("Cannot generate rule "+result.rule+": "+result.error);
+            } else if(timing) {
+                System.out.println(String.format("%-30s build %9.1f ms  render %9.1f ms", result.rule,
+                        result.buildTime/1e6, result.renderTime/1e6));
+            } else if(verbose) {
+                System.out.println("Generated rule "+result.rule);
+            }
+        }
+        if(timing) {
+            System.out.println(String.format("%d rules in %.1f ms using %d threads (%d failed)",
+                    results.size(), t/1e6, threads, failures));
+        }
     }
 
     private void serializeSyntaxDiagrams() throws Exception {
         processSyntaxDiagram(new SerializePSDDelegate());
     }
 
-    private void processSyntaxDiagram(ProcessSyntaxDiagramDelegate delegate) throws Exception {
+    private GrammarEngine createGrammarEngine() throws Exception {
         GrammarEngine engine = new GrammarEngineImpl(new EngineDelegate());
         GrammarSyntaxEngine syntaxEngine = engine.getSyntaxEngine();
 
@@ -135,7 +206,11 @@ public class Console {
         syntaxEngine.processSyntax();
 
         engine.parserCompleted();
-        
+        return engine;
+    }
+
+    private void processSyntaxDiagram(ProcessSyntaxDiagramDelegate delegate) throws Exception {
+        GrammarEngine engine = createGrammarEngine();
         SDGenerator gen = new SDGenerator(engine);
 
         delegate.beginProcess();
@@ -154,35 +229,6 @@ public class Console {
 
     }
 
-    private class GeneratePSDDelegate implements ProcessSyntaxDiagramDelegate {
-
-        private String format;
-
-        public GeneratePSDDelegate(String format) {
-            this.format = format;
-        }
-
-        public void beginProcess() {
-            if(verbose) System.out.println("Begin");
-            new File(outputDirectory).mkdirs();
-        }
-
-        public void endProcess() throws IOException {
-            if(verbose) System.out.println("Done");
-        }
-
-        public void processRule(String name, SDGenerator gen) throws Exception {
-            if(verbose) System.out.println("Generate rule "+name);
-
-            String file = XJUtils.concatPath(outputDirectory, name+"."+format);
-            if(format.equals("eps")) {
-                gen.renderRuleToEPSFile(name, file);
-            } else {
-                gen.renderRuleToBitmapFile(name, format, file);
-            }
-        }
-    }
-
     private class SerializePSDDelegate implements ProcessSyntaxDiagramDelegate {
 
         private StringBuilder content;
@@ -221,6 +267,16 @@ public class Console {
         return null;
     }
 
+    private static List<String> getArgumentValues(String[] args, String name) {
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < args.length-1; i++) {
+            if (args[i].equals(name)) {
+                values.add(args[i+1]);
+            }
+        }
+        return values;
+    }
+
     private static boolean hasArgument(String[] args, String name) {
         for (String a : args) {
             if (a.equals(name)) {
@@ -35,7 +35,7 @@ import org.antlr.works.ate.folding.ATEFoldingEntity;
 import org.antlr.works.ate.gutter.ATEGutterColumnManager;
 import org.antlr.works.ate.gutter.ATEGutterItem;
 import org.antlr.works.ate.gutter.ATEGutterItemOverlay;
-import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATELineIndex;
 import org.antlr.works.utils.IconManager;
 
 import javax.swing.*;
@@ -217,7 +217,7 @@ public class ATEGutter extends JComponent {
 
         offsetForLineNumber = 0;
         if(lineNumberEnabled) {
-            List<ATELine> lines = textEditor.getLines();
+            ATELineIndex lines = textEditor.getLineIndex();
             if(lines != null) {
                 offsetForLineNumber = lineNumberMetrics.stringWidth(String.valueOf(lines.size()));
             }
@@ -310,7 +310,8 @@ public class ATEGutter extends JComponent {
         g.setFont(LINE_NUMBER_FONT);
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_OFF);
 
-        int lineCount = textEditor.getLines().size();
+        ATELineIndex lines = textEditor.getLineIndex();
+        int lineCount = lines == null ? 0 : lines.size();
         int lineHeight = textEditor.textPane.getFontMetrics(textEditor.textPane.getFont()).getHeight();
         int number = Math.max(0, (Math.round(clip.y / lineHeight) - 1));
         int y = number*lineHeight;
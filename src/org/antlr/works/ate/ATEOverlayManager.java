@@ -212,6 +212,12 @@ public abstract class ATEOverlayManager {
             start();
         }
 
+        @Override
+        public Object getOwner() {
+            ATEPanel editor = textEditor;
+            return editor == null ? null : editor.getParentFrame();
+        }
+
         @Override
         protected void threadRun() throws Exception {
             underlyingShape.begin();
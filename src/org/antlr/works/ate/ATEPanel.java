@@ -8,7 +8,10 @@ import org.antlr.works.ate.swing.ATEAutoIndentation;
 import org.antlr.works.ate.swing.ATEKeyBindings;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngine;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.ate.syntax.generic.ATESyntaxSnapshot;
 import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATELineIndex;
+import org.antlr.works.ate.syntax.misc.ATEThread;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.xjlib.appkit.frame.XJFrame;
 import org.antlr.xjlib.appkit.undo.XJUndo;
@@ -78,6 +81,10 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     protected ATESyntaxEngine engine;
     protected ATEAutoIndentation autoIndent;
 
+    /** Parses the text in the background after each change */
+    protected boolean asynchronousParsing = true;
+    protected ParserThread parserThread;
+
     protected TextPaneListener textPaneListener;
 
     protected boolean syntaxColoring = false;
@@ -119,6 +126,14 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         return engine;
     }
 
+    public void setAsynchronousParsing(boolean flag) {
+        this.asynchronousParsing = flag;
+    }
+
+    public boolean isAsynchronousParsing() {
+        return asynchronousParsing;
+    }
+
     public void setDelegate(ATEPanelDelegate delegate) {
         this.delegate = delegate;
     }
@@ -289,7 +304,27 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         // which needs an immediate effect (in this case, the gutter
         // has to be repainted)
         gutter.markDirty();
-        parse();
+        if(asynchronousParsing && engine != null) {
+            if(parserThread == null) {
+                parserThread = new ParserThread();
+            }
+            parserThread.awakeThread();
+        } else {
+            parse();
+        }
+    }
+
+    /** Publishes the result of a background parsing. Called in the event thread. */
+    protected void parserDidProcess(ATESyntaxSnapshot snapshot) {
+        // Discard the result if the text changed in the meantime: the
+        // change has requested another parsing anyway
+        if(engine == null || !engine.isCurrent(snapshot))
+            return;
+
+        ateEngineBeforeParsing();
+        engine.publish(snapshot);
+        textPane.repaint();
+        ateEngineAfterParsing();
     }
 
     public int getSelectionStart() {
@@ -312,6 +347,10 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         return engine==null?null:engine.getLines();
     }
 
+    public ATELineIndex getLineIndex() {
+        return engine==null?null:engine.getLineIndex();
+    }
+
     public int getCurrentLinePosition() {
         return getLinePositionAtIndex(getCaretPosition());
     }
@@ -325,26 +364,23 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public int getColumnPositionAtIndex(int index) {
-        int lineIndex = getLineIndexAtTextPosition(index);
-        Point linePosition = getLineTextPositionsAtLineIndex(lineIndex);
-        if(linePosition == null)
+        ATELineIndex lines = getLineIndex();
+        if(lines == null)
+            return 1;
+
+        int lineIndex = lines.getLineIndexAt(index);
+        if(lineIndex == -1)
             return 1;
         else
-            return getCaretPosition() - linePosition.x + 1;
+            return index - lines.getLineStart(lineIndex) + 1;
     }
 
     public int getLineIndexAtTextPosition(int pos) {
-        List<ATELine> lines = getLines();
+        ATELineIndex lines = getLineIndex();
         if(lines == null)
             return -1;
 
-        for(int i=0; i<lines.size(); i++) {
-            ATELine line = lines.get(i);
-            if(line.position > pos) {
-                return i-1;
-            }
-        }
-        return lines.size()-1;
+        return lines.getLineIndexAt(pos);
     }
 
     public Point getLineTextPositionsAtTextPosition(int pos) {
@@ -352,18 +388,15 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public Point getLineTextPositionsAtLineIndex(int lineIndex) {
-        List<ATELine> lines = getLines();
+        ATELineIndex lines = getLineIndex();
         if(lineIndex == -1 || lines == null)
             return null;
 
-        ATELine startLine = lines.get(lineIndex);
-        int start = startLine.position;
+        int start = lines.getLineStart(lineIndex);
         if(lineIndex+1 >= lines.size()) {
             return new Point(start, getTextPane().getDocument().getLength()-1);
         } else {
-            ATELine endLine = lines.get(lineIndex+1);
-            int end = endLine.position;
-            return new Point(start, end-1);
+            return new Point(start, lines.getLineStart(lineIndex+1)-1);
         }
     }
 
@@ -563,6 +596,10 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public void close() {
+        if(parserThread != null) {
+            parserThread.stop();
+            parserThread = null;
+        }
         textPane.removeCaretListener(cl);
         textPane.removeMouseListener(ml);
         textPane.removeMouseMotionListener(mml);
@@ -587,6 +624,53 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         }
     }
 
+    /** Lexes and parses the text in the background. The text and its version are read
+     * under the read lock of the document so they are always consistent.
+     */
+    protected class ParserThread extends ATEThread {
+
+        public ParserThread() {
+            setDefaultThreshold(0);
+            start();
+        }
+
+        @Override
+        public Object getOwner() {
+            return parentFrame;
+        }
+
+        protected void threadRun() throws Exception {
+            final ATESyntaxEngine engine = ATEPanel.this.engine;
+            if(engine == null)
+                return;
+
+            final Document doc = textPane.getDocument();
+            final String[] text = new String[1];
+            final int[] version = new int[1];
+            doc.render(new Runnable() {
+                public void run() {
+                    version[0] = engine.getVersion();
+                    try {
+                        text[0] = doc.getText(0, doc.getLength());
+                    } catch (BadLocationException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            if(text[0] == null)
+                return;
+
+            // The snapshot contains copies of the tokens and of the elements: the event
+            // thread only reads the published snapshot while the next text is processed
+            final ATESyntaxSnapshot snapshot = engine.processSyntax(text[0], version[0]);
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    parserDidProcess(snapshot);
+                }
+            });
+        }
+    }
+
     protected class TextPaneListener implements DocumentListener {
 
         protected int enable = 0;
@@ -604,6 +688,10 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         }
 
         public void changeUpdate(int offset, int length, boolean insert) {
+            // Always record the damaged region, even if the change is not recorded
+            if(engine != null)
+                engine.textChanged(offset, length);
+
             if(isEnable()) {
                 if(delegate != null)
                     delegate.ateChangeUpdate(offset, length, insert);
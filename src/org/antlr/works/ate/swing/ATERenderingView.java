@@ -3,12 +3,11 @@ package org.antlr.works.ate.swing;
 import org.antlr.works.ate.ATEPanel;
 import org.antlr.works.ate.ATETextPane;
 import org.antlr.works.ate.ATEUtilities;
-import org.antlr.works.ate.syntax.generic.ATESyntaxEngine;
-import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.ate.syntax.generic.ATESyntaxSnapshot;
+import org.antlr.works.ate.syntax.misc.ATETokenBuffer;
 
 import javax.swing.text.*;
 import java.awt.*;
-import java.util.List;
 
 /*
 
@@ -55,7 +54,6 @@ public class ATERenderingView extends PlainView {
     private ATERenderingViewDelegate delegate;
     private ATEPanel textEditor;
     private ATETextPane textPane;
-    private List<ATEToken> tokens;
 
     private DisplayOperation displayOp = new DisplayOperation();
     private final ModelToViewOperation modelToViewOp = new ModelToViewOperation();
@@ -273,26 +271,31 @@ public class ATERenderingView extends PlainView {
 
         // Note: the tokens are not contiguous (e.g. white spaces are ignored)
         final Document doc = getDocument();
-        final ATESyntaxEngine engine = textEditor.getParserEngine();
-        tokens = engine.getTokens();
+        // Use only the snapshot: the token objects can be modified by a processing in progress
+        final ATESyntaxSnapshot snapshot = textEditor.getParserEngine().getSnapshot();
         int p = p0;
-        final int start = findStartingTokenIndex(p0, 0, tokens.size(), 0);
-        for (int i = start; i < tokens.size(); i++) {
-            ATEToken t = tokens.get(i);
-            AttributeSet attribute = engine.getAttributeForToken(t);
-            if(t.start >= p0 && t.start <= p1) {
-                // Fill any non-contiguous token with default color
-                if(t.start > p) {
-                    x = action.renderTextPortion(g, x, y, p, t.start, p1, doc, null);
+        if(snapshot != null) {
+            final ATETokenBuffer buffer = snapshot.getTokenBuffer();
+            for (int i = buffer.getFirstTokenIndexEndingAt(p0); i < buffer.size(); i++) {
+                final int start = buffer.getStart(i);
+                final int end = buffer.getEnd(i);
+                if(start > p1) {
+                    break;
                 }
 
-                x = action.renderTextPortion(g, x, y, t.start, t.end, p1, doc, attribute);
-                p = t.end;
-            } else if(t.end >= p0 && t.start < p0) {
-                x = action.renderTextPortion(g, x, y, p0, t.end, p1, doc, attribute);
-                p = t.end;
-            } else if(t.start > p1) {
-                break;
+                AttributeSet attribute = snapshot.getAttribute(i);
+                if(start >= p0) {
+                    // Fill any non-contiguous token with default color
+                    if(start > p) {
+                        x = action.renderTextPortion(g, x, y, p, start, p1, doc, null);
+                    }
+
+                    x = action.renderTextPortion(g, x, y, start, end, p1, doc, attribute);
+                    p = end;
+                } else if(end >= p0) {
+                    x = action.renderTextPortion(g, x, y, p0, end, p1, doc, attribute);
+                    p = end;
+                }
             }
         }
 
@@ -304,30 +307,6 @@ public class ATERenderingView extends PlainView {
         return x;
     }
 
-    /** This method finds the first token that is located in the line index p0
-     *
-     * @param p0
-     * @param low
-     * @param high
-     * @param candidate
-     * @return The index of the first token on line p0
-     */
-    private int findStartingTokenIndex(int p0, int low, int high, int candidate) {
-        if(Math.abs(high-low) <= 1)
-            return Math.min(candidate, low);
-
-        final int middle = low + (high-low) / 2;
-        final ATEToken t = tokens.get(middle);
-        if(p0 >= t.startLineIndex && p0 <= t.endLineIndex) {
-            return findStartingTokenIndex(p0, low, middle, middle);
-        } else {
-            if(t.startLineIndex < p0)
-                return findStartingTokenIndex(p0, middle, high, candidate);
-            else
-                return findStartingTokenIndex(p0, low, middle, candidate);
-        }
-    }
-
     /** This method applies an AttributeSet to a Graphics context
      *
      * @param g The graphic context
@@ -31,8 +31,11 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.ate.syntax.generic;
 
+import org.antlr.works.ate.syntax.misc.ATEKeywordTable;
 import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATELineIndex;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.ate.syntax.misc.ATETokenBuffer;
 
 import javax.swing.text.AttributeSet;
 import javax.swing.text.SimpleAttributeSet;
@@ -49,7 +52,20 @@ public abstract class ATESyntaxEngine {
     protected ATESyntaxLexer lexer;
     protected ATESyntaxParser parser;
 
-    protected List<ATEToken> tokens;
+    /** Result of the last processing published to the editor */
+    protected volatile ATESyntaxSnapshot snapshot;
+    /** Result of the last processing (published or not) */
+    private ATESyntaxSnapshot processed;
+    /** Version of the text: incremented by each change */
+    private int version;
+    /** Number of snapshots created: orders the snapshots of the same version */
+    private int serial;
+    /** Serializes the processing and any other access to the state of the lexer and parser */
+    protected final Object processLock = new Object();
+
+    /** Table of the keywords returned by getKeywords() */
+    private volatile ATEKeywordTable keywordTable;
+
     protected SimpleAttributeSet commentAttr;
     protected SimpleAttributeSet stringAttr;
     protected SimpleAttributeSet keywordAttr;
@@ -63,7 +79,10 @@ public abstract class ATESyntaxEngine {
     }
 
     public void close() {
-        parser.close();
+        snapshot = null;
+        processed = null;
+        if(parser != null)
+            parser.close();
         parser = null;
         lexer.close();
         lexer = null;
@@ -74,16 +93,60 @@ public abstract class ATESyntaxEngine {
         this.delegate = delegate;
     }
 
-    public synchronized List<ATEToken> getTokens() {
-        return tokens;
+    /** Returns the tokens of the last published processing */
+    public List<ATEToken> getTokens() {
+        ATESyntaxSnapshot s = snapshot;
+        return s == null ? null : s.getTokens();
+    }
+
+    /** Returns the lexical information of the tokens returned by getTokens() */
+    public ATETokenBuffer getTokenBuffer() {
+        ATESyntaxSnapshot s = snapshot;
+        return s == null ? null : s.getTokenBuffer();
+    }
+
+    public List<ATELine> getLines() {
+        ATESyntaxSnapshot s = snapshot;
+        return s == null ? null : s.getLines();
+    }
+
+    /** Returns the start position of the lines returned by getLines() */
+    public ATELineIndex getLineIndex() {
+        ATESyntaxSnapshot s = snapshot;
+        return s == null ? null : s.getLineIndex();
+    }
+
+    public int getMaxLines() {
+        ATESyntaxSnapshot s = snapshot;
+        return s == null ? 0 : s.getMaxLines();
+    }
+
+    /** Returns the result of the last published processing */
+    public ATESyntaxSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setIncrementalLexing(boolean flag) {
+        lexer.setIncremental(flag);
     }
 
-    public synchronized List<ATELine> getLines() {
-        return lexer.getLines();
+    public boolean isIncrementalLexing() {
+        return lexer.isIncremental();
     }
 
-    public synchronized int getMaxLines() {
-        return lexer.getLineNumber();
+    /** Records a change in the text: the result of any processing of the previous
+     * version of the text is now stale.
+     *
+     * @param offset The offset of the change
+     * @param length The number of characters inserted (positive) or removed (negative)
+     */
+    public synchronized void textChanged(int offset, int length) {
+        version++;
+    }
+
+    /** Returns the version of the text, incremented by each change */
+    public synchronized int getVersion() {
+        return version;
     }
 
     public ATESyntaxLexer getLexer() {
@@ -115,23 +178,122 @@ public abstract class ATESyntaxEngine {
                 attr = stringAttr;
                 break;
             default:
-                Set<String> s = getKeywords();
-                if(s != null && s.contains(token.getAttribute()))
+                if(isKeyword(token))
                     attr = keywordAttr;
                 break;
         }
         return attr;
     }
 
+    /** Returns true if the token is a keyword. This method does not create the attribute of the token. */
+    protected boolean isKeyword(ATEToken token) {
+        Set<String> s = getKeywords();
+        if(s == null)
+            return false;
+
+        ATEKeywordTable table = keywordTable;
+        if(table == null || table.getKeywords() != s) {
+            table = new ATEKeywordTable(s);
+            keywordTable = table;
+        }
+        return table.contains(token.getText(), token.start, token.end);
+    }
+
+    /** Processes the text of the delegate and publishes the result in the current thread */
     public void processSyntax() {
-        // First run the lexer
-        lexer.tokenize(delegate.getText());
-        tokens = new ArrayList<ATEToken>(lexer.getTokens());
+        final int version = getVersion();
+        publish(processSyntax(delegate.getText(), version));
+    }
+
+    /** Lexes and parses the text. This method can be called from any thread: the processing
+     * are serialized and the snapshot contains copies of the tokens and of the elements
+     * that the next processing modifies. The result has to be published to be visible to the editor.
+     *
+     * @param text The text to process
+     * @param version The version of the text
+     * @return The result of the processing
+     */
+    public ATESyntaxSnapshot processSyntax(String text, int version) {
+        synchronized(processLock) {
+            // First run the lexer (only on the region that differs from the previous text)
+            final String previous = lexer.getText();
+            if(previous == null) {
+                lexer.tokenize(text);
+            } else {
+                final int previousLength = previous.length();
+                final int length = text.length();
+                final int max = Math.min(previousLength, length);
+                int prefix = 0;
+                while(prefix < max && previous.charAt(prefix) == text.charAt(prefix)) {
+                    prefix++;
+                }
+                int suffix = 0;
+                while(suffix < max-prefix && previous.charAt(previousLength-1-suffix) == text.charAt(length-1-suffix)) {
+                    suffix++;
+                }
+                lexer.tokenize(text, prefix, length-suffix, length-previousLength);
+            }
+            final List<ATEToken> tokens = new ArrayList<ATEToken>(lexer.getTokens());
+
+            // And then the parser if it exists
+            if(parser != null) {
+                parser.parse(tokens);
+            }
+
+            processed = createSnapshot(version, text, tokens);
+            return processed;
+        }
+    }
+
+    /** Creates a new snapshot of the last processing. This method has to be called
+     * when the state of the parser has been modified after the processing: the snapshot
+     * has to be published to be visible to the editor.
+     *
+     * @return The new snapshot or null if nothing has been processed yet
+     */
+    protected ATESyntaxSnapshot refreshSnapshot() {
+        synchronized(processLock) {
+            if(processed != null) {
+                processed = createSnapshot(processed.getVersion(), processed.getText(),
+                        new ArrayList<ATEToken>(lexer.getTokens()));
+            }
+            return processed;
+        }
+    }
+
+    synchronized int nextSerial() {
+        return serial++;
+    }
 
-        // And then the parser if it exists
-        if(parser != null) {
-            parser.parse(tokens);
+    /** Creates the result of the processing. Called at the end of the processing with
+     * the tokens of the lexer: the snapshot has to copy them.
+     */
+    protected ATESyntaxSnapshot createSnapshot(int version, String text, List<ATEToken> tokens) {
+        return new ATESyntaxSnapshot(this, version, text, tokens);
+    }
+
+    /** Publishes the result of a processing unless a more recent one has already been published.
+     * The editor publishes the snapshots in the event thread.
+     *
+     * @return true if the snapshot has been published
+     */
+    public synchronized boolean publish(ATESyntaxSnapshot s) {
+        if(snapshot != null) {
+            if(s.getVersion() < snapshot.getVersion()) {
+                return false;
+            }
+            if(s.getVersion() == snapshot.getVersion() && s.getSerial() < snapshot.getSerial()) {
+                return false;
+            }
         }
+        s.published();
+        snapshot = s;
+        return true;
+    }
+
+    /** Returns true if the snapshot has been computed from the current version of the text */
+    public synchronized boolean isCurrent(ATESyntaxSnapshot s) {
+        return s.getVersion() == version;
     }
 
     public void process() {
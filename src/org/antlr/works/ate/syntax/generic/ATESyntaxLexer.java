@@ -32,7 +32,9 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.ate.syntax.generic;
 
 import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATELineIndex;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.ate.syntax.misc.ATETokenBuffer;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -62,6 +64,17 @@ public class ATESyntaxLexer {
     protected int lineNumber;
     protected int lineIndex;    // position of the line in characters
     protected List<ATELine> lines;
+    /** Start position of each line (same content as the lines) */
+    protected ATELineIndex lineStarts = new ATELineIndex();
+
+    /** Type and position of each token as it was produced by the lexer. The parser is allowed
+     * to change the type of the tokens (and the editor their position) so this buffer is used
+     * to restore them when the tokens are reused by an incremental tokenization.
+     */
+    protected ATETokenBuffer buffer = new ATETokenBuffer();
+
+    /** True if tokenize(text, start, end, delta) is allowed to reuse the previous tokens */
+    protected boolean incremental = true;
 
     /** True if the current character is a control character (that is preceeded by a \) */
     protected boolean controlCharacter;
@@ -86,65 +99,206 @@ public class ATESyntaxLexer {
         return tokens;
     }
 
+    /** Returns the text of the last tokenization */
+    public String getText() {
+        return text;
+    }
+
     public List<ATELine> getLines() {
         return lines;
     }
 
+    /** Returns the start position of the lines. A new index is created by each tokenization. */
+    public ATELineIndex getLineIndex() {
+        return lineStarts;
+    }
+
+    /** Returns the lexical information of the tokens. A new buffer is created by each tokenization. */
+    public ATETokenBuffer getTokenBuffer() {
+        return buffer;
+    }
+
     public int getLineNumber() {
         return lineNumber;
     }
 
+    public void setIncremental(boolean flag) {
+        this.incremental = flag;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
     public void tokenize(String text) {
         this.text = text;
 
         position = -1;
         lineNumber = 0;
+        lineIndex = 0;
         lines.clear();
-        lines.add(new ATELine(0));
+        lineStarts = new ATELineIndex(lineStarts.size());
+        addLine(new ATELine(0));
 
         tokens.clear();
+        buffer = new ATETokenBuffer(buffer.size());
         tokenize();
     }
 
-    protected void tokenize() {
+    /** Tokenizes the text by reusing the tokens of the previous tokenization.
+     * Only the portion of the text starting at the last token before the damaged
+     * region is lexed again until the token stream re-synchronizes with the previous
+     * one: the remaining tokens and lines are then simply shifted.
+     *
+     * Note: a subclass that keeps some lexing state other than the position and the
+     * line information has to disable the incremental mode.
+     *
+     * @param text The new text
+     * @param damageStart The start of the modified region (in the new text)
+     * @param damageEnd The end of the modified region (in the new text)
+     * @param delta The number of characters inserted (positive) or removed (negative)
+     */
+    public void tokenize(String text, int damageStart, int damageEnd, int delta) {
+        if(!incremental || this.text == null || this.text.length()+delta != text.length()
+                || damageStart < 0 || damageStart > damageEnd || damageEnd > text.length())
+        {
+            tokenize(text);
+            return;
+        }
+
+        final List<ATEToken> oldTokens = tokens;
+        final List<ATELine> oldLines = lines;
+        final ATETokenBuffer oldBuffer = buffer;
+        final int oldCount = oldTokens.size();
+
+        // The state of the lexer at the beginning of a token only depends on
+        // the text before it: restart at the last token located before the damage.
+        int k = oldBuffer.getLastTokenIndexBefore(damageStart);
+        int restart = k == -1 ? 0 : oldBuffer.getStart(k);
+
+        this.text = text;
+        tokens = new ArrayList<ATEToken>(oldCount);
+        buffer = new ATETokenBuffer(oldCount);
+        for(int i=0; i<k; i++) {
+            ATEToken t = oldTokens.get(i);
+            t.reset(oldBuffer.getType(i), oldBuffer.getStart(i), oldBuffer.getEnd(i), 0, 0, text);
+            addToken(t);
+        }
+
+        lines = new ArrayList<ATELine>(oldLines.size());
+        lineStarts = new ATELineIndex(oldLines.size());
+        for(ATELine line : oldLines) {
+            if(line.position > restart) break;
+            addLine(line);
+        }
+        lineNumber = lines.size()-1;
+        lineIndex = lines.get(lineNumber).position;
+        position = restart-1;
+
+        int j = Math.max(k, 0);
         while(nextCharacter()) {
-            ATEToken token = customMatch();
-
-            if(token != null) {
-                // custom match matched something
-            } else if(c0 == '\'')
-                token = matchSingleQuoteString();
-            else if(c0 == '\"')
-                token = matchDoubleQuoteString();
-            else if(c0 == '/' && c1 == '/')
-                token = matchSingleComment();
-            else if(c0 == '/' && c1 == '*')
-                token = matchComplexComment();
-            else if(isLetter())
-                token = matchID();
-            else if(c0 == '(')
-                token = createNewToken(TOKEN_LPAREN);
-            else if(c0 == ')')
-                token = createNewToken(TOKEN_RPAREN);
-            else if(c0 == '{')
-                token = createNewToken(TOKEN_LCURLY);
-            else if(c0 == '}')
-                token = createNewToken(TOKEN_RCURLY);
-            else if(c0 == '[')
-                token = createNewToken(TOKEN_LBRACK);
-            else if(c0 == ']')
-                token = createNewToken(TOKEN_RBRACK);
-            else if(c0 == ':')
-                token = createNewToken(TOKEN_COLON);
-            else if(c0 == ';')
-                token = createNewToken(TOKEN_SEMI);
-            else if(!isWhitespace())
-                token = createNewToken(TOKEN_CHAR);
+            ATEToken token = matchToken();
+            if(token == null) continue;
+
+            if(token.start >= damageEnd) {
+                // Check if the token stream is now synchronized with the old one
+                while(j < oldCount && oldBuffer.getStart(j)+delta < token.start) {
+                    j++;
+                }
+                if(j < oldCount && oldBuffer.getStart(j)+delta == token.start
+                        && oldBuffer.getEnd(j)+delta == token.end && oldBuffer.getType(j) == token.type)
+                {
+                    addToken(token);
+                    shiftTokens(oldTokens, oldLines, oldBuffer, j+1, delta);
+                    return;
+                }
+            }
 
             addToken(token);
         }
     }
 
+    /** Appends the old tokens and lines located after the synchronization point by
+     * moving them by the specified delta.
+     */
+    private void shiftTokens(List<ATEToken> oldTokens, List<ATELine> oldLines, ATETokenBuffer oldBuffer, int from, int delta) {
+        // Position of the last line already consumed in the old text
+        final int oldLinePosition = position-delta+1;
+
+        int oldLineCount = 0;
+        for(ATELine line : oldLines) {
+            if(line.position > oldLinePosition) {
+                addLine(new ATELine(line.position+delta));
+            } else {
+                oldLineCount++;
+            }
+        }
+        final int lineDelta = lineNumber+1-oldLineCount;
+
+        for(int i=from; i<oldTokens.size(); i++) {
+            ATEToken t = oldTokens.get(i);
+            // Tokens on the current line have to use the current line index
+            boolean currentLineStart = t.startLineIndex <= oldLinePosition;
+            boolean currentLineEnd = t.endLineIndex <= oldLinePosition;
+            t.reset(oldBuffer.getType(i), oldBuffer.getStart(i)+delta, oldBuffer.getEnd(i)+delta, delta, lineDelta, text);
+            if(currentLineStart) t.startLineIndex = lineIndex;
+            if(currentLineEnd) t.endLineIndex = lineIndex;
+            addToken(t);
+        }
+
+        lineNumber = lines.size()-1;
+        lineIndex = lines.get(lineNumber).position;
+        position = text.length();
+    }
+
+    protected void addLine(ATELine line) {
+        lines.add(line);
+        lineStarts.add(line.position);
+    }
+
+    protected void tokenize() {
+        while(nextCharacter()) {
+            addToken(matchToken());
+        }
+    }
+
+    protected ATEToken matchToken() {
+        ATEToken token = customMatch();
+
+        if(token != null) {
+            // custom match matched something
+        } else if(c0 == '\'')
+            token = matchSingleQuoteString();
+        else if(c0 == '\"')
+            token = matchDoubleQuoteString();
+        else if(c0 == '/' && c1 == '/')
+            token = matchSingleComment();
+        else if(c0 == '/' && c1 == '*')
+            token = matchComplexComment();
+        else if(isLetter())
+            token = matchID();
+        else if(c0 == '(')
+            token = createNewToken(TOKEN_LPAREN);
+        else if(c0 == ')')
+            token = createNewToken(TOKEN_RPAREN);
+        else if(c0 == '{')
+            token = createNewToken(TOKEN_LCURLY);
+        else if(c0 == '}')
+            token = createNewToken(TOKEN_RCURLY);
+        else if(c0 == '[')
+            token = createNewToken(TOKEN_LBRACK);
+        else if(c0 == ']')
+            token = createNewToken(TOKEN_RBRACK);
+        else if(c0 == ':')
+            token = createNewToken(TOKEN_COLON);
+        else if(c0 == ';')
+            token = createNewToken(TOKEN_SEMI);
+        else if(!isWhitespace())
+            token = createNewToken(TOKEN_CHAR);
+
+        return token;
+    }
+
     protected ATEToken customMatch() {
         return null;
     }
@@ -152,6 +306,7 @@ public class ATESyntaxLexer {
     public void addToken(ATEToken token) {
         if(token != null) {
             token.index = tokens.size();
+            buffer.add(token);
             tokens.add(token);
         }
     }
@@ -230,7 +385,7 @@ public class ATESyntaxLexer {
             if(matchNewLine()) {
                 lineNumber++;
                 lineIndex = position+1;
-                lines.add(new ATELine(lineIndex));
+                addLine(new ATELine(lineIndex));
             }
         }
         return valid;
@@ -3,7 +3,6 @@ package org.antlr.works.ate.syntax.generic;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 
 import java.util.List;
-import java.util.Stack;
 /*
 
 [The "BSD licence"]
@@ -38,9 +37,13 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 public abstract class ATESyntaxParser {
 
     private List<ATEToken> tokens;
-    private Stack<Integer> marks = new Stack<Integer>();
+    private int[] marks = new int[64];
+    private int marksCount;
     private int position;
 
+    /** Index of the furthest token examined by the parser */
+    private int lookahead;
+
     private ATEToken t0;
     private ATEToken t1;
 
@@ -56,8 +59,9 @@ public abstract class ATESyntaxParser {
 
     public void parse(List<ATEToken> tokens) {
         this.tokens = tokens;
-        marks.clear();
+        marksCount = 0;
         position = -1;
+        lookahead = -1;
         clearTokenCache();
         parseTokens();
     }
@@ -72,12 +76,34 @@ public abstract class ATESyntaxParser {
         return position;
     }
 
+    /** Returns the index of the furthest token examined so far. The result of the parsing
+     * of a portion of the tokens depends on the tokens up to that index.
+     */
+    public int getLookahead() {
+        return lookahead;
+    }
+
+    public void setLookahead(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    /** Moves the parser to the specified token index */
+    public void seek(int position) {
+        this.position = position;
+        clearTokenCache();
+    }
+
     public void mark() {
-        marks.push(position);
+        if(marksCount == marks.length) {
+            int[] m = new int[marks.length*2];
+            System.arraycopy(marks, 0, m, 0, marksCount);
+            marks = m;
+        }
+        marks[marksCount++] = position;
     }
 
     public void rewind() {
-        position = marks.pop();
+        position = marks[--marksCount];
         clearTokenCache();
     }
 
@@ -89,6 +115,7 @@ public abstract class ATESyntaxParser {
 
     public boolean nextToken() {
         position++;
+        if(position > lookahead) lookahead = position;
         clearTokenCache();
         return position<tokens.size();
     }
@@ -122,6 +149,7 @@ public abstract class ATESyntaxParser {
     }
 
     public ATEToken getToken(int index) {
+        if(position+index > lookahead) lookahead = position+index;
         if(position+index >= 0 && position+index < tokens.size())
             return tokens.get(position+index);
         else
@@ -161,7 +189,7 @@ public abstract class ATESyntaxParser {
     }
 
     public boolean isChar(int index, String c) {
-        return isTokenType(index, ATESyntaxLexer.TOKEN_CHAR) && T(index).getAttribute().equals(c);
+        return isTokenType(index, ATESyntaxLexer.TOKEN_CHAR) && T(index).attributeEquals(c);
     }
 
     public boolean isSingleComment(int index) {
@@ -177,7 +205,7 @@ public abstract class ATESyntaxParser {
     }
 
     public boolean isID(int index, String attribute) {
-        return isTokenType(index, ATESyntaxLexer.TOKEN_ID) && T(index).getAttribute().equals(attribute);
+        return isTokenType(index, ATESyntaxLexer.TOKEN_ID) && T(index).attributeEquals(attribute);
     }
 
     public boolean isTokenType(int index, int type) {
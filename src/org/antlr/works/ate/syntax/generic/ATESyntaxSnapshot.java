@@ -0,0 +1,132 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.ate.syntax.generic;
+
+import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATELineIndex;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.ate.syntax.misc.ATETokenBuffer;
+
+import javax.swing.text.AttributeSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of the processing of a version of the text by a syntax engine. The processing
+ * happens in a background thread and the editor swaps the snapshot in once it is completed:
+ * the snapshot contains copies of the tokens, of the token buffer and of the line index
+ * because the next incremental processing reuses (and moves) the objects of the lexer.
+ * Only the editor modifies the copies, in the event thread.
+ */
+public class ATESyntaxSnapshot {
+
+    private final int version;
+    private final int serial;
+    private final String text;
+    private final List<ATEToken> tokens;
+    private final ATETokenBuffer tokenBuffer;
+    private final AttributeSet[] attributes;
+    private final List<ATELine> lines;
+    private final ATELineIndex lineIndex;
+    private final int maxLines;
+
+    /**
+     * Creates the snapshot in the thread of the processing.
+     *
+     * @param tokens The tokens of the lexer (the snapshot contains copies of the tokens)
+     */
+    public ATESyntaxSnapshot(ATESyntaxEngine engine, int version, String text, List<ATEToken> tokens) {
+        this.version = version;
+        this.serial = engine.nextSerial();
+        this.text = text;
+
+        List<ATEToken> copies = new ArrayList<ATEToken>(tokens.size());
+        for(ATEToken t : tokens) {
+            copies.add(t.copy());
+        }
+        this.tokens = Collections.unmodifiableList(copies);
+
+        // The lines are never modified by the lexer: only the list is copied
+        this.tokenBuffer = engine.getLexer().getTokenBuffer().copy();
+        this.lines = Collections.unmodifiableList(new ArrayList<ATELine>(engine.getLexer().getLines()));
+        this.lineIndex = engine.getLexer().getLineIndex().copy();
+        this.maxLines = engine.getLexer().getLineNumber();
+
+        attributes = new AttributeSet[copies.size()];
+        for(int i=0; i<attributes.length; i++) {
+            attributes[i] = engine.getAttributeForToken(copies.get(i));
+        }
+    }
+
+    /** Called by the engine when the snapshot is published, in the thread publishing it */
+    protected void published() {
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    int getSerial() {
+        return serial;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public List<ATEToken> getTokens() {
+        return tokens;
+    }
+
+    public ATETokenBuffer getTokenBuffer() {
+        return tokenBuffer;
+    }
+
+    /** Returns the display attribute of the token at the specified index */
+    public AttributeSet getAttribute(int index) {
+        return attributes[index];
+    }
+
+    public List<ATELine> getLines() {
+        return lines;
+    }
+
+    /** Returns the start position of the lines */
+    public ATELineIndex getLineIndex() {
+        return lineIndex;
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.ate.syntax.misc;
+
+import java.util.Set;
+
+/**
+ * Hash table of the keywords of a language looked up directly with the characters of a
+ * token: the attribute of the token does not have to be created to know if it is a keyword.
+ */
+public class ATEKeywordTable {
+
+    private final Set<String> keywords;
+    private final String[] table;
+    private final int mask;
+    private int minLength = Integer.MAX_VALUE;
+    private int maxLength;
+
+    public ATEKeywordTable(Set<String> keywords) {
+        this.keywords = keywords;
+
+        int capacity = 16;
+        while(capacity < keywords.size()*2) {
+            capacity *= 2;
+        }
+        table = new String[capacity];
+        mask = capacity-1;
+
+        for(String keyword : keywords) {
+            int slot = keyword.hashCode() & mask;
+            while(table[slot] != null) {
+                slot = (slot+1) & mask;
+            }
+            table[slot] = keyword;
+            minLength = Math.min(minLength, keyword.length());
+            maxLength = Math.max(maxLength, keyword.length());
+        }
+    }
+
+    /** Returns the keywords of the table */
+    public Set<String> getKeywords() {
+        return keywords;
+    }
+
+    /** Returns true if the characters of the text between start (inclusive) and end (exclusive) are a keyword */
+    public boolean contains(String text, int start, int end) {
+        final int length = end-start;
+        if(length < minLength || length > maxLength)
+            return false;
+
+        // Same hash code as the String containing the characters
+        int hash = 0;
+        for(int i=start; i<end; i++) {
+            hash = 31*hash + text.charAt(i);
+        }
+
+        int slot = hash & mask;
+        String keyword;
+        while((keyword = table[slot]) != null) {
+            if(keyword.length() == length && text.regionMatches(start, keyword, 0, length))
+                return true;
+            slot = (slot+1) & mask;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.ate.syntax.misc;
+
+/**
+ * Sorted array of the start position of each line, built by the lexer. The line
+ * containing a position is found by a binary search instead of a scan of the lines.
+ */
+public class ATELineIndex {
+
+    private int[] starts;
+    private int size;
+
+    public ATELineIndex() {
+        this(64);
+    }
+
+    public ATELineIndex(int capacity) {
+        starts = new int[Math.max(capacity, 16)];
+    }
+
+    /** Adds a line: the lines have to be added in ascending order of position */
+    public void add(int position) {
+        if(size == starts.length) {
+            int[] a = new int[starts.length*2];
+            System.arraycopy(starts, 0, a, 0, size);
+            starts = a;
+        }
+        starts[size++] = position;
+    }
+
+    /** Returns a copy of this index trimmed to its size */
+    public ATELineIndex copy() {
+        ATELineIndex index = new ATELineIndex(size);
+        System.arraycopy(starts, 0, index.starts, 0, size);
+        index.size = size;
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Returns the position of the first character of the line */
+    public int getLineStart(int line) {
+        return starts[line];
+    }
+
+    /**
+     * Returns the index of the line containing the specified position (that is the last
+     * line starting at or before the position) or -1 if there is no such line.
+     */
+    public int getLineIndexAt(int position) {
+        int low = 0;
+        int high = size-1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(starts[mid] <= position) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.ate.syntax.misc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared scheduler executing the background tasks of all the windows (the ATEThread instances)
+ * on a bounded pool of threads instead of one sleeping thread per task.
+ *
+ * The requests are coalesced per task: a request replaces any request of the same task that
+ * has not started yet (latest-wins debounce) and a task never runs concurrently with itself.
+ * When several tasks are ready, the tasks of the foreground owner (usually the active window)
+ * are executed first and the background requests (work that can wait, like pre-rendering)
+ * are executed last, whatever their owner.
+ */
+public class ATEScheduler {
+
+    private static ATEScheduler shared;
+
+    /** Timer used to delay the requests until they are ready to be executed */
+    private final ScheduledExecutorService timer;
+    /** Workers executing the ready tasks by priority */
+    private final ThreadPoolExecutor workers;
+
+    private final Map<ATEThread,Entry> entries = new HashMap<ATEThread, Entry>();
+    private Object foregroundOwner;
+    private long sequence;
+
+    /* Metrics */
+    private long submittedCount;
+    private long executedCount;
+    private long supersededCount;
+    private long droppedCount;
+    private long totalLatency;  // in nanoseconds
+    private long maxLatency;    // in nanoseconds
+
+    public static synchronized ATEScheduler shared() {
+        if(shared == null) {
+            shared = new ATEScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+        return shared;
+    }
+
+    public ATEScheduler(int threads) {
+        timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ATEScheduler-timer"));
+        workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new DaemonThreadFactory("ATEScheduler-worker"));
+    }
+
+    /**
+     * Sets the owner of the tasks that have the priority over the other tasks.
+     */
+    public synchronized void setForegroundOwner(Object owner) {
+        this.foregroundOwner = owner;
+    }
+
+    public synchronized Object getForegroundOwner() {
+        return foregroundOwner;
+    }
+
+    /**
+     * Requests the execution of the task after the specified delay. Any request of the same task
+     * that has not started yet is superseded by this one.
+     *
+     * @param thread The task
+     * @param delay The delay in milliseconds
+     */
+    public synchronized void schedule(ATEThread thread, int delay) {
+        schedule(thread, delay, false);
+    }
+
+    /**
+     * Requests the execution of the task after the specified delay. A background request is
+     * executed after the other ready tasks; it doesn't lower the priority of a request of the
+     * same task that has not started yet.
+     *
+     * @param thread The task
+     * @param delay The delay in milliseconds
+     * @param background True if the request is a background request
+     */
+    public synchronized void schedule(ATEThread thread, int delay, boolean background) {
+        Entry e = entries.get(thread);
+        if(e == null) {
+            e = new Entry(thread);
+            entries.put(thread, e);
+        }
+
+        submittedCount++;
+        if(e.requested) {
+            supersededCount++;
+        }
+        if(e.future != null) {
+            e.future.cancel(false);
+            e.future = null;
+        }
+
+        e.background = background && (!e.requested || e.background);
+        e.requested = true;
+        e.rerun = false;
+        final int generation = ++e.generation;
+        if(delay <= 0) {
+            dispatch(e, generation);
+        } else {
+            final Entry entry = e;
+            e.future = timer.schedule(new Runnable() {
+                public void run() {
+                    dispatch(entry, generation);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels the request of the task that has not started yet, if any.
+     */
+    public synchronized void cancel(ATEThread thread) {
+        Entry e = entries.get(thread);
+        if(e != null) {
+            cancel(e);
+        }
+    }
+
+    /**
+     * Cancels any request of the task and forgets the task.
+     */
+    public synchronized void remove(ATEThread thread) {
+        Entry e = entries.remove(thread);
+        if(e != null) {
+            cancel(e);
+        }
+    }
+
+    private void cancel(Entry e) {
+        if(e.requested) {
+            droppedCount++;
+        }
+        e.generation++;
+        e.requested = false;
+        e.rerun = false;
+        if(e.future != null) {
+            e.future.cancel(false);
+            e.future = null;
+        }
+    }
+
+    /**
+     * Called when a request is ready to be executed
+     */
+    private synchronized void dispatch(Entry e, int generation) {
+        if(generation != e.generation) return;
+
+        e.future = null;
+        if(e.running) {
+            // Execute the task again once the current execution is completed
+            e.rerun = true;
+        } else {
+            int priority;
+            if(e.background) {
+                priority = Work.BACKGROUND;
+            } else if(e.thread.getOwner() == foregroundOwner) {
+                priority = Work.FOREGROUND;
+            } else {
+                priority = Work.NORMAL;
+            }
+            workers.execute(new Work(e, generation, priority, sequence++));
+        }
+    }
+
+    private void execute(Work work) {
+        final Entry e = work.entry;
+        synchronized(this) {
+            if(work.generation != e.generation) return;
+            if(e.running) {
+                e.rerun = true;
+                return;
+            }
+
+            e.running = true;
+            e.requested = false;
+
+            final long latency = System.nanoTime()-work.readyTime;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            executedCount++;
+        }
+
+        try {
+            e.thread.run();
+        } finally {
+            synchronized(this) {
+                e.running = false;
+                if(e.rerun) {
+                    e.rerun = false;
+                    dispatch(e, e.generation);
+                }
+            }
+        }
+    }
+
+    /** Returns the number of requests received */
+    public synchronized long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    /** Returns the number of executions */
+    public synchronized long getExecutedCount() {
+        return executedCount;
+    }
+
+    /** Returns the number of requests replaced by a more recent request of the same task */
+    public synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    /** Returns the number of requests cancelled before their execution */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /** Returns the average time in milliseconds between a request being ready and its execution */
+    public synchronized double getAverageQueueLatency() {
+        return executedCount == 0 ? 0 : totalLatency / 1e6 / executedCount;
+    }
+
+    /** Returns the maximum time in milliseconds between a request being ready and its execution */
+    public synchronized double getMaxQueueLatency() {
+        return maxLatency / 1e6;
+    }
+
+    public synchronized void resetMetrics() {
+        submittedCount = executedCount = supersededCount = droppedCount = 0;
+        totalLatency = maxLatency = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "submitted="+submittedCount+", executed="+executedCount+", superseded="+supersededCount
+                +", dropped="+droppedCount+", average latency="+getAverageQueueLatency()+" ms"
+                +", max latency="+getMaxQueueLatency()+" ms";
+    }
+
+    private static class Entry {
+
+        final ATEThread thread;
+
+        int generation;             // incremented by each request or cancellation
+        ScheduledFuture<?> future;  // request waiting for its delay
+        boolean requested;          // true if a request has not started yet
+        boolean background;         // true if the last request is a background request
+        boolean running;            // true while the task is executing
+        boolean rerun;              // true if a request became ready while the task was executing
+
+        public Entry(ATEThread thread) {
+            this.thread = thread;
+        }
+    }
+
+    private class Work implements Runnable, Comparable<Work> {
+
+        static final int FOREGROUND = 0;
+        static final int NORMAL = 1;
+        static final int BACKGROUND = 2;
+
+        final Entry entry;
+        final int generation;
+        final int priority;
+        final long sequence;
+        final long readyTime = System.nanoTime();
+
+        public Work(Entry entry, int generation, int priority, long sequence) {
+            this.entry = entry;
+            this.generation = generation;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        public void run() {
+            execute(this);
+        }
+
+        public int compareTo(Work other) {
+            if(priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        public DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name+"-"+count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -31,16 +31,19 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.ate.syntax.misc;
 
+/**
+ * A background task executed by the shared ATEScheduler. Each call to awakeThread()
+ * requests an execution of threadRun() after the threshold delay: requests received
+ * before the execution starts are coalesced and only the latest one is honored.
+ */
 public abstract class ATEThread implements Runnable {
 
-    protected int threadSleep = 100;
-    protected int threshold = 0;
+    protected int threadSleep = Integer.MAX_VALUE;
     protected int default_threshold = 250;
     protected boolean running = false;
     protected boolean run = false;
-    protected Thread thread = null;
-    protected boolean asleep = false;
-    protected boolean skip = false;
+
+    private ATEScheduler scheduler = ATEScheduler.shared();
 
     public ATEThread() {
     }
@@ -57,11 +60,29 @@ public abstract class ATEThread implements Runnable {
         return running;
     }
 
+    /** Sets the scheduler executing this task (the shared one by default) */
+    public synchronized void setScheduler(ATEScheduler scheduler) {
+        this.scheduler.remove(this);
+        this.scheduler = scheduler;
+    }
+
+    public synchronized ATEScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /** Returns the object owning this task (for example its window). The tasks of
+     * the foreground owner of the scheduler are executed first.
+     */
+    public Object getOwner() {
+        return null;
+    }
+
     protected synchronized void start() {
         this.threadSleep = Integer.MAX_VALUE;
         start_();
     }
 
+    /** Starts the task and executes it periodically every 'threadSleep' ms */
     protected synchronized void start(int threadSleep) {
         this.threadSleep = threadSleep;
         start_();
@@ -70,39 +91,42 @@ public abstract class ATEThread implements Runnable {
     private void start_() {
         if(!run) {
             run = true;
-            thread = new Thread(this);
-            thread.setName(getClass().toString());
-            thread.start();
+            if(threadSleep != Integer.MAX_VALUE) {
+                scheduler.schedule(this, threadSleep);
+            }
         }
     }
 
+    /** Cancels the pending execution, if any */
     public synchronized void skip() {
-        skip = true;
-    }
-
-    private synchronized void resetSkip() {
-        skip = false;
+        scheduler.cancel(this);
     }
 
     public synchronized void stop() {
-        threshold = 0;
         run = false;
-        thread.interrupt();
+        scheduler.remove(this);
     }
 
-    /** Interrupt the thread if it is sleeping. If threshold > 0, the thread will sleep an
-     * additionnal 'threshold' ms until no other awakeThread() is called
-     * before trying to compute something.
+    /** Requests an execution of the task. If threshold > 0, the execution will be delayed
+     * by 'threshold' ms until no other awakeThread() is called.
      */
     public synchronized void awakeThread() {
         awakeThread(default_threshold);
     }
 
     public synchronized void awakeThread(int threshold) {
-        resetSkip();
-        this.threshold = threshold;
-        if(asleep)
-            thread.interrupt();
+        if(run) {
+            scheduler.schedule(this, threshold);
+        }
+    }
+
+    /** Requests an execution of the task that can wait: it is executed after the other
+     * tasks of the scheduler, including the tasks of the foreground owner.
+     */
+    public synchronized void awakeThreadInBackground(int threshold) {
+        if(run) {
+            scheduler.schedule(this, threshold, true);
+        }
     }
 
     public boolean cancel() {
@@ -116,45 +140,32 @@ public abstract class ATEThread implements Runnable {
     }
 
     public boolean threadSleep(int ms) {
-        boolean interrupted = false;
-        asleep = true;
         try {
             Thread.sleep(ms);
+            return false;
         } catch (InterruptedException e) {
-            interrupted = true;
+            return true;
         }
-        asleep = false;
-        return interrupted;
     }
 
+    /** Executes the task once. Called by the scheduler. */
     public void run() {
-        setRunning(true);
-        while(run) {
-            if(threadSleep(threadSleep)) {
-                // Sleep interrupted. If threshold is > 0, then wait
-                // this amount of time and loop until the thread is not
-                // anymore interrupted.
-                if(threshold>0) {
-                    while(threadSleep(threshold)) {
-                    }
-                }
-            }
+        if(!run) return;
 
-            if(!run)
-                break;
-
-            if(skip) {
-                resetSkip();
-                continue;
-            }
+        setRunning(true);
+        try {
+            threadRun();
+        } catch(Exception e) {
+            threadReportException(e);
+        } finally {
+            setRunning(false);
+        }
 
-            try {
-                threadRun();
-            } catch(Exception e) {
-                threadReportException(e);
+        synchronized(this) {
+            if(run && threadSleep != Integer.MAX_VALUE) {
+                scheduler.schedule(this, threadSleep);
             }
         }
-        setRunning(false);
     }
 
 }
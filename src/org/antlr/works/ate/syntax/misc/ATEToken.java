@@ -31,7 +31,7 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.ate.syntax.misc;
 
-public class ATEToken implements Comparable {
+public class ATEToken implements Comparable, Cloneable {
 
     public int type;
 
@@ -48,7 +48,19 @@ public class ATEToken implements Comparable {
     public int start;
     public int end;
 
-    protected String attribute; // the portion of text covered by this token (subset of text)
+    /** The portion of text covered by this token (subset of text). It is created only
+     * when requested because most tokens are never asked for their attribute.
+     */
+    private String attribute;
+
+    /** Shared attributes of the single ASCII character tokens */
+    private static final String[] CHAR_ATTRIBUTES = new String[128];
+
+    static {
+        for(int c=0; c<CHAR_ATTRIBUTES.length; c++) {
+            CHAR_ATTRIBUTES[c] = String.valueOf((char)c).intern();
+        }
+    }
 
     public int index;   // index inside the tokens list
     public boolean modified;    // true if the token has been modified in the text window
@@ -70,7 +82,36 @@ public class ATEToken implements Comparable {
         this.endLineIndex = endLineIndex;
 
         this.text = text;
-        this.attribute = text.substring(start, end);
+    }
+
+    /** Resets the token to its lexical type and position. The lines are moved by the specified
+     * amount of characters and lines. Used by the lexer when the token is reused
+     * by an incremental tokenization.
+     */
+    public void reset(int type, int start, int end, int delta, int lineDelta, String text) {
+        this.type = type;
+        this.scope = null;
+
+        this.start = start;
+        this.end = end;
+
+        this.startLineNumber += lineDelta;
+        this.endLineNumber += lineDelta;
+        this.startLineIndex += delta;
+        this.endLineIndex += delta;
+
+        this.text = text;
+    }
+
+    /** Returns a copy of this token. The lexer and the parser keep modifying their tokens:
+     * the snapshots published to the editor contain copies of them.
+     */
+    public ATEToken copy() {
+        try {
+            return (ATEToken) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e.toString());
+        }
     }
 
     public String getText() {
@@ -78,9 +119,45 @@ public class ATEToken implements Comparable {
     }
 
     public String getAttribute() {
+        materializeAttribute();
         return attribute;
     }
 
+    /** Creates the attribute of this token from its current position in the text. This method
+     * has to be called before moving the token if it has to keep its attribute.
+     */
+    public void materializeAttribute() {
+        if(attribute == null) {
+            if(end-start == 1 && text.charAt(start) < CHAR_ATTRIBUTES.length) {
+                attribute = CHAR_ATTRIBUTES[text.charAt(start)];
+            } else {
+                attribute = text.substring(start, end);
+            }
+        }
+    }
+
+    /** Returns true if the attribute of this token is equal to the specified string.
+     * This method does not create the attribute if it has not been requested yet.
+     */
+    public boolean attributeEquals(String s) {
+        if(attribute != null) {
+            return attribute.equals(s);
+        } else {
+            return end-start == s.length() && text.regionMatches(start, s, 0, s.length());
+        }
+    }
+
+    /** Returns true if the attribute of this token starts with the specified prefix.
+     * This method does not create the attribute if it has not been requested yet.
+     */
+    public boolean attributeStartsWith(String prefix) {
+        if(attribute != null) {
+            return attribute.startsWith(prefix);
+        } else {
+            return end-start >= prefix.length() && text.regionMatches(start, prefix, 0, prefix.length());
+        }
+    }
+
     public int getStartLineIndex() {
         return startLineIndex;
     }
@@ -131,4 +208,12 @@ public class ATEToken implements Comparable {
         else
             return name.charAt(0) == name.toUpperCase().charAt(0);
     }
+
+    /** Same as isLexerName(String) using only the first character of the name */
+    public static boolean isLexerName(char c) {
+        if(c < CHAR_ATTRIBUTES.length)
+            return c == Character.toUpperCase(c);
+        else
+            return isLexerName(String.valueOf(c));
+    }
 }
@@ -0,0 +1,143 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.ate.syntax.misc;
+
+/**
+ * Compact storage of the lexical information of the tokens produced by the lexer:
+ * each attribute is stored in a primitive array indexed by the token index instead
+ * of being read through the token objects. The type is the type assigned by the lexer
+ * (the parser can later modify the type of the token objects).
+ */
+public class ATETokenBuffer {
+
+    private int[] types;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    public ATETokenBuffer() {
+        this(256);
+    }
+
+    public ATETokenBuffer(int capacity) {
+        capacity = Math.max(capacity, 16);
+        types = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+    }
+
+    public void add(ATEToken token) {
+        if(size == types.length) {
+            grow();
+        }
+        types[size] = token.type;
+        starts[size] = token.start;
+        ends[size] = token.end;
+        size++;
+    }
+
+    private void grow() {
+        final int capacity = types.length*2;
+        types = copy(types, capacity);
+        starts = copy(starts, capacity);
+        ends = copy(ends, capacity);
+    }
+
+    private static int[] copy(int[] array, int capacity) {
+        int[] a = new int[capacity];
+        System.arraycopy(array, 0, a, 0, array.length);
+        return a;
+    }
+
+    /** Returns a copy of this buffer trimmed to its size */
+    public ATETokenBuffer copy() {
+        ATETokenBuffer b = new ATETokenBuffer(size);
+        System.arraycopy(types, 0, b.types, 0, size);
+        System.arraycopy(starts, 0, b.starts, 0, size);
+        System.arraycopy(ends, 0, b.ends, 0, size);
+        b.size = size;
+        return b;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getType(int index) {
+        return types[index];
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the index of the last token starting strictly before the specified position
+     * or -1 if there is no such token.
+     */
+    public int getLastTokenIndexBefore(int position) {
+        int low = 0;
+        int high = size-1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(starts[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Returns the index of the first token ending at or after the specified position
+     * (that is the first token that can cover the position) or size() if there is no such token.
+     */
+    public int getFirstTokenIndexEndingAt(int position) {
+        int low = 0;
+        int high = size-1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(ends[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+}
@@ -5,6 +5,7 @@ import org.antlr.works.ate.ATEPanel;
 import org.antlr.works.ate.ATEPanelDelegate;
 import org.antlr.works.ate.ATETextPane;
 import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATEScheduler;
 import org.antlr.works.ate.syntax.misc.ATEThread;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.debugger.DebuggerTab;
@@ -27,6 +28,8 @@ import org.antlr.works.grammar.element.Jumpable;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.engine.GrammarEngineDelegate;
 import org.antlr.works.grammar.engine.GrammarEngineImpl;
+import org.antlr.works.grammar.syntax.GrammarSyntaxChanges;
+import org.antlr.works.grammar.syntax.GrammarSyntaxSnapshot;
 import org.antlr.works.interpreter.InterpreterTab;
 import org.antlr.works.menu.*;
 import org.antlr.works.prefs.AWPrefs;
@@ -355,6 +358,10 @@ public class GrammarWindow
         afterParserOp.stop();
         afterParserOp = null;
 
+        if(ATEScheduler.shared().getForegroundOwner() == this) {
+            ATEScheduler.shared().setForegroundOwner(null);
+        }
+
         gutterColumnManager.close();
         foldingManager.close();
         underlyingManager.close();
@@ -409,6 +416,8 @@ public class GrammarWindow
         }
 
         componentActivated();
+        // Execute the background tasks of this window first
+        ATEScheduler.shared().setForegroundOwner(this);
         // before activating the window itself
         super.windowActivated();
     }
@@ -771,6 +780,8 @@ public class GrammarWindow
      * to update the syntax diagram and the rule information to reflect any error detected.
      */
     public void engineAnalyzeCompleted() {
+        editorInspector.grammarDidAnalyze();
+
         // Clear graphic cache because we have to redraw each rule again
         syntaxDiagramTab.clearCacheGraphs();
         editorRules.refreshRules();
@@ -942,19 +953,11 @@ public class GrammarWindow
     }
 
     public ElementReference getReferenceAtPosition(int pos) {
-        for (ElementReference ref : grammarEngine.getReferences()) {
-            if (ref.containsIndex(pos))
-                return ref;
-        }
-        return null;
+        return grammarEngine.getReferenceAtPosition(pos);
     }
 
     public ElementImport getImportAtPosition(int pos) {
-        for (ElementImport element : grammarEngine.getImports()) {
-            if (element.containsIndex(pos))
-                return element;
-        }
-        return null;
+        return grammarEngine.getImportAtPosition(pos);
     }
 
     public ATEToken getCurrentToken() {
@@ -1155,6 +1158,7 @@ public class GrammarWindow
 
         if(windowFirstDisplay) {
             windowFirstDisplay = false;
+            publishTokenVocab(grammarEngine.resolveTokenVocab());
             afterParseOperations();
             SwingUtilities.invokeLater(new Runnable() {
                 public void run() {
@@ -1167,14 +1171,22 @@ public class GrammarWindow
         }
     }
 
+    private void publishTokenVocab(GrammarSyntaxSnapshot snapshot) {
+        // The snapshot contains the references resolved with the token vocabulary
+        if(snapshot != null) {
+            grammarEngine.getSyntaxEngine().publish(snapshot);
+        }
+    }
+
     private void afterParseOperations() {
         editorPersistence.restore();
 
-        grammarEngine.parserCompleted();
+        GrammarSyntaxChanges changes = grammarEngine.parserCompleted();
         grammarEngine.updateAll();
+        editorInspector.grammarDidParse();
 
         interpreterTab.setRules(getNaturalRules());
-        editorRules.parserDidParse();
+        editorRules.parserDidParse(changes);
         decisionDFAEngine.reset();
         decisionDFAEngine.refreshMenu();
 
@@ -1281,6 +1293,8 @@ public class GrammarWindow
         consoleTab.makeCurrent();
         grammarEngine.reset();
         grammarEngine.updateAll();
+        // The token vocabulary may have changed the undefined references
+        editorInspector.grammarDidParse();
         textEditor.getTextPane().setWritable(isFileWritable());
         textEditor.refresh();
         updateInformation();
@@ -1485,6 +1499,11 @@ public class GrammarWindow
         progress.display();
     }
 
+    public void setProgressInfo(String info) {
+        if(progress != null)
+            progress.setInfo(info);
+    }
+
     public void hideProgress() {
         progress.close();
     }
@@ -1549,8 +1568,21 @@ public class GrammarWindow
             start();
         }
 
+        @Override
+        public Object getOwner() {
+            return GrammarWindow.this;
+        }
+
         protected void threadRun() throws Exception {
-            afterParseOperations();
+            // Read the token vocabulary and resolve the references in the background:
+            // only the resulting snapshot is published in the event thread
+            final GrammarSyntaxSnapshot snapshot = grammarEngine.resolveTokenVocab();
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    publishTokenVocab(snapshot);
+                    afterParseOperations();
+                }
+            });
         }
     }
 
@@ -111,6 +111,8 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
     public static final int MI_DEBUG_REMOTE = 84;
     public static final int MI_DEBUG_SHOW_INPUT_TOKENS = 86;
     public static final int MI_EDIT_TEST_RIG = 87;
+    public static final int MI_DEBUG_OPEN_TRACE = 88;
+    public static final int MI_DEBUG_SAVE_TRACE = 89;
 
     // Help
     public static final int MI_SUBMIT_STATS = 100;
@@ -224,6 +226,8 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debug"), KeyEvent.VK_D, MI_DEBUG, this));
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugAgain"), KeyEvent.VK_D, XJMenuItem.getKeyModifier() | Event.SHIFT_MASK, MI_DEBUG_AGAIN, this));
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugRemote"), MI_DEBUG_REMOTE, this));
+        menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugOpenTrace"), MI_DEBUG_OPEN_TRACE, this));
+        menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugSaveTrace"), MI_DEBUG_SAVE_TRACE, this));
         menu.addSeparator();
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.showInputTokens"), MI_DEBUG_SHOW_INPUT_TOKENS, this));
         menu.addSeparator();
@@ -536,9 +540,14 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
             case MI_RUN:
             case MI_DEBUG:
             case MI_DEBUG_REMOTE:
+            case MI_DEBUG_OPEN_TRACE:
                 item.setEnabled(!isDebuggerRunning());
                 break;
 
+            case MI_DEBUG_SAVE_TRACE:
+                item.setEnabled(debugMenu.canSaveTrace());
+                break;
+
             case MI_GOTO_BACK:
                 item.setEnabled(window.goToHistory.canGoBack());
                 break;
@@ -783,6 +792,14 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
                 debugMenu.debugRemote();
                 break;
 
+            case MI_DEBUG_OPEN_TRACE:
+                debugMenu.openTrace();
+                break;
+
+            case MI_DEBUG_SAVE_TRACE:
+                debugMenu.saveTrace();
+                break;
+
             case MI_DEBUG_SHOW_INPUT_TOKENS:
                 debugMenu.toggleInputTokens();
                 window.refreshMainMenuBar();
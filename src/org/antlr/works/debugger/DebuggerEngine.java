@@ -1,15 +1,21 @@
 package org.antlr.works.debugger;
 
+import org.antlr.tool.ErrorManager;
 import org.antlr.works.IDE;
+import org.antlr.works.generate.CodeGenerateTool;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
+import org.antlr.works.utils.ErrorListener;
 import org.antlr.works.utils.StreamWatcher;
 import org.antlr.works.utils.StreamWatcherDelegate;
 import org.antlr.works.utils.Utils;
 import org.antlr.xjlib.foundation.XJSystem;
 import org.antlr.xjlib.foundation.XJUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
@@ -65,6 +71,19 @@ public class DebuggerEngine {
     }
 
     public static String getClassPath(String outputPath) {
+        String classPath = getUnquotedClassPath(outputPath);
+
+        // On Mac OS X, quoting the path works fine except within IntelliJ when
+        // AW is working as a plugin. Without quoting, it works everywhere in Mac
+        // OS X so I decided to quote only on Windows.
+        if(XJSystem.isWindows())
+            return Utils.quotePath(classPath);
+        else
+            return classPath;
+    }
+
+    /** Returns the class path passed as is to a tool running in this process */
+    public static String getUnquotedClassPath(String outputPath) {
         String appPath = IDE.getApplicationPath();
 
         // Need to include the path of the application in order to be able
@@ -81,66 +100,28 @@ public class DebuggerEngine {
 
         classPath += File.pathSeparatorChar+".";
 
-        // On Mac OS X, quoting the path works fine except within IntelliJ when
-        // AW is working as a plugin. Without quoting, it works everywhere in Mac
-        // OS X so I decided to quote only on Windows.
-        if(XJSystem.isWindows())
-            return Utils.quotePath(classPath);
-        else
-            return classPath;
+        return classPath;
     }
 
+    /** Runs ANTLR on the grammar file in this process. Returns the first error or null. */
     public static String runANTLR(Console console, String file, String libPath, String outputPath, StreamWatcherDelegate delegate) {
-        String error = null;
-        StreamWatcher esw = null;
-        int result = 0;
-        try {
-            String[] args = new String[9];
-            args[0] = "java";
-            args[1] = "-cp";
-            args[2] = getClassPath(outputPath);
-            args[3] = "org.antlr.Tool";
-            args[4] = "-o";
-            args[5] = Utils.quotePath(outputPath);
-            args[6] = "-lib";
-            args[7] = Utils.quotePath(libPath);
-            args[8] = file;
-
-            IDE.debugVerbose(console, DebuggerEngine.class, "Run ANTLR: "+Utils.toString(args));
+        String[] args = new String[] { "-o", outputPath, "-lib", libPath };
+        IDE.debugVerbose(console, DebuggerEngine.class, "Run ANTLR: "+Utils.toString(args)+" "+file);
 
-            Process p = Runtime.getRuntime().exec(args);
-            setProcess(p);
-            esw = new StreamWatcher(p.getErrorStream(), "ANTLR[error]", delegate);
-            esw.start();
-            new StreamWatcher(p.getInputStream(), "ANTLR[stdout]", delegate).start();
-            result = p.waitFor();
+        ErrorListener el = ErrorListener.getThreadInstance();
+        ErrorManager.setErrorListener(el);
+        try {
+            CodeGenerateTool.getShared(args).generate(file);
+            for(String info : el.infos) {
+                delegate.streamWatcherDidReceiveString(info+"\n");
+            }
+            return el.getFirstErrorMessage();
         } catch(Exception e) {
-            error = "Failed to run ANTLR with exception:\n"+e.toString();
+            return "Failed to run ANTLR with exception:\n"+e.toString();
         } finally {
-            removeProcess();
-        }
-
-        if(result != 0) {
-            error = "Failed to run ANTLR with result:\n"+result;
-        }
-
-        /** Make sure ANTLR didn't return an error in the error string
-         *
-         */
-
-        if(error == null) {
-            for (String line : esw.getLines()) {
-                if (line.startsWith("ANTLR Parser Generator"))
-                    continue;
-
-                if (line.startsWith("no such locale file"))
-                    continue;
-
-                error = line;
-                break;
-            }
+            el.clear();
+            ErrorManager.removeErrorListener();
         }
-        return error;
     }
 
     public static String runJava(Console console, String currentPath, String[] params, StreamWatcherDelegate delegate) {
@@ -250,4 +231,52 @@ public class DebuggerEngine {
         return error;
     }
 
+    /** Compiles the files with the compiler of the running platform (javax.tools) without
+     * starting any process. The files are compiled with the configured compiler if the
+     * platform has no compiler (i.e. a JRE).
+     */
+    public static String compileFilesInProcess(Console console, String[] files, String outputFileDir, StreamWatcherDelegate delegate) {
+        Object compiler;
+        Method run;
+        try {
+            // javax.tools is accessed by reflection because it is not available in Java 5
+            compiler = Class.forName("javax.tools.ToolProvider").getMethod("getSystemJavaCompiler").invoke(null);
+            run = Class.forName("javax.tools.Tool").getMethod("run",
+                    InputStream.class, OutputStream.class, OutputStream.class, String[].class);
+        } catch(Exception e) {
+            compiler = null;
+            run = null;
+        }
+
+        if(compiler == null) {
+            IDE.debugVerbose(console, DebuggerEngine.class, "No compiler available in-process");
+            return compileFiles(console, files, outputFileDir, delegate);
+        }
+
+        String[] args = new String[4+files.length];
+        args[0] = "-classpath";
+        args[1] = getUnquotedClassPath(outputFileDir);
+        args[2] = "-d";
+        args[3] = outputFileDir;
+        System.arraycopy(files, 0, args, 4, files.length);
+
+        IDE.debugVerbose(console, DebuggerEngine.class, "Compile in-process: "+Utils.toString(args));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int result;
+        try {
+            result = (Integer) run.invoke(compiler, new Object[] { null, output, output, args });
+        } catch(Exception e) {
+            return "Compiler exception:\n"+e.toString();
+        }
+
+        if(output.size() > 0)
+            delegate.streamWatcherDidReceiveString(output.toString());
+
+        if(result != 0)
+            return "Compiler failed with result code "+result;
+
+        return null;
+    }
+
 }
@@ -39,13 +39,20 @@ import org.antlr.works.debugger.events.DBEvent;
 import org.antlr.works.debugger.events.DBEventEnterRule;
 import org.antlr.works.debugger.events.DBEventExitRule;
 import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.debugger.events.DBEventTraceReader;
 import org.antlr.works.debugger.input.DBInputTextTokenInfo;
 import org.antlr.works.debugger.local.DBLocal;
 import org.antlr.works.debugger.panels.*;
 import org.antlr.works.debugger.remote.DBRemoteConnectDialog;
+import org.antlr.works.debugger.tivo.DBBreakpointMatcher;
+import org.antlr.works.debugger.tivo.DBEventSource;
 import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
 import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
+import org.antlr.works.debugger.tivo.DBPlayerDelegate;
 import org.antlr.works.debugger.tivo.DBRecorder;
+import org.antlr.works.debugger.tivo.DBRecorderDelegate;
+import org.antlr.works.debugger.tivo.DBRuleBreakpoint;
 import org.antlr.works.debugger.tree.DBASTModel;
 import org.antlr.works.debugger.tree.DBASTPanel;
 import org.antlr.works.debugger.tree.DBParseTreeModel;
@@ -68,12 +75,15 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDelegate {
+public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDelegate, DBRecorderDelegate, DBPlayerDelegate {
 
     public static final String DEFAULT_LOCAL_ADDRESS = "localhost";
 
@@ -336,6 +346,18 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         return delegate.getConsole();
     }
 
+    public String getGrammarName() {
+        return delegate.getGrammarName();
+    }
+
+    public String getGrammarFileName() {
+        return delegate.getGrammarEngine().getGrammarFileName();
+    }
+
+    public String getGrammarText() {
+        return delegate.getGrammarEngine().getGrammarText();
+    }
+
     public void updateStatusInfo() {
         controlPanel.updateStatusInfo();
     }
@@ -376,6 +398,11 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         return inputPanel.isBreakpointAtToken(token);
     }
 
+    public DBBreakpointMatcher createBreakpointMatcher(Set breakEvents, Collection<DBRuleBreakpoint> ruleBreakpoints) {
+        return new DBBreakpointMatcher(breakEvents, breakpoints, inputPanel.getBreakpoints(),
+                inputPanel.isTreeInput(), ruleBreakpoints);
+    }
+
     public void selectToken(Token token, DBEventLocation location) {
         if(token != null) {
             /** If token is not null, ask the input text object the
@@ -476,6 +503,8 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
             StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_LOCAL_DEBUGGER_BUILD);
         else
             StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_LOCAL_DEBUGGER);
+        if(local.getInProcessParser() != null)
+            return debuggerLaunch(local.getInProcessParser());
         return debuggerLaunch(DEFAULT_LOCAL_ADDRESS, AWPrefs.getDebugDefaultLocalPort(), false);
     }
 
@@ -494,15 +523,65 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
             return false;
         }
 
+        prepareLaunch();
+        recorder.connect(address, port);
+        return true;
+    }
+
+    /** Launches the debugger on a parser running in this process */
+    public boolean debuggerLaunch(DBEventSource source) {
+        prepareLaunch();
+        recorder.connect(source);
+        return true;
+    }
+
+    private void prepareLaunch() {
         queryGrammarBreakpoints();
         rootGrammarName = delegate.getGrammarName();
         inputPanel.prepareForGrammar(delegate.getGrammarEngine());
         player.setInputBuffer(inputPanel.getInputBuffer());
+    }
 
-        recorder.connect(address, port);
+    /** Opens a trace file and replays its events without running the parser */
+    public boolean debuggerOpenTrace(File file) {
+        DBEventTraceReader reader;
+        try {
+            reader = new DBEventTraceReader(file);
+            try {
+                recorder.openTrace(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            XJAlert.display(getWindowContainer(), "Error", "Cannot open the trace file: "+file+"\nError: "+e);
+            return false;
+        }
+
+        String fingerprint = Utils.getDigest(delegate.getGrammarEngine().getGrammarText());
+        if(!fingerprint.equals(reader.getGrammarFingerprint())) {
+            String message = "Warning: the grammar has been modified since the trace was recorded ("+reader.getGrammarFileName()+").";
+            XJAlert.display(getWindowContainer(), "Grammar Mismatch", message);
+        }
+
+        prepareLaunch();
+
+        connectionSuccess();
+        recorder.traceDidOpen();
         return true;
     }
 
+    public void debuggerSaveTrace(File file) {
+        try {
+            recorder.saveTrace(file);
+        } catch (IOException e) {
+            XJAlert.display(getWindowContainer(), "Error", "Cannot save the trace file: "+file+"\nError: "+e);
+        }
+    }
+
+    public boolean canSaveTrace() {
+        return recorder.getEventCount() > 0;
+    }
+
     public void showEditTestRig() {
         local.showEditTestRig();
     }
@@ -559,11 +638,25 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         astPanel.clear();
     }
 
+    public void saveGUIState(DBPlayerCheckpoint checkpoint) {
+        checkpoint.stackState = stackPanel.saveState();
+        checkpoint.parseTreeState = parseTreeModel.saveState();
+        checkpoint.astState = astModel.saveState();
+    }
+
+    public void restoreGUIState(DBPlayerCheckpoint checkpoint) {
+        stackPanel.restoreState(checkpoint.stackState);
+        eventsPanel.truncate(checkpoint.eventPosition);
+        parseTreeModel.restoreState(checkpoint.parseTreeState);
+        astModel.restoreState(checkpoint.astState);
+    }
+
     public void addEvent(DBEvent event, DBPlayerContextInfo info) {
         eventsPanel.addEvent(event, info);
     }
 
-    public void playEvents(List events, int lastEventPosition, boolean reset) {
+    public void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset) {
+        eventsPanel.setEvents(events);
         player.playEvents(events, lastEventPosition, reset);
         breaksOnEvent();
     }
@@ -638,6 +731,12 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         });
     }
 
+    public void recorderDidProgress() {
+        if(closing) return;
+
+        updateStatusInfo();
+    }
+
     public void recorderDidStop() {
         if(closing) return;
 
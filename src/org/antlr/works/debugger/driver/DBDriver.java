@@ -0,0 +1,538 @@
+package org.antlr.works.debugger.driver;
+
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tivo.*;
+import org.antlr.works.utils.Console;
+import org.antlr.works.utils.Utils;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Debugger running without interface. It connects to a remote parser (or opens a trace),
+ * records the events, breaks and steps like the debugger tab does and notifies its
+ * listeners instead of updating panels.
+ *
+ * The stepping methods wait until the debugger breaks again and return the event it
+ * stopped on. They must not be called in the event dispatch thread, where the events
+ * are played.
+ */
+public class DBDriver implements DBRecorderDelegate, DBPlayerDelegate {
+
+    /** Default time to wait for the debugger to break, in milliseconds */
+    public static final long DEFAULT_TIMEOUT = 60000;
+
+    protected String grammarFileName;
+    protected String grammarName;
+    protected String grammarText;
+    protected Console console = new StandardConsole();
+
+    protected DBRecorder recorder;
+    protected DBPlayer player;
+    protected DBDriverInputProcessor processor;
+
+    protected List<DBDriverListener> listeners = new CopyOnWriteArrayList<DBDriverListener>();
+
+    protected Set<Integer> breakEvents = new HashSet<Integer>();
+    protected Map<Integer,Set<String>> lineBreakpoints = new HashMap<Integer, Set<String>>();
+    protected BitSet tokenBreakpoints = new BitSet();
+
+    /** Stack of the rules entered at the current event */
+    protected Stack<String> rules = new Stack<String>();
+
+    protected long timeout = DEFAULT_TIMEOUT;
+    protected int playCount;
+    protected boolean connected;
+    protected boolean failed;
+
+    public DBDriver(String grammarFileName, String grammarText) {
+        this.grammarFileName = XJUtils.getLastPathComponent(grammarFileName);
+        this.grammarName = XJUtils.getPathByDeletingPathExtension(this.grammarFileName);
+        this.grammarText = grammarText;
+
+        processor = new DBDriverInputProcessor();
+        recorder = new DBRecorder(this);
+        player = new DBPlayer(this);
+        player.setInputBuffer(processor);
+    }
+
+    public void close() {
+        if(recorder.getStatus() != DBRecorder.STATUS_STOPPED)
+            recorder.stop();
+        recorder.close();
+        player.close();
+    }
+
+    public void addListener(DBDriverListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DBDriverListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setConsole(Console console) {
+        this.console = console;
+    }
+
+    /** Sets the time to wait for the debugger to break, in milliseconds */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public DBRecorder getRecorder() {
+        return recorder;
+    }
+
+    public DBPlayer getPlayer() {
+        return player;
+    }
+
+    public DBDriverInputProcessor getInputProcessor() {
+        return processor;
+    }
+
+    /** Sets the type of the events the debugger breaks on (see DBEvent) */
+    public void setBreakEvents(Set<Integer> events) {
+        breakEvents.clear();
+        breakEvents.addAll(events);
+    }
+
+    public Set<Integer> getBreakEvents() {
+        return breakEvents;
+    }
+
+    /** Adds a breakpoint at a line (0-based) of the grammar */
+    public synchronized void addLineBreakpoint(String grammarName, int line) {
+        Set<String> names = lineBreakpoints.get(line);
+        if(names == null) {
+            names = new HashSet<String>();
+            lineBreakpoints.put(line, names);
+        }
+        names.add(grammarName);
+    }
+
+    public synchronized void removeLineBreakpoint(String grammarName, int line) {
+        Set<String> names = lineBreakpoints.get(line);
+        if(names != null)
+            names.remove(grammarName);
+    }
+
+    /** Adds a breakpoint on the token at the index */
+    public synchronized void addTokenBreakpoint(int index) {
+        tokenBreakpoints.set(index);
+    }
+
+    public synchronized void removeTokenBreakpoint(int index) {
+        tokenBreakpoints.clear(index);
+    }
+
+    public void addRuleBreakpoint(DBRuleBreakpoint breakpoint) {
+        recorder.addRuleBreakpoint(breakpoint);
+    }
+
+    public void removeRuleBreakpoint(DBRuleBreakpoint breakpoint) {
+        recorder.removeRuleBreakpoint(breakpoint);
+    }
+
+    /** Connects to the remote parser and waits for the debugger to break on the
+     * first event. Returns false if the connection failed.
+     */
+    public boolean connect(String address, int port) {
+        int count = prepareSession();
+        recorder.connect(address, port);
+        awaitPlay(count);
+        return isConnected();
+    }
+
+    /** Opens a trace and stops on its first event */
+    public DBEvent openTrace(File file) throws IOException {
+        DBEventTraceReader reader = new DBEventTraceReader(file);
+        try {
+            recorder.openTrace(reader);
+        } finally {
+            reader.close();
+        }
+
+        if(!Utils.getDigest(grammarText).equals(reader.getGrammarFingerprint())) {
+            console.println("Warning: the grammar has been modified since the trace was recorded ("
+                    +reader.getGrammarFileName()+").", Console.LEVEL_WARNING);
+        }
+
+        int count = prepareSession();
+        synchronized(this) {
+            connected = true;
+        }
+        recorder.traceDidOpen();
+        return awaitPlay(count);
+    }
+
+    /** Resets the player before the recorder starts: the events of the new session
+     * must not be played before the reset.
+     */
+    protected synchronized int prepareSession() {
+        connected = false;
+        failed = false;
+        player.resetPlayEvents(true);
+        return playCount;
+    }
+
+    public DBEvent stepForward() {
+        int count = getPlayCount();
+        recorder.stepForward(breakEvents);
+        return awaitPlay(count);
+    }
+
+    public DBEvent stepBackward() {
+        int count = getPlayCount();
+        recorder.stepBackward(breakEvents);
+        return awaitPlay(count);
+    }
+
+    public DBEvent stepOver() {
+        int count = getPlayCount();
+        recorder.stepOver();
+        return awaitPlay(count);
+    }
+
+    public DBEvent goToStart() {
+        int count = getPlayCount();
+        recorder.goToStart();
+        return awaitPlay(count);
+    }
+
+    public DBEvent goToEnd() {
+        int count = getPlayCount();
+        recorder.goToEnd();
+        return awaitPlay(count);
+    }
+
+    public DBEvent fastForward() {
+        int count = getPlayCount();
+        recorder.fastForward();
+        return awaitPlay(count);
+    }
+
+    /** Moves to the event at the position */
+    public DBEvent goToPosition(int position) {
+        int count = getPlayCount();
+        recorder.goToPosition(position);
+        return awaitPlay(count);
+    }
+
+    /** Stops the debugger. If the remote parser is still running, the events are
+     * received until its termination.
+     */
+    public void stop() {
+        recorder.requestStop();
+        if(SwingUtilities.isEventDispatchThread())
+            return;
+
+        // The status is read without holding the lock of the driver because the
+        // recorder notifies the driver while holding its own lock
+        long end = System.currentTimeMillis() + timeout;
+        while(recorder.getStatus() != DBRecorder.STATUS_STOPPED) {
+            long remaining = end - System.currentTimeMillis();
+            if(remaining <= 0 || !await(Math.min(remaining, 100)))
+                break;
+        }
+    }
+
+    /** Waits until the events are played again after the play count or until the
+     * connection failed. Returns the current event.
+     */
+    protected DBEvent awaitPlay(int count) {
+        if(!SwingUtilities.isEventDispatchThread()) {
+            long end = System.currentTimeMillis() + timeout;
+            synchronized(this) {
+                while((playCount <= count || !connected) && !failed) {
+                    long remaining = end - System.currentTimeMillis();
+                    if(remaining <= 0 || !await(remaining)) {
+                        console.println("Timeout waiting for the debugger to break", Console.LEVEL_WARNING);
+                        break;
+                    }
+                }
+            }
+        }
+        return recorder.getEvent();
+    }
+
+    /** Returns false if the thread was interrupted */
+    protected synchronized boolean await(long time) {
+        try {
+            wait(time);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public synchronized boolean isConnected() {
+        return connected && !failed;
+    }
+
+    public synchronized int getPlayCount() {
+        return playCount;
+    }
+
+    public DBEvent getEvent() {
+        return recorder.getEvent();
+    }
+
+    public int getEventPosition() {
+        return recorder.getCurrentEventPosition() - 1;
+    }
+
+    public int getEventCount() {
+        return recorder.getEventCount();
+    }
+
+    public int getStatus() {
+        return recorder.getStatus();
+    }
+
+    /** Returns the name of the rules entered at the current event */
+    public List<String> getRuleStack() {
+        return new ArrayList<String>(rules);
+    }
+
+    public DBEventIngestion getIngestion() {
+        return recorder.getIngestion();
+    }
+
+    // DBRecorderDelegate
+
+    public String getGrammarName() {
+        return grammarName;
+    }
+
+    public String getGrammarFileName() {
+        return grammarFileName;
+    }
+
+    public String getGrammarText() {
+        return grammarText;
+    }
+
+    public Console getConsole() {
+        return console;
+    }
+
+    public Container getContainer() {
+        return null;
+    }
+
+    public void queryGrammarBreakpoints() {
+        // The breakpoints are set directly on the driver
+    }
+
+    public synchronized DBBreakpointMatcher createBreakpointMatcher(Set breakEvents, Collection<DBRuleBreakpoint> ruleBreakpoints) {
+        Map<Integer,Set<String>> lines = new HashMap<Integer, Set<String>>();
+        for(Map.Entry<Integer,Set<String>> entry : lineBreakpoints.entrySet()) {
+            lines.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+        }
+        return new DBBreakpointMatcher(breakEvents, lines, (BitSet)tokenBreakpoints.clone(), false, ruleBreakpoints);
+    }
+
+    public void connectionSuccess() {
+        synchronized(this) {
+            connected = true;
+            notifyAll();
+        }
+        for(DBDriverListener listener : listeners) {
+            listener.driverDidConnect(this);
+        }
+    }
+
+    public void connectionFailed() {
+        synchronized(this) {
+            failed = true;
+            notifyAll();
+        }
+        for(DBDriverListener listener : listeners) {
+            listener.driverConnectionFailed(this);
+        }
+    }
+
+    public void connectionCancelled() {
+        connectionFailed();
+    }
+
+    public void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset) {
+        try {
+            player.playEvents(events, lastEventPosition, reset);
+
+            DBEvent event = recorder.getEvent();
+            for(DBDriverListener listener : listeners) {
+                listener.driverDidBreak(this, event);
+            }
+        } finally {
+            // Release the waiting thread even if the events cannot be played
+            synchronized(this) {
+                playCount++;
+                notifyAll();
+            }
+        }
+    }
+
+    public void recorderStatusDidChange() {
+        synchronized(this) {
+            notifyAll();
+        }
+    }
+
+    public void recorderDidProgress() {
+    }
+
+    public void recorderDidStop() {
+        synchronized(this) {
+            notifyAll();
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                for(DBDriverListener listener : listeners) {
+                    listener.driverDidStop(DBDriver.this);
+                }
+            }
+        });
+    }
+
+    // DBPlayerDelegate
+
+    public void resetGUI() {
+        rules.clear();
+    }
+
+    public void saveGUIState(DBPlayerCheckpoint checkpoint) {
+        checkpoint.stackState = new ArrayList<String>(rules);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void restoreGUIState(DBPlayerCheckpoint checkpoint) {
+        rules.clear();
+        rules.addAll((List<String>)checkpoint.stackState);
+    }
+
+    public void addEvent(DBEvent event, DBPlayerContextInfo info) {
+        for(DBDriverListener listener : listeners) {
+            listener.driverDidPlayEvent(this, event, info);
+        }
+    }
+
+    public void resetGrammarLocation() {
+    }
+
+    public void setGrammarLocation(DBEventLocation location) {
+    }
+
+    public void playerSetLocation(DBEventLocation location) {
+    }
+
+    public void playerPushRule(DBEventEnterRule rule) {
+        rules.push(rule.name);
+    }
+
+    public void playerPopRule(DBEventExitRule rule) {
+        if(!rules.isEmpty())
+            rules.pop();
+    }
+
+    public void playerConsumeToken(Token token) {
+    }
+
+    public void playerRecognitionException(Exception e) {
+    }
+
+    public void playerBeginBacktrack(int level) {
+    }
+
+    public void playerEndBacktrack(int level, boolean success) {
+    }
+
+    public void playerNilNode(int id) {
+    }
+
+    public void playerErrorNode(int id, String text) {
+    }
+
+    public void playerCreateNode(int id, Token token) {
+    }
+
+    public void playerCreateNode(int id, String text, int type) {
+    }
+
+    public void playerBecomeRoot(int newRootID, int oldRootID) {
+    }
+
+    public void playerAddChild(int rootID, int childID) {
+    }
+
+    public void playerSetTokenBoundaries(int id, int startIndex, int stopIndex) {
+    }
+
+    /** Console printing the messages to the standard error */
+    protected static class StandardConsole implements Console {
+
+        public void setMode(int mode) {
+        }
+
+        public void println(String s) {
+            System.err.println(s);
+        }
+
+        public void println(String s, int level) {
+            System.err.println(s);
+        }
+
+        public void println(Throwable e) {
+            e.printStackTrace();
+        }
+
+        public void print(String string, int level) {
+            System.err.print(string);
+        }
+
+        public void print(Throwable e) {
+            e.printStackTrace();
+        }
+    }
+}
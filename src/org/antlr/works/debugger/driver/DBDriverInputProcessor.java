@@ -0,0 +1,105 @@
+package org.antlr.works.debugger.driver;
+
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.debugger.input.DBInputProcessor;
+import org.antlr.works.debugger.input.DBInputTextTokenInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Input processor keeping only the tokens received, without rendering them */
+public class DBDriverInputProcessor implements DBInputProcessor {
+
+    protected Map<Integer,DBInputTextTokenInfo> tokens = new HashMap<Integer, DBInputTextTokenInfo>();
+    protected int currentTokenIndex = -1;
+    protected DBEventLocation locationEvent;
+
+    public void reset() {
+        tokens.clear();
+        currentTokenIndex = -1;
+    }
+
+    public void removeAllLT() {
+    }
+
+    public void rewind(int i) {
+        currentTokenIndex = i;
+    }
+
+    public void rewindAll() {
+        rewind(-1);
+    }
+
+    public void LT(Token token) {
+        addToken(token);
+    }
+
+    public void consumeToken(Token token, int flavor) {
+        addToken(token);
+    }
+
+    public void setLocation(DBEventLocation event) {
+        this.locationEvent = event;
+    }
+
+    protected void addToken(Token token) {
+        int index = token.getTokenIndex();
+        if(index == -1)
+            return;
+
+        currentTokenIndex = index;
+        tokens.put(index, new DBInputTextTokenInfo(token, locationEvent));
+    }
+
+    public Object saveState() {
+        return currentTokenIndex;
+    }
+
+    public void restoreState(Object state) {
+        currentTokenIndex = (Integer)state;
+    }
+
+    public int getCurrentTokenIndex() {
+        return currentTokenIndex;
+    }
+
+    public DBInputTextTokenInfo getTokenInfoAtTokenIndex(int index) {
+        return tokens.get(index);
+    }
+
+    public int getTokenCount() {
+        return tokens.size();
+    }
+}
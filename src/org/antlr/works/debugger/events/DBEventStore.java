@@ -0,0 +1,674 @@
+package org.antlr.works.debugger.events;
+
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener.ProxyToken;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener.ProxyTree;
+import org.antlr.works.debugger.tree.DBTreeToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * List of events encoded in a compact binary format. The records are stored in
+ * direct buffers allocated outside of the Java heap and each event is decoded
+ * again each time it is requested.
+ *
+ * Each record is made of its length, the type of the event, the grammar name and
+ * the fields of the event. Numbers are variable-length integers and strings are
+ * identifiers in a table of interned strings. Tokens are stored by value.
+ * Events that cannot be encoded (such as tokens of an unknown class) are kept on
+ * the heap and their record only refers to them.
+ *
+ * The records can be written to a trace file, either at once or while the events
+ * are added, and read back later.
+ */
+public class DBEventStore extends AbstractList<DBEvent> implements RandomAccess {
+
+    /** Size of each buffer */
+    private static final int SEGMENT_SIZE = 1 << 20;
+
+    /** Maximum size of a record: a record never spans two buffers */
+    private static final int MAX_RECORD_SIZE = 128;
+
+    /** Number of events between two entries of the offset index */
+    private static final int INDEX_INTERVAL = 16;
+
+    /** Type of the records referring to an event kept on the heap */
+    private static final int OBJECT_EVENT = 0xFF;
+
+    private static final int TOKEN_NULL = 0;
+    private static final int TOKEN_PROXY = 1;
+    private static final int TOKEN_TREE = 2;
+    private static final int TOKEN_OBJECT = 3;
+
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private int size = 0;
+
+    /** Offset of the first record of each group of INDEX_INTERVAL events */
+    private long[] index = new long[256];
+
+    /** Offset of the next record to write */
+    private long writeOffset;
+
+    /** Number of bytes used by the records */
+    private long encodedSize;
+
+    /** Offset of the record following the last decoded one: the events
+     * are most of the time requested in sequence
+     */
+    private int nextReadEvent = -1;
+    private long nextReadOffset;
+
+    private final List<String> strings = new ArrayList<String>();
+    private final Map<String, Integer> stringIDs = new HashMap<String, Integer>();
+    private final List<Object> objects = new ArrayList<Object>();
+
+    /** Events whose record refers to objects kept on the heap */
+    private final BitSet objectEvents = new BitSet();
+
+    /** Buffer used to encode a record */
+    private final byte[] record = new byte[MAX_RECORD_SIZE];
+    private int recordLength;
+    private boolean recordUsesObjects;
+
+    /** Writer of the trace receiving each event added */
+    private DBEventTraceWriter traceWriter;
+
+    @Override
+    public synchronized boolean add(DBEvent event) {
+        recordLength = 0;
+        recordUsesObjects = false;
+        if(!encodeEvent(event)) {
+            recordLength = 0;
+            writeByte(OBJECT_EVENT);
+            writeInt(objects.size());
+            objects.add(event);
+            recordUsesObjects = true;
+        }
+        if(recordUsesObjects) {
+            objectEvents.set(size);
+        }
+
+        if(traceWriter != null) {
+            if(recordUsesObjects)
+                traceWriter.skipEvent();
+            else
+                traceWriter.writeRecord(record, recordLength);
+        }
+
+        appendRecord();
+        return true;
+    }
+
+    /** Appends the encoded record to the buffers */
+    private void appendRecord() {
+        int position = (int)(writeOffset - (long)(segments.size() - 1) * SEGMENT_SIZE);
+        if(segments.isEmpty() || position + recordLength + 1 > SEGMENT_SIZE) {
+            if(!segments.isEmpty() && position < SEGMENT_SIZE) {
+                // A zero length marks the end of the records of this buffer
+                segments.get(segments.size() - 1).put(position, (byte)0);
+            }
+            segments.add(ByteBuffer.allocateDirect(SEGMENT_SIZE));
+            writeOffset = (long)(segments.size() - 1) * SEGMENT_SIZE;
+            position = 0;
+        }
+
+        if(size % INDEX_INTERVAL == 0) {
+            int slot = size / INDEX_INTERVAL;
+            if(slot == index.length) {
+                long[] newIndex = new long[index.length * 2];
+                System.arraycopy(index, 0, newIndex, 0, index.length);
+                index = newIndex;
+            }
+            index[slot] = writeOffset;
+        }
+
+        ByteBuffer segment = segments.get(segments.size() - 1);
+        segment.put(position, (byte)recordLength);
+        for(int i=0; i<recordLength; i++) {
+            segment.put(position + 1 + i, record[i]);
+        }
+        writeOffset += recordLength + 1;
+        encodedSize += recordLength + 1;
+        size++;
+        // The modification count is not changed: the events are only appended
+        // so the views on the events already recorded stay valid
+    }
+
+    @Override
+    public synchronized DBEvent get(int eventIndex) {
+        if(eventIndex < 0 || eventIndex >= size)
+            throw new IndexOutOfBoundsException("Index: "+eventIndex+", Size: "+size);
+
+        long offset;
+        if(eventIndex == nextReadEvent) {
+            offset = recordStart(nextReadOffset);
+        } else {
+            offset = index[eventIndex / INDEX_INTERVAL];
+            for(int i = eventIndex % INDEX_INTERVAL; i > 0; i--) {
+                offset = recordStart(offset + (getByte(offset) & 0xFF) + 1);
+            }
+        }
+
+        nextReadEvent = eventIndex + 1;
+        nextReadOffset = offset + (getByte(offset) & 0xFF) + 1;
+
+        readOffset = offset + 1;
+        return decodeEvent();
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        segments.clear();
+        size = 0;
+        writeOffset = 0;
+        encodedSize = 0;
+        nextReadEvent = -1;
+        strings.clear();
+        stringIDs.clear();
+        objects.clear();
+        objectEvents.clear();
+        modCount++;
+    }
+
+    /** Writes the events recorded so far to the trace. The events kept on the
+     * heap are not written.
+     */
+    public synchronized void writeTrace(DBEventTraceWriter writer) {
+        for(String s : strings) {
+            writer.writeString(s);
+        }
+
+        long offset = 0;
+        for(int i=0; i<size; i++) {
+            offset = recordStart(offset);
+            int length = getByte(offset) & 0xFF;
+            for(int j=0; j<length; j++) {
+                record[j] = getByte(offset + 1 + j);
+            }
+            if(objectEvents.get(i))
+                writer.skipEvent();
+            else
+                writer.writeRecord(record, length);
+            offset += length + 1;
+        }
+    }
+
+    /** Writes the events recorded so far and then each event added to the trace.
+     * A null writer stops the trace.
+     */
+    public synchronized void setTraceWriter(DBEventTraceWriter writer) {
+        if(writer != null) {
+            writeTrace(writer);
+        }
+        traceWriter = writer;
+    }
+
+    /** Reads the events of the trace into this empty store. A trace ending abruptly (for
+     * example when the debugger was killed while writing it) is read up to its last complete event.
+     */
+    public synchronized void readTrace(DBEventTraceReader reader) throws IOException {
+        if(size > 0 || !strings.isEmpty())
+            throw new IllegalStateException("The events of a trace cannot be added to other events");
+
+        try {
+            int entry;
+            while((entry = reader.readEntry()) != -1) {
+                switch(entry) {
+                    case DBEventTraceWriter.ENTRY_STRING: {
+                        String s = reader.readString();
+                        stringIDs.put(s, strings.size());
+                        strings.add(s);
+                        break;
+                    }
+                    case DBEventTraceWriter.ENTRY_RECORD:
+                        recordLength = reader.readRecord(record);
+                        appendRecord();
+                        break;
+                    default:
+                        throw new IOException("Invalid trace entry "+entry);
+                }
+            }
+        } catch (EOFException e) {
+            // Truncated trace: keep the events read so far
+        }
+    }
+
+    /** Returns the number of bytes used by the records */
+    public synchronized long getEncodedSize() {
+        return encodedSize;
+    }
+
+    /* Encoding */
+
+    private boolean encodeEvent(DBEvent event) {
+        int type = event.getEventType();
+        if(type < 0 || type >= OBJECT_EVENT)
+            return false;
+
+        writeByte(type);
+        writeString(event.getGrammarName());
+
+        switch(type) {
+            case DBEvent.BEGIN_RESYNC:
+            case DBEvent.END_RESYNC:
+            case DBEvent.COMMENCE:
+            case DBEvent.TERMINATE:
+                return event.getClass() == DBEvent.class;
+
+            case DBEvent.LOCATION:
+                if(event.getClass() != DBEventLocation.class) return false;
+                writeInt(((DBEventLocation)event).line);
+                writeInt(((DBEventLocation)event).pos);
+                return true;
+
+            case DBEvent.CONSUME_TOKEN:
+                if(event.getClass() != DBEventConsumeToken.class) return false;
+                writeToken(((DBEventConsumeToken)event).token);
+                return true;
+
+            case DBEvent.CONSUME_HIDDEN_TOKEN:
+                if(event.getClass() != DBEventConsumeHiddenToken.class) return false;
+                writeToken(((DBEventConsumeHiddenToken)event).token);
+                return true;
+
+            case DBEvent.LT:
+                if(event.getClass() != DBEventLT.class) return false;
+                writeInt(((DBEventLT)event).index);
+                writeToken(((DBEventLT)event).token);
+                return true;
+
+            case DBEvent.ENTER_RULE:
+                if(event.getClass() != DBEventEnterRule.class) return false;
+                writeString(((DBEventEnterRule)event).grammarFileName);
+                writeString(((DBEventEnterRule)event).name);
+                return true;
+
+            case DBEvent.EXIT_RULE:
+                if(event.getClass() != DBEventExitRule.class) return false;
+                writeString(((DBEventExitRule)event).grammarFileName);
+                writeString(((DBEventExitRule)event).name);
+                return true;
+
+            case DBEvent.ENTER_SUBRULE:
+                if(event.getClass() != DBEventEnterSubRule.class) return false;
+                writeInt(((DBEventEnterSubRule)event).decision);
+                return true;
+
+            case DBEvent.EXIT_SUBRULE:
+                if(event.getClass() != DBEventExitSubRule.class) return false;
+                writeInt(((DBEventExitSubRule)event).decision);
+                return true;
+
+            case DBEvent.ENTER_DECISION:
+                if(event.getClass() != DBEventEnterDecision.class) return false;
+                writeInt(((DBEventEnterDecision)event).decision);
+                return true;
+
+            case DBEvent.EXIT_DECISION:
+                if(event.getClass() != DBEventExitDecision.class) return false;
+                writeInt(((DBEventExitDecision)event).decision);
+                return true;
+
+            case DBEvent.ENTER_ALT:
+                if(event.getClass() != DBEventEnterAlt.class) return false;
+                writeInt(((DBEventEnterAlt)event).alt);
+                return true;
+
+            case DBEvent.MARK:
+                if(event.getClass() != DBEventMark.class) return false;
+                writeInt(((DBEventMark)event).id);
+                return true;
+
+            case DBEvent.REWIND:
+                if(event.getClass() != DBEventRewind.class) return false;
+                writeInt(((DBEventRewind)event).id);
+                return true;
+
+            case DBEvent.BEGIN_BACKTRACK:
+                if(event.getClass() != DBEventBeginBacktrack.class) return false;
+                writeInt(((DBEventBeginBacktrack)event).level);
+                return true;
+
+            case DBEvent.END_BACKTRACK:
+                if(event.getClass() != DBEventEndBacktrack.class) return false;
+                writeInt(((DBEventEndBacktrack)event).level);
+                writeByte(((DBEventEndBacktrack)event).successful ? 1 : 0);
+                return true;
+
+            case DBEvent.NIL_NODE:
+                if(event.getClass() != DBEventNilNode.class) return false;
+                writeInt(((DBEventNilNode)event).id);
+                return true;
+
+            case DBEvent.ERROR_NODE:
+                if(event.getClass() != DBEventErrorNode.class) return false;
+                writeInt(((DBEventErrorNode)event).id);
+                writeString(((DBEventErrorNode)event).text);
+                writeInt(((DBEventErrorNode)event).type);
+                return true;
+
+            case DBEvent.CREATE_NODE:
+                if(event.getClass() != DBEventCreateNode.class) return false;
+                writeInt(((DBEventCreateNode)event).id);
+                writeInt(((DBEventCreateNode)event).tokenIndex);
+                writeString(((DBEventCreateNode)event).text);
+                writeInt(((DBEventCreateNode)event).type);
+                return true;
+
+            case DBEvent.BECOME_ROOT:
+                if(event.getClass() != DBEventBecomeRoot.class) return false;
+                writeInt(((DBEventBecomeRoot)event).newRootID);
+                writeInt(((DBEventBecomeRoot)event).oldRootID);
+                return true;
+
+            case DBEvent.ADD_CHILD:
+                if(event.getClass() != DBEventAddChild.class) return false;
+                writeInt(((DBEventAddChild)event).rootID);
+                writeInt(((DBEventAddChild)event).childID);
+                return true;
+
+            case DBEvent.RECOGNITION_EXCEPTION: {
+                if(event.getClass() != DBEventRecognitionException.class) return false;
+                // Same information as the one sent by the remote parser
+                RecognitionException e = ((DBEventRecognitionException)event).e;
+                if(e == null) return false;
+                writeString(e.getClass().getName());
+                writeInt(e.index);
+                writeInt(e.line);
+                writeInt(e.charPositionInLine);
+                return true;
+            }
+
+            case DBEvent.SET_TOKEN_BOUNDARIES:
+                if(event.getClass() != DBEventSetTokenBoundaries.class) return false;
+                writeInt(((DBEventSetTokenBoundaries)event).id);
+                writeInt(((DBEventSetTokenBoundaries)event).startIndex);
+                writeInt(((DBEventSetTokenBoundaries)event).stopIndex);
+                return true;
+        }
+        return false;
+    }
+
+    private void writeToken(Token token) {
+        if(token == null) {
+            writeByte(TOKEN_NULL);
+        } else if(token.getClass() == ProxyToken.class) {
+            writeByte(TOKEN_PROXY);
+            writeInt(token.getTokenIndex());
+            writeInt(token.getType());
+            writeInt(token.getChannel());
+            writeInt(token.getLine());
+            writeInt(token.getCharPositionInLine());
+            writeString(token.getText());
+        } else if(token.getClass() == DBTreeToken.class) {
+            ProxyTree tree = ((DBTreeToken)token).tree;
+            writeByte(TOKEN_TREE);
+            writeInt(tree.ID);
+            writeInt(tree.type);
+            writeInt(tree.line);
+            writeInt(tree.charPos);
+            writeInt(tree.tokenIndex);
+            writeString(tree.text);
+        } else {
+            writeByte(TOKEN_OBJECT);
+            recordUsesObjects = true;
+            writeInt(objects.size());
+            objects.add(token);
+        }
+    }
+
+    private void writeString(String s) {
+        if(s == null) {
+            writeInt(0);
+            return;
+        }
+        Integer id = stringIDs.get(s);
+        if(id == null) {
+            id = strings.size();
+            strings.add(s);
+            stringIDs.put(s, id);
+            if(traceWriter != null) {
+                traceWriter.writeString(s);
+            }
+        }
+        writeInt(id + 1);
+    }
+
+    /** Writes a zigzag variable-length integer: small negative values use one byte too */
+    private void writeInt(int value) {
+        int v = (value << 1) ^ (value >> 31);
+        while((v & ~0x7F) != 0) {
+            writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    private void writeByte(int value) {
+        record[recordLength++] = (byte)value;
+    }
+
+    /* Decoding */
+
+    private long readOffset;
+
+    private DBEvent decodeEvent() {
+        int type = readByte();
+        if(type == OBJECT_EVENT)
+            return (DBEvent)objects.get(readInt());
+
+        String grammarName = readString();
+        DBEvent event;
+        switch(type) {
+            case DBEvent.LOCATION:
+                event = new DBEventLocation(readInt(), readInt());
+                break;
+            case DBEvent.CONSUME_TOKEN:
+                event = new DBEventConsumeToken(readToken());
+                break;
+            case DBEvent.CONSUME_HIDDEN_TOKEN:
+                event = new DBEventConsumeHiddenToken(readToken());
+                break;
+            case DBEvent.LT: {
+                int i = readInt();
+                event = new DBEventLT(i, readToken());
+                break;
+            }
+            case DBEvent.ENTER_RULE: {
+                String fileName = readString();
+                event = new DBEventEnterRule(fileName, readString());
+                break;
+            }
+            case DBEvent.EXIT_RULE: {
+                String fileName = readString();
+                event = new DBEventExitRule(fileName, readString());
+                break;
+            }
+            case DBEvent.ENTER_SUBRULE:
+                event = new DBEventEnterSubRule(readInt());
+                break;
+            case DBEvent.EXIT_SUBRULE:
+                event = new DBEventExitSubRule(readInt());
+                break;
+            case DBEvent.ENTER_DECISION:
+                event = new DBEventEnterDecision(readInt());
+                break;
+            case DBEvent.EXIT_DECISION:
+                event = new DBEventExitDecision(readInt());
+                break;
+            case DBEvent.ENTER_ALT:
+                event = new DBEventEnterAlt(readInt());
+                break;
+            case DBEvent.MARK:
+                event = new DBEventMark(readInt());
+                break;
+            case DBEvent.REWIND:
+                event = new DBEventRewind(readInt());
+                break;
+            case DBEvent.BEGIN_BACKTRACK:
+                event = new DBEventBeginBacktrack(readInt());
+                break;
+            case DBEvent.END_BACKTRACK: {
+                int level = readInt();
+                event = new DBEventEndBacktrack(level, readByte() == 1);
+                break;
+            }
+            case DBEvent.NIL_NODE:
+                event = new DBEventNilNode(readInt());
+                break;
+            case DBEvent.ERROR_NODE: {
+                int id = readInt();
+                String text = readString();
+                event = new DBEventErrorNode(id, text, readInt());
+                break;
+            }
+            case DBEvent.CREATE_NODE: {
+                int id = readInt();
+                int tokenIndex = readInt();
+                String text = readString();
+                int tokenType = readInt();
+                DBEventCreateNode e = new DBEventCreateNode(id, tokenIndex);
+                e.text = text;
+                e.type = tokenType;
+                event = e;
+                break;
+            }
+            case DBEvent.BECOME_ROOT: {
+                int newRootID = readInt();
+                event = new DBEventBecomeRoot(newRootID, readInt());
+                break;
+            }
+            case DBEvent.ADD_CHILD: {
+                int rootID = readInt();
+                event = new DBEventAddChild(rootID, readInt());
+                break;
+            }
+            case DBEvent.RECOGNITION_EXCEPTION: {
+                RecognitionException e = createException(readString());
+                e.index = readInt();
+                e.line = readInt();
+                e.charPositionInLine = readInt();
+                event = new DBEventRecognitionException(e);
+                break;
+            }
+            case DBEvent.SET_TOKEN_BOUNDARIES: {
+                int id = readInt();
+                int startIndex = readInt();
+                event = new DBEventSetTokenBoundaries(id, startIndex, readInt());
+                break;
+            }
+            default:
+                event = new DBEvent(type);
+                break;
+        }
+        event.setGrammarName(grammarName);
+        return event;
+    }
+
+    private RecognitionException createException(String className) {
+        // The exception is created the same way the remote parser listener does
+        try {
+            return (RecognitionException)Class.forName(className).newInstance();
+        } catch (Exception e) {
+            return new RecognitionException();
+        }
+    }
+
+    private Token readToken() {
+        switch(readByte()) {
+            case TOKEN_PROXY: {
+                int tokenIndex = readInt();
+                int type = readInt();
+                int channel = readInt();
+                int line = readInt();
+                int charPos = readInt();
+                return new ProxyToken(tokenIndex, type, channel, line, charPos, readString());
+            }
+            case TOKEN_TREE: {
+                int id = readInt();
+                int type = readInt();
+                int line = readInt();
+                int charPos = readInt();
+                int tokenIndex = readInt();
+                return new DBTreeToken(new ProxyTree(id, type, line, charPos, tokenIndex, readString()));
+            }
+            case TOKEN_OBJECT:
+                return (Token)objects.get(readInt());
+        }
+        return null;
+    }
+
+    private String readString() {
+        int id = readInt();
+        return id == 0 ? null : strings.get(id - 1);
+    }
+
+    private int readInt() {
+        int v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = readByte();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private int readByte() {
+        return getByte(readOffset++) & 0xFF;
+    }
+
+    /** Returns the offset of the record at or after the offset, skipping the end of a buffer */
+    private long recordStart(long offset) {
+        long position = offset % SEGMENT_SIZE;
+        if(position != 0 && getByte(offset) == 0) {
+            return offset - position + SEGMENT_SIZE;
+        }
+        return offset;
+    }
+
+    private byte getByte(long offset) {
+        return segments.get((int)(offset / SEGMENT_SIZE)).get((int)(offset % SEGMENT_SIZE));
+    }
+
+}
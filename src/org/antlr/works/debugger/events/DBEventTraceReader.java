@@ -0,0 +1,94 @@
+package org.antlr.works.debugger.events;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Reads a trace file written by DBEventTraceWriter. The header is read when
+ * the reader is created and the events are loaded with DBEventStore.readTrace().
+ */
+public class DBEventTraceReader {
+
+    private final DataInputStream in;
+    private final String grammarFileName;
+    private final String grammarFingerprint;
+
+    public DBEventTraceReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    public DBEventTraceReader(InputStream is) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(is)));
+        if(in.readInt() != DBEventTraceWriter.MAGIC)
+            throw new IOException("Not a debugger trace file");
+
+        int version = in.readInt();
+        if(version != DBEventTraceWriter.VERSION)
+            throw new IOException("Unsupported debugger trace version "+version);
+
+        grammarFileName = in.readUTF();
+        grammarFingerprint = in.readUTF();
+    }
+
+    /** Returns the name of the grammar file of the traced session */
+    public String getGrammarFileName() {
+        return grammarFileName;
+    }
+
+    /** Returns the fingerprint of the grammar text of the traced session */
+    public String getGrammarFingerprint() {
+        return grammarFingerprint;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /** Returns the type of the next entry or -1 at the end of the trace */
+    int readEntry() throws IOException {
+        return in.read();
+    }
+
+    String readString() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    int readRecord(byte[] record) throws IOException {
+        int length = in.readUnsignedByte();
+        in.readFully(record, 0, length);
+        return length;
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.antlr.works.debugger.events;
+
+import java.io.*;
+import java.util.zip.GZIPOutputStream;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Writes the events of a debugger session into a compressed trace file. The
+ * trace holds the records of a DBEventStore: it can be written while the
+ * events are recorded and read back without running the parser again.
+ *
+ * The writer never throws while the events are written: the first error
+ * stops the trace and is thrown by close().
+ */
+public class DBEventTraceWriter {
+
+    public static final String EXTENSION = "awtrace";
+
+    static final int MAGIC = 0x41575452;
+    static final int VERSION = 1;
+
+    static final int ENTRY_STRING = 0;
+    static final int ENTRY_RECORD = 1;
+
+    private final DataOutputStream out;
+    private IOException error;
+    private int skippedEvents;
+
+    public DBEventTraceWriter(File file, String grammarFileName, String grammarFingerprint) throws IOException {
+        this(new FileOutputStream(file), grammarFileName, grammarFingerprint);
+    }
+
+    public DBEventTraceWriter(OutputStream os, String grammarFileName, String grammarFingerprint) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(os)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(grammarFileName == null ? "" : grammarFileName);
+        out.writeUTF(grammarFingerprint == null ? "" : grammarFingerprint);
+    }
+
+    /** Returns the number of events that could not be written (events kept
+     * on the heap by the store).
+     */
+    public int getSkippedEvents() {
+        return skippedEvents;
+    }
+
+    public void close() throws IOException {
+        try {
+            out.close();
+        } catch (IOException e) {
+            if(error == null) error = e;
+        }
+        if(error != null)
+            throw error;
+    }
+
+    void writeString(String s) {
+        if(error != null) return;
+        try {
+            byte[] bytes = s.getBytes("UTF-8");
+            out.writeByte(ENTRY_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    void writeRecord(byte[] record, int length) {
+        if(error != null) return;
+        try {
+            out.writeByte(ENTRY_RECORD);
+            out.writeByte(length);
+            out.write(record, 0, length);
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    void skipEvent() {
+        skippedEvents++;
+    }
+
+}
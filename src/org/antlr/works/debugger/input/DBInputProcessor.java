@@ -49,6 +49,12 @@ public interface DBInputProcessor {
     public void consumeToken(Token token, int flavor);
     public void setLocation(DBEventLocation event);
 
+    /** Returns the playback state of the processor so it can be restored
+     * later with restoreState() instead of replaying the events
+     */
+    public Object saveState();
+    public void restoreState(Object state);
+
     public int getCurrentTokenIndex();
     public DBInputTextTokenInfo getTokenInfoAtTokenIndex(int index);
 }
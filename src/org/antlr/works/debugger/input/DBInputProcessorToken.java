@@ -43,10 +43,13 @@ import org.antlr.xjlib.foundation.notification.XJNotificationCenter;
 import org.antlr.xjlib.foundation.notification.XJNotificationObserver;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -64,7 +67,21 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     protected TextPane textPane;
     protected int mouseIndex = -1;
 
-    protected LinkedList<Integer> inputTokenIndexes = new LinkedList<Integer>();
+    /** Token indexes in ascending order (the order of the tokens in the text) and their info */
+    protected int[] sortedIndexes = new int[256];
+    protected DBInputTextTokenInfo[] sortedInfos = new DBInputTextTokenInfo[256];
+    protected int tokenCount;
+
+    /** Number of tokens not yet inserted in the text and position of the first one */
+    protected int pendingTokenCount;
+    protected int firstPendingPosition;
+
+    /** Indexes of the tokens whose attribute has changed since they were last styled */
+    protected BitSet dirtyIndexes = new BitSet();
+
+    /** Viewport observed to style the tokens when they become visible */
+    protected JViewport viewport;
+
     protected Map<Integer,DBInputTextTokenInfo> indexToTokenInfoMap = new HashMap<Integer, DBInputTextTokenInfo>();
     protected Map<Integer,AttributeSet> indexToConsumeAttributeMap = new HashMap<Integer, AttributeSet>();
     protected Set<Integer> lookaheadTokenIndexes = new HashSet<Integer>();
@@ -167,20 +184,35 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
 
     public void addConsumeAttribute(Token token, AttributeSet attribute) {
         indexToConsumeAttributeMap.put(token.getTokenIndex(), attribute);
+        setDirty(token.getTokenIndex());
     }
 
     public void addTokenLT(Token token) {
-        lookaheadTokenIndexes.add(token.getTokenIndex());
+        if(lookaheadTokenIndexes.add(token.getTokenIndex()))
+            setDirty(token.getTokenIndex());
     }
 
     public void removeTokenLT(Token token) {
-        lookaheadTokenIndexes.remove(Integer.valueOf(token.getTokenIndex()));
+        if(lookaheadTokenIndexes.remove(Integer.valueOf(token.getTokenIndex())))
+            setDirty(token.getTokenIndex());
     }
 
     public void removeAllLT() {
+        setDirty(lookaheadTokenIndexes);
         lookaheadTokenIndexes.clear();
     }
 
+    protected void setDirty(int index) {
+        if(index >= 0)
+            dirtyIndexes.set(index);
+    }
+
+    protected void setDirty(Collection<Integer> indexes) {
+        for(Integer index : indexes) {
+            setDirty(index);
+        }
+    }
+
     public void stop() {
         inputBreakpointIndexes.clear();
     }
@@ -192,7 +224,10 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         currentTokenIndex = -1;
         currentTokenIndexInText = 0;
 
-        inputTokenIndexes.clear();
+        Arrays.fill(sortedInfos, 0, tokenCount, null);
+        tokenCount = 0;
+        pendingTokenCount = 0;
+        dirtyIndexes.clear();
         indexToTokenInfoMap.clear();
         indexToConsumeAttributeMap.clear();
         lookaheadTokenIndexes.clear();
@@ -208,14 +243,44 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         /** Remove any consume and lookahead attribute for any token with index
          * greater than start
          */
-        for (Integer idx : inputTokenIndexes) {
-            if (idx >= start) {
-                indexToConsumeAttributeMap.remove(idx);
-                lookaheadTokenIndexes.remove(idx);
-            }
+        int position = findPosition(start);
+        if(position < 0)
+            position = -position - 1;
+        for(int i=position; i<tokenCount; i++) {
+            Integer idx = sortedIndexes[i];
+            boolean consumed = indexToConsumeAttributeMap.remove(idx) != null;
+            if(lookaheadTokenIndexes.remove(idx) || consumed)
+                setDirty(idx);
         }
     }
 
+    public Object saveState() {
+        State state = new State();
+        state.currentTokenIndex = currentTokenIndex;
+        state.consumeAttributes = new HashMap<Integer, AttributeSet>(indexToConsumeAttributeMap);
+        state.lookaheadTokenIndexes = new HashSet<Integer>(lookaheadTokenIndexes);
+        state.locationEvent = locationEvent;
+        return state;
+    }
+
+    /** Restores the consumed and lookahead tokens. The tokens received after the state
+     * was saved are kept, like rewindAll() does, so they are displayed as not consumed.
+     */
+    public void restoreState(Object object) {
+        State state = (State)object;
+        setDirty(indexToConsumeAttributeMap.keySet());
+        setDirty(lookaheadTokenIndexes);
+        setDirty(state.consumeAttributes.keySet());
+        setDirty(state.lookaheadTokenIndexes);
+
+        currentTokenIndex = state.currentTokenIndex;
+        indexToConsumeAttributeMap.clear();
+        indexToConsumeAttributeMap.putAll(state.consumeAttributes);
+        lookaheadTokenIndexes.clear();
+        lookaheadTokenIndexes.addAll(state.lookaheadTokenIndexes);
+        locationEvent = state.locationEvent;
+    }
+
     public void addToken(Token token) {
         int index = token.getTokenIndex();
         if(index == -1) {
@@ -225,27 +290,74 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
 
         currentTokenIndex = index;
 
-        /** Insert the index into the list of sorted indexes - used to render the token */
-
-        if(!indexToTokenInfoMap.containsKey(index)) {
-            if(inputTokenIndexes.isEmpty())
-                inputTokenIndexes.add((Integer)index);
-            else {
-                for(int i=inputTokenIndexes.size()-1; i >= 0; i--) {
-                    Integer n = inputTokenIndexes.get(i);
-                    if(n < index) {
-                        inputTokenIndexes.add(i+1, (Integer)index);
-                        break;
-                    }
-                }
-            }
+        DBInputTextTokenInfo info = indexToTokenInfoMap.get(index);
+        if(info != null) {
+            /** Update the token even if it is already known because its position may have changed */
+            info.token = token;
+            info.location = locationEvent;
+            return;
         }
 
-        /** Add the token even if it is already in the map because its position or attribute
-         * may have changed
+        /** Insert the index into the sorted indexes - used to render the token. The text
+         * of the token is inserted in the text pane at the next rendering.
          */
+        info = new DBInputTextTokenInfo(token, locationEvent);
+        info.start = info.end = -1;
+        indexToTokenInfoMap.put(index, info);
+
+        int position = findPosition(index);
+        position = -position - 1;
+        if(tokenCount == sortedIndexes.length) {
+            int[] newIndexes = new int[tokenCount*2];
+            System.arraycopy(sortedIndexes, 0, newIndexes, 0, tokenCount);
+            sortedIndexes = newIndexes;
+            DBInputTextTokenInfo[] newInfos = new DBInputTextTokenInfo[tokenCount*2];
+            System.arraycopy(sortedInfos, 0, newInfos, 0, tokenCount);
+            sortedInfos = newInfos;
+        }
+        System.arraycopy(sortedIndexes, position, sortedIndexes, position+1, tokenCount-position);
+        System.arraycopy(sortedInfos, position, sortedInfos, position+1, tokenCount-position);
+        sortedIndexes[position] = index;
+        sortedInfos[position] = info;
+        tokenCount++;
+
+        if(pendingTokenCount == 0 || position < firstPendingPosition)
+            firstPendingPosition = position;
+        pendingTokenCount++;
+        setDirty(index);
+    }
+
+    /** Returns the position of the token index in the sorted indexes or (-(insertion point) - 1) */
+    protected int findPosition(int index) {
+        int low = 0;
+        int high = tokenCount - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = sortedIndexes[mid];
+            if(value < index)
+                low = mid + 1;
+            else if(value > index)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
 
-        indexToTokenInfoMap.put(index, new DBInputTextTokenInfo(token, locationEvent));
+    /** Returns the position of the token at the offset in the text, or of the last token before it.
+     * All the tokens must be inserted in the text.
+     */
+    protected int findPositionAtOffset(int offset) {
+        int low = 0;
+        int high = tokenCount - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(sortedInfos[mid].start <= offset)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return high;
     }
 
     public Token getCurrentToken() {
@@ -256,30 +368,82 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
             return info.token;
     }
 
-    public String renderTokensText() {
-        currentTokenIndexInText = 0;
-        StringBuilder text = new StringBuilder();
-        for (Integer idx : inputTokenIndexes) {
-            DBInputTextTokenInfo info = indexToTokenInfoMap.get(idx);
-            info.setStart(text.length());
-            text.append(info.getText());
-
-            if (idx == getCurrentTokenIndex())
-                currentTokenIndexInText = info.start;
+    /** Inserts the text of the new tokens in the text pane and shifts the position of the
+     * tokens following them, in one pass starting at the first new token.
+     */
+    protected void insertPendingTokens() {
+        if(pendingTokenCount == 0)
+            return;
+
+        StyledDocument doc = textPane.getStyledDocument();
+        int offset = firstPendingPosition == 0 ? 0 : sortedInfos[firstPendingPosition - 1].end;
+        int shift = 0;
+        int runStart = -1;
+        StringBuilder run = new StringBuilder();
+        try {
+            for(int i=firstPendingPosition; i<tokenCount; i++) {
+                DBInputTextTokenInfo info = sortedInfos[i];
+                if(info.start == -1) {
+                    if(runStart == -1)
+                        runStart = offset;
+                    info.setStart(offset);
+                    run.append(info.getText());
+                    shift += info.end - info.start;
+                } else {
+                    if(runStart != -1) {
+                        doc.insertString(runStart, run.toString(), attributeNonConsumed);
+                        run.setLength(0);
+                        runStart = -1;
+                    }
+                    info.start += shift;
+                    info.end += shift;
+                }
+                offset = info.end;
+            }
+            if(runStart != -1)
+                doc.insertString(runStart, run.toString(), attributeNonConsumed);
+        } catch (BadLocationException e) {
+            debuggerTab.getConsole().println(e);
         }
-        return text.toString();
+        pendingTokenCount = 0;
     }
 
     public void render() {
-        /** Apply the text */
+        /** Insert the new tokens */
+        insertPendingTokens();
+
+        DBInputTextTokenInfo current = indexToTokenInfoMap.get(getCurrentTokenIndex());
+        currentTokenIndexInText = current == null ? 0 : current.start;
 
-        String text = renderTokensText();
-        textPane.setText(text);
-        textPane.getStyledDocument().setCharacterAttributes(0, text.length(), SimpleAttributeSet.EMPTY, true);
+        /** Apply the style of the visible tokens that have changed */
+        applyVisibleAttributes();
+    }
+
+    /** Applies the attribute of the visible tokens that have changed. The other tokens are
+     * styled when they become visible.
+     */
+    protected void applyVisibleAttributes() {
+        if(dirtyIndexes.isEmpty() || pendingTokenCount > 0 || tokenCount == 0)
+            return;
+
+        int first = 0;
+        int last = tokenCount - 1;
+        JViewport v = getViewport();
+        if(v != null) {
+            Rectangle r = v.getViewRect();
+            if(r.isEmpty())
+                return;
+            first = Math.max(0, findPositionAtOffset(textPane.viewToModel(r.getLocation())));
+            last = findPositionAtOffset(textPane.viewToModel(new Point(r.x + r.width, r.y + r.height)));
+        }
 
-        /** Apply the style for each token */
-        for (Integer idx : inputTokenIndexes) {
-            DBInputTextTokenInfo info = indexToTokenInfoMap.get(idx);
+        StyledDocument doc = textPane.getStyledDocument();
+        for(int i=first; i<=last; i++) {
+            int idx = sortedIndexes[i];
+            if(!dirtyIndexes.get(idx))
+                continue;
+
+            dirtyIndexes.clear(idx);
             AttributeSet attribute = indexToConsumeAttributeMap.get(idx);
             if (attribute == null)
                 attribute = attributeNonConsumed;
@@ -288,8 +452,24 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
             if (lookaheadTokenIndexes.contains(idx))
                 attribute = attributeLookahead;
 
-            textPane.getStyledDocument().setCharacterAttributes(info.start, info.end, attribute, true);
+            DBInputTextTokenInfo info = sortedInfos[i];
+            doc.setCharacterAttributes(info.start, info.end - info.start, attribute, true);
+        }
+    }
+
+    /** Returns the viewport of the text pane. The visible tokens are styled each time it scrolls. */
+    protected JViewport getViewport() {
+        if(viewport == null) {
+            viewport = (JViewport)SwingUtilities.getAncestorOfClass(JViewport.class, textPane);
+            if(viewport != null) {
+                viewport.addChangeListener(new ChangeListener() {
+                    public void stateChanged(ChangeEvent e) {
+                        applyVisibleAttributes();
+                    }
+                });
+            }
         }
+        return viewport;
     }
 
     public void updateOnBreakEvent() {
@@ -328,10 +508,28 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         attributeLookahead = new SimpleAttributeSet();
         StyleConstants.setForeground(attributeLookahead, AWPrefs.getLookaheadTokenColor());
         StyleConstants.setItalic(attributeLookahead, true);
+
+        /** Style again all the tokens */
+        for(int i=0; i<tokenCount; i++) {
+            setDirty(sortedIndexes[i]);
+        }
     }
 
     public void textPaneDidPaint(Graphics g) {
-        for (DBInputTextTokenInfo info : indexToTokenInfoMap.values()) {
+        if(pendingTokenCount > 0 || tokenCount == 0)
+            return;
+
+        /** Draw only the tokens in the area to paint */
+        int first = 0;
+        int last = tokenCount - 1;
+        Rectangle clip = g.getClipBounds();
+        if(clip != null) {
+            first = Math.max(0, findPositionAtOffset(textPane.viewToModel(clip.getLocation())));
+            last = findPositionAtOffset(textPane.viewToModel(new Point(clip.x + clip.width, clip.y + clip.height)));
+        }
+
+        for (int i=first; i<=last; i++) {
+            DBInputTextTokenInfo info = sortedInfos[i];
             if (drawTokensBox)
                 drawToken(info, (Graphics2D) g, Color.red, false);
 
@@ -379,17 +577,31 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     }
 
     public DBInputTextTokenInfo getTokenInfoAtPositionIndex(int index) {
-        for (DBInputTextTokenInfo info : indexToTokenInfoMap.values()) {
-            if (index >= info.start && index < info.end)
-                return info;
-        }
-        return null;
+        if(pendingTokenCount > 0)
+            return null;
+
+        int position = findPositionAtOffset(index);
+        if(position < 0)
+            return null;
+
+        DBInputTextTokenInfo info = sortedInfos[position];
+        return index < info.end ? info : null;
     }
 
     public boolean isBreakpointAtToken(Token token) {
         return inputBreakpointIndexes.contains(Integer.valueOf(token.getTokenIndex()));
     }
 
+    /** Returns the indexes of the tokens with a breakpoint */
+    public BitSet getBreakpoints() {
+        BitSet set = new BitSet();
+        for(Integer index : inputBreakpointIndexes) {
+            if(index >= 0)
+                set.set(index);
+        }
+        return set;
+    }
+
     /** This method highlights the token at the specified index
      * in the input stream.
      */
@@ -415,12 +627,10 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
     }
 
     public DBInputTextTokenInfo getTokenInfoForToken(Token t) {
-        for (DBInputTextTokenInfo info : indexToTokenInfoMap.values()) {
-            // FIX AW-61 - compare also the token type to avoid selecting the wrong one (e.g. imaginary)
-            if (info.token.getTokenIndex() == t.getTokenIndex() &&
-                    info.token.getType() == t.getType())
-                return info;
-        }
+        DBInputTextTokenInfo info = indexToTokenInfoMap.get(t.getTokenIndex());
+        // FIX AW-61 - compare also the token type to avoid selecting the wrong one (e.g. imaginary)
+        if (info != null && info.token.getType() == t.getType())
+            return info;
         return null;
     }
 
@@ -430,6 +640,13 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         }
     }
 
+    protected static class State {
+        public int currentTokenIndex;
+        public Map<Integer,AttributeSet> consumeAttributes;
+        public Set<Integer> lookaheadTokenIndexes;
+        public DBEventLocation locationEvent;
+    }
+
     protected class MyMouseListener extends MouseAdapter {
 
         public void mousePressed(MouseEvent e) {
@@ -12,7 +12,9 @@ import org.antlr.xjlib.foundation.notification.XJNotificationCenter;
 import org.antlr.xjlib.foundation.notification.XJNotificationObserver;
 
 import java.awt.*;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 /*
 
@@ -123,6 +125,32 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         lastNode = currentNode;
     }
 
+    public Object saveState() {
+        State state = new State();
+        for (NodeInfo info : nodeInfoForToken.values()) {
+            if (info.node != null)
+                state.colors.put(info.node, info.node.getConsumeColor());
+        }
+        state.currentNode = currentNode;
+        state.lastNode = lastNode;
+        state.location = location;
+        return state;
+    }
+
+    /** Restores the colors of the nodes. The nodes received after the state
+     * was saved are kept, like rewindAll() does, so they are displayed as not consumed.
+     */
+    public void restoreState(Object object) {
+        State state = (State)object;
+        applyColor(nonConsumedColor);
+        for (Map.Entry<InputTreeNode, Color> entry : state.colors.entrySet()) {
+            entry.getKey().setColor(entry.getValue());
+        }
+        currentNode = state.currentNode;
+        lastNode = state.lastNode;
+        location = state.location;
+    }
+
     public void LT(Token token) {
         InputTreeNode node = processToken(token);
         if(node != null) {
@@ -231,6 +259,24 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         return !(info == null || info.node == null) && info.node.breakpoint;
     }
 
+    /** Returns the IDs of the nodes with a breakpoint */
+    public BitSet getBreakpoints() {
+        BitSet set = new BitSet();
+        for(Map.Entry<Integer,NodeInfo> entry : nodeInfoForToken.entrySet()) {
+            NodeInfo info = entry.getValue();
+            if(info.node != null && info.node.breakpoint && entry.getKey() >= 0)
+                set.set(entry.getKey());
+        }
+        return set;
+    }
+
+    protected static class State {
+        public Map<InputTreeNode,Color> colors = new IdentityHashMap<InputTreeNode, Color>();
+        public InputTreeNode currentNode;
+        public InputTreeNode lastNode;
+        public DBEventLocation location;
+    }
+
     public static class NodeInfo {
 
         /** Token */
@@ -262,6 +308,11 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
             treePanel.getGraphView().repaintNode(this);
         }
 
+        /** Returns the color of the node without the breakpoint */
+        public Color getConsumeColor() {
+            return super.getColor();
+        }
+
         public Color getColor() {
             if(breakpoint)
                 return Color.red;
@@ -0,0 +1,220 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.local;
+
+import org.antlr.works.utils.Utils;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/** Content-addressed cache of the files generated and compiled to debug a grammar.
+ * Each entry is a directory named after the digest of everything the files depend on
+ * and it contains a copy of the generated sources and of the compiled classes.
+ * Restoring an entry replaces a run of ANTLR and javac by a copy of the files.
+ */
+public class DBBuildCache {
+
+    public static final String CACHE_DIR = ".awcache";
+    public static final int MAX_ENTRIES = 16;
+
+    private static final String SOURCES_DIR = "sources";
+    private static final String CLASSES_DIR = "classes";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    protected File cacheDir;
+
+    public DBBuildCache(String outputPath) {
+        this.cacheDir = new File(outputPath, CACHE_DIR);
+    }
+
+    /** Returns the key of the given inputs. A null input is not the same as an empty one.
+     */
+    public static String getKey(List<String> inputs) {
+        StringBuilder sb = new StringBuilder();
+        for(String input : inputs) {
+            if(input == null) {
+                sb.append('\u0001');
+            } else {
+                sb.append(input.length());
+                sb.append(':');
+                sb.append(input);
+            }
+            sb.append('\u0000');
+        }
+        return Utils.getDigest(sb.toString());
+    }
+
+    public boolean contains(String key) {
+        return new File(cacheDir, key).isDirectory();
+    }
+
+    /** Copies the sources of the entry into the sources directory and its classes
+     * into the classes directory. Returns false if the entry doesn't exist or cannot be read:
+     * the files have to be built again.
+     */
+    public synchronized boolean restore(String key, String sourcesDir, String classesDir) {
+        File entry = new File(cacheDir, key);
+        if(!entry.isDirectory()) return false;
+
+        try {
+            copyDirectory(new File(entry, SOURCES_DIR), new File(sourcesDir));
+            copyDirectory(new File(entry, CLASSES_DIR), new File(classesDir));
+        } catch (IOException e) {
+            XJUtils.deleteDirectory(entry.getPath());
+            return false;
+        }
+
+        // The most recently used entries are the last ones to be removed
+        entry.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /** Stores a copy of the source files and of the class files. The path of each
+     * class file is kept relative to the classes directory (i.e. its package).
+     */
+    public synchronized void store(String key, List<File> sources, String classesDir, List<File> classes) throws IOException {
+        File entry = new File(cacheDir, key);
+        if(entry.isDirectory()) return;
+
+        File temp = new File(cacheDir, key+TEMP_SUFFIX);
+        XJUtils.deleteDirectory(temp.getPath());
+
+        File tempSources = new File(temp, SOURCES_DIR);
+        for(File source : sources) {
+            copyFile(source, new File(tempSources, source.getName()));
+        }
+
+        File tempClasses = new File(temp, CLASSES_DIR);
+        String root = new File(classesDir).getAbsolutePath();
+        for(File c : classes) {
+            String path = c.getAbsolutePath();
+            if(!path.startsWith(root)) continue;
+            copyFile(c, new File(tempClasses, path.substring(root.length())));
+        }
+        tempSources.mkdirs();
+        tempClasses.mkdirs();
+
+        if(!temp.renameTo(entry)) {
+            XJUtils.deleteDirectory(temp.getPath());
+            throw new IOException("Cannot create the cache entry "+entry);
+        }
+
+        prune();
+    }
+
+    public synchronized void clear() {
+        XJUtils.deleteDirectory(cacheDir.getPath());
+    }
+
+    /** Removes the least recently used entries */
+    protected void prune() {
+        File[] entries = cacheDir.listFiles();
+        if(entries == null || entries.length <= MAX_ENTRIES) return;
+
+        Arrays.sort(entries, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long ta = a.lastModified();
+                long tb = b.lastModified();
+                return ta < tb ? 1 : (ta == tb ? 0 : -1);
+            }
+        });
+        for(int i = MAX_ENTRIES; i < entries.length; i++) {
+            XJUtils.deleteDirectory(entries[i].getPath());
+        }
+    }
+
+    /** Returns the files in the directory and its sub-directories whose name starts with the prefix
+     * (all the files if the prefix is null).
+     */
+    public static List<File> listFiles(String dir, String prefix) {
+        List<File> files = new ArrayList<File>();
+        listFiles(new File(dir), prefix, files);
+        return files;
+    }
+
+    private static void listFiles(File dir, String prefix, List<File> files) {
+        File[] children = dir.listFiles();
+        if(children == null) return;
+
+        for(File child : children) {
+            if(child.isDirectory()) {
+                listFiles(child, prefix, files);
+            } else if(prefix == null || child.getName().startsWith(prefix)) {
+                files.add(child);
+            }
+        }
+    }
+
+    private static void copyDirectory(File source, File target) throws IOException {
+        File[] children = source.listFiles();
+        if(children == null) return;
+
+        for(File child : children) {
+            File t = new File(target, child.getName());
+            if(child.isDirectory()) {
+                copyDirectory(child, t);
+            } else {
+                copyFile(child, t);
+            }
+        }
+    }
+
+    private static void copyFile(File source, File target) throws IOException {
+        target.getParentFile().mkdirs();
+        FileChannel in = new FileInputStream(source).getChannel();
+        try {
+            FileChannel out = new FileOutputStream(target).getChannel();
+            try {
+                long size = in.size();
+                long position = 0;
+                while(position < size) {
+                    position += in.transferTo(position, size-position, out);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        // Keep the date so the files don't look newer than their source
+        target.setLastModified(source.lastModified());
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.local;
+
+import org.antlr.runtime.*;
+import org.antlr.runtime.debug.DebugEventListener;
+import org.antlr.works.debugger.tivo.DBEventSource;
+import org.antlr.works.utils.StreamWatcherDelegate;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collection;
+/** Generated lexer and parser loaded in the debugger process. The parser runs on its own
+ * thread and sends its events directly to the recorder instead of a socket.
+ */
+public class DBInProcessParser implements DBEventSource, Runnable {
+
+    protected Class<?> lexerClass;
+    protected Class<?> parserClass;
+    protected Method startRule;
+    protected String inputFile;
+    protected StreamWatcherDelegate output;
+
+    protected DebugEventListener listener;
+    protected Thread thread;
+
+    /** Loads the compiled lexer and parser. The classes are looked up in the packages
+     * and then in the default package.
+     */
+    public DBInProcessParser(String classesDir, Collection<String> packages, String lexerName, String parserName,
+                             String startRuleName, String inputFile, StreamWatcherDelegate output)
+            throws Exception
+    {
+        // The runtime classes are loaded by the parent: the parser uses the same listener interface
+        ClassLoader loader = new URLClassLoader(new URL[] { new File(classesDir).toURI().toURL() },
+                DBInProcessParser.class.getClassLoader());
+
+        this.lexerClass = loadClass(loader, packages, lexerName);
+        this.parserClass = loadClass(loader, packages, parserName);
+        this.startRule = parserClass.getMethod(startRuleName);
+        this.inputFile = inputFile;
+        this.output = output;
+    }
+
+    protected static Class<?> loadClass(ClassLoader loader, Collection<String> packages, String name) throws ClassNotFoundException {
+        for(String p : packages) {
+            try {
+                return Class.forName(p+"."+name, true, loader);
+            } catch (ClassNotFoundException e) {
+                // Try the next package
+            }
+        }
+        return Class.forName(name, true, loader);
+    }
+
+    public void start(DebugEventListener listener) {
+        this.listener = listener;
+        thread = new Thread(this, "Debugger Parser");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if(thread != null)
+            thread.interrupt();
+    }
+
+    public void run() {
+        boolean terminated = false;
+        try {
+            CharStream input = new ANTLRFileStream(inputFile, "UTF8");
+            Object lexer = lexerClass.getConstructor(CharStream.class).newInstance(input);
+            CommonTokenStream tokens = new CommonTokenStream((TokenSource)lexer);
+            Object parser = parserClass.getConstructor(TokenStream.class, DebugEventListener.class).newInstance(tokens, listener);
+            startRule.invoke(parser);
+            terminated = true;
+        } catch (InvocationTargetException e) {
+            print(e.getCause());
+        } catch (Exception e) {
+            print(e);
+        } finally {
+            // The parser sends the terminate event when it exits the start rule. Send it if
+            // the parser failed so the debugger does not wait for it.
+            if(!terminated)
+                listener.terminate();
+        }
+    }
+
+    protected void print(Throwable e) {
+        StringWriter sw = new StringWriter();
+        e.printStackTrace(new PrintWriter(sw));
+        output.streamWatcherDidReceiveString(sw.toString());
+    }
+}
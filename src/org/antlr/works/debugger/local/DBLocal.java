@@ -31,9 +31,11 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.debugger.local;
 
+import org.antlr.Tool;
 import org.antlr.stringtemplate.StringTemplate;
 import org.antlr.stringtemplate.StringTemplateGroup;
 import org.antlr.stringtemplate.language.DefaultTemplateLexer;
+import org.antlr.tool.Grammar;
 import org.antlr.works.IDE;
 import org.antlr.works.ate.syntax.generic.ATESyntaxLexer;
 import org.antlr.works.ate.syntax.misc.ATEToken;
@@ -44,7 +46,9 @@ import org.antlr.works.dialog.DebuggerInputDialog;
 import org.antlr.works.dialog.DialogTestTemplate;
 import org.antlr.works.generate.CodeGenerate;
 import org.antlr.works.grammar.element.ElementBlock;
+import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.element.ElementGrammarName;
+import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.syntax.GrammarSyntaxParser;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.*;
@@ -58,9 +62,7 @@ import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatcherDelegate {
 
@@ -87,26 +89,29 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     protected String fileRemoteParserTemplateTextFile;
 
     protected String startRule;
-    protected String lastStartRule;
 
     protected Process remoteParserProcess;
 
+    /** True when the parser runs inside ANTLRWorks (see canRunInProcess) */
+    protected boolean inProcess;
+    protected DBInProcessParser inProcessParser;
+
     protected boolean cancelled;
     protected int options;
 
     protected CodeGenerate codeGenerator;
     protected DebuggerTab debuggerTab;
 
+    /** Generated and compiled files of the previous builds (see getGrammarKey and getGlueKey) */
+    protected DBBuildCache buildCache;
+    protected String grammarKey;
+    protected String lastGlueKey;
+
     protected int inputMode;
-    protected int lastInputMode;
     protected String testTemplateMode;
-    protected String lastTestTemplateMode;
     protected String testTemplateClass;
-    protected String lastTestTemplateClass;
     protected String inputFile;
-    protected String lastInputFile;
     protected String testTemplateText;
-    protected String lastTestTemplateText;
     protected String inputText;
     protected String rawInputText;
 
@@ -144,6 +149,12 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     public void forceStop() {
         if(remoteParserProcess != null)
             remoteParserProcess.destroy();
+        if(inProcessParser != null)
+            inProcessParser.stop();
+    }
+
+    public DBInProcessParser getInProcessParser() {
+        return inProcessParser;
     }
 
     public synchronized void cancel() {
@@ -217,13 +228,19 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
 
     public void run() {
         resetErrors();
+        inProcessParser = null;
 
         if(prepare()) {
             if(optionBuild()) generateAndCompileGrammar();
             if(!cancelled() && !optionAgain()) askUserForInputText();
-            if(!cancelled() && !AWPrefs.TEST_RIG_MODE_CLASS.equals(testTemplateMode)) generateAndCompileGlueCode(optionBuild());
+            if(!cancelled() && !inProcess && !AWPrefs.TEST_RIG_MODE_CLASS.equals(testTemplateMode)) generateAndCompileGlueCode(optionBuild());
             if(!cancelled()) generateInputText();
-            if(!cancelled()) launchRemoteParser();
+            if(!cancelled()) {
+                if(inProcess)
+                    loadInProcessParser();
+                else
+                    launchRemoteParser();
+            }
         }
 
         if(hasErrors())
@@ -344,6 +361,9 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
 
             outputFileDir = XJUtils.concatPath(codeGenerator.getOutputPath(), "classes");
             new File(outputFileDir).mkdirs();
+
+            inProcess = canRunInProcess();
+            buildCache = new DBBuildCache(codeGenerator.getOutputPath());
         } catch(Exception e) {
             debuggerTab.getConsole().println(e);
             String msg = ErrorListener.getThreadInstance().getFirstErrorMessage();
@@ -359,7 +379,33 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         return true;
     }
 
+    /**
+     * Returns true if the parser can run inside ANTLRWorks: only the default test rig
+     * of a parser or combined grammar is supported; tree grammars and custom test rigs
+     * still need their own process.
+     */
+    protected boolean canRunInProcess() {
+        return AWPrefs.getDebuggerInProcess()
+                && AWPrefs.TEST_RIG_MODE_TEXT.equals(testTemplateMode)
+                && "".equals(testTemplateText)
+                && debuggerTab.getDelegate().getGrammarEngine().getType() != ElementGrammarName.TREEPARSER;
+    }
+
     protected void generateAndCompileGrammar() {
+        // The key is set only once the classes directory contains the grammar it describes
+        String key = getGrammarKey();
+        grammarKey = null;
+        if(key != null && buildCache.contains(key)) {
+            progress.setInfo("Restoring...");
+            progress.setProgress(3);
+            XJUtils.deleteDirectory(outputFileDir);
+            new File(outputFileDir).mkdirs();
+            if(buildCache.restore(key, codeGenerator.getOutputPath(), outputFileDir)) {
+                grammarKey = key;
+                return;
+            }
+        }
+
         progress.setInfo("Analyzing...");
         progress.setProgress(1);
         analyzeGrammar();
@@ -377,6 +423,107 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         progress.setInfo("Compiling...");
         progress.setProgress(3);
         compileGrammar();
+
+        if(cancelled())
+            return;
+
+        grammarKey = key;
+        storeGrammar();
+    }
+
+    /**
+     * Returns the digest of everything the generated and compiled grammar depends on:
+     * the grammar, its imported grammars, its token vocabulary, the version and options
+     * of ANTLR and the class path used to compile it. Returns null if the grammar cannot be cached.
+     */
+    protected String getGrammarKey() {
+        try {
+            GrammarEngine engine = debuggerTab.getDelegate().getGrammarEngine();
+            List<String> inputs = new ArrayList<String>();
+
+            Tool tool = engine.getANTLRTool();
+            inputs.add(tool == null ? null : tool.VERSION);
+            inputs.add(Arrays.asList(AWPrefs.getANTLR3Options()).toString());
+            inputs.add(DebuggerEngine.getUnquotedClassPath(outputFileDir));
+
+            String grammarFile = debuggerTab.getDelegate().getDocument().getDocumentPath();
+            if(grammarFile == null) return null;
+
+            addFileInput(inputs, grammarFile);
+            for(String file : getImportedGrammarFiles(engine)) {
+                addFileInput(inputs, file);
+            }
+
+            String tokenVocab = engine.getTokenVocab();
+            if(tokenVocab != null) {
+                addFileInput(inputs, engine.getTokenVocabFile(tokenVocab+".tokens"));
+            }
+            return DBBuildCache.getKey(inputs);
+        } catch (Exception e) {
+            debuggerTab.getConsole().println(e);
+            return null;
+        }
+    }
+
+    private void addFileInput(List<String> inputs, String file) throws IOException {
+        inputs.add(file);
+        if(file != null) {
+            inputs.add(Utils.stringFromFile(file));
+        }
+    }
+
+    private List<String> getImportedGrammarFiles(GrammarEngine engine) {
+        List<String> files = new ArrayList<String>();
+        ANTLRGrammarEngine antlrEngine = engine.getANTLRGrammarEngine();
+        addImportedGrammarFiles(antlrEngine.getDefaultGrammar(), files);
+        addImportedGrammarFiles(antlrEngine.getLexerGrammar(), files);
+        return files;
+    }
+
+    private void addImportedGrammarFiles(Grammar g, List<String> files) {
+        if(g == null) return;
+
+        for(Grammar gd : g.getDelegates()) {
+            String file = gd.getFileName();
+            if(file == null) continue;
+
+            if(!new File(file).isAbsolute()) {
+                String folder = XJUtils.getPathByDeletingLastComponent(debuggerTab.getDelegate().getDocument().getDocumentPath());
+                file = XJUtils.concatPath(folder, file);
+            }
+            if(!files.contains(file)) {
+                files.add(file);
+            }
+        }
+    }
+
+    /** Stores the generated grammar and its classes in the cache. At this point the
+     * classes directory contains only the classes of the grammar.
+     */
+    protected void storeGrammar() {
+        if(grammarKey == null) return;
+
+        String outputPath = codeGenerator.getOutputPath();
+        List<File> sources = new ArrayList<File>();
+        Set<String> names = new HashSet<String>();
+        names.add(debuggerTab.getDelegate().getGrammarName());
+        for(String file : grammarGeneratedFiles) {
+            sources.add(new File(file));
+            names.add(XJUtils.getPathByDeletingPathExtension(XJUtils.getLastPathComponent(file)));
+        }
+        for(String name : names) {
+            File tokens = new File(outputPath, name+".tokens");
+            if(tokens.exists()) {
+                sources.add(tokens);
+            }
+        }
+
+        try {
+            buildCache.store(grammarKey, sources, outputFileDir, DBBuildCache.listFiles(outputFileDir, null));
+        } catch (IOException e) {
+            // The grammar is built: only the next build will be slower
+            debuggerTab.getConsole().println(e);
+        }
     }
 
     protected void analyzeGrammar() {
@@ -420,18 +567,17 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         progress.setInfo("Preparing...");
         progress.setIndeterminate(true);
 
-        if(!build && lastStartRule != null && startRule.equals(lastStartRule) &&
-                inputFile.equals(lastInputFile) && lastInputMode == inputMode &&
-                testTemplateClass.equals(lastTestTemplateClass) && lastTestTemplateMode.equals(testTemplateMode) &&
-                testTemplateText.equals(lastTestTemplateText))
+        String glueKey = getGlueKey();
+        if(!build && glueKey != null && glueKey.equals(lastGlueKey))
+            return;
+
+        lastGlueKey = null;
+        if(glueKey != null && buildCache.restore(glueKey, codeGenerator.getOutputPath(), outputFileDir)) {
+            lastGlueKey = glueKey;
             return;
+        }
 
-        lastStartRule = startRule;
-        lastTestTemplateMode = testTemplateMode;
-        lastTestTemplateClass = testTemplateClass;
-        lastTestTemplateText = testTemplateText;
-        lastInputMode = inputMode;
-        lastInputFile = inputFile;
+        Map<File,Long> classes = getClassFileDates();
 
         generateGlueCode();
 
@@ -439,6 +585,68 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
             return;
 
         compileGlueCode();
+
+        if(cancelled())
+            return;
+
+        lastGlueKey = glueKey;
+        storeGlueCode(glueKey, classes);
+    }
+
+    /**
+     * Returns the digest of everything the glue code depends on: the grammar, the test rig
+     * and its attributes. The input text is not part of it because it is read from a file.
+     * Returns null if the glue code cannot be cached.
+     */
+    protected String getGlueKey() {
+        // Nothing is known about the grammar classes if they were not built by this debugger
+        if(grammarKey == null) return null;
+
+        try {
+            List<String> inputs = new ArrayList<String>();
+            inputs.add(grammarKey);
+            inputs.add(testTemplateMode);
+            inputs.add(testTemplateText);
+            inputs.add(startRule);
+            inputs.add(inputMode == 0 ? fileRemoteParserInputTextFile : inputFile);
+            inputs.add(String.valueOf(AWPrefs.getDebugDefaultLocalPort()));
+            inputs.add(getCustomImports());
+            inputs.add(debuggerTab.getDelegate().getGrammarName());
+            for(String file : getGlueCodeDependencies()) {
+                addFileInput(inputs, new File(file).exists() ? file : null);
+            }
+            return DBBuildCache.getKey(inputs);
+        } catch (Exception e) {
+            debuggerTab.getConsole().println(e);
+            return null;
+        }
+    }
+
+    private Map<File,Long> getClassFileDates() {
+        Map<File,Long> dates = new HashMap<File,Long>();
+        for(File file : DBBuildCache.listFiles(outputFileDir, null)) {
+            dates.put(file, file.lastModified());
+        }
+        return dates;
+    }
+
+    /** Stores the glue code with the classes compiled since the dates were taken */
+    protected void storeGlueCode(String glueKey, Map<File,Long> dates) {
+        if(glueKey == null) return;
+
+        List<File> classes = new ArrayList<File>();
+        for(File file : DBBuildCache.listFiles(outputFileDir, null)) {
+            Long date = dates.get(file);
+            if(date == null || date != file.lastModified()) {
+                classes.add(file);
+            }
+        }
+
+        try {
+            buildCache.store(glueKey, Collections.singletonList(new File(fileRemoteParser)), outputFileDir, classes);
+        } catch (IOException e) {
+            debuggerTab.getConsole().println(e);
+        }
     }
 
     protected String getLexerName() throws Exception {
@@ -496,12 +704,30 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
      * Returns a string of import statement based on the package declaration inside any @header block
      */
     private String getCustomImports() {
-        List<ElementBlock> blocks = debuggerTab.getBlocks();
-        if(blocks == null || blocks.isEmpty()) {
+        Set<String> imports = getCustomPackages();
+        if(imports.isEmpty()) {
             return "";
         }
 
+        StringBuilder importLines = new StringBuilder();
+        for (String importName : imports) {
+            importLines.append("import ");
+            importLines.append(importName);
+            importLines.append(".*;\n");
+        }
+        return importLines.toString();
+    }
+
+    /**
+     * Returns the package declarations found inside any @header block
+     */
+    private Set<String> getCustomPackages() {
         Set<String> imports = new HashSet<String>();
+        List<ElementBlock> blocks = debuggerTab.getBlocks();
+        if(blocks == null || blocks.isEmpty()) {
+            return imports;
+        }
+
         for (ElementBlock block : blocks) {
             if (!block.name.equals(GrammarSyntaxParser.PARSER_HEADER_BLOCK_NAME) && !block.name.equals(GrammarSyntaxParser.LEXER_HEADER_BLOCK_NAME))
             {
@@ -526,28 +752,14 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
                 }
             }
         }
-
-        if(imports.isEmpty()) {
-            return "";
-        }
-
-        StringBuilder importLines = new StringBuilder();
-        for (String importName : imports) {
-            importLines.append("import ");
-            importLines.append(importName);
-            importLines.append(".*;\n");
-        }
-        return importLines.toString();
+        return imports;
     }
 
     protected void compileGlueCode() {
         try {
-            boolean isTreeGrammar = debuggerTab.getDelegate().getGrammarEngine().getType() == ElementGrammarName.TREEPARSER;
-            String lexerName = XJUtils.concatPath(codeGenerator.getOutputPath(), (isTreeGrammar ? (getLexerName()+"Lexer.java") : (getLexerName()+".java")));
-            String parserName = XJUtils.concatPath(codeGenerator.getOutputPath(), (isTreeGrammar ? (debuggerTab.getDelegate().getTokenVocab()+"Parser.java") :
-                    (debuggerTab.getDelegate().getGrammarEngine().getGeneratedClassName(ElementGrammarName.PARSER)+".java")));
-            compileFiles(new String[] { lexerName});
-            compileFiles(new String[] { parserName});
+            for(String file : getGlueCodeDependencies()) {
+                compileFiles(new String[] { file });
+            }
             compileFiles(new String[] { fileRemoteParser});
         } catch (Exception e) {
             debuggerTab.getConsole().println(e);
@@ -555,8 +767,31 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         }
     }
 
+    /**
+     * Returns the lexer and parser used by the glue code which are not generated from this grammar
+     * (i.e. the ones of the tree grammar or of the token vocabulary): they have to be compiled
+     * with the glue code.
+     */
+    protected List<String> getGlueCodeDependencies() throws Exception {
+        boolean isTreeGrammar = debuggerTab.getDelegate().getGrammarEngine().getType() == ElementGrammarName.TREEPARSER;
+        String lexerName = XJUtils.concatPath(codeGenerator.getOutputPath(), (isTreeGrammar ? (getLexerName()+"Lexer.java") : (getLexerName()+".java")));
+        String parserName = XJUtils.concatPath(codeGenerator.getOutputPath(), (isTreeGrammar ? (debuggerTab.getDelegate().getTokenVocab()+"Parser.java") :
+                (debuggerTab.getDelegate().getGrammarEngine().getGeneratedClassName(ElementGrammarName.PARSER)+".java")));
+        List<String> files = new ArrayList<String>();
+        for(String file : new String[] { lexerName, parserName }) {
+            if(!grammarGeneratedFiles.contains(file)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
     protected void compileFiles(String[] files) {
-        String error = DebuggerEngine.compileFiles(debuggerTab.getConsole(), files, outputFileDir, this);
+        String error;
+        if(inProcess)
+            error = DebuggerEngine.compileFilesInProcess(debuggerTab.getConsole(), files, outputFileDir, this);
+        else
+            error = DebuggerEngine.compileFiles(debuggerTab.getConsole(), files, outputFileDir, this);
         if(error != null)
             reportError(error);
     }
@@ -591,7 +826,12 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     public boolean isRequiredFilesExisting() {
         if(!prepare()) return false;
 
-        if(!new File(fileRemoteParser).exists()) return false;
+        if(inProcess) {
+            String[] classes = new File(outputFileDir).list();
+            if(classes == null || classes.length == 0) return false;
+        } else {
+            if(!new File(fileRemoteParser).exists()) return false;
+        }
 
         if(inputMode == 0 && !new File(fileRemoteParserInputTextFile).exists()) return false;
         if(inputMode == 1 && !new File(inputFile).exists()) return false;
@@ -651,6 +891,20 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         return true;
     }
 
+    public boolean loadInProcessParser() {
+        try {
+            String parserName = debuggerTab.getDelegate().getGrammarEngine().getGeneratedClassName(ElementGrammarName.PARSER);
+            String input = inputMode == 0 ? fileRemoteParserInputTextFile : inputFile;
+            inProcessParser = new DBInProcessParser(outputFileDir, getCustomPackages(), getLexerName(), parserName,
+                    startRule, input, debuggerTab.getOutputPanel());
+        } catch (Exception e) {
+            debuggerTab.getConsole().println(e);
+            reportError("Cannot load the parser:\n"+e.toString()+"\nCheck the output panel of the debugger to see if an error has been reported while compiling the parser and try again.");
+            return false;
+        }
+        return true;
+    }
+
     public void streamWatcherDidStart() {
     }
 
@@ -2,6 +2,7 @@ package org.antlr.works.debugger.panels;
 
 import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.tivo.DBEventIngestion;
 import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
 import org.antlr.works.debugger.tivo.DBRecorder;
 import org.antlr.works.prefs.AWPrefs;
@@ -264,6 +265,19 @@ public class DBControlPanel extends JPanel {
 
         info.append(status);
 
+        DBEventIngestion ingestion = debuggerTab.getRecorder().getIngestion();
+        if(ingestion != null && debuggerTab.getRecorder().getStatus() == DBRecorder.STATUS_RUNNING) {
+            info.append(" (");
+            info.append(ingestion.getEventCount());
+            info.append(" events, ");
+            info.append(Math.round(ingestion.getEventsPerSecond()));
+            info.append(" events/s)");
+            infoLabel.setToolTipText("Queue depth "+ingestion.getQueueDepth()+" (max "+ingestion.getMaxQueueDepth()+
+                    "), interface lag "+ingestion.getUILag()+" ms");
+        } else {
+            infoLabel.setToolTipText(null);
+        }
+
         DBPlayerContextInfo context = debuggerTab.getPlayer().getContextInfo();
         if(context.isBacktracking()) {
             info.append(" (backtrack ");
@@ -10,7 +10,6 @@ import org.antlr.xjlib.appkit.swing.XJTableView;
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
-import java.util.ArrayList;
 import java.util.List;
 /*
 
@@ -87,6 +86,11 @@ public class DBEventsPanel extends DetachablePanel {
         eventTableDataModel.clear();
     }
 
+    /** Removes the events after the first count events */
+    public void truncate(int count) {
+        eventTableDataModel.truncate(count);
+    }
+
     public void updateOnBreakEvent() {
         eventTableDataModel.update();
 
@@ -97,6 +101,13 @@ public class DBEventsPanel extends DetachablePanel {
         });
     }
 
+    /** Sets the list of the events played: the panel does not hold the events
+     * but only their context and retrieves them when they are displayed.
+     */
+    public void setEvents(List<DBEvent> events) {
+        eventTableDataModel.setEvents(events);
+    }
+
     public void addEvent(DBEvent event, DBPlayerContextInfo info) {
         eventTableDataModel.add(event, info);
     }
@@ -106,11 +117,10 @@ public class DBEventsPanel extends DetachablePanel {
         sb.append(eventTableDataModel.getHeadersAsString());
         sb.append("\n");
 
-        List<EventTableDataModel.EventInfo> events = eventTableDataModel.events;
-        for(int i=0; i<events.size(); i++) {
+        for(int i=0; i<eventTableDataModel.getRowCount(); i++) {
             sb.append(i);
             sb.append(":\t");
-            sb.append(events.get(i).toString());
+            sb.append(eventTableDataModel.getEventInfo(i).toString());
             sb.append("\n");
         }
         return sb.toString();
@@ -118,25 +128,63 @@ public class DBEventsPanel extends DetachablePanel {
 
     public class EventTableDataModel extends AbstractTableModel {
 
-        protected List<EventInfo> events = new ArrayList<EventInfo>();
+        /** Number of context values stored for each event */
+        protected static final int CONTEXT_SIZE = 4;
+
+        protected List<DBEvent> events;
+
+        /** Subrule, decision, mark and backtrack of each event */
+        protected int[] contexts = new int[CONTEXT_SIZE*1024];
+        protected int count = 0;
+
+        public void setEvents(List<DBEvent> events) {
+            this.events = events;
+        }
 
         public void add(DBEvent event, DBPlayerContextInfo info) {
-            events.add(new EventInfo(event, info));
+            if((count+1)*CONTEXT_SIZE > contexts.length) {
+                int[] newContexts = new int[contexts.length*2];
+                System.arraycopy(contexts, 0, newContexts, 0, contexts.length);
+                contexts = newContexts;
+            }
+            int offset = count*CONTEXT_SIZE;
+            contexts[offset] = info.getSubrule();
+            contexts[offset+1] = info.getDecision();
+            contexts[offset+2] = info.getMark();
+            contexts[offset+3] = info.getBacktrack();
+            count++;
+        }
+
+        public DBEvent getEvent(int index) {
+            return events.get(index);
+        }
+
+        public EventInfo getEventInfo(int index) {
+            int offset = index*CONTEXT_SIZE;
+            return new EventInfo(getEvent(index), contexts[offset], contexts[offset+1],
+                    contexts[offset+2], contexts[offset+3]);
         }
 
         public void clear() {
-            events.clear();
+            count = 0;
             fireTableDataChanged();
             infoTableView.autoresizeColumns();
         }
 
+        public void truncate(int count) {
+            if(count < this.count) {
+                this.count = count;
+                fireTableDataChanged();
+            }
+        }
+
         public void update() {
             fireTableDataChanged();
             infoTableView.autoresizeColumns();
         }
 
         public int getRowCount() {
-            return events.size();
+            return count;
         }
 
         public int getColumnCount() {
@@ -168,9 +216,11 @@ public class DBEventsPanel extends DetachablePanel {
         }
 
         public Object getValueAt(int rowIndex, int columnIndex) {
-            EventInfo info = events.get(rowIndex);
+            if(columnIndex == INFO_COLUMN_COUNT) {
+                return String.valueOf(rowIndex);
+            }
+            EventInfo info = getEventInfo(rowIndex);
             switch(columnIndex) {
-                case INFO_COLUMN_COUNT: return String.valueOf(rowIndex);
                 case INFO_COLUMN_EVENT: return info.event;
                 case INFO_COLUMN_SUBRULE: return info.getSubrule();
                 case INFO_COLUMN_DECISION: return info.getDecision();
@@ -192,12 +242,12 @@ public class DBEventsPanel extends DetachablePanel {
             public int mark;
             public int backtrack;
 
-            public EventInfo(DBEvent event, DBPlayerContextInfo info) {
+            public EventInfo(DBEvent event, int subrule, int decision, int mark, int backtrack) {
                 this.event = event;
-                this.subrule = info.getSubrule();
-                this.decision = info.getDecision();
-                this.mark = info.getMark();
-                this.backtrack = info.getBacktrack();
+                this.subrule = subrule;
+                this.decision = decision;
+                this.mark = mark;
+                this.backtrack = backtrack;
             }
 
             public Object getSubrule() {
@@ -5,6 +5,7 @@ import org.antlr.works.debugger.input.DBInputProcessor;
 import org.antlr.works.debugger.input.DBInputTextTokenInfo;
 
 import javax.swing.*;
+import java.util.BitSet;
 /*
 
 [The "BSD licence"]
@@ -49,6 +50,9 @@ public interface DBInputConcretePanel {
 
     public boolean isBreakpointAtToken(Token token);
 
+    /** Returns the token indexes (or the tree node IDs) with a breakpoint */
+    public BitSet getBreakpoints();
+
     public void selectToken(Token token);
     public DBInputTextTokenInfo getTokenInfoForToken(Token token);
 
@@ -8,6 +8,7 @@ import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.utils.DetachablePanel;
 
 import java.awt.*;
+import java.util.BitSet;
 /*
 
 [The "BSD licence"]
@@ -105,6 +106,14 @@ public class DBInputPanel extends DetachablePanel {
         return currentPanel.isBreakpointAtToken(token);
     }
 
+    public BitSet getBreakpoints() {
+        return currentPanel.getBreakpoints();
+    }
+
+    public boolean isTreeInput() {
+        return currentPanel == inputTreePanel;
+    }
+
     public void stop() {
         currentPanel.stop();
     }
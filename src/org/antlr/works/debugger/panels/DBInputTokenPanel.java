@@ -11,6 +11,7 @@ import org.antlr.works.utils.TextUtils;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.BitSet;
 /*
 
 [The "BSD licence"]
@@ -92,6 +93,10 @@ public class DBInputTokenPanel implements DBInputConcretePanel {
         return processorToken.isBreakpointAtToken(token);
     }
 
+    public BitSet getBreakpoints() {
+        return processorToken.getBreakpoints();
+    }
+
     public void selectToken(Token token) {
         processorToken.selectToken(token);
     }
@@ -11,6 +11,7 @@ import org.antlr.works.utils.awtree.AWTreePanelDelegate;
 import javax.swing.*;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
+import java.util.BitSet;
 /*
 
 [The "BSD licence"]
@@ -88,6 +89,10 @@ public class DBInputTreePanel implements DBInputConcretePanel, AWTreePanelDelega
         return processorTree.isBreakpointAtToken(token);
     }
 
+    public BitSet getBreakpoints() {
+        return processorTree.getBreakpoints();
+    }
+
     public void selectToken(Token token) {
         /** Not applicable here. Ignore */
     }
@@ -98,6 +98,20 @@ public class DBStackPanel extends DetachablePanel {
         rules.pop();
     }
 
+    public Object saveState() {
+        Stack<DBEventEnterRule> state = new Stack<DBEventEnterRule>();
+        state.addAll(rules);
+        return state;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void restoreState(Object state) {
+        clear();
+        for(DBEventEnterRule rule : (Stack<DBEventEnterRule>)state) {
+            pushRule(rule);
+        }
+    }
+
     public DBEventEnterRule peekRule() {
         if(rules.isEmpty()) {
             return null;
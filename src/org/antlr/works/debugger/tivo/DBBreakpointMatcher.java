@@ -0,0 +1,198 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tree.DBTreeToken;
+
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Breakpoints compiled for the evaluation of each event received by the recorder:
+ * the evaluation of an event does not allocate any object and does not depend
+ * on the number of breakpoints.
+ *
+ * A matcher is immutable except for the state of its rule breakpoints. It is
+ * created again each time the breakpoints are queried.
+ */
+public class DBBreakpointMatcher {
+
+    /** Event types breaking the debugger */
+    private final long eventMask;
+    private final boolean breakOnAllEvents;
+
+    /** Lines with a breakpoint for each grammar name */
+    private final Map<String, BitSet> lines;
+
+    /** Last grammar name looked up: the name does not change from one location to the next */
+    private String lastGrammarName;
+    private BitSet lastGrammarLines;
+
+    /** Token indexes (or tree node IDs) with a breakpoint */
+    private final BitSet tokens;
+    private final boolean treeTokens;
+
+    private final DBRuleBreakpoint[] ruleBreakpoints;
+
+    /** Creates a matcher breaking on the events of the set (event types as Integer)
+     * and on the breakpoints. The line breakpoints map a 0-based line to the name of the
+     * grammars with a breakpoint at this line.
+     */
+    public DBBreakpointMatcher(Set breakEvents,
+                               Map<Integer, Set<String>> lineBreakpoints,
+                               BitSet tokenBreakpoints, boolean treeTokens,
+                               Collection<DBRuleBreakpoint> ruleBreakpoints)
+    {
+        long mask = 0;
+        for(Object type : breakEvents) {
+            int t = (Integer)type;
+            if(t >= 0 && t < 64)
+                mask |= 1L << t;
+        }
+        this.eventMask = mask;
+        this.breakOnAllEvents = (mask & (1L << DBEvent.ALL)) != 0;
+
+        this.lines = new HashMap<String, BitSet>();
+        if(lineBreakpoints != null) {
+            for(Map.Entry<Integer, Set<String>> entry : lineBreakpoints.entrySet()) {
+                if(entry.getKey() < 0) continue;
+                for(String name : entry.getValue()) {
+                    BitSet set = lines.get(name);
+                    if(set == null) {
+                        set = new BitSet();
+                        lines.put(name, set);
+                    }
+                    set.set(entry.getKey());
+                }
+            }
+        }
+
+        this.tokens = tokenBreakpoints == null ? new BitSet() : tokenBreakpoints;
+        this.treeTokens = treeTokens;
+
+        if(ruleBreakpoints == null)
+            this.ruleBreakpoints = new DBRuleBreakpoint[0];
+        else
+            this.ruleBreakpoints = ruleBreakpoints.toArray(new DBRuleBreakpoint[ruleBreakpoints.size()]);
+    }
+
+    /** Returns the type of the event if the debugger breaks on it, DBEvent.NO_EVENT otherwise.
+     * The breakpoints are ignored if ignoreBreakpoints is true and the rule breakpoints are
+     * only evaluated when moving forward over an event not evaluated yet: a rule breakpoint
+     * counts a hit each time it is evaluated.
+     */
+    public int match(DBEvent event, boolean ignoreBreakpoints, boolean forward) {
+        int type = event.getEventType();
+        if(type == DBEvent.COMMENCE || breakOnAllEvents)
+            return type;
+
+        if(!ignoreBreakpoints) {
+            switch(type) {
+                case DBEvent.LOCATION:
+                    // Location lines are 1-based
+                    if(isBreakpointAtLine(((DBEventLocation)event).line - 1, event.getGrammarName()))
+                        return type;
+                    break;
+
+                case DBEvent.CONSUME_TOKEN:
+                    if(isBreakpointAtToken(((DBEventConsumeToken)event).token))
+                        return type;
+                    break;
+            }
+
+            if(forward && ruleBreakpoints.length > 0 && matchRuleBreakpoints(event))
+                return type;
+        }
+
+        if(type < 0 || type >= 64 || (eventMask & (1L << type)) == 0)
+            return DBEvent.NO_EVENT;
+
+        if(type == DBEvent.CONSUME_TOKEN) {
+            // Breaks only on consume token from channel 0
+            return ((DBEventConsumeToken)event).token.getChannel() == Token.DEFAULT_CHANNEL ? type : DBEvent.NO_EVENT;
+        }
+        return type;
+    }
+
+    public boolean isBreakpointAtLine(int line, String grammarName) {
+        if(line < 0)
+            return false;
+
+        if(grammarName != lastGrammarName) {
+            lastGrammarName = grammarName;
+            lastGrammarLines = grammarName == null ? null : lines.get(grammarName);
+        }
+        return lastGrammarLines != null && lastGrammarLines.get(line);
+    }
+
+    public boolean isBreakpointAtToken(Token token) {
+        int key = treeTokens && token instanceof DBTreeToken ? ((DBTreeToken)token).ID : token.getTokenIndex();
+        return key >= 0 && tokens.get(key);
+    }
+
+    private boolean matchRuleBreakpoints(DBEvent event) {
+        boolean matched = false;
+        switch(event.getEventType()) {
+            case DBEvent.ENTER_RULE: {
+                DBEventEnterRule e = (DBEventEnterRule)event;
+                for(DBRuleBreakpoint b : ruleBreakpoints) {
+                    if(!b.ruleName.equals(e.name))
+                        continue;
+                    if(b.grammarName != null && !b.grammarName.equals(e.getGrammarName()))
+                        continue;
+
+                    if(b.lookaheadType == DBRuleBreakpoint.ANY_TOKEN)
+                        matched |= b.hit();
+                    else
+                        b.waitingLookahead = true;
+                }
+                break;
+            }
+
+            case DBEvent.LT: {
+                DBEventLT e = (DBEventLT)event;
+                if(e.index != 1)
+                    break;
+                for(DBRuleBreakpoint b : ruleBreakpoints) {
+                    if(!b.waitingLookahead)
+                        continue;
+                    b.waitingLookahead = false;
+                    if(e.token != null && e.token.getType() == b.lookaheadType)
+                        matched |= b.hit();
+                }
+                break;
+            }
+        }
+        return matched;
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.works.debugger.events.DBEvent;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Decouples the reception of the events from the remote parser and their recording.
+ *
+ * The socket thread parses the events and puts them into a bounded queue: the remote
+ * parser is acknowledged as soon as the event is queued and is paused only when the
+ * queue is full (or when the recorder breaks and stops draining it). Another thread
+ * drains the queue and hands the events to the recorder by batches. The debugger
+ * interface is notified at a capped frame rate while the events are received.
+ */
+public class DBEventIngestion implements Runnable {
+
+    /** Maximum number of events waiting to be recorded */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** Maximum number of events handed to the recorder at once */
+    public static final int BATCH_SIZE = 512;
+
+    /** Minimum delay in ms between two notifications of the interface */
+    public static final int FRAME_INTERVAL = 100;
+
+    private final DBRecorder recorder;
+    private final BlockingQueue<DBEvent> queue;
+    private Thread thread;
+    private volatile boolean closed;
+
+    private volatile long eventCount;
+    private volatile int maxQueueDepth;
+    private volatile long uiLag;
+    private volatile float eventsPerSecond;
+
+    private long frameTime;
+    private long frameEventCount;
+    private volatile boolean framePending;
+
+    public DBEventIngestion(DBRecorder recorder) {
+        this(recorder, DEFAULT_CAPACITY);
+    }
+
+    public DBEventIngestion(DBRecorder recorder, int capacity) {
+        this.recorder = recorder;
+        this.queue = new ArrayBlockingQueue<DBEvent>(capacity);
+    }
+
+    public void start() {
+        frameTime = System.currentTimeMillis();
+        thread = new Thread(this, "Debugger Event Ingestion");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops recording the events: the events still in the queue are discarded */
+    public void close() {
+        closed = true;
+        queue.clear();
+        if(thread != null)
+            thread.interrupt();
+    }
+
+    /** Queues an event received from the remote parser. This method blocks while the queue is full. */
+    public void put(DBEvent event) {
+        if(closed) return;
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) {
+            // The event is dropped: the session is being closed
+        }
+    }
+
+    public void run() {
+        List<DBEvent> batch = new ArrayList<DBEvent>(BATCH_SIZE);
+        while(!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            int depth = queue.size() + 1;
+            if(depth > maxQueueDepth)
+                maxQueueDepth = depth;
+
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            recorder.listenerEvents(batch);
+            eventCount += batch.size();
+
+            boolean terminated = batch.get(batch.size() - 1).getEventType() == DBEvent.TERMINATE;
+            batch.clear();
+
+            publish(terminated);
+            if(terminated)
+                break;
+        }
+    }
+
+    /** Notifies the interface if the last notification is older than the frame interval */
+    private void publish(boolean force) {
+        long now = System.currentTimeMillis();
+        if(!force && (framePending || now - frameTime < FRAME_INTERVAL))
+            return;
+
+        long elapsed = Math.max(1, now - frameTime);
+        eventsPerSecond = (eventCount - frameEventCount) * 1000f / elapsed;
+        frameTime = now;
+        frameEventCount = eventCount;
+
+        final long postTime = now;
+        framePending = true;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                uiLag = System.currentTimeMillis() - postTime;
+                framePending = false;
+                recorder.ingestionDidProgress();
+            }
+        });
+    }
+
+    /** Returns the number of events recorded */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /** Returns the number of events received per second during the last frame */
+    public float getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /** Returns the number of events waiting to be recorded */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /** Returns the delay in ms between the last notification and its handling by the interface */
+    public long getUILag() {
+        return uiLag;
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener.ProxyTree;
+import org.antlr.runtime.tree.CommonTreeAdaptor;
+import org.antlr.runtime.tree.Tree;
+
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Listener receiving the events of a parser running in the same process. The tree
+ * nodes are the nodes created by the parser instead of the proxies created by the
+ * socket listener: they are converted to proxies identified like the remote nodes.
+ */
+public class DBInProcessEventListener extends DBRecorderEventListener {
+
+    /** Used only to give a unique ID to each node */
+    protected CommonTreeAdaptor adaptor = new CommonTreeAdaptor();
+
+    public DBInProcessEventListener(DBRecorder recorder) {
+        super(recorder);
+    }
+
+    protected ProxyTree getProxy(Object node) {
+        int id = adaptor.getUniqueID(node);
+        if(!(node instanceof Tree))
+            return new ProxyTree(id);
+
+        Tree tree = (Tree)node;
+        Token token = adaptor.getToken(tree);
+        if(token == null)
+            return new ProxyTree(id, tree.getType(), tree.getLine(), tree.getCharPositionInLine(), -1, tree.getText());
+        else
+            return new ProxyTree(id, tree.getType(), token.getLine(), token.getCharPositionInLine(), token.getTokenIndex(), tree.getText());
+    }
+
+    @Override
+    public void nilNode(Object t) {
+        super.nilNode(getProxy(t));
+    }
+
+    @Override
+    public void errorNode(Object t) {
+        super.errorNode(getProxy(t));
+    }
+
+    @Override
+    public void createNode(Object t) {
+        super.createNode(getProxy(t));
+    }
+
+    @Override
+    public void createNode(Object node, Token token) {
+        super.createNode(getProxy(node), token);
+    }
+
+    @Override
+    public void becomeRoot(Object newRoot, Object oldRoot) {
+        super.becomeRoot(getProxy(newRoot), getProxy(oldRoot));
+    }
+
+    @Override
+    public void addChild(Object root, Object child) {
+        super.addChild(getProxy(root), getProxy(child));
+    }
+
+    @Override
+    public void setTokenBoundaries(Object t, int tokenStartIndex, int tokenStopIndex) {
+        super.setTokenBoundaries(getProxy(t), tokenStartIndex, tokenStopIndex);
+    }
+
+    @Override
+    public void consumeNode(Object t) {
+        super.consumeNode(getProxy(t));
+    }
+
+    @Override
+    public void LT(int i, Object t) {
+        super.LT(i, getProxy(t));
+    }
+}
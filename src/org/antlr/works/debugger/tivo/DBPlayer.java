@@ -32,17 +32,23 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.debugger.tivo;
 
 import org.antlr.runtime.Token;
-import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.*;
 import org.antlr.works.debugger.input.DBInputProcessor;
 import org.antlr.works.debugger.input.DBInputTextTokenInfo;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
 
 public class DBPlayer {
 
-    protected DebuggerTab debuggerTab;
+    /** Default number of events played between two checkpoints */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 2000;
+
+    /** Default maximum number of objects copied by all the checkpoints */
+    public static final int DEFAULT_CHECKPOINT_BUDGET = 4000000;
+
+    protected DBPlayerDelegate delegate;
     protected DBInputProcessor processor;
 
     protected DBPlayerContextInfo contextInfo;
@@ -51,14 +57,22 @@ public class DBPlayer {
     protected int resyncing = 0;
     protected int eventPlayedCount = 0;
 
-    public DBPlayer(DebuggerTab debuggerTab) {
-        this.debuggerTab = debuggerTab;
+    /** Checkpoints sorted by event position. A backward move restores the nearest
+     * checkpoint and plays only the events after it instead of replaying all the events.
+     */
+    protected List<DBPlayerCheckpoint> checkpoints = new ArrayList<DBPlayerCheckpoint>();
+    protected int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    protected int checkpointBudget = DEFAULT_CHECKPOINT_BUDGET;
+    protected int checkpointCost = 0;
+
+    public DBPlayer(DBPlayerDelegate delegate) {
+        this.delegate = delegate;
         contextInfo = new DBPlayerContextInfo();
         markStack = new Stack<Integer>();
     }
 
     public void close() {
-        debuggerTab = null;
+        delegate = null;
     }
 
     public void setInputBuffer(DBInputProcessor processor) {
@@ -69,16 +83,43 @@ public class DBPlayer {
         return contextInfo;
     }
 
+    public void setCheckpointInterval(int interval) {
+        this.checkpointInterval = Math.max(1, interval);
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /** Sets the maximum number of objects (tree nodes, stack entries) that all the
+     * checkpoints can copy. When the budget is exceeded, every other checkpoint is
+     * discarded and the interval between checkpoints is doubled.
+     */
+    public void setCheckpointBudget(int budget) {
+        this.checkpointBudget = budget;
+    }
+
+    public int getCheckpointBudget() {
+        return checkpointBudget;
+    }
+
+    public int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
     public synchronized void resetPlayEvents(boolean first) {
-        debuggerTab.resetGUI();
+        delegate.resetGUI();
 
         /** Only reset the input text the first time
          the events are reset (when the debugger starts).
          Then, keep rewinding the input text so already received
          tokens are displayed */
-        if(first)
+        if(first) {
             processor.reset();
-        else
+            // The events of a new session: the checkpoints are obsolete
+            checkpoints.clear();
+            checkpointCost = 0;
+        } else
             processor.rewindAll();
 
         contextInfo.clear();
@@ -89,8 +130,14 @@ public class DBPlayer {
     }
 
     public void playEvents(List events, int lastEventPosition, boolean reset) {
-        if(reset)
-            resetPlayEvents(false);
+        if(reset) {
+            // Replay at least the last event so its location is played
+            DBPlayerCheckpoint checkpoint = getCheckpointBefore(lastEventPosition - 1);
+            if(checkpoint == null)
+                resetPlayEvents(false);
+            else
+                restoreCheckpoint(checkpoint);
+        }
 
         int lastIndex = lastEventPosition - 1;
         for(int i=eventPlayedCount; i< lastEventPosition; i++) {
@@ -99,10 +146,15 @@ public class DBPlayer {
             try {
                 playEvent(event);
             } catch(Exception e) {
-                debuggerTab.getConsole().println(e);
+                delegate.getConsole().println(e);
+            }
+
+            delegate.addEvent(event, contextInfo);
+            eventPlayedCount = i + 1;
+            if(eventPlayedCount % checkpointInterval == 0) {
+                addCheckpoint();
             }
 
-            debuggerTab.addEvent(event, contextInfo);
             if(i == lastIndex) {
                 // Last event, play the location
                 playLocation();
@@ -111,6 +163,71 @@ public class DBPlayer {
         eventPlayedCount = lastEventPosition;
     }
 
+    /** Returns the last checkpoint at or before the event position */
+    protected DBPlayerCheckpoint getCheckpointBefore(int eventPosition) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(checkpoints.get(mid).eventPosition <= eventPosition) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high < 0 ? null : checkpoints.get(high);
+    }
+
+    protected void addCheckpoint() {
+        // Checkpoints are added in order: the events before the last checkpoint
+        // are replayed after a restore and are already checkpointed
+        if(!checkpoints.isEmpty() && checkpoints.get(checkpoints.size()-1).eventPosition >= eventPlayedCount)
+            return;
+
+        DBPlayerCheckpoint checkpoint = new DBPlayerCheckpoint();
+        checkpoint.eventPosition = eventPlayedCount;
+        checkpoint.contextInfo = contextInfo.copy();
+        checkpoint.markStack = new Stack<Integer>();
+        checkpoint.markStack.addAll(markStack);
+        checkpoint.resyncing = resyncing;
+        checkpoint.lastLocationEvent = lastLocationEvent;
+        checkpoint.processorState = processor.saveState();
+        delegate.saveGUIState(checkpoint);
+
+        checkpoints.add(checkpoint);
+        checkpointCost += checkpoint.getCost();
+        if(checkpointCost > checkpointBudget) {
+            thinCheckpoints();
+        }
+    }
+
+    /** Discards every other checkpoint and doubles the interval between checkpoints */
+    protected void thinCheckpoints() {
+        checkpointInterval *= 2;
+        List<DBPlayerCheckpoint> kept = new ArrayList<DBPlayerCheckpoint>();
+        checkpointCost = 0;
+        for (DBPlayerCheckpoint checkpoint : checkpoints) {
+            if(checkpoint.eventPosition % checkpointInterval == 0) {
+                kept.add(checkpoint);
+                checkpointCost += checkpoint.getCost();
+            }
+        }
+        checkpoints = kept;
+    }
+
+    protected void restoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        delegate.restoreGUIState(checkpoint);
+        processor.restoreState(checkpoint.processorState);
+
+        contextInfo.set(checkpoint.contextInfo);
+        markStack.clear();
+        markStack.addAll(checkpoint.markStack);
+        resyncing = checkpoint.resyncing;
+        lastLocationEvent = checkpoint.lastLocationEvent;
+
+        eventPlayedCount = checkpoint.eventPosition;
+    }
+
     public void playEvent(DBEvent event) {
         switch(event.getEventType()) {
             case DBEvent.ENTER_RULE:
@@ -215,12 +332,12 @@ public class DBPlayer {
     }
 
     public void playEnterRule(DBEventEnterRule event) {
-        debuggerTab.playerPushRule(event);
+        delegate.playerPushRule(event);
         processor.removeAllLT();
     }
 
     public void playExitRule(DBEventExitRule event) {
-        debuggerTab.playerPopRule(event);
+        delegate.playerPopRule(event);
         processor.removeAllLT();
     }
 
@@ -281,7 +398,7 @@ public class DBPlayer {
 
         /* If backtracking add token only */
         if(contextInfo.isBacktracking()) {
-            debuggerTab.playerConsumeToken(token);
+            delegate.playerConsumeToken(token);
             return;
         }
 
@@ -291,7 +408,7 @@ public class DBPlayer {
 
         /* Add only visible token */
         if(!hidden)
-            debuggerTab.playerConsumeToken(token);
+            delegate.playerConsumeToken(token);
 
         /* Consume the token */
         processor.consumeToken(token, hidden?DBInputProcessor.TOKEN_HIDDEN:DBInputProcessor.TOKEN_NORMAL);
@@ -306,13 +423,13 @@ public class DBPlayer {
         // in the grammar (not needed)
         lastLocationEvent = event;
 
-        debuggerTab.playerSetLocation(lastLocationEvent);
+        delegate.playerSetLocation(lastLocationEvent);
         processor.setLocation(lastLocationEvent);
     }
 
     public void playLocation() {
-        debuggerTab.resetGrammarLocation();
-        debuggerTab.setGrammarLocation(lastLocationEvent);
+        delegate.resetGrammarLocation();
+        delegate.setGrammarLocation(lastLocationEvent);
     }
 
     public void playMark(DBEventMark event) {
@@ -333,7 +450,7 @@ public class DBPlayer {
 
         /* Tell the debugger about the backtracking so the parse
         tree coloring can be properly done */
-        debuggerTab.playerBeginBacktrack(event.level);
+        delegate.playerBeginBacktrack(event.level);
     }
 
     public void playEndBacktrack(DBEventEndBacktrack event) {
@@ -341,7 +458,7 @@ public class DBPlayer {
 
         /* Tell the debugger about the backtracking so the parse
         tree coloring can be properly done */
-        debuggerTab.playerEndBacktrack(event.level, event.successful);
+        delegate.playerEndBacktrack(event.level, event.successful);
     }
 
     public void playRecognitionException(DBEventRecognitionException event) {
@@ -350,7 +467,7 @@ public class DBPlayer {
 		if ( info!=null ) {
 			event.e.token = info.token;
 		}
-		debuggerTab.playerRecognitionException(event.e);
+		delegate.playerRecognitionException(event.e);
     }
 
     public void playBeginResync() {
@@ -362,36 +479,36 @@ public class DBPlayer {
     }
 
     public void playNilNode(DBEventNilNode event) {
-        debuggerTab.playerNilNode(event.id);
+        delegate.playerNilNode(event.id);
     }
 
     public void playErrorNode(DBEventErrorNode event) {
-        debuggerTab.playerErrorNode(event.id, event.text);
+        delegate.playerErrorNode(event.id, event.text);
     }
 
     public void playCreateNode(DBEventCreateNode event) {
         if(event.tokenIndex == -1) {
             /** Imaginary token. Use the 'text' and 'type' info instead. */
-            debuggerTab.playerCreateNode(event.id, event.text, event.type);
+            delegate.playerCreateNode(event.id, event.text, event.type);
         } else {
             DBInputTextTokenInfo info = processor.getTokenInfoAtTokenIndex(event.tokenIndex);
             if(info == null)
-                debuggerTab.getConsole().println("No token info for token index "+event.tokenIndex);
+                delegate.getConsole().println("No token info for token index "+event.tokenIndex);
             else
-                debuggerTab.playerCreateNode(event.id, info.token);
+                delegate.playerCreateNode(event.id, info.token);
         }
     }
 
     public void playBecomeRoot(DBEventBecomeRoot event) {
-        debuggerTab.playerBecomeRoot(event.newRootID, event.oldRootID);
+        delegate.playerBecomeRoot(event.newRootID, event.oldRootID);
     }
 
     public void playAddChild(DBEventAddChild event) {
-        debuggerTab.playerAddChild(event.rootID, event.childID);
+        delegate.playerAddChild(event.rootID, event.childID);
     }
 
     public void playSetTokenBoundaries(DBEventSetTokenBoundaries event) {
-        debuggerTab.playerSetTokenBoundaries(event.id, event.startIndex, event.stopIndex);
+        delegate.playerSetTokenBoundaries(event.id, event.startIndex, event.stopIndex);
     }
 
 }
@@ -0,0 +1,66 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.debugger.tree.DBASTModel;
+import org.antlr.works.debugger.tree.DBParseTreeModel;
+
+import java.util.Stack;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** State of the player and of the debugger after a given number of events has been played */
+public class DBPlayerCheckpoint {
+
+    /** Number of events played */
+    public int eventPosition;
+
+    public DBPlayerContextInfo contextInfo;
+    public Stack<Integer> markStack;
+    public int resyncing;
+    public DBEventLocation lastLocationEvent;
+
+    public Object processorState;
+    public Object stackState;
+    public DBParseTreeModel.State parseTreeState;
+    public DBASTModel.State astState;
+
+    /** Approximate number of objects copied by the checkpoint. The states of the
+     * trees are not saved when the player runs without interface.
+     */
+    public int getCost() {
+        int cost = contextInfo.size() + markStack.size();
+        if(parseTreeState != null)
+            cost += parseTreeState.size;
+        if(astState != null)
+            cost += astState.size;
+        return cost;
+    }
+}
@@ -98,6 +98,24 @@ public class DBPlayerContextInfo {
             return s.peek();
     }
 
+    public void set(DBPlayerContextInfo info) {
+        clear();
+        subrule.addAll(info.subrule);
+        decision.addAll(info.decision);
+        mark.addAll(info.mark);
+        backtrack.addAll(info.backtrack);
+    }
+
+    public DBPlayerContextInfo copy() {
+        DBPlayerContextInfo info = new DBPlayerContextInfo();
+        info.set(this);
+        return info;
+    }
+
+    public int size() {
+        return subrule.size() + decision.size() + mark.size() + backtrack.size();
+    }
+
     public void clear() {
         subrule.clear();
         decision.clear();
@@ -0,0 +1,71 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.events.DBEventEnterRule;
+import org.antlr.works.debugger.events.DBEventExitRule;
+import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.utils.Console;
+
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Receiver of the events played by the player */
+public interface DBPlayerDelegate {
+
+    Console getConsole();
+
+    void resetGUI();
+    void saveGUIState(DBPlayerCheckpoint checkpoint);
+    void restoreGUIState(DBPlayerCheckpoint checkpoint);
+
+    void addEvent(DBEvent event, DBPlayerContextInfo info);
+
+    void resetGrammarLocation();
+    void setGrammarLocation(DBEventLocation location);
+
+    void playerSetLocation(DBEventLocation location);
+    void playerPushRule(DBEventEnterRule rule);
+    void playerPopRule(DBEventExitRule rule);
+    void playerConsumeToken(Token token);
+    void playerRecognitionException(Exception e);
+    void playerBeginBacktrack(int level);
+    void playerEndBacktrack(int level, boolean success);
+
+    void playerNilNode(int id);
+    void playerErrorNode(int id, String text);
+    void playerCreateNode(int id, Token token);
+    void playerCreateNode(int id, String text, int type);
+    void playerBecomeRoot(int newRootID, int oldRootID);
+    void playerAddChild(int rootID, int childID);
+    void playerSetTokenBoundaries(int id, int startIndex, int stopIndex);
+
+}
@@ -34,17 +34,18 @@ package org.antlr.works.debugger.tivo;
 import org.antlr.runtime.Token;
 import org.antlr.runtime.debug.DebugEventListener;
 import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
-import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.*;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.NumberSet;
+import org.antlr.works.utils.Utils;
 import org.antlr.xjlib.appkit.utils.XJAlert;
 import org.antlr.xjlib.appkit.utils.XJDialogProgress;
 import org.antlr.xjlib.appkit.utils.XJDialogProgressDelegate;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import javax.swing.*;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -58,7 +59,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     public static final int MAX_RETRY = 12;
 
-    protected DebuggerTab debuggerTab;
+    protected DBRecorderDelegate delegate;
     protected int status = STATUS_STOPPED;
     protected boolean cancelled;
 
@@ -90,9 +91,15 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     protected String address;
     protected int port;
 
-    protected List<DBEvent> events;
+    protected DBEventStore events;
     protected int position;
     protected NumberSet breakEvents = new NumberSet();
+    protected List<DBRuleBreakpoint> ruleBreakpoints = new ArrayList<DBRuleBreakpoint>();
+    protected volatile DBBreakpointMatcher breakpointMatcher;
+    /** Position of the last event evaluated by the rule breakpoints. The events played
+     * again after a backward move are not counted again by the rule breakpoints.
+     */
+    protected int ruleBreakpointsPosition = -1;
     protected int stoppedOnEvent = DBEvent.NO_EVENT;
     protected boolean ignoreBreakpoints = false;
     protected StepOver stepOver = new StepOver();
@@ -106,6 +113,12 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     protected XJDialogProgress progress;
 
+    /** Queue of the events received from the remote parser */
+    protected DBEventIngestion ingestion;
+
+    /** Trace file receiving the events of the session */
+    protected DBEventTraceWriter traceWriter;
+
     /** This flag is used to indicate that the debugger received the terminate event.
      * It is used to force stop the debugger if it cannot be stopped by the normal method.
      */
@@ -122,18 +135,22 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
      */
     protected Stack<String> grammarNamesStack = new Stack<String>();
 
-    public DBRecorder(DebuggerTab debuggerTab) {
-        this.debuggerTab = debuggerTab;
+    public DBRecorder(DBRecorderDelegate delegate) {
+        this.delegate = delegate;
         reset();
     }
 
     public void close() {
-        debuggerTab = null;
+        stopTrace();
+        delegate = null;
     }
 
     public void showProgress() {
+        if(delegate.getContainer() == null)
+            return;
+
         if(progress == null)
-            progress = new XJDialogProgress(debuggerTab.getContainer());
+            progress = new XJDialogProgress(delegate.getContainer());
         progress.setInfo("Connecting...");
         progress.setIndeterminate(true);
         progress.setDelegate(this);
@@ -141,7 +158,8 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     public void hideProgress() {
-        progress.close();
+        if(progress != null)
+            progress.close();
     }
 
     /** Return true if the debugger is running */
@@ -156,9 +174,13 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     public synchronized void reset() {
-        events = Collections.synchronizedList(new ArrayList<DBEvent>());
+        events = new DBEventStore();
         position = -1;
         currentTokenIndex = -1;
+        ruleBreakpointsPosition = -1;
+        for(DBRuleBreakpoint b : ruleBreakpoints) {
+            b.reset();
+        }
         remoteParserStateWarned = false;
     }
 
@@ -201,6 +223,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     public void setBreakEvents(Set events) {
         this.breakEvents.replaceAll(events);
+        compileBreakpoints();
     }
 
     public Set getBreakEvents() {
@@ -227,12 +250,38 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         // Get the current breakpoints in the grammar text
         // because they can be set/unset during a debugging
         // session of course ;-)
-        debuggerTab.queryGrammarBreakpoints();
+        delegate.queryGrammarBreakpoints();
+        compileBreakpoints();
+    }
+
+    public synchronized void addRuleBreakpoint(DBRuleBreakpoint breakpoint) {
+        ruleBreakpoints.add(breakpoint);
+        compileBreakpoints();
+    }
+
+    public synchronized void removeRuleBreakpoint(DBRuleBreakpoint breakpoint) {
+        ruleBreakpoints.remove(breakpoint);
+        compileBreakpoints();
+    }
+
+    public synchronized List<DBRuleBreakpoint> getRuleBreakpoints() {
+        return new ArrayList<DBRuleBreakpoint>(ruleBreakpoints);
+    }
+
+    /** Compiles the break events and the breakpoints so each event received is
+     * evaluated without looking up the debugger interface.
+     */
+    protected void compileBreakpoints() {
+        breakpointMatcher = delegate.createBreakpointMatcher(breakEvents, ruleBreakpoints);
     }
 
     /** Return true if the debugger hitted a break event */
     public boolean isOnBreakEvent() {
-        int breakEvent = getOnBreakEvent();
+        return isOnBreakEvent(true);
+    }
+
+    public boolean isOnBreakEvent(boolean forward) {
+        int breakEvent = getOnBreakEvent(forward);
         if(breakEvent != DBEvent.NO_EVENT) {
             setStoppedOnEvent(breakEvent);
             setStatus(STATUS_BREAK);
@@ -243,6 +292,10 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     /** Return the event type that causes the break */
     public int getOnBreakEvent() {
+        return getOnBreakEvent(true);
+    }
+
+    public int getOnBreakEvent(boolean forward) {
         DBEvent event = getEvent();
         if(event == null)
             return DBEvent.NO_EVENT;
@@ -256,34 +309,21 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
                 return DBEvent.NO_EVENT;
         }
 
-        if(event.getEventType() == DBEvent.COMMENCE)
-            return event.getEventType();
-
-        if(breakEvents.contains(DBEvent.convertToInteger(DBEvent.ALL)))
-            return event.getEventType();
-
-        // Stop on debugger breakpoints
-        if(event.getEventType() == DBEvent.LOCATION && !ignoreBreakpoints())
-            if(debuggerTab.isBreakpointAtLine(((DBEventLocation)event).line-1, event.getGrammarName())) {
-                return event.getEventType();
-            }
-
-        // Stop on input text breakpoint
-        if(event.getEventType() == DBEvent.CONSUME_TOKEN && !ignoreBreakpoints())
-            if(debuggerTab.isBreakpointAtToken(((DBEventConsumeToken)event).token))
-                return event.getEventType();
+        if(breakpointMatcher == null)
+            compileBreakpoints();
 
-        if(event.getEventType() == DBEvent.CONSUME_TOKEN && breakEvents.contains(DBEvent.convertToInteger(DBEvent.CONSUME_TOKEN))) {
-            // Breaks only on consume token from channel 0
-            return ((DBEventConsumeToken)event).token.getChannel() == Token.DEFAULT_CHANNEL?event.getEventType() :DBEvent.NO_EVENT;
-        } else
-            return breakEvents.contains(DBEvent.convertToInteger(event.getEventType()))?event.getEventType() :DBEvent.NO_EVENT;
+        // Each event is evaluated only once by the rule breakpoints, the first time it is reached
+        boolean evaluateRuleBreakpoints = forward && position > ruleBreakpointsPosition;
+        int breakEvent = breakpointMatcher.match(event, ignoreBreakpoints(), evaluateRuleBreakpoints);
+        if(evaluateRuleBreakpoints && !ignoreBreakpoints())
+            ruleBreakpointsPosition = position;
+        return breakEvent;
     }
 
     public synchronized void setStatus(int status) {
         if(this.status != status) {
             this.status = status;
-            debuggerTab.recorderStatusDidChange();
+            delegate.recorderStatusDidChange();
         }
     }
 
@@ -355,7 +395,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
         DBEvent event;
         while((event = getEvent()) != null) {
-            if(isOnBreakEvent())
+            if(isOnBreakEvent(direction > 0))
                 break;
 
             position += direction;
@@ -372,6 +412,15 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         playEvents(true);
     }
 
+    /** Moves to the event at the position and plays all the events up to it */
+    public void goToPosition(int position) {
+        synchronized(this) {
+            this.position = Math.max(0, Math.min(position, events.size()-1));
+        }
+        setIgnoreBreakpoints(false);
+        playEvents(true);
+    }
+
     public void goToEnd() {
         setIgnoreBreakpoints(true);
         stepContinue(new NumberSet(DBEvent.TERMINATE));
@@ -392,6 +441,27 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         new Thread(this).start();
     }
 
+    /** Records the events of a parser running in this process. The events are sent
+     * directly by the parser thread: there is no socket to connect to.
+     */
+    public void connect(DBEventSource source) {
+        eventListener = new DBInProcessEventListener(this);
+        listener = null;
+        cancelled = false;
+
+        setStatus(STATUS_LAUNCHING);
+        debuggerReceivedTerminateEvent = false;
+
+        reset();
+        startTrace();
+        ingestion = new DBEventIngestion(this);
+        ingestion.start();
+
+        // Notify the success before the parser sends its first event
+        connectionSuccess();
+        source.start(eventListener);
+    }
+
     public void run() {
         eventListener = new DBRecorderEventListener(this);
         cancelled = false;
@@ -443,6 +513,9 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
             debuggerReceivedTerminateEvent = false;
 
             reset();
+            startTrace();
+            ingestion = new DBEventIngestion(this);
+            ingestion.start();
             listener.start();
 
             connectionSuccess();
@@ -452,7 +525,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     public void connectionSuccess() {
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
-                debuggerTab.connectionSuccess();
+                delegate.connectionSuccess();
             }
         });
     }
@@ -460,7 +533,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     public void connectionFailed() {
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
-                debuggerTab.connectionFailed();
+                delegate.connectionFailed();
             }
         });
     }
@@ -468,7 +541,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     public void connectionCancelled() {
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
-                debuggerTab.connectionCancelled();
+                delegate.connectionCancelled();
             }
         });
     }
@@ -484,10 +557,81 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     public void stop() {
         // if the window is closed, the debugger does not exist anymore
         // and this event can be ignored
-        if(debuggerTab == null) return;
+        if(delegate == null) return;
 
+        if(ingestion != null)
+            ingestion.close();
+        stopTrace();
         setStatus(STATUS_STOPPED);
-        debuggerTab.recorderDidStop();
+        delegate.recorderDidStop();
+    }
+
+    /** Starts writing the events of the session to a trace file if a
+     * trace directory is set in the preferences.
+     */
+    protected void startTrace() {
+        String path = AWPrefs.getDebuggerTracePath();
+        if(path == null || path.length() == 0)
+            return;
+
+        String grammarName = delegate.getGrammarName();
+        File file = new File(path, grammarName+"-"+System.currentTimeMillis()+"."+DBEventTraceWriter.EXTENSION);
+        try {
+            traceWriter = createTraceWriter(file);
+            events.setTraceWriter(traceWriter);
+        } catch (IOException e) {
+            delegate.getConsole().println("Cannot create the trace file "+file+": "+e, Console.LEVEL_ERROR);
+        }
+    }
+
+    protected void stopTrace() {
+        if(traceWriter == null)
+            return;
+
+        events.setTraceWriter(null);
+        try {
+            traceWriter.close();
+        } catch (IOException e) {
+            delegate.getConsole().println("Cannot write the trace file: "+e, Console.LEVEL_ERROR);
+        }
+        traceWriter = null;
+    }
+
+    /** Saves the events recorded so far to a trace file */
+    public void saveTrace(File file) throws IOException {
+        DBEventTraceWriter writer = createTraceWriter(file);
+        events.writeTrace(writer);
+        writer.close();
+    }
+
+    protected DBEventTraceWriter createTraceWriter(File file) throws IOException {
+        return new DBEventTraceWriter(file, delegate.getGrammarFileName(), Utils.getDigest(delegate.getGrammarText()));
+    }
+
+    /** Loads the events of a trace. The session is then replayed as if the remote
+     * parser had already sent all its events.
+     */
+    public synchronized void openTrace(DBEventTraceReader reader) throws IOException {
+        reset();
+        events.readTrace(reader);
+        debuggerReceivedTerminateEvent = true;
+        position = 0;
+    }
+
+    /** Stops on the first event of the trace. This method is called in the event dispatch thread. */
+    public void traceDidOpen() {
+        setStoppedOnEvent(DBEvent.COMMENCE);
+        setStatus(STATUS_BREAK);
+        playEvents(false);
+    }
+
+    public synchronized int getEventCount() {
+        return events.size();
+    }
+
+    /** Returns the number of bytes used to store the events */
+    public synchronized long getEventStoreSize() {
+        return events.getEncodedSize();
     }
 
     /** This method checks that the remote parser's states are in sync with
@@ -498,20 +642,24 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         //Tool.VERSION
         //System.out.println(listener.version);
 
-        String grammarFileName = debuggerTab.getDelegate().getGrammarEngine().getGrammarFileName();
+        // A parser running in this process is generated from the grammar
+        if(listener == null)
+            return;
+
+        String grammarFileName = delegate.getGrammarFileName();
         String remoteParserGrammarFileName = XJUtils.getLastPathComponent(listener.grammarFileName);
 
         if(!grammarFileName.equals(remoteParserGrammarFileName)) {
             String message = "Warning: the grammar used by the remote parser is not the same ("+remoteParserGrammarFileName+").";
-            XJAlert.display(debuggerTab.getContainer(), "Grammar Mismatch", message);
+            warning("Grammar Mismatch", message);
         }
     }
 
-    /** Check any error coming from the remote parser. Return true if the debuggerTab needs
+    /** Check any error coming from the remote parser. Return true if the debugger needs
      to be paused
      */
     public boolean checkRemoteParserState() {
-        if(remoteParserStateWarned)
+        if(remoteParserStateWarned || listener == null)
             return false;
 
         if(listener.tokenIndexesAreInvalid()) {
@@ -520,7 +668,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
             SwingUtilities.invokeLater(new Runnable() {
                 public void run() {
                     String message = "Invalid token indexes (current index is "+currentTokenIndex+" at event "+currentTokenIndexEventNumber+" while the same index was used at event "+lastTokenIndexEventNumber+"). Make sure that the remote parser implements the getTokenIndex() method of Token. The indexes must be unique for each consumed token.";
-                    XJAlert.display(debuggerTab.getContainer(), "Invalid Token Indexes", message);
+                    warning("Invalid Token Indexes", message);
                 }
             });
 
@@ -529,6 +677,14 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         return false;
     }
 
+    /** Displays a warning or prints it to the console if the recorder has no interface */
+    protected void warning(String title, String message) {
+        if(delegate.getContainer() == null)
+            delegate.getConsole().println(title+": "+message, Console.LEVEL_WARNING);
+        else
+            XJAlert.display(delegate.getContainer(), title, message);
+    }
+
     /** This method keeps track of the last consumed index in order to display
      * useful information if an invalid index is detected
      */
@@ -565,11 +721,39 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     /** This method is called by DBRecorderEventListener for each event received from
-     * the remote parser. It is running on another thread than the event thread.
+     * the remote parser. It is running on the thread reading the socket.
+     */
+    public void ingestEvent(DBEvent event) {
+        ingestion.put(event);
+    }
+
+    /** Returns the queue of the events received or null if the debugger never connected */
+    public DBEventIngestion getIngestion() {
+        return ingestion;
+    }
+
+    /** This method is called by DBEventIngestion for each batch of events queued. It
+     * is running on another thread than the event thread.
+     */
+    public synchronized void listenerEvents(List<DBEvent> batch) {
+        for(DBEvent event : batch) {
+            listenerEvent(event);
+        }
+    }
+
+    /** This method is called in the event dispatch thread while the events are received */
+    public void ingestionDidProgress() {
+        if(delegate != null)
+            delegate.recorderDidProgress();
+    }
+
+    /** Records an event received from the remote parser. It is running on another
+     * thread than the event thread.
      */
     public synchronized void listenerEvent(DBEvent event) {
-        events.add(event);
+        // The grammar name is stored with the event
         handleGrammarName(event);
+        events.add(event);
         recordIndexes(event);
         setPositionToEnd();
 
@@ -621,7 +805,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         try {
             wait();
         } catch (InterruptedException e) {
-            debuggerTab.getConsole().println("recorderThreadBreaksOnEvent: interrupted", Console.LEVEL_WARNING);
+            delegate.getConsole().println("recorderThreadBreaksOnEvent: interrupted", Console.LEVEL_WARNING);
         }
     }
 
@@ -637,7 +821,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         if(!SwingUtilities.isEventDispatchThread())
             SwingUtilities.invokeLater(new PlayEventRunnable(reset));
         else
-            debuggerTab.playEvents(events, getCurrentEventPosition(), reset);
+            delegate.playEvents(events, getCurrentEventPosition(), reset);
     }
 
     public void dialogDidCancel() {
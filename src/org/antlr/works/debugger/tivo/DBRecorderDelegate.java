@@ -0,0 +1,72 @@
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.utils.Console;
+
+import java.awt.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Receiver of the notifications of the recorder. The debugger tab implements it to update
+ * its interface and DBDriver implements it to run the debugger without any interface.
+ */
+public interface DBRecorderDelegate {
+
+    String getGrammarName();
+    String getGrammarFileName();
+    String getGrammarText();
+
+    Console getConsole();
+
+    /** Returns the container of the dialogs displayed by the recorder or null if
+     * the messages should only be printed to the console
+     */
+    Container getContainer();
+
+    void queryGrammarBreakpoints();
+    DBBreakpointMatcher createBreakpointMatcher(Set breakEvents, Collection<DBRuleBreakpoint> ruleBreakpoints);
+
+    void connectionSuccess();
+    void connectionFailed();
+    void connectionCancelled();
+
+    /** Plays the events up to the position. This method is called in the event dispatch thread. */
+    void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset);
+
+    void recorderStatusDidChange();
+    void recorderDidProgress();
+    void recorderDidStop();
+
+}
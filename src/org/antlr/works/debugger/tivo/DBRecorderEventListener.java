@@ -48,7 +48,7 @@ public class DBRecorderEventListener implements DebugEventListener {
     }
 
     public void event(DBEvent event) {
-        recorder.listenerEvent(event);
+        recorder.ingestEvent(event);
     }
 
     public void commence() {
@@ -0,0 +1,101 @@
+package org.antlr.works.debugger.tivo;
+
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Breakpoint on the entry of a rule, optionally conditioned by the type of the
+ * lookahead token LT(1) and by a number of hits.
+ */
+public class DBRuleBreakpoint {
+
+    /** Any lookahead token */
+    public static final int ANY_TOKEN = -1;
+
+    /** Name of the grammar of the rule or null for any grammar */
+    public final String grammarName;
+    public final String ruleName;
+    public final int lookaheadType;
+
+    /** Number of hits before the breakpoint breaks */
+    public final int hitCount;
+
+    protected int hits;
+
+    /** True when the rule has been entered and LT(1) is not yet known */
+    protected boolean waitingLookahead;
+
+    public DBRuleBreakpoint(String grammarName, String ruleName) {
+        this(grammarName, ruleName, ANY_TOKEN, 1);
+    }
+
+    public DBRuleBreakpoint(String grammarName, String ruleName, int lookaheadType, int hitCount) {
+        this.grammarName = grammarName;
+        this.ruleName = ruleName;
+        this.lookaheadType = lookaheadType;
+        this.hitCount = Math.max(1, hitCount);
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public void reset() {
+        hits = 0;
+        waitingLookahead = false;
+    }
+
+    /** Returns true if the breakpoint breaks on this hit */
+    protected boolean hit() {
+        hits++;
+        return hits >= hitCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Enter rule ");
+        if(grammarName != null) {
+            sb.append(grammarName);
+            sb.append(":");
+        }
+        sb.append(ruleName);
+        if(lookaheadType != ANY_TOKEN) {
+            sb.append(" with LT(1)=");
+            sb.append(lookaheadType);
+        }
+        if(hitCount > 1) {
+            sb.append(" after ");
+            sb.append(hitCount);
+            sb.append(" hits");
+        }
+        return sb.toString();
+    }
+}
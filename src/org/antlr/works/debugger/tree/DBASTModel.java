@@ -72,6 +72,61 @@ public class DBASTModel {
         fireDataChanged();
     }
 
+    /** Returns a copy of the trees of the model */
+    public State saveState() {
+        return copyState(rules, nodesMap);
+    }
+
+    /** Replaces the trees by a copy of the state so the state can be restored again later */
+    public void restoreState(State state) {
+        State copy = copyState(state.rules, state.nodesMap);
+        rules = copy.rules;
+        nodesMap = copy.nodesMap;
+        fireDataChanged();
+    }
+
+    private State copyState(Stack<Rule> rules, Map<Integer, ASTNode> nodesMap) {
+        State state = new State();
+        Map<ASTNode, ASTNode> copies = new IdentityHashMap<ASTNode, ASTNode>();
+
+        // Collect every node: the nodes in the map and the nodes in the trees of each rule
+        // (a node can be removed from the map if another node is created with the same id)
+        Stack<ASTNode> nodes = new Stack<ASTNode>();
+        nodes.addAll(nodesMap.values());
+        for (Rule rule : rules) {
+            nodes.addAll(rule.roots);
+        }
+        while(!nodes.isEmpty()) {
+            ASTNode node = nodes.pop();
+            if(copies.containsKey(node))
+                continue;
+
+            copies.put(node, node.copy());
+            for(int index=0; index<node.getChildCount(); index++) {
+                nodes.push((ASTNode)node.getChildAt(index));
+            }
+            if(node.parentNode != null)
+                nodes.push(node.parentNode);
+        }
+
+        for (Map.Entry<ASTNode, ASTNode> entry : copies.entrySet()) {
+            entry.getValue().copyLinks(entry.getKey(), copies);
+        }
+
+        for (Rule rule : rules) {
+            Stack<ASTNode> roots = new Stack<ASTNode>();
+            for (ASTNode root : rule.roots) {
+                roots.push(copies.get(root));
+            }
+            state.rules.push(new Rule(rule.name, roots));
+        }
+        for (Map.Entry<Integer, ASTNode> entry : nodesMap.entrySet()) {
+            state.nodesMap.put(entry.getKey(), copies.get(entry.getValue()));
+        }
+        state.size = copies.size();
+        return state;
+    }
+
     /* Methods used to query the model */
 
     public int getRuleCount() {
@@ -196,6 +251,16 @@ public class DBASTModel {
             return (rules.peek()).roots;
     }
 
+    public class State {
+
+        public Stack<Rule> rules = new Stack<Rule>();
+        public Map<Integer, ASTNode> nodesMap = new HashMap<Integer, ASTNode>();
+
+        /** Number of nodes in the trees */
+        public int size;
+
+    }
+
     public class Rule {
 
         public String name;
@@ -279,6 +344,28 @@ public class DBASTModel {
             }
         }
 
+        /** Returns a copy of the node without its parent and children */
+        public ASTNode copy() {
+            ASTNode node = new ASTNode(id);
+            node.nil = nil;
+            node.token = token;
+            node.location = location;
+            node.color = color;
+            return node;
+        }
+
+        /** Links the copy of a node to the copies of its parent and children.
+         * The children are not reparented: a node can be the child of several nodes.
+         */
+        public void copyLinks(ASTNode node, Map<ASTNode, ASTNode> copies) {
+            Vector<ASTNode> copiedChildren = new Vector<ASTNode>(node.children.size());
+            for (Object child : node.children) {
+                copiedChildren.add(copies.get((ASTNode)child));
+            }
+            children = copiedChildren;
+            parentNode = node.parentNode == null ? null : copies.get(node.parentNode);
+        }
+
         public String toString() {
 			if(nil)
                 return "nil";
@@ -12,10 +12,8 @@ import org.antlr.xjlib.foundation.notification.XJNotificationObserver;
 
 import javax.swing.tree.TreeNode;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.*;
 import java.util.List;
-import java.util.Stack;
 /*
 
 [The "BSD licence"]
@@ -177,6 +175,64 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
         setLastNode(b.getLastNode());
     }
 
+    /** Returns a copy of the tree and of the stacks of the model */
+    public State saveState() {
+        return copyState(rules, backtrackStack, lastNode, location);
+    }
+
+    /** Replaces the tree and the stacks by a copy of the state so the state
+     * can be restored again later
+     */
+    public void restoreState(State state) {
+        State copy = copyState(state.rules, state.backtrackStack, state.lastNode, state.location);
+
+        super.clear();
+        rules = copy.rules;
+        backtrackStack = copy.backtrackStack;
+        setLastNode(copy.lastNode);
+        location = copy.location;
+        fireDataChanged();
+    }
+
+    private static State copyState(Stack<ParseTreeNode> rules, Stack<Backtrack> backtrackStack,
+                                   TreeNode lastNode, DBEventLocation location)
+    {
+        State state = new State();
+        Map<TreeNode, ParseTreeNode> copies = new IdentityHashMap<TreeNode, ParseTreeNode>();
+
+        // Copy the tree from its root without recursion: the tree can be very deep
+        ParseTreeNode root = rules.firstElement();
+        copies.put(root, root.copy());
+        Stack<ParseTreeNode> nodes = new Stack<ParseTreeNode>();
+        nodes.push(root);
+        while(!nodes.isEmpty()) {
+            ParseTreeNode node = nodes.pop();
+            ParseTreeNode copy = copies.get(node);
+            for(int index=0; index<node.getChildCount(); index++) {
+                ParseTreeNode child = (ParseTreeNode)node.getChildAt(index);
+                ParseTreeNode childCopy = child.copy();
+                copy.add(childCopy);
+                copies.put(child, childCopy);
+                nodes.push(child);
+            }
+        }
+
+        for (ParseTreeNode rule : rules) {
+            state.rules.push(copies.get(rule));
+        }
+        for (Backtrack backtrack : backtrackStack) {
+            Backtrack b = new Backtrack(backtrack.level, backtrack.lookaheadTokenColor);
+            for (DBTreeNode node : backtrack.nodes) {
+                b.nodes.add(copies.get(node));
+            }
+            state.backtrackStack.push(b);
+        }
+        state.lastNode = lastNode == null ? null : copies.get(lastNode);
+        state.location = location;
+        state.size = copies.size();
+        return state;
+    }
+
     public void notificationFire(Object source, String name) {
         if(name.equals(AWPrefsDialog.NOTIF_PREFS_APPLIED)) {
             initColors();
@@ -202,6 +258,14 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
             super(token, location);
         }
 
+        public ParseTreeNode copy() {
+            ParseTreeNode node = new ParseTreeNode(s, location);
+            node.e = e;
+            node.token = token;
+            node.color = color;
+            return node;
+        }
+
         public String toString() {
             if(s != null)
                 return s;
@@ -213,6 +277,18 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
 
     }
 
+    public static class State {
+
+        public Stack<ParseTreeNode> rules = new Stack<ParseTreeNode>();
+        public Stack<Backtrack> backtrackStack = new Stack<Backtrack>();
+        public TreeNode lastNode;
+        public DBEventLocation location;
+
+        /** Number of nodes in the tree */
+        public int size;
+
+    }
+
     public static class Backtrack {
 
         public int level;
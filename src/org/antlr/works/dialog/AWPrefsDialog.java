@@ -264,6 +264,7 @@ public class AWPrefsDialog extends XJPanel {
 
         getPreferences().bindToPreferences(detachablePanelChildrenButton, AWPrefs.PREF_DETACHABLE_CHILDREN, AWPrefs.DEFAULT_DETACHABLE_CHILDREN);
         getPreferences().bindToPreferences(askGenButton, AWPrefs.PREF_DEBUGGER_ASK_GEN, AWPrefs.DEFAULT_DEBUGGER_ASK_GEN);
+        getPreferences().bindToPreferences(inProcessButton, AWPrefs.PREF_DEBUGGER_IN_PROCESS, AWPrefs.DEFAULT_DEBUGGER_IN_PROCESS);
     }
 
     public void prepareAdvancedTab() {
@@ -534,6 +535,7 @@ public class AWPrefsDialog extends XJPanel {
         label36 = new JLabel();
         detachablePanelChildrenButton = new JCheckBox();
         askGenButton = new JCheckBox();
+        inProcessButton = new JCheckBox();
         panel1 = new JPanel();
         label8 = new JLabel();
         checkGrammarSuccessButton = new JCheckBox();
@@ -1158,6 +1160,8 @@ public class AWPrefsDialog extends XJPanel {
         						FormFactory.LINE_GAP_ROWSPEC,
         						FormFactory.DEFAULT_ROWSPEC,
         						FormFactory.LINE_GAP_ROWSPEC,
+        						FormFactory.DEFAULT_ROWSPEC,
+        						FormFactory.LINE_GAP_ROWSPEC,
         						FormFactory.DEFAULT_ROWSPEC
         					}));
 
@@ -1267,6 +1271,10 @@ public class AWPrefsDialog extends XJPanel {
         				//---- askGenButton ----
         				askGenButton.setText("Ask before generating and compiling");
         				tabDebugger.add(askGenButton, cc.xywh(5, 21, 5, 1));
+
+        				//---- inProcessButton ----
+        				inProcessButton.setText("Run the parser in ANTLRWorks (no Java process)");
+        				tabDebugger.add(inProcessButton, cc.xywh(5, 23, 5, 1));
         			}
         			tabbedPane1.addTab("Debugger", tabDebugger);
 
@@ -1573,6 +1581,7 @@ public class AWPrefsDialog extends XJPanel {
     private JLabel label36;
     private JCheckBox detachablePanelChildrenButton;
     private JCheckBox askGenButton;
+    private JCheckBox inProcessButton;
     private JPanel panel1;
     private JLabel label8;
     private JCheckBox checkGrammarSuccessButton;
@@ -10,9 +10,8 @@ import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.*;
 import java.util.List;
-import java.util.Set;
 /*
 
 [The "BSD licence"]
@@ -50,6 +49,17 @@ public class EditorInspector {
     private DecisionDFAEngine decisionDFAEngine;
     private InspectorDelegate delegate;
 
+    /** Generations of the inputs of the diagnostics: the parsing of the grammar
+     * and its analysis by ANTLR.
+     */
+    private int syntaxGeneration;
+    private int analysisGeneration;
+
+    /** Diagnostics of each category, computed once per generation of their inputs */
+    private Diagnostics errors;
+    private Diagnostics warnings;
+    private Diagnostics decisionDFAs;
+
     public EditorInspector(GrammarEngine engine, DecisionDFAEngine decisionDFAEngine, InspectorDelegate delegate) {
         this.engine = engine;
         this.decisionDFAEngine = decisionDFAEngine;
@@ -62,44 +72,70 @@ public class EditorInspector {
         delegate = null;
     }
 
-    public List<EditorInspectorItem> getErrors() {
-        List<EditorInspectorItem> errors = new ArrayList<EditorInspectorItem>();
-        discoverInvalidGrammarName(errors);
-        discoverInvalidCharLiteralTokens(errors);
-        discoverUndefinedReferences(errors);
-        discoverUndefinedImports(errors);
-        discoverDuplicateRules(errors);
-        return errors;
+    /** Invalidates the diagnostics computed from the parsing of the grammar */
+    public synchronized void grammarDidParse() {
+        syntaxGeneration++;
     }
 
-    public List<EditorInspectorItem> getWarnings() {
-        List<EditorInspectorItem> warnings = new ArrayList<EditorInspectorItem>();
-        discoverLeftRecursionRules(warnings);
-        discoverLeftRecursiveRulesSet(warnings);
-        return warnings;
+    /** Invalidates the diagnostics computed from the analysis of the grammar */
+    public synchronized void grammarDidAnalyze() {
+        analysisGeneration++;
     }
 
-    public List<EditorInspectorItem> getDecisionDFAs() {
-        List<EditorInspectorItem> items = new ArrayList<EditorInspectorItem>();
-        discoverDecisionDFAs(items);
-        return items;
+    public synchronized List<EditorInspectorItem> getErrors() {
+        return getErrorDiagnostics().items;
+    }
+
+    public synchronized List<EditorInspectorItem> getWarnings() {
+        return getWarningDiagnostics().items;
     }
 
-    protected List<EditorInspectorItem> getAllItemsAtIndex(int index) {
+    public synchronized List<EditorInspectorItem> getDecisionDFAs() {
+        return getDecisionDFADiagnostics().items;
+    }
+
+    /** Returns the items of all the categories containing the index */
+    public synchronized List<EditorInspectorItem> getAllItemsAtIndex(int index) {
         List<EditorInspectorItem> items = new ArrayList<EditorInspectorItem>();
-        items.addAll(getItemsAtIndex(getErrors(), index));
-        items.addAll(getItemsAtIndex(getWarnings(), index));
-        items.addAll(getItemsAtIndex(getDecisionDFAs(), index));
+        getErrorDiagnostics().getItemsAtIndex(index, items);
+        getWarningDiagnostics().getItemsAtIndex(index, items);
+        getDecisionDFADiagnostics().getItemsAtIndex(index, items);
         return items;
     }
 
-    protected List<EditorInspectorItem> getItemsAtIndex(List<EditorInspectorItem> items, int index) {
-        List<EditorInspectorItem> filteredItems = new ArrayList<EditorInspectorItem>();
-        for (EditorInspectorItem item : items) {
-            if (index >= item.startIndex && index <= item.endIndex)
-                filteredItems.add(item);
+    private Diagnostics getErrorDiagnostics() {
+        // The name of the file is part of the diagnostics (invalid grammar name)
+        String fileName = delegate == null ? null : delegate.getFileName();
+        if(errors == null || !errors.isValid(syntaxGeneration, 0, fileName)) {
+            List<EditorInspectorItem> items = new ArrayList<EditorInspectorItem>();
+            discoverInvalidGrammarName(items);
+            discoverInvalidCharLiteralTokens(items);
+            discoverUndefinedReferences(items);
+            discoverUndefinedImports(items);
+            discoverDuplicateRules(items);
+            errors = new Diagnostics(items, syntaxGeneration, 0, fileName);
+        }
+        return errors;
+    }
+
+    private Diagnostics getWarningDiagnostics() {
+        if(warnings == null || !warnings.isValid(syntaxGeneration, analysisGeneration, null)) {
+            List<EditorInspectorItem> items = new ArrayList<EditorInspectorItem>();
+            discoverLeftRecursionRules(items);
+            discoverLeftRecursiveRulesSet(items);
+            warnings = new Diagnostics(items, syntaxGeneration, analysisGeneration, null);
+        }
+        return warnings;
+    }
+
+    private Diagnostics getDecisionDFADiagnostics() {
+        int generation = decisionDFAEngine == null ? 0 : decisionDFAEngine.getGeneration();
+        if(decisionDFAs == null || !decisionDFAs.isValid(generation, 0, null)) {
+            List<EditorInspectorItem> items = new ArrayList<EditorInspectorItem>();
+            discoverDecisionDFAs(items);
+            decisionDFAs = new Diagnostics(items, generation, 0, null);
         }
-        return filteredItems;
+        return decisionDFAs;
     }
 
     protected void discoverInvalidGrammarName(List<EditorInspectorItem> items) {
@@ -223,7 +259,88 @@ public class EditorInspector {
     }
 
     protected void discoverDecisionDFAs(List<EditorInspectorItem> items) {
-        items.addAll(decisionDFAEngine.getDecisionDFAItems());
+        if(decisionDFAEngine != null)
+            items.addAll(decisionDFAEngine.getDecisionDFAItems());
+    }
+
+    /**
+     * The items of a category of diagnostics, sorted by start index for the lookup by position.
+     * The items can overlap: the largest end index of the items up to each position in the
+     * sorted array limits the scan needed to find all the items containing an index.
+     */
+    private static class Diagnostics {
+
+        public final List<EditorInspectorItem> items;
+
+        private final int generation1;
+        private final int generation2;
+        private final String key;
+
+        private final EditorInspectorItem[] sorted;
+        private final int[] ordinals;
+        private final int[] maxEnds;
+
+        public Diagnostics(List<EditorInspectorItem> items, int generation1, int generation2, String key) {
+            this.items = Collections.unmodifiableList(items);
+            this.generation1 = generation1;
+            this.generation2 = generation2;
+            this.key = key;
+
+            final int size = items.size();
+            Integer[] order = new Integer[size];
+            for(int i=0; i<size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return Diagnostics.this.items.get(a).startIndex - Diagnostics.this.items.get(b).startIndex;
+                }
+            });
+
+            sorted = new EditorInspectorItem[size];
+            ordinals = new int[size];
+            maxEnds = new int[size];
+            for(int i=0; i<size; i++) {
+                ordinals[i] = order[i];
+                sorted[i] = items.get(order[i]);
+                maxEnds[i] = i == 0 ? sorted[i].endIndex : Math.max(maxEnds[i-1], sorted[i].endIndex);
+            }
+        }
+
+        public boolean isValid(int generation1, int generation2, String key) {
+            return this.generation1 == generation1 && this.generation2 == generation2
+                    && (this.key == null ? key == null : this.key.equals(key));
+        }
+
+        /** Appends the items containing the index, in the order of the list of items */
+        public void getItemsAtIndex(int index, List<EditorInspectorItem> result) {
+            // Last item starting at or before the index
+            int low = 0;
+            int high = sorted.length-1;
+            while(low <= high) {
+                int mid = (low + high) >>> 1;
+                if(sorted[mid].startIndex <= index) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            List<Integer> matches = null;
+            for(int i = high; i >= 0 && maxEnds[i] >= index; i--) {
+                if(sorted[i].endIndex >= index) {
+                    if(matches == null) matches = new ArrayList<Integer>();
+                    matches.add(ordinals[i]);
+                }
+            }
+            if(matches == null)
+                return;
+
+            Collections.sort(matches);
+            for(int ordinal : matches) {
+                result.add(items.get(ordinal));
+            }
+        }
     }
 
     public class ItemUndefinedReference extends EditorInspectorItem {
@@ -98,7 +98,8 @@ public class EditorPersistence {
         for (Object object : objects) {
             EditorPersistentObject o = (EditorPersistentObject) object;
             EditorPersistentObject oldObject = m.get(o.getPersistentID());
-            if (oldObject != null)
+            // Rules and actions reused by the parser already hold their state
+            if (oldObject != null && oldObject != o)
                 o.persistentAssign(oldObject);
         }
     }
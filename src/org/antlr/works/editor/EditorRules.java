@@ -40,6 +40,7 @@ import org.antlr.works.grammar.element.ElementGroup;
 import org.antlr.works.grammar.element.ElementReference;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.grammar.syntax.GrammarSyntaxChanges;
 import org.antlr.works.grammar.syntax.GrammarSyntaxLexer;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.stats.StatisticsAW;
@@ -388,26 +389,11 @@ public class EditorRules implements XJTreeDelegate {
     }
 
     public List<ElementReference> getReferencesInRule(ElementRule rule) {
-        if(getGrammarEngine().getRules() == null)
-            return null;
-
-        List<ElementReference> refs = new ArrayList<ElementReference>();
-        for (ElementReference r : getGrammarEngine().getReferences()) {
-            if (r.rule == rule)
-                refs.add(r);
-        }
-        return refs;
+        return getGrammarEngine().getReferencesInRule(rule);
     }
 
     public ElementRule getEnclosingRuleAtPosition(int pos) {
-        if(getGrammarEngine().getRules() == null)
-            return null;
-
-        for (ElementRule r : getGrammarEngine().getRules()) {
-            if (r.containsIndex(pos))
-                return r;
-        }
-        return null;
+        return getGrammarEngine().getRuleAtPosition(pos);
     }
 
     public ElementRule selectRuleInTreeAtPosition(int pos) {
@@ -425,28 +411,15 @@ public class EditorRules implements XJTreeDelegate {
         if(programmaticallySelectingRule || getGrammarEngine().getRules() == null)
             return null;
 
-        ElementRule rule = null;
         programmaticallySelectingRule = true;
-        for (ElementRule r : getGrammarEngine().getRules()) {
-            if (r.name.equals(name)) {
-                selectRuleInTree(r);
-                rule = r;
-                break;
-            }
-        }
+        ElementRule rule = getGrammarEngine().getRuleWithName(name);
+        selectRuleInTree(rule);
         programmaticallySelectingRule = false;
         return rule;
     }
 
     public ElementRule getRuleAtIndex(int index) {
-        if(getGrammarEngine().getRules() == null)
-            return null;
-
-        for (ElementRule r : getGrammarEngine().getRules()) {
-            if (index >= r.getStartIndex() && index <= r.getEndIndex())
-                return r;
-        }
-        return null;
+        return getGrammarEngine().getRuleAtPosition(index);
     }
 
     public boolean isRuleAtIndex(int index) {
@@ -620,8 +593,69 @@ public class EditorRules implements XJTreeDelegate {
         }
     }
 
-    public void parserDidParse() {
-        rebuildTree();
+    /**
+     * Updates the rules of the tree in place if the parsing did not add or remove any rule:
+     * this avoids rebuilding the whole tree (and its expansion and selection state) after each edit.
+     *
+     * @return true if the tree has been updated
+     */
+    private boolean updateTree(GrammarSyntaxChanges changes) {
+        if(changes == null)
+            return false;
+
+        if(!changes.getAddedRules().isEmpty() || !changes.getRemovedRules().isEmpty())
+            return false;
+
+        List<ElementRule> rules = getGrammarEngine().getRules();
+        List<ElementGroup> groups = getGrammarEngine().getGroups();
+        if(rules == null || groups == null || !groups.isEmpty())
+            return false;
+
+        if(rulesTreeRootNode.getChildCount() != rules.size())
+            return false;
+
+        Map<String,ElementRule> rulesByName = new HashMap<String, ElementRule>();
+        for(ElementRule rule : rules) {
+            rulesByName.put(rule.name, rule);
+        }
+        if(sort && rulesByName.size() != rules.size())
+            return false;
+
+        // Make sure each node matches a rule before modifying the tree
+        List<ElementRule> nodeRules = new ArrayList<ElementRule>(rules.size());
+        for(int index=0; index<rulesTreeRootNode.getChildCount(); index++) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) rulesTreeRootNode.getChildAt(index);
+            RuleTreeUserObject n = (RuleTreeUserObject) node.getUserObject();
+            if(n.rule == null || !node.isLeaf())
+                return false;
+
+            ElementRule rule = sort ? rulesByName.get(n.rule.name) : rules.get(index);
+            if(rule == null || !rule.name.equals(n.rule.name))
+                return false;
+
+            nodeRules.add(rule);
+        }
+
+        for(int index=0; index<nodeRules.size(); index++) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) rulesTreeRootNode.getChildAt(index);
+            RuleTreeUserObject n = (RuleTreeUserObject) node.getUserObject();
+            if(n.rule != nodeRules.get(index)) {
+                n.rule = nodeRules.get(index);
+                rulesTreeModel.nodeChanged(node);
+            }
+        }
+        rulesTree.repaint();
+        return true;
+    }
+
+    /**
+     * Updates the tree of rules after a parsing.
+     *
+     * @param changes the rules changed by the parsing or null if they are not known
+     */
+    public void parserDidParse(GrammarSyntaxChanges changes) {
+        if(!updateTree(changes))
+            rebuildTree();
         if(selectNextRule) {
             // Can be set by RuleMoveDown() class when a rule is moved down. Selection has to occurs here
             // after rules have been parsed. We use this flag to select the next rule instead of the current one.
@@ -43,6 +43,10 @@ public abstract class GrammarWindowTab {
         this.window = window;
     }
 
+    public GrammarWindow getWindow() {
+        return window;
+    }
+
     public boolean canExportToEPS() { return false; }
     public boolean canExportToBitmap() { return false; }
     public boolean canExportToDOT() { return false; }
@@ -93,4 +93,13 @@ public class GoToHistory {
             currentIndex = history.size()-1;
         return history.get(currentIndex);
     }
+
+    /** Returns up to 'max' positions of the history, the most recent first */
+    public List<Integer> getRecentPositions(int max) {
+        List<Integer> positions = new ArrayList<Integer>();
+        for(int index = history.size()-1; index >= 0 && positions.size() < max; index--) {
+            positions.add(history.get(index));
+        }
+        return positions;
+    }
 }
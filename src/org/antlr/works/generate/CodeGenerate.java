@@ -31,7 +31,6 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.generate;
 
-import org.antlr.Tool;
 import org.antlr.tool.ErrorManager;
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.prefs.AWPrefs;
@@ -94,14 +93,14 @@ public class CodeGenerate implements Runnable {
 
         String[] params;
         if(debug)
-            params = new String[] { "-debug", "-o", getOutputPath(), "-lib", window.getFileFolder(), window.getFilePath() };
+            params = new String[] { "-debug", "-o", getOutputPath(), "-lib", window.getFileFolder() };
         else
-            params = new String[] { "-o", getOutputPath(), "-lib", window.getFileFolder(), window.getFilePath() };
+            params = new String[] { "-o", getOutputPath(), "-lib", window.getFileFolder() };
 
         new File(getOutputPath()).mkdirs();
 
-        Tool antlr = new Tool(Utils.concat(params, AWPrefs.getANTLR3Options()));
-        antlr.process();
+        CodeGenerateTool antlr = CodeGenerateTool.getShared(Utils.concat(params, AWPrefs.getANTLR3Options()));
+        antlr.generate(window.getFilePath());
 
         boolean success = !el.hasErrors();
         if(success) {
@@ -0,0 +1,189 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.generate;
+
+import org.antlr.Tool;
+import org.antlr.misc.BitSet;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.Grammar;
+import org.antlr.works.utils.ErrorListener;
+import org.antlr.works.utils.ErrorListenerThread;
+import org.antlr.works.utils.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * ANTLR tool generating the grammars inside ANTLRWorks. It does what Tool.process() does
+ * for one grammar file, except that the parser and the lexer of a combined grammar are
+ * generated concurrently: they belong to two independent composites. The grammars imported
+ * by a composite share its NFA and are generated by the thread of their composite.
+ *
+ * The tool doesn't keep any state between two generations: the same instance is reused
+ * as long as the options don't change (see getShared).
+ */
+public class CodeGenerateTool extends Tool {
+
+    private static CodeGenerateTool shared;
+
+    private final String[] args;
+
+    public static synchronized CodeGenerateTool getShared(String[] args) {
+        if(shared == null || !Arrays.equals(shared.args, args)) {
+            shared = new CodeGenerateTool(args);
+        }
+        return shared;
+    }
+
+    public CodeGenerateTool(String[] args) {
+        super(args);
+        this.args = args.clone();
+    }
+
+    /**
+     * Generates the recognizers of the grammar file. The errors are reported to
+     * the error listener of the current thread.
+     */
+    public void generate(String grammarFileName) {
+        resetErrorState();
+
+        if(isDepend() || isReport() || isPrintGrammar() || isProfile()) {
+            // These options print or write something between the generation steps
+            new Tool(Utils.concat(args, new String[] { grammarFileName })).process();
+            return;
+        }
+
+        try {
+            Grammar root = getRootGrammar(grammarFileName);
+            root.composite.assignTokenTypes();
+            root.addRulesForSyntacticPredicates();
+            root.composite.defineGrammarSymbols();
+            root.composite.createNFAs();
+
+            if(ErrorManager.doNotAttemptAnalysis()) {
+                return;
+            }
+
+            CompositeGeneration lexer = null;
+            String lexerGrammarText = root.getLexerGrammar();
+            if(root.type == Grammar.COMBINED && lexerGrammarText != null) {
+                lexer = new CompositeGeneration(createImplicitLexer(root, lexerGrammarText));
+                lexer.start();
+            }
+
+            try {
+                generateRecognizer(root);
+            } finally {
+                if(lexer != null) {
+                    lexer.join(ErrorListener.getThreadInstance());
+                }
+            }
+        } catch (IOException e) {
+            ErrorManager.error(ErrorManager.MSG_CANNOT_OPEN_FILE, grammarFileName, e);
+        } catch (InterruptedException e) {
+            ErrorManager.error(ErrorManager.MSG_INTERNAL_ERROR, grammarFileName, e);
+        } catch (Exception e) {
+            ErrorManager.error(ErrorManager.MSG_INTERNAL_ERROR, grammarFileName, e);
+        }
+    }
+
+    /**
+     * Errors of a previous generation in this thread would prevent the analysis. Note that
+     * ErrorManager.resetErrorState() cannot be used: it removes the listeners of all the threads.
+     */
+    private static void resetErrorState() {
+        ErrorManager.ErrorState state = ErrorManager.getErrorState();
+        state.errors = 0;
+        state.warnings = 0;
+        state.infos = 0;
+        state.errorMsgIDs = new BitSet();
+        state.warningMsgIDs = new BitSet();
+    }
+
+    private Grammar createImplicitLexer(Grammar root, String lexerGrammarText) throws Exception {
+        String fileName = root.getImplicitlyGeneratedLexerFileName();
+        if(!deleteTempLexer) {
+            // -Xsavelexer: keep the lexer grammar in the output directory
+            Writer w = getOutputFile(root, fileName);
+            try {
+                w.write(lexerGrammarText);
+            } finally {
+                w.close();
+            }
+        }
+
+        Grammar lexer = new Grammar(this);
+        lexer.composite.watchNFAConversion = internalOption_watchNFAConversion;
+        lexer.implicitLexer = true;
+        lexer.setFileName(new File(getFileDirectory(fileName), fileName).toString());
+        lexer.importTokenVocabulary(root);
+
+        StringReader reader = new StringReader(lexerGrammarText);
+        try {
+            lexer.parseAndBuildAST(reader);
+        } finally {
+            reader.close();
+        }
+
+        lexer.composite.assignTokenTypes();
+        lexer.addRulesForSyntacticPredicates();
+        lexer.composite.defineGrammarSymbols();
+        lexer.composite.createNFAs();
+        return lexer;
+    }
+
+    /** Generates a composite in its own thread. Its messages are added to the error listener
+     * of the thread that joins it.
+     */
+    private class CompositeGeneration extends ErrorListenerThread {
+
+        private final Grammar grammar;
+
+        public CompositeGeneration(Grammar grammar) {
+            super("ANTLR Code Generation");
+            this.grammar = grammar;
+        }
+
+        @Override
+        protected void execute() {
+            try {
+                generateRecognizer(grammar);
+            } catch(Exception e) {
+                ErrorManager.error(ErrorManager.MSG_INTERNAL_ERROR, grammar.getFileName(), e);
+            }
+        }
+    }
+
+}
@@ -32,10 +32,15 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.grammar;
 
 import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.grammar.antlr.ANTLRGrammarAnalysisListener;
+import org.antlr.works.grammar.antlr.GrammarError;
 import org.antlr.works.grammar.antlr.GrammarResult;
+import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
 
-public class CheckGrammar implements Runnable {
+import javax.swing.*;
+
+public class CheckGrammar implements Runnable, ANTLRGrammarAnalysisListener {
 
     private volatile CheckGrammarDelegate delegate;
     private volatile GrammarWindow window;
@@ -67,7 +72,8 @@ public class CheckGrammar implements Runnable {
         delegate.checkGrammarDidBegin(this);
         GrammarResult result;
         try {
-            result = window.getGrammarEngine().analyze();
+            window.getGrammarEngine().getANTLRGrammarEngine().setConcurrentAnalysis(AWPrefs.isConcurrentAnalysis());
+            result = window.getGrammarEngine().analyze(this);
         } catch (Exception e) {
             window.getConsoleTab().println(e);
             // Result cannot be null, so report the exception
@@ -78,4 +84,15 @@ public class CheckGrammar implements Runnable {
         }
     }
 
+    public void analysisDidReportError(final GrammarError error, final String ruleName) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                CheckGrammarDelegate d = delegate;
+                if(!cancelled && d != null) {
+                    d.checkGrammarDidReportError(CheckGrammar.this, error, ruleName);
+                }
+            }
+        });
+    }
+
 }
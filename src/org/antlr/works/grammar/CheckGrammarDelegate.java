@@ -31,9 +31,11 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.grammar;
 
+import org.antlr.works.grammar.antlr.GrammarError;
 import org.antlr.works.grammar.antlr.GrammarResult;
 
 public interface CheckGrammarDelegate {
     public void checkGrammarDidBegin(CheckGrammar source);
+    public void checkGrammarDidReportError(CheckGrammar source, GrammarError error, String ruleName);
     public void checkGrammarDidEnd(CheckGrammar source, GrammarResult errorMsg);
 }
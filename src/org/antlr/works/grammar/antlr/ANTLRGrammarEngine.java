@@ -55,6 +55,10 @@ public interface ANTLRGrammarEngine {
     void computeRuleErrors(ElementRule rule);
 
     GrammarResult analyze() throws Exception;
+    GrammarResult analyze(ANTLRGrammarAnalysisListener listener) throws Exception;
     void cancel();
 
+    void setConcurrentAnalysis(boolean flag);
+    boolean isConcurrentAnalysis();
+
 }
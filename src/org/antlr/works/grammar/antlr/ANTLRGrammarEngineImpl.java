@@ -33,6 +33,7 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.grammar.antlr;
 
 import antlr.TokenStreamException;
+import org.antlr.analysis.DecisionProbe;
 import org.antlr.analysis.NFAState;
 import org.antlr.runtime.RecognitionException;
 import org.antlr.tool.*;
@@ -41,13 +42,12 @@ import org.antlr.works.grammar.element.ElementGrammarName;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.utils.ErrorListener;
+import org.antlr.works.utils.ErrorListenerThread;
 
 import javax.swing.*;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
 
@@ -58,6 +58,12 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     private boolean needsToCreateGrammar;
     private boolean needsToAnalyzeGrammar;
 
+    /** True to analyze the parser and the lexer of a combined grammar concurrently */
+    private boolean concurrentAnalysis = true;
+
+    /** Errors built while the analysis was streaming them, indexed by message */
+    private final Map<Object, GrammarError> streamedErrors = new IdentityHashMap<Object, GrammarError>();
+
     private final GrammarResult createGrammarResult = new GrammarResult();
     private final GrammarResult analyzeResult = new GrammarResult();
 
@@ -85,6 +91,14 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         needsToAnalyzeGrammar = true;
     }
 
+    public void setConcurrentAnalysis(boolean flag) {
+        this.concurrentAnalysis = flag;
+    }
+
+    public boolean isConcurrentAnalysis() {
+        return concurrentAnalysis;
+    }
+
     public Grammar getParserGrammar() {
         return parserGrammar;
     }
@@ -255,6 +269,10 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     public GrammarResult analyze() throws Exception {
+        return analyze(null);
+    }
+
+    public GrammarResult analyze(ANTLRGrammarAnalysisListener listener) throws Exception {
         // if there is no need to analyze the grammar, return the previous result
         if(!needsToAnalyzeGrammar) {
             GrammarResult r = analyzeCompleted(null);
@@ -265,12 +283,13 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             }
         }
 
+        // Create the grammars first: it sets and removes its own error listener
+        createGrammars();
+
         // Set the error listener
         ErrorListener el = ErrorListener.getThreadInstance();
         ErrorManager.setErrorListener(el);
 
-        createGrammars();
-
         Grammar g = getDefaultGrammar();
         if(g == null) {
             return analyzeCompleted(el);
@@ -286,16 +305,29 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             return analyzeCompleted(el);
         }
 
+        ErrorListener previousForwardListener = el.forwardListener;
+        AnalysisStream stream = listener == null ? null : new AnalysisStream(listener);
+        el.setForwardListener(stream);
         try {
             if ( g.nfa==null ) {
                 g.composite.createNFAs();
             }
-            g.createLookaheadDFAs();
-            if(engine.isCombinedGrammar()) {
-                // If the grammar is combined, analyze also the lexer
-                if(lexerGrammar != null) {
-                    lexerGrammar.composite.createNFAs();
-                    lexerGrammar.createLookaheadDFAs();
+
+            // If the grammar is combined, analyze also the lexer
+            Grammar lexer = engine.isCombinedGrammar() ? lexerGrammar : null;
+            if(lexer != null && concurrentAnalysis) {
+                LexerAnalysis lexerAnalysis = new LexerAnalysis(lexer, stream);
+                lexerAnalysis.start();
+                try {
+                    g.createLookaheadDFAs();
+                } finally {
+                    lexerAnalysis.join(el);
+                }
+            } else {
+                g.createLookaheadDFAs();
+                if(lexer != null) {
+                    lexer.composite.createNFAs();
+                    lexer.createLookaheadDFAs();
                 }
             }
 
@@ -303,6 +335,11 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             markRulesWithWarningsOrErrors();
         } catch(Exception e) {
             // ignore
+        } finally {
+            el.setForwardListener(previousForwardListener);
+            synchronized(streamedErrors) {
+                streamedErrors.clear();
+            }
         }
 
         return analyzeCompleted(el);
@@ -357,9 +394,14 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     public void cancel() {
+        // ANTLR checks the abort flag before each decision, so both analyses
+        // stop after the decision they are currently converting
         Grammar g = getDefaultGrammar();
         if(g != null)
             g.externallyAbortNFAToDFAConversion();
+        Grammar lexer = lexerGrammar;
+        if(lexer != null && lexer != g)
+            lexer.externallyAbortNFAToDFAConversion();
     }
 
     private void buildNonDeterministicErrors(ErrorListener el) {
@@ -373,12 +415,107 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     private void buildError(Object o) {
+        GrammarError error;
+        synchronized(streamedErrors) {
+            error = streamedErrors.get(o);
+        }
+        if(error == null)
+            error = createError(o);
+        if(error != null)
+            errors.add(error);
+    }
+
+    private GrammarError createError(Object o) {
+        if(o instanceof GrammarUnreachableAltsMessage)
+            return buildUnreachableAltsError((GrammarUnreachableAltsMessage)o);
+        else if(o instanceof GrammarNonDeterminismMessage)
+            return buildNonDeterministicError((GrammarNonDeterminismMessage)o);
+        else if(o instanceof NonRegularDecisionMessage)
+            return buildNonRegularDecisionError((NonRegularDecisionMessage)o);
+        else
+            return null;
+    }
+
+    private static String getDecisionRuleName(Object o) {
+        DecisionProbe probe = null;
         if(o instanceof GrammarUnreachableAltsMessage)
-            errors.add(buildUnreachableAltsError((GrammarUnreachableAltsMessage)o));
+            probe = ((GrammarUnreachableAltsMessage)o).probe;
         else if(o instanceof GrammarNonDeterminismMessage)
-            errors.add(buildNonDeterministicError((GrammarNonDeterminismMessage)o));
+            probe = ((GrammarNonDeterminismMessage)o).probe;
         else if(o instanceof NonRegularDecisionMessage)
-            errors.add(buildNonRegularDecisionError((NonRegularDecisionMessage)o));
+            probe = ((NonRegularDecisionMessage)o).probe;
+
+        if(probe == null || probe.dfa == null)
+            return null;
+
+        NFAState state = probe.dfa.getNFADecisionStartState();
+        return state == null || state.enclosingRule == null ? null : state.enclosingRule.name;
+    }
+
+    /**
+     * Forwards the errors to the analysis listener as soon as a decision reports them.
+     * The errors are kept so they are not built again once the analysis completes.
+     */
+    private class AnalysisStream extends ErrorListener {
+
+        private final ANTLRGrammarAnalysisListener listener;
+
+        public AnalysisStream(ANTLRGrammarAnalysisListener listener) {
+            this.listener = listener;
+            setPrintToConsole(false);
+        }
+
+        @Override
+        public void error(Message msg) {
+            report(msg);
+        }
+
+        @Override
+        public void warning(Message msg) {
+            report(msg);
+        }
+
+        private void report(Message msg) {
+            GrammarError error = createError(msg);
+            if(error == null)
+                return;
+
+            synchronized(streamedErrors) {
+                streamedErrors.put(msg, error);
+            }
+            listener.analysisDidReportError(error, getDecisionRuleName(msg));
+        }
+    }
+
+    /**
+     * Analyzes the implicit lexer of a combined grammar in its own thread. The lexer
+     * is a separate grammar with its own NFA and decisions so it can be converted
+     * while the parser is. The decisions of a single grammar cannot be converted
+     * concurrently: ANTLR records the syntactic predicates used by each decision in
+     * the grammar and converts the predicate rules only if an earlier decision uses them.
+     *
+     * The lexer messages are merged into the listener of the caller once the analysis
+     * is complete, in the order they would have been reported by a serial analysis.
+     */
+    private static class LexerAnalysis extends ErrorListenerThread {
+
+        private final Grammar lexer;
+
+        public LexerAnalysis(Grammar lexer, ErrorListener stream) {
+            super("ANTLR Lexer Analysis");
+            this.lexer = lexer;
+            this.listener.setForwardListener(stream);
+        }
+
+        @Override
+        protected void execute() {
+            try {
+                lexer.composite.createNFAs();
+                lexer.createLookaheadDFAs();
+            } catch(Exception e) {
+                // ignore
+            }
+        }
     }
 
     private GrammarError buildNonDeterministicError(GrammarNonDeterminismMessage message) {
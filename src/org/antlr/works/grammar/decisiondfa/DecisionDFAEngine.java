@@ -5,6 +5,7 @@ import org.antlr.analysis.NFAState;
 import org.antlr.tool.Grammar;
 import org.antlr.tool.Rule;
 import org.antlr.works.ate.ATEOverlayManager;
+import org.antlr.works.ate.syntax.misc.ATELineIndex;
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 
@@ -55,6 +56,9 @@ public class DecisionDFAEngine {
     private Grammar discoveredLexerGrammar;
     private Grammar discoveredParserGrammar;
 
+    /** Incremented each time the decisions change */
+    private int generation;
+
     public DecisionDFAEngine(GrammarWindow window) {
         this.window = window;
     }
@@ -63,8 +67,14 @@ public class DecisionDFAEngine {
         window = null;
     }
 
-    public void reset() {
+    public synchronized void reset() {
         decisionDFA.clear();
+        generation++;
+    }
+
+    /** Returns a number that changes each time the decisions are discovered or reset */
+    public synchronized int getGeneration() {
+        return generation;
     }
 
     public int getDecisionDFACount() {
@@ -84,9 +94,15 @@ public class DecisionDFAEngine {
     }
 
     private void discover(int start, int end) throws Exception {
+        // Collect the lines covered by the range
         Set<Integer> lineIndexes = new HashSet<Integer>();
-        for(int index = start; index < end; index++) {
-            lineIndexes.add(window.getTextEditor().getLineIndexAtTextPosition(index));
+        ATELineIndex lines = window.getTextEditor().getLineIndex();
+        if(lines != null && start < end) {
+            int first = lines.getLineIndexAt(start);
+            int last = lines.getLineIndexAt(end-1);
+            for(int line = first; line <= last; line++) {
+                lineIndexes.add(line);
+            }
         }
 
         ANTLRGrammarEngine antlrEngineGrammar = window.getGrammarEngine().getANTLRGrammarEngine();
@@ -100,6 +116,10 @@ public class DecisionDFAEngine {
 
         discover(discoveredLexerGrammar, lineIndexes, usesSemPreds, usesSynPreds);
         discover(discoveredParserGrammar, lineIndexes, usesSemPreds, usesSynPreds);
+
+        synchronized(this) {
+            generation++;
+        }
     }
 
     private void discover(Grammar g, Set<Integer> lineIndexes, Set<Integer> usesSemPreds, Set<Integer> usesSynPreds) {
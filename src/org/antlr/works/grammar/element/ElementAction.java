@@ -3,7 +3,7 @@ package org.antlr.works.grammar.element;
 import org.antlr.works.ate.folding.ATEFoldingEntity;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.editor.EditorPersistentObject;
-import org.antlr.works.grammar.syntax.GrammarSyntaxParser;
+import org.antlr.works.grammar.syntax.GrammarSyntaxElements;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -45,10 +45,10 @@ public class ElementAction extends ElementScopable implements EditorPersistentOb
     public ATEToken end;
     public int actionNum;
     private boolean expanded = true;
-    private GrammarSyntaxParser parser;
+    private GrammarSyntaxElements elements;
 
-    public ElementAction(GrammarSyntaxParser parser, ElementRule rule, ATEToken start) {
-        this.parser = parser;
+    public ElementAction(GrammarSyntaxElements elements, ElementRule rule, ATEToken start) {
+        this.elements = elements;
         this.rule = rule;
         this.start = start;
     }
@@ -70,7 +70,7 @@ public class ElementAction extends ElementScopable implements EditorPersistentOb
     public List<ATEToken> getTokens() {
         List<ATEToken> t = new ArrayList<ATEToken>();
         for(int index=start.index; index<end.index; index++) {
-            t.add(parser.getTokens().get(index));
+            t.add(elements.getTokens().get(index));
         }
         return t;
     }
@@ -92,7 +92,7 @@ public class ElementBlock extends ElementScopable {
     private void parseForTokenVocab() {
         for(int index=0; index<internalTokens.size(); index++) {
             ATEToken t = internalTokens.get(index);
-            if(t.getAttribute().equals("tokenVocab") && index+2<internalTokens.size()) {
+            if(t.attributeEquals("tokenVocab") && index+2<internalTokens.size()) {
                 t = internalTokens.get(index+2);
                 tokenVocab = t.getAttribute();
             }
@@ -111,11 +111,11 @@ public class ElementBlock extends ElementScopable {
         declaredTokens = new ArrayList<ATEToken>();
         for(int index=0; index<internalTokens.size(); index++) {
             ATEToken t = internalTokens.get(index);
-            if(t.getAttribute().equals("=")) {
+            if(t.attributeEquals("=")) {
                 declaredTokens.add(internalTokens.get(index-1));
                 // skip the value and the semi
                 index += 2;
-            } else if(t.getAttribute().equals(";")) {
+            } else if(t.attributeEquals(";")) {
                 declaredTokens.add(internalTokens.get(index-1));
                 // skip the semi
                 index++;
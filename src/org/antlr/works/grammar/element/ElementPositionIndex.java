@@ -0,0 +1,150 @@
+package org.antlr.works.grammar.element;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Index of non-overlapping elements sorted by position in the text: the element
+ * containing a position is found by a binary search. The positions are read from
+ * the elements at query time so the index stays valid when the elements are moved
+ * in the text (as long as their order doesn't change).
+ */
+public abstract class ElementPositionIndex<T> {
+
+    private final List<T> elements;
+
+    public ElementPositionIndex(List<T> elements) {
+        this.elements = new ArrayList<T>(elements);
+        // Stable sort: elements at the same position keep the order of the list
+        Collections.sort(this.elements, new Comparator<T>() {
+            public int compare(T a, T b) {
+                return getStartIndex(a) - getStartIndex(b);
+            }
+        });
+    }
+
+    protected abstract int getStartIndex(T element);
+    protected abstract int getEndIndex(T element);
+
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Returns the element containing the specified position (bounds included) or null
+     * if there is no such element.
+     */
+    public T getElementAtPosition(int position) {
+        int low = 0;
+        int high = elements.size()-1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(getStartIndex(elements.get(mid)) <= position) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        // The previous element can end exactly at the position
+        for(int i = Math.max(high-1, 0); i <= high; i++) {
+            T element = elements.get(i);
+            if(position >= getStartIndex(element) && position <= getEndIndex(element))
+                return element;
+        }
+        return null;
+    }
+
+    public static ElementPositionIndex<ElementRule> createRuleIndex(List<ElementRule> rules) {
+        return new ElementPositionIndex<ElementRule>(rules) {
+            protected int getStartIndex(ElementRule element) {
+                return element.getStartIndex();
+            }
+
+            protected int getEndIndex(ElementRule element) {
+                return element.getEndIndex();
+            }
+        };
+    }
+
+    public static ElementPositionIndex<ElementReference> createReferenceIndex(List<ElementReference> references) {
+        return new ElementPositionIndex<ElementReference>(references) {
+            protected int getStartIndex(ElementReference element) {
+                return element.token.getStartIndex();
+            }
+
+            protected int getEndIndex(ElementReference element) {
+                return element.token.getEndIndex();
+            }
+        };
+    }
+
+    public static ElementPositionIndex<ElementImport> createImportIndex(List<ElementImport> imports) {
+        return new ElementPositionIndex<ElementImport>(imports) {
+            protected int getStartIndex(ElementImport element) {
+                return element.token.getStartIndex();
+            }
+
+            protected int getEndIndex(ElementImport element) {
+                return element.token.getEndIndex();
+            }
+        };
+    }
+
+    public static ElementPositionIndex<ElementAction> createActionIndex(List<ElementAction> actions) {
+        return new ElementPositionIndex<ElementAction>(actions) {
+            protected int getStartIndex(ElementAction element) {
+                return element.start.getStartIndex();
+            }
+
+            protected int getEndIndex(ElementAction element) {
+                return element.end.getEndIndex();
+            }
+        };
+    }
+
+    public static ElementPositionIndex<ElementBlock> createBlockIndex(List<ElementBlock> blocks) {
+        return new ElementPositionIndex<ElementBlock>(blocks) {
+            protected int getStartIndex(ElementBlock element) {
+                return element.start.getStartIndex();
+            }
+
+            protected int getEndIndex(ElementBlock element) {
+                // The end of the scope blocks is not recorded
+                return element.end == null ? element.start.getEndIndex() : element.end.getEndIndex();
+            }
+        };
+    }
+}
@@ -6,7 +6,7 @@ import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.editor.EditorPersistentObject;
 import org.antlr.works.grammar.antlr.GrammarError;
 import org.antlr.works.grammar.engine.GrammarEngine;
-import org.antlr.works.grammar.syntax.GrammarSyntaxParser;
+import org.antlr.works.grammar.syntax.GrammarSyntaxElements;
 import org.antlr.works.utils.IconManager;
 
 import javax.swing.*;
@@ -70,7 +70,7 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
     public List<GrammarError> errors;
     public boolean needsToBuildErrors = true;
 
-    protected GrammarSyntaxParser parser;
+    protected GrammarSyntaxElements elements;
 
     protected int refsStartIndex = -1;
     protected int refsEndIndex = -1;
@@ -88,8 +88,8 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
         this.lexer = ATEToken.isLexerName(name);
     }
 
-    public ElementRule(GrammarSyntaxParser parser, String name, ATEToken start, ATEToken colon, ATEToken end) {
-        this.parser = parser;
+    public ElementRule(GrammarSyntaxElements elements, String name, ATEToken start, ATEToken colon, ATEToken end) {
+        this.elements = elements;
         this.name = name;
         this.start = start;
         this.colon = colon;
@@ -103,6 +103,40 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
         leftRecursionAnalyzed = false;
     }
 
+    /**
+     * Creates a copy of the rule reading its tokens and its elements from the specified
+     * snapshot of the grammar. The tokens have to be the copies of the snapshot.
+     */
+    public ElementRule copy(GrammarSyntaxElements elements, ATEToken start, ATEToken colon, ATEToken end) {
+        ElementRule rule = new ElementRule(elements, name, start, colon, end);
+        rule.refsStartIndex = refsStartIndex;
+        rule.refsEndIndex = refsEndIndex;
+        rule.blocksStartIndex = blocksStartIndex;
+        rule.blocksEndIndex = blocksEndIndex;
+        rule.actionsStartIndex = actionsStartIndex;
+        rule.actionsEndIndex = actionsEndIndex;
+        return rule;
+    }
+
+    /**
+     * Moves the rule to the tokens and the elements of the specified copy. Used when the rule
+     * is reused by a new snapshot of the grammar: the rule keeps its state in the editor.
+     */
+    public void update(ElementRule copy) {
+        start = copy.start;
+        colon = copy.colon;
+        end = copy.end;
+        elements = copy.elements;
+        refsStartIndex = copy.refsStartIndex;
+        refsEndIndex = copy.refsEndIndex;
+        blocksStartIndex = copy.blocksStartIndex;
+        blocksEndIndex = copy.blocksEndIndex;
+        actionsStartIndex = copy.actionsStartIndex;
+        actionsEndIndex = copy.actionsEndIndex;
+        // The left recursion can depend on other rules: analyze it again on-demand
+        completed();
+    }
+
     public void resetHierarchy() {
         hierarchyAnalyzed = false;        
     }
@@ -120,9 +154,28 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
         this.refsEndIndex = endIndex;
     }
 
+    /**
+     * Moves the indexes of the references, blocks and actions of the rule when the rule
+     * is reused by a new parsing of the grammar.
+     */
+    public void moveIndexes(int refsOffset, int blocksOffset, int actionsOffset) {
+        if(refsStartIndex != -1 && refsEndIndex != -1) {
+            refsStartIndex += refsOffset;
+            refsEndIndex += refsOffset;
+        }
+        if(blocksStartIndex != -1 && blocksEndIndex != -1) {
+            blocksStartIndex += blocksOffset;
+            blocksEndIndex += blocksOffset;
+        }
+        if(actionsStartIndex != -1 && actionsEndIndex != -1) {
+            actionsStartIndex += actionsOffset;
+            actionsEndIndex += actionsOffset;
+        }
+    }
+
     public List<ElementReference> getReferences() {
         if(refsStartIndex != -1 && refsEndIndex != -1)
-            return parser.references.subList(refsStartIndex, refsEndIndex+1);
+            return elements.getReferences().subList(refsStartIndex, refsEndIndex+1);
         else
             return null;
     }
@@ -134,7 +187,7 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
 
     public List<ElementBlock> getBlocks() {
         if(blocksStartIndex != -1 && blocksEndIndex != -1)
-            return parser.blocks.subList(blocksStartIndex, blocksEndIndex+1);
+            return elements.getBlocks().subList(blocksStartIndex, blocksEndIndex+1);
         else
             return null;
     }
@@ -146,7 +199,7 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
 
     public List<ElementAction> getActions() {
         if(actionsStartIndex != -1 && actionsEndIndex != -1)
-            return parser.actions.subList(actionsStartIndex, actionsEndIndex+1);
+            return elements.getActions().subList(actionsStartIndex, actionsEndIndex+1);
         else
             return null;
     }
@@ -166,7 +219,7 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
     public int getInternalTokensStartIndex() {
         for(Iterator<ATEToken> iter = getTokens().iterator(); iter.hasNext(); ) {
             ATEToken token = iter.next();
-            if(token.getAttribute().equals(":")) {
+            if(token.attributeEquals(":")) {
                 token = iter.next();
                 return token.getStartIndex();
             }
@@ -175,14 +228,14 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
     }
 
     public int getInternalTokensEndIndex() {
-        ATEToken token = parser.getTokens().get(end.index-1);
+        ATEToken token = elements.getTokens().get(end.index-1);
         return token.getEndIndex();
     }
 
     public List<ATEToken> getTokens() {
         List<ATEToken> t = new ArrayList<ATEToken>();
         for(int index=start.index; index<end.index; index++) {
-            t.add(parser.getTokens().get(index));
+            t.add(elements.getTokens().get(index));
         }
         return t;
     }
@@ -194,17 +247,17 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
         int level = 0;
         for (ATEToken token : getTokens()) {
             if (findColon) {
-                if (token.getAttribute().equals(":")) {
+                if (token.attributeEquals(":")) {
                     findColon = false;
                     alt = new ArrayList<ATEToken>();
                 }
             } else {
-                if (token.getAttribute().equals("("))
+                if (token.attributeEquals("("))
                     level++;
-                else if (token.getAttribute().equals(")"))
+                else if (token.attributeEquals(")"))
                     level--;
                 else if (level == 0) { // removed token.type != GrammarSyntaxLexer.TOKEN_BLOCK &&
-                    if (token.getAttribute().equals("|")) {
+                    if (token.attributeEquals("|")) {
                         alts.add(alt);
                         alt = new ArrayList<ATEToken>();
                         continue;
@@ -398,7 +451,9 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
         return getStartIndex();
     }
 
-    public void setItemIndex(int index) {        
+    public void setItemIndex(int index) {
+        // The token keeps its attribute when moved in the text
+        start.materializeAttribute();
         start.start = index;
     }
 
@@ -42,7 +42,7 @@ public class ElementToken extends ATEToken {
                         String text)
     {
         super(type, start, end, startLineNumber,  endLineNumber, startLineIndex, endLineIndex, text);
-        this.lexer = isLexerName(attribute);
+        this.lexer = end > start && isLexerName(text.charAt(start));
     }
 
 }
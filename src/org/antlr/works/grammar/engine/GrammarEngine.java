@@ -2,10 +2,13 @@ package org.antlr.works.grammar.engine;
 
 import org.antlr.Tool;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.antlr.ANTLRGrammarAnalysisListener;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxChanges;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.grammar.syntax.GrammarSyntaxSnapshot;
 
 import java.util.List;
 import java.util.Map;
@@ -61,11 +64,17 @@ public interface GrammarEngine {
     List<ElementRule> getRules();
     List<ElementRule> getDuplicateRules();
     ElementRule getRuleWithName(String name);
+    ElementRule getRuleAtPosition(int position);
     ElementRule getRuleAtIndex(int index);
     List<String> getRuleNames();
 
     List<ElementReference> getReferences();
     List<ElementReference> getUndefinedReferences();
+    ElementReference getReferenceAtPosition(int position);
+    List<ElementReference> getReferencesInRule(ElementRule rule);
+    ElementImport getImportAtPosition(int position);
+    ElementAction getActionAtPosition(int position);
+    ElementBlock getBlockAtPosition(int position);
 
     List<ElementImport> getImports();
     List<ElementImport> getUndefinedImports();
@@ -86,20 +95,25 @@ public interface GrammarEngine {
     int getFirstDeclarationPosition(String name);
     List<String> getGrammarsOverriddenByRule(String name);
     List<String> getGrammarsOverridingRule(String name);
+    Set<String> getDeclaredNames();
 
     List<ATEToken> getTokens();
 
     void updateHierarchy(Map<String, GrammarEngine> engines, Set<GrammarEngine> alreadyVisitedEngines);
 
     GrammarResult analyze() throws Exception;
+    GrammarResult analyze(ANTLRGrammarAnalysisListener listener) throws Exception;
     void cancelAnalyze();
 
     void computeRuleErrors(ElementRule rule);
 
-    void parserCompleted();
+    GrammarSyntaxChanges parserCompleted();
+    GrammarSyntaxSnapshot resolveTokenVocab();
     void updateAll();
 
     void markDirty();
+    void markSymbolsDirty();
+    int getSymbolsVersion();
     void reset();
 
     boolean isCombinedGrammar();
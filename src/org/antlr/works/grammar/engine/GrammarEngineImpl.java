@@ -3,16 +3,16 @@ package org.antlr.works.grammar.engine;
 import org.antlr.Tool;
 import org.antlr.tool.Grammar;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.antlr.ANTLRGrammarAnalysisListener;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngineImpl;
 import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxChanges;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.grammar.syntax.GrammarSyntaxSnapshot;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /*
 
@@ -56,6 +56,14 @@ public class GrammarEngineImpl implements GrammarEngine {
     private final ANTLRGrammarEngine antlrEngine = new ANTLRGrammarEngineImpl();
     private final GrammarSyntaxEngine syntaxEngine = new GrammarSyntaxEngine();
 
+    /** Symbol table: incremented each time the declarations of the hierarchy may have changed */
+    private int symbolsVersion;
+    /** Version of the root engine used to compute the cached symbols below */
+    private int cachedSymbolsVersion = -1;
+    private Set<String> declaredNames;
+    private final Map<String,List<String>> overriddenByRule = new HashMap<String, List<String>>();
+    private final Map<String,List<String>> overridingRule = new HashMap<String, List<String>>();
+
     public GrammarEngineImpl(GrammarEngineDelegate delegate) {
         this.delegate = delegate;
 
@@ -134,6 +142,30 @@ public class GrammarEngineImpl implements GrammarEngine {
         return properties.getRuleWithName(name);
     }
 
+    public ElementRule getRuleAtPosition(int position) {
+        return properties.getRuleAtPosition(position);
+    }
+
+    public ElementReference getReferenceAtPosition(int position) {
+        return properties.getReferenceAtPosition(position);
+    }
+
+    public List<ElementReference> getReferencesInRule(ElementRule rule) {
+        return properties.getReferencesInRule(rule);
+    }
+
+    public ElementImport getImportAtPosition(int position) {
+        return properties.getImportAtPosition(position);
+    }
+
+    public ElementAction getActionAtPosition(int position) {
+        return properties.getActionAtPosition(position);
+    }
+
+    public ElementBlock getBlockAtPosition(int position) {
+        return properties.getBlockAtPosition(position);
+    }
+
     public List<ElementRule> getDuplicateRules() {
         return properties.getDuplicateRules();
     }
@@ -264,34 +296,94 @@ public class GrammarEngineImpl implements GrammarEngine {
      * of a parent grammar is declared again in one or more child grammar.
      */
     public List<String> getGrammarsOverriddenByRule(String name) {
-        List<String> grammars = new ArrayList<String>();
-        for(GrammarEngine child : importedEngines) {
-            for(ATEToken decl : child.getDecls()) {
-                if(decl.getAttribute().equals(name)) {
+        final int version = getRootEngine().getSymbolsVersion();
+        List<String> grammars;
+        synchronized(this) {
+            validateSymbols(version);
+            grammars = overriddenByRule.get(name);
+        }
+        if(grammars == null) {
+            // Note: the other engines are called without holding the lock of this engine
+            grammars = new ArrayList<String>();
+            for(GrammarEngine child : importedEngines) {
+                if(child.getDeclaredNames().contains(name)) {
                     grammars.add(child.getGrammarName());
-                    break;
+                }
+                grammars.addAll(child.getGrammarsOverriddenByRule(name));
+            }
+            synchronized(this) {
+                if(cachedSymbolsVersion == version) {
+                    overriddenByRule.put(name, grammars);
                 }
             }
-            grammars.addAll(child.getGrammarsOverriddenByRule(name));
         }
-        return grammars;
+        return new ArrayList<String>(grammars);
     }
 
     /**
      * Returns the list of grammars that this rule overrides.
      */
     public List<String> getGrammarsOverridingRule(String name) {
-        List<String> grammars = new ArrayList<String>();
-        if(parent != null) {
-            for(ATEToken decl : parent.getDecls()) {
-                if(decl.getAttribute().equals(name)) {
+        final int version = getRootEngine().getSymbolsVersion();
+        List<String> grammars;
+        synchronized(this) {
+            validateSymbols(version);
+            grammars = overridingRule.get(name);
+        }
+        if(grammars == null) {
+            grammars = new ArrayList<String>();
+            if(parent != null) {
+                if(parent.getDeclaredNames().contains(name)) {
                     grammars.add(parent.getGrammarName());
-                    break;
                 }
+                grammars.addAll(parent.getGrammarsOverridingRule(name));
             }
-            grammars.addAll(parent.getGrammarsOverridingRule(name));
+            synchronized(this) {
+                if(cachedSymbolsVersion == version) {
+                    overridingRule.put(name, grammars);
+                }
+            }
+        }
+        return new ArrayList<String>(grammars);
+    }
+
+    /** Returns the names declared by this grammar (rules and tokens) */
+    public Set<String> getDeclaredNames() {
+        final int version = getRootEngine().getSymbolsVersion();
+        synchronized(this) {
+            validateSymbols(version);
+            if(declaredNames == null) {
+                declaredNames = new HashSet<String>();
+                for(ATEToken decl : getDecls()) {
+                    declaredNames.add(decl.getAttribute());
+                }
+            }
+            return declaredNames;
+        }
+    }
+
+    /** Clears the cached symbols if the declarations of the hierarchy changed since they were computed */
+    private void validateSymbols(int version) {
+        if(version != cachedSymbolsVersion) {
+            declaredNames = null;
+            overriddenByRule.clear();
+            overridingRule.clear();
+            cachedSymbolsVersion = version;
+        }
+    }
+
+    /** Invalidates the symbols of the whole hierarchy: the version of the root engine is incremented */
+    public void markSymbolsDirty() {
+        synchronized(this) {
+            symbolsVersion++;
+        }
+        if(parent != null) {
+            parent.markSymbolsDirty();
         }
-        return grammars;
+    }
+
+    public synchronized int getSymbolsVersion() {
+        return symbolsVersion;
     }
 
     public List<ATEToken> getTokens() {
@@ -318,6 +410,7 @@ public class GrammarEngineImpl implements GrammarEngine {
             // of the tree is checked separately
             alreadyVisitedEngines.remove(d);
         }
+        markSymbolsDirty();
         resetRules();
     }
 
@@ -325,6 +418,10 @@ public class GrammarEngineImpl implements GrammarEngine {
         return antlrEngine.analyze();
     }
 
+    public GrammarResult analyze(ANTLRGrammarAnalysisListener listener) throws Exception {
+        return antlrEngine.analyze(listener);
+    }
+
     public void cancelAnalyze() {
         antlrEngine.cancel();
     }
@@ -333,8 +430,14 @@ public class GrammarEngineImpl implements GrammarEngine {
         antlrEngine.computeRuleErrors(rule);
     }
 
-    public void parserCompleted() {
-        properties.parserCompleted();
+    public GrammarSyntaxChanges parserCompleted() {
+        GrammarSyntaxChanges changes = properties.parserCompleted();
+        markSymbolsDirty();
+        return changes;
+    }
+
+    public GrammarSyntaxSnapshot resolveTokenVocab() {
+        return properties.resolveTokenVocab();
     }
 
     public void updateAll() {
@@ -343,6 +446,7 @@ public class GrammarEngineImpl implements GrammarEngine {
 
     public void markDirty() {
         antlrEngine.markDirty();
+        markSymbolsDirty();
         if(parent != null) {
             parent.markDirty();
         }
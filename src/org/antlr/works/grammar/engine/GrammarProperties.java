@@ -3,7 +3,9 @@ package org.antlr.works.grammar.engine;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxChanges;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.grammar.syntax.GrammarSyntaxSnapshot;
 
 import java.util.List;
 /*
@@ -46,10 +48,16 @@ public interface GrammarProperties {
     List<ElementRule> getRules();
     List<ElementRule> getDuplicateRules();
     ElementRule getRuleWithName(String name);
+    ElementRule getRuleAtPosition(int position);
     ElementRule getRuleAtIndex(int index);
     List<String> getRuleNames();
 
     List<ElementReference> getUndefinedReferences();
+    ElementReference getReferenceAtPosition(int position);
+    List<ElementReference> getReferencesInRule(ElementRule rule);
+    ElementImport getImportAtPosition(int position);
+    ElementAction getActionAtPosition(int position);
+    ElementBlock getBlockAtPosition(int position);
 
     List<ElementGroup> getGroups();
     List<ElementBlock> getBlocks();
@@ -79,6 +87,7 @@ public interface GrammarProperties {
 
     void reset();
     void updateAll();
-    void parserCompleted();
+    GrammarSyntaxChanges parserCompleted();
+    GrammarSyntaxSnapshot resolveTokenVocab();
 
 }
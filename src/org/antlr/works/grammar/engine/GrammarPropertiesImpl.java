@@ -6,9 +6,11 @@ import org.antlr.works.ate.syntax.generic.ATESyntaxParser;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxChanges;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 import org.antlr.works.grammar.syntax.GrammarSyntaxLexer;
 import org.antlr.works.grammar.syntax.GrammarSyntaxParser;
+import org.antlr.works.grammar.syntax.GrammarSyntaxSnapshot;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import java.io.IOException;
@@ -56,11 +58,27 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     private final List<ElementImport> imports = new ArrayList<ElementImport>();
     private final List<ATEToken> decls = new ArrayList<ATEToken>();
 
+    /** Indexes of the elements by position and name, updated each time the parser completes */
+    private ElementPositionIndex<ElementRule> rulesIndex = ElementPositionIndex.createRuleIndex(rules);
+    private ElementPositionIndex<ElementReference> referencesIndex = ElementPositionIndex.createReferenceIndex(references);
+    private ElementPositionIndex<ElementImport> importsIndex = ElementPositionIndex.createImportIndex(imports);
+    private ElementPositionIndex<ElementAction> actionsIndex = ElementPositionIndex.createActionIndex(actions);
+    private ElementPositionIndex<ElementBlock> blocksIndex = ElementPositionIndex.createBlockIndex(blocks);
+    private Map<String,ElementRule> rulesByName = new HashMap<String, ElementRule>();
+    private Map<ElementRule,List<ElementReference>> referencesByRule = new IdentityHashMap<ElementRule, List<ElementReference>>();
+
     private final List<ElementRule> duplicateRules = new ArrayList<ElementRule>();
+    /** True if the rules have changed since the duplicate rules have been computed */
+    private boolean duplicateRulesDirty = true;
+    /** Number of the parsing of the last update or -1 */
+    private int parsing = -1;
     private final List<ElementReference> undefinedReferences = new ArrayList<ElementReference>();
 
-    private final Set<String> tokenVocabNames = new HashSet<String>();
+    /** Names of the token vocabulary: the set is replaced (never modified) when the vocabulary is read */
+    private Set<String> tokenVocabNames = Collections.emptySet();
     private String tokenVocabName;
+    /** True if the token vocabulary has been read in the background for the next update */
+    private boolean tokenVocabLoaded;
 
     private GrammarEngine engine;
     private GrammarSyntaxEngine syntaxEngine;
@@ -86,12 +104,35 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     public ElementRule getRuleWithName(String name) {
-        List<ElementRule> rules = getRules();
-        for (ElementRule r : rules) {
-            if (r.name.equals(name))
-                return r;
-        }
-        return null;
+        return rulesByName.get(name);
+    }
+
+    public ElementRule getRuleAtPosition(int position) {
+        return rulesIndex.getElementAtPosition(position);
+    }
+
+    public ElementReference getReferenceAtPosition(int position) {
+        return referencesIndex.getElementAtPosition(position);
+    }
+
+    public ElementImport getImportAtPosition(int position) {
+        return importsIndex.getElementAtPosition(position);
+    }
+
+    public ElementAction getActionAtPosition(int position) {
+        return actionsIndex.getElementAtPosition(position);
+    }
+
+    public ElementBlock getBlockAtPosition(int position) {
+        return blocksIndex.getElementAtPosition(position);
+    }
+
+    public List<ElementReference> getReferencesInRule(ElementRule rule) {
+        List<ElementReference> refs = referencesByRule.get(rule);
+        if(refs == null)
+            return new ArrayList<ElementReference>();
+        else
+            return new ArrayList<ElementReference>(refs);
     }
 
     public List<ElementGroup> getGroups() {
@@ -171,6 +212,10 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     public synchronized String getTokenVocab() {
+        return getTokenVocab(blocks);
+    }
+
+    private static String getTokenVocab(List<ElementBlock> blocks) {
         if(blocks == null)
             return null;
 
@@ -234,35 +279,58 @@ public class GrammarPropertiesImpl implements GrammarProperties {
         resetTokenVocab();
     }
 
-    private void resetTokenVocab() {
+    private synchronized void resetTokenVocab() {
         tokenVocabName = null;
-        tokenVocabNames.clear();
+        tokenVocabNames = Collections.emptySet();
     }
 
-    private Set<String> getTokenVocabNames() {
+    private synchronized Set<String> getTokenVocabNames() {
         String tokenVocab = getTokenVocab();
-        if(tokenVocab == null) {
-            tokenVocabName = null;
-            tokenVocabNames.clear();
-            return tokenVocabNames;
+        if(tokenVocab == null || !tokenVocab.equals(tokenVocabName)) {
+            loadTokenVocab(tokenVocab);
         }
+        return tokenVocabNames;
+    }
 
-        if(tokenVocabName != null && tokenVocabName.equals(tokenVocab))
-            return tokenVocabNames;
-
-        tokenVocabName = tokenVocab;
-        tokenVocabNames.clear();
-
-        try {
-            String file = engine.getTokenVocabFile(tokenVocabName+".tokens");
-            if(file != null) {
-                readTokenVocabFromFile(file, tokenVocabNames);
+    /** Reads the names of the token vocabulary. This method can be called from any thread. */
+    private void loadTokenVocab(String tokenVocab) {
+        Set<String> names = new HashSet<String>();
+        if(tokenVocab != null) {
+            try {
+                String file = engine.getTokenVocabFile(tokenVocab+".tokens");
+                if(file != null) {
+                    readTokenVocabFromFile(file, names);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
 
-        return tokenVocabNames;
+        synchronized(this) {
+            tokenVocabName = tokenVocab;
+            tokenVocabNames = names;
+        }
+    }
+
+    /**
+     * Reads the token vocabulary of the last published snapshot and resolves the references
+     * with its names. This method is called in the background after each parsing: the
+     * vocabulary is then used by the next update of the properties.
+     *
+     * @return The snapshot with the resolved references (to be published) or null if no reference has been resolved
+     */
+    public GrammarSyntaxSnapshot resolveTokenVocab() {
+        GrammarSyntaxSnapshot snapshot = syntaxEngine.getGrammarSnapshot();
+        if(snapshot == null)
+            return null;
+
+        loadTokenVocab(getTokenVocab(snapshot.getBlocks()));
+        Set<String> names;
+        synchronized(this) {
+            tokenVocabLoaded = true;
+            names = tokenVocabNames;
+        }
+        return syntaxEngine.resolveReferences(names);
     }
 
     public static boolean readTokenVocabFromFile(String filePath, Set<String> tokenNames) throws IOException {
@@ -314,8 +382,9 @@ public class GrammarPropertiesImpl implements GrammarProperties {
 
     private void rebuildDuplicateRulesList() {
         List<ElementRule> rules = getRules();
-        if(rules == null)
+        if(rules == null || !duplicateRulesDirty)
             return;
+        duplicateRulesDirty = false;
 
         List<ElementRule> sortedRules = Collections.list(Collections.enumeration(rules));
         Collections.sort(sortedRules);
@@ -333,24 +402,25 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     private void rebuildUndefinedReferencesList() {
-        List<String> existingReferences = getRuleNames();
+        Set<String> existingReferences = new HashSet<String>(getRuleNames());
         existingReferences.addAll(getDeclaredTokenNames());
         existingReferences.addAll(getPredefinedReferences());
 
         Set<String> tokenVocabNames = getTokenVocabNames();
         existingReferences.addAll(tokenVocabNames);
-        syntaxEngine.resolveReferencesWithExternalNames(tokenVocabNames);
 
         undefinedReferences.clear();
         List<ElementReference> references = getReferences();
         if(references == null)
             return;
 
+        final GrammarEngine root = engine.getRootEngine();
         for (ElementReference ref : references) {
-            if (existingReferences.contains(ref.token.getAttribute())) continue;
-            if (!engine.getGrammarsOverriddenByRule(ref.token.getAttribute()).isEmpty()) continue;
+            final String name = ref.token.getAttribute();
+            if (existingReferences.contains(name)) continue;
+            if (!engine.getGrammarsOverriddenByRule(name).isEmpty()) continue;
             // also check from the root grammar
-            if (!engine.getRootEngine().getGrammarsOverriddenByRule(ref.token.getAttribute()).isEmpty()) continue;
+            if (root != engine && !root.getGrammarsOverriddenByRule(name).isEmpty()) continue;
             undefinedReferences.add(ref);
         }
     }
@@ -361,38 +431,167 @@ public class GrammarPropertiesImpl implements GrammarProperties {
         rebuildHasLeftRecursionRulesList();
     }
 
-    public void parserCompleted() {
-        update((GrammarSyntaxParser) syntaxEngine.getParser());
-        resetTokenVocab();
-    }
+    public GrammarSyntaxChanges parserCompleted() {
+        GrammarSyntaxChanges changes = null;
+        GrammarSyntaxSnapshot snapshot = syntaxEngine.getGrammarSnapshot();
+        if(snapshot != null) {
+            changes = update(snapshot);
+        }
+        synchronized(this) {
+            // Read the token vocabulary again unless it has just been read in the background
+            if(!tokenVocabLoaded) {
+                resetTokenVocab();
+            }
+            tokenVocabLoaded = false;
+        }
+        return changes;
+    }
+
+    /**
+     * Updates the properties with the elements of the snapshot.
+     *
+     * @return the rules changed since the previous update or null if they are not known
+     */
+    private GrammarSyntaxChanges update(GrammarSyntaxSnapshot snapshot) {
+        GrammarSyntaxChanges changes = snapshot.getChanges();
+        if(changes.getParsing() == parsing) {
+            // Same parsing as the previous update (the snapshot has been refreshed)
+            changes = new GrammarSyntaxChanges();
+        } else if(parsing == -1 || changes.getParsing() != parsing+1) {
+            // At least one parsing has been skipped: its changes are lost
+            changes = null;
+        }
+        parsing = snapshot.getChanges().getParsing();
+
+        boolean referencesChanged = !isSame(references, snapshot.getReferences());
+        boolean importsChanged = !isSame(imports, snapshot.getImports());
+        boolean actionsChanged = !isSame(actions, snapshot.getActions());
+        boolean blocksChanged = !isSame(blocks, snapshot.getBlocks());
 
-    private void update(GrammarSyntaxParser parser) {
         rules.clear();
-        rules.addAll(parser.rules);
+        rules.addAll(snapshot.getRules());
 
         groups.clear();
-        groups.addAll(parser.groups);
+        groups.addAll(snapshot.getGroups());
 
-        blocks.clear();
-        blocks.addAll(parser.blocks);
+        if(blocksChanged) {
+            blocks.clear();
+            blocks.addAll(snapshot.getBlocks());
+            blocksIndex = ElementPositionIndex.createBlockIndex(blocks);
+        }
 
-        actions.clear();
-        actions.addAll(parser.actions);
+        if(actionsChanged) {
+            actions.clear();
+            actions.addAll(snapshot.getActions());
+            actionsIndex = ElementPositionIndex.createActionIndex(actions);
+        }
 
-        references.clear();
-        references.addAll(parser.references);
+        if(referencesChanged) {
+            references.clear();
+            references.addAll(snapshot.getReferences());
+            referencesIndex = ElementPositionIndex.createReferenceIndex(references);
+        }
 
-        imports.clear();
-        imports.addAll(parser.imports);
+        if(importsChanged) {
+            imports.clear();
+            imports.addAll(snapshot.getImports());
+            importsIndex = ElementPositionIndex.createImportIndex(imports);
+        }
 
         decls.clear();
-        decls.addAll(parser.decls);
+        decls.addAll(snapshot.getDecls());
+
+        this.name = snapshot.getName();
+
+        if(changes == null) {
+            rebuildRuleIndexes();
+            // Rules reused from the previous parsing are already attached to the engine
+            for(ElementRule r : rules) {
+                if(r.getEngine() != engine) {
+                    r.setEngine(engine);
+                }
+            }
+        } else if(!changes.isEmpty()) {
+            updateRuleIndexes(changes);
+            for(ElementRule r : changes.getAddedRules()) {
+                r.setEngine(engine);
+            }
+            for(ElementRule r : changes.getModifiedRules()) {
+                r.setEngine(engine);
+            }
+        }
+
+        if(referencesChanged) {
+            rebuildReferencesByRule();
+        }
 
-        this.name = parser.getName();
+        if(changes == null || !changes.isEmpty()) {
+            duplicateRulesDirty = true;
+        }
+        return changes;
+    }
+
+    private static boolean isSame(List<?> a, List<?> b) {
+        if(a.size() != b.size()) return false;
+        for(int i=0; i<a.size(); i++) {
+            if(a.get(i) != b.get(i)) return false;
+        }
+        return true;
+    }
 
+    private void rebuildRuleIndexes() {
+        Map<String,ElementRule> rulesByName = new HashMap<String, ElementRule>();
         for(ElementRule r : rules) {
-            r.setEngine(engine);
+            // Keep the first rule in case of duplicate names
+            if(!rulesByName.containsKey(r.name)) {
+                rulesByName.put(r.name, r);
+            }
+        }
+
+        this.rulesIndex = ElementPositionIndex.createRuleIndex(rules);
+        this.rulesByName = rulesByName;
+    }
+
+    private void rebuildReferencesByRule() {
+        Map<ElementRule,List<ElementReference>> referencesByRule = new IdentityHashMap<ElementRule, List<ElementReference>>();
+        for(ElementReference ref : references) {
+            List<ElementReference> refs = referencesByRule.get(ref.rule);
+            if(refs == null) {
+                refs = new ArrayList<ElementReference>();
+                referencesByRule.put(ref.rule, refs);
+            }
+            refs.add(ref);
+        }
+        this.referencesByRule = referencesByRule;
+    }
+
+    /**
+     * Updates the indexes of the rules with the changes of the parsing: only the
+     * entries of the added, removed and modified rules are updated.
+     */
+    private void updateRuleIndexes(GrammarSyntaxChanges changes) {
+        if(rulesByName.size() != rules.size()-changes.getAddedRules().size()+changes.getRemovedRules().size()) {
+            // Duplicate rule names: the first rule of each name has to be found again
+            rebuildRuleIndexes();
+            return;
+        }
+
+        Map<String,ElementRule> rulesByName = new HashMap<String, ElementRule>(this.rulesByName);
+        for(ElementRule r : changes.getRemovedRules()) {
+            rulesByName.remove(r.name);
         }
+        for(ElementRule r : changes.getModifiedRules()) {
+            rulesByName.put(r.name, r);
+        }
+        for(ElementRule r : changes.getAddedRules()) {
+            if(rulesByName.put(r.name, r) != null) {
+                rebuildRuleIndexes();
+                return;
+            }
+        }
+
+        this.rulesIndex = ElementPositionIndex.createRuleIndex(rules);
+        this.rulesByName = rulesByName;
     }
 
     public List<String> getAllGeneratedNames() throws Exception {
@@ -0,0 +1,132 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.syntax;
+
+import org.antlr.works.grammar.element.ElementRule;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rules that have been added, removed or modified by a parsing of the grammar.
+ * A rule that is not part of any of these lists has been reused as-is from the
+ * previous parsing (same object, possibly moved in the text).
+ */
+public class GrammarSyntaxChanges {
+
+    final List<ElementRule> addedRules = new ArrayList<ElementRule>();
+    final List<ElementRule> removedRules = new ArrayList<ElementRule>();
+    final List<ElementRule> modifiedRules = new ArrayList<ElementRule>();
+
+    private final int parsing;
+    private Map<ElementRule,Boolean> newRules;
+
+    /**
+     * Creates an empty set of changes (i.e. no rule has changed).
+     */
+    public GrammarSyntaxChanges() {
+        this(-1);
+    }
+
+    GrammarSyntaxChanges(int parsing) {
+        this.parsing = parsing;
+    }
+
+    /**
+     * Returns the number of the parsing that produced these changes: the changes are
+     * relative to the rules of the parsing with the previous number.
+     */
+    public int getParsing() {
+        return parsing;
+    }
+
+    public List<ElementRule> getAddedRules() {
+        return addedRules;
+    }
+
+    public List<ElementRule> getRemovedRules() {
+        return removedRules;
+    }
+
+    /**
+     * Returns the rules that replace a rule of the same name of the previous parsing.
+     */
+    public List<ElementRule> getModifiedRules() {
+        return modifiedRules;
+    }
+
+    /**
+     * Returns true if the rule has been added or modified by the parsing.
+     */
+    public boolean isNew(ElementRule rule) {
+        if(newRules == null) {
+            newRules = new IdentityHashMap<ElementRule,Boolean>();
+            for(ElementRule r : addedRules) {
+                newRules.put(r, Boolean.TRUE);
+            }
+            for(ElementRule r : modifiedRules) {
+                newRules.put(r, Boolean.TRUE);
+            }
+        }
+        return newRules.containsKey(rule);
+    }
+
+    /**
+     * Returns the same changes with the copies of the rules.
+     *
+     * @param previousCopies The copies of the rules of the previous parsing
+     * @param copies The copies of the rules of this parsing
+     */
+    GrammarSyntaxChanges copy(Map<ElementRule,ElementRule> previousCopies, Map<ElementRule,ElementRule> copies) {
+        GrammarSyntaxChanges c = new GrammarSyntaxChanges(parsing);
+        copy(addedRules, copies, c.addedRules);
+        copy(removedRules, previousCopies, c.removedRules);
+        copy(modifiedRules, copies, c.modifiedRules);
+        return c;
+    }
+
+    private static void copy(List<ElementRule> rules, Map<ElementRule,ElementRule> copies, List<ElementRule> result) {
+        for(ElementRule r : rules) {
+            ElementRule copy = copies.get(r);
+            if(copy != null) {
+                result.add(copy);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return addedRules.isEmpty() && removedRules.isEmpty() && modifiedRules.isEmpty();
+    }
+
+}
@@ -34,7 +34,9 @@ package org.antlr.works.grammar.syntax;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngine;
 import org.antlr.works.ate.syntax.generic.ATESyntaxLexer;
 import org.antlr.works.ate.syntax.generic.ATESyntaxParser;
+import org.antlr.works.ate.syntax.generic.ATESyntaxSnapshot;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.element.ElementToken;
 import org.antlr.works.prefs.AWPrefs;
 
@@ -42,6 +44,9 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import java.awt.*;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class GrammarSyntaxEngine extends ATESyntaxEngine {
@@ -55,6 +60,12 @@ public class GrammarSyntaxEngine extends ATESyntaxEngine {
     private SimpleAttributeSet actionRefAttr;
     private SimpleAttributeSet blockAttr;
 
+    /** Copies of the rules of the parser in the last snapshot: a rule reused by the parser keeps its copy */
+    private Map<ElementRule,ElementRule> ruleCopies = new IdentityHashMap<ElementRule,ElementRule>();
+    /** Changes of the last parsing and their copy */
+    private GrammarSyntaxChanges parserChanges;
+    private GrammarSyntaxChanges changesCopy;
+
     public GrammarSyntaxEngine() {
         parserRefAttr = new SimpleAttributeSet();
         lexerRefAttr = new SimpleAttributeSet();
@@ -66,6 +77,11 @@ public class GrammarSyntaxEngine extends ATESyntaxEngine {
     @Override
     public void close() {
         super.close();
+        synchronized(processLock) {
+            ruleCopies.clear();
+            parserChanges = null;
+            changesCopy = null;
+        }
     }
 
     @Override
@@ -99,6 +115,31 @@ public class GrammarSyntaxEngine extends ATESyntaxEngine {
         return new GrammarSyntaxParser();
     }
 
+    @Override
+    protected ATESyntaxSnapshot createSnapshot(int version, String text, List<ATEToken> tokens) {
+        Map<ElementRule,ElementRule> copies = new IdentityHashMap<ElementRule,ElementRule>();
+        GrammarSyntaxSnapshot snapshot = new GrammarSyntaxSnapshot(this, version, text, tokens, ruleCopies, copies);
+        ruleCopies = copies;
+        return snapshot;
+    }
+
+    /** Returns the copy of the changes of the parser. Called during the creation of a snapshot. */
+    GrammarSyntaxChanges copyChanges(GrammarSyntaxChanges changes, Map<ElementRule,ElementRule> previousCopies,
+                                     Map<ElementRule,ElementRule> copies)
+    {
+        // A snapshot refreshed after the parsing has the same changes
+        if(changes != parserChanges) {
+            parserChanges = changes;
+            changesCopy = changes.copy(previousCopies, copies);
+        }
+        return changesCopy;
+    }
+
+    /** Returns the result of the last published processing */
+    public GrammarSyntaxSnapshot getGrammarSnapshot() {
+        return (GrammarSyntaxSnapshot) getSnapshot();
+    }
+
     @Override
     public void refreshColoring() {
         super.refreshColoring();
@@ -140,7 +181,29 @@ public class GrammarSyntaxEngine extends ATESyntaxEngine {
         return attr;
     }
 
+    /**
+     * Resolves the unresolved references of the last parsing with external names (for example
+     * the names of the token vocabulary). This method can be called from any thread.
+     *
+     * @return The snapshot with the resolved references (to be published) or null if no reference has been resolved
+     */
+    public GrammarSyntaxSnapshot resolveReferences(Set<String> names) {
+        synchronized(processLock) {
+            GrammarSyntaxParser parser = (GrammarSyntaxParser) getParser();
+            if(parser != null && parser.resolveReferencesWithExternalNames(names)) {
+                // The type of the tokens and the references changed
+                return (GrammarSyntaxSnapshot) refreshSnapshot();
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /** Resolves the unresolved references with external names and publishes the result in the current thread */
     public void resolveReferencesWithExternalNames(Set<String> names) {
-        ((GrammarSyntaxParser)getParser()).resolveReferencesWithExternalNames(names);
+        GrammarSyntaxSnapshot snapshot = resolveReferences(names);
+        if(snapshot != null) {
+            publish(snapshot);
+        }
     }
 }
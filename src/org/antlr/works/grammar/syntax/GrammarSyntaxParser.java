@@ -44,7 +44,7 @@ import java.util.*;
  * information needed for the syntax (references, actions, blocks, etc) without spending too much time in parsing
  * all the details of the grammar.
  */
-public class GrammarSyntaxParser extends ATESyntaxParser {
+public class GrammarSyntaxParser extends ATESyntaxParser implements GrammarSyntaxElements {
 
     private static final ElementRewriteBlock REWRITE_BLOCK = new ElementRewriteBlock();
     private static final ElementArgumentBlock ARGUMENT_BLOCK = new ElementArgumentBlock();
@@ -81,6 +81,29 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
     private ElementGrammarName name;
     private ElementRule currentRule;
 
+    /** Tokens and rules of the previous parsing */
+    private List<ATEToken> previousTokens;
+    private final List<ElementRule> previousRules = new ArrayList<ElementRule>();
+
+    /** Memo of each rule of the previous parsing indexed by the first token of the rule,
+     * and memo of each rule of the current parsing.
+     */
+    private Map<ATEToken,RuleMemo> previousMemos = new IdentityHashMap<ATEToken,RuleMemo>();
+    private Map<ATEToken,RuleMemo> memos = new IdentityHashMap<ATEToken,RuleMemo>();
+
+    /** Rules of the previous parsing replayed by the current parsing */
+    private final Map<ElementRule,Boolean> replayedRules = new IdentityHashMap<ElementRule,Boolean>();
+
+    /** Memo being recorded for the current top-level iteration */
+    private RuleMemo recording;
+
+    /** Index of the furthest token modified by the parser */
+    private int writeLookahead;
+
+    private GrammarSyntaxChanges changes = new GrammarSyntaxChanges();
+    /** Number of parsings done by this parser */
+    private int parsing;
+
     static {
         blockIdentifiers = new ArrayList<String>();
         blockIdentifiers.add(OPTIONS_BLOCK_NAME);
@@ -114,39 +137,88 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         return name;
     }
 
+    public List<ElementReference> getReferences() {
+        return references;
+    }
+
+    public List<ElementBlock> getBlocks() {
+        return blocks;
+    }
+
+    public List<ElementAction> getActions() {
+        return actions;
+    }
+
+    /** Returns the rules that have been added, removed or modified by the last parsing */
+    public GrammarSyntaxChanges getChanges() {
+        return changes;
+    }
+
     @Override
     public void close() {
         super.close();
         clear();
+        previousTokens = null;
+        previousRules.clear();
+        previousMemos.clear();
+        memos.clear();
+    }
+
+    @Override
+    public void parse(List<ATEToken> tokens) {
+        previousTokens = getTokens();
+        super.parse(tokens);
     }
 
     @Override
     public void parseTokens() {
+        previousRules.clear();
+        previousRules.addAll(rules);
+        Map<ATEToken,RuleMemo> m = previousMemos;
+        previousMemos = memos;
+        memos = m;
+        memos.clear();
+
         clear();
 
-        if(!nextToken()) return;
+        if(nextToken()) {
+            while(true) {
+                // Reuse the rule of the previous parsing if its tokens have not been modified
+                if(replayRule()) continue;
 
-        while(true) {
+                beginIteration();
 
-            if(matchName()) continue;
-            if(matchScope()) continue; // scope before block
-            if(matchBlock()) continue;
-            if(matchImport()) continue;
-            if(matchRule()) continue;
+                if(matchName()) continue;
+                if(matchScope()) continue; // scope before block
+                if(matchBlock()) continue;
+                if(matchImport()) continue;
+                if(matchRule()) {
+                    endIteration();
+                    continue;
+                }
 
-            if(matchRuleGroup()) continue; // before single comment
+                recording = null;
 
-            if(matchSingleComment(0)) continue;
-            if(matchComplexComment(0)) continue;
+                if(matchRuleGroup()) continue; // before single comment
 
-            // Nothing matches, go to next token
-            if(!nextToken()) break;
+                if(matchSingleComment(0)) continue;
+                if(matchComplexComment(0)) continue;
+
+                // Nothing matches, go to next token
+                if(!nextToken()) break;
+            }
         }
 
+        recording = null;
+        previousMemos.clear();
+
         resolveReferences();
+        computeChanges();
     }
 
     private void clear() {
+        writeLookahead = -1;
+        recording = null;
         rules.clear();
         groups.clear();
         blocks.clear();
@@ -158,6 +230,7 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         declaredReferenceNames.clear();
         unresolvedReferences.clear();
         refsToRules.clear();
+        replayedRules.clear();
     }
 
     /**
@@ -166,16 +239,20 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
      * any remaining references that are still unresolved.
      *
      * @param externalNames A list of string representing the external declared reference names
+     * @return true if at least one reference has been resolved
      */
-    public void resolveReferencesWithExternalNames(Set<String> externalNames) {
+    public boolean resolveReferencesWithExternalNames(Set<String> externalNames) {
+        boolean resolved = false;
         for(int i=unresolvedReferences.size()-1; i >= 0; i--) {
             ATEToken ref = unresolvedReferences.get(i);
             if(externalNames.contains(ref.getAttribute())) {
                 ref.type = GrammarSyntaxLexer.TOKEN_REFERENCE;
                 references.add(new ElementReference(refsToRules.get(ref), ref));
                 unresolvedReferences.remove(i);
+                resolved = true;
             }
         }
+        return resolved;
     }
 
     /**
@@ -259,9 +336,9 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
             ElementBlock block = new ElementBlock(start.getAttribute().toLowerCase(), start);
             ATEToken beginBlock = T(0);
             if(matchBalancedToken(ATESyntaxLexer.TOKEN_LCURLY, ATESyntaxLexer.TOKEN_RCURLY, null, true)) {
-                beginBlock.type = GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT;
-                T(-1).type = GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT;
-                start.type = GrammarSyntaxLexer.TOKEN_BLOCK_LABEL;
+                setType(beginBlock, GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT);
+                setType(T(-1), GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT);
+                setType(start, GrammarSyntaxLexer.TOKEN_BLOCK_LABEL);
                 blocks.add(block);
                 return true;
             }
@@ -338,9 +415,9 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         ElementBlock block = new ElementBlock(start.getAttribute().toLowerCase(), start);
         ATEToken beginBlock = T(0);
         if(matchBalancedToken(ATESyntaxLexer.TOKEN_LCURLY, ATESyntaxLexer.TOKEN_RCURLY, block, true)) {
-            beginBlock.type = GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT;
-            T(-1).type = GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT;
-            start.type = GrammarSyntaxLexer.TOKEN_BLOCK_LABEL;
+            setType(beginBlock, GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT);
+            setType(T(-1), GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT);
+            setType(start, GrammarSyntaxLexer.TOKEN_BLOCK_LABEL);
             blocks.add(block);
 
             block.end = T(-1);
@@ -349,7 +426,7 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
             if(block.isTokenBlock) {
                 List<ATEToken> tokens = block.getDeclaredTokens();
                 for (ATEToken lexerToken : tokens) {
-                    lexerToken.type = GrammarSyntaxLexer.TOKEN_DECL;
+                    setType(lexerToken, GrammarSyntaxLexer.TOKEN_DECL);
                     addDeclaration(lexerToken);
                 }
             }
@@ -516,7 +593,7 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         currentRule.end = T(-1);
 
         // Change the token type of the name
-        tokenName.type = GrammarSyntaxLexer.TOKEN_DECL;
+        setType(tokenName, GrammarSyntaxLexer.TOKEN_DECL);
         addDeclaration(tokenName);
 
         if(references.size() > oldRefsSize) {
@@ -569,8 +646,8 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         ATEToken t0 = T(0);
         ElementAction action = new ElementAction(this, currentRule, t0);
         if(matchBalancedToken(ATESyntaxLexer.TOKEN_LCURLY, ATESyntaxLexer.TOKEN_RCURLY, action, true)) {
-            t0.type = GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT;
-            T(-1).type = GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT;
+            setType(t0, GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT);
+            setType(T(-1), GrammarSyntaxLexer.TOKEN_BLOCK_LIMIT);
 
             action.end = T(-1);
             action.actionNum = actions.size();
@@ -588,11 +665,11 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         ATEToken label = T(0);
         if(matchID(0)) {
             if(matchChar(0, "=")) {
-                label.type = GrammarSyntaxLexer.TOKEN_LABEL;
+                setType(label, GrammarSyntaxLexer.TOKEN_LABEL);
                 labels.add(label.getAttribute());
                 return true;
             } else if(isChar(0, "+") && isChar(1, "=")) {
-                label.type = GrammarSyntaxLexer.TOKEN_LABEL;
+                setType(label, GrammarSyntaxLexer.TOKEN_LABEL);
                 labels.add(label.getAttribute());
                 skip(2);
                 return true;
@@ -777,7 +854,7 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
 
     private boolean matchDoubleQuotedString() {
         if(isTokenType(0, ATESyntaxLexer.TOKEN_DOUBLE_QUOTE_STRING)) {
-            T(0).scope = REWRITE_BLOCK;
+            setScope(T(0), REWRITE_BLOCK);
             nextToken();
             return true;
         } else {
@@ -830,13 +907,13 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         if(!isSingleComment(0)) return false;
 
         ATEToken token = T(0);
-        String comment = token.getAttribute();
 
-        if(comment.startsWith(BEGIN_GROUP)) {
+        if(token.attributeStartsWith(BEGIN_GROUP)) {
+            String comment = token.getAttribute();
             groups.add(new ElementGroup(comment.substring(BEGIN_GROUP.length(), comment.length()-1), rules.size()-1, token));
             nextToken();
             return true;
-        } else if(comment.startsWith(END_GROUP)) {
+        } else if(token.attributeStartsWith(END_GROUP)) {
             groups.add(new ElementGroup(rules.size()-1, token));
             nextToken();
             return true;
@@ -853,13 +930,16 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
      */
     private boolean addReference(ATEToken ref, boolean addOnlyIfKnownLabel) {
         refsToRules.put(ref, currentRule);
+        if(recording != null) {
+            recording.refs.add(ref);
+        }
         if(labels.lookup(ref.getAttribute())) {
             // Reference is to a label, not a lexer/parser rule
-            ref.type = GrammarSyntaxLexer.TOKEN_LABEL;
+            setType(ref, GrammarSyntaxLexer.TOKEN_LABEL);
             return true;
         } else {
             if(!addOnlyIfKnownLabel) {
-                ref.type = GrammarSyntaxLexer.TOKEN_REFERENCE;
+                setType(ref, GrammarSyntaxLexer.TOKEN_REFERENCE);
                 references.add(new ElementReference(refsToRules.get(ref), ref));
             }
             return false;
@@ -887,7 +967,7 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         mark();
         int balance = 0;
         while(true) {
-            T(0).scope = scope;
+            setScope(T(0), scope);
             if(T(0).type == open)
                 balance++;
             else if(T(0).type == close) {
@@ -907,7 +987,7 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
 
     private void matchInternalRefInBalancedToken(boolean matchInternalRef) {
         if(matchInternalRef && isChar(0, "$") && isID(1)) {
-            T(0).type = GrammarSyntaxLexer.TOKEN_INTERNAL_REF;
+            setType(T(0), GrammarSyntaxLexer.TOKEN_INTERNAL_REF);
 
             // Look for internal references, that is any ID preceeded by a $
             ATEToken ref = T(1);
@@ -1030,6 +1110,278 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         return isTokenType(index, ATESyntaxLexer.TOKEN_LCURLY);
     }
 
+    private void setType(ATEToken token, int type) {
+        token.type = type;
+        written(token);
+        if(recording != null) {
+            recording.addWrite(token.index, type, null);
+        }
+    }
+
+    private void setScope(ATEToken token, ATEScope scope) {
+        token.scope = scope;
+        written(token);
+        if(recording != null) {
+            recording.addWrite(token.index, -1, scope);
+        }
+    }
+
+    private Set<String> copyLabels() {
+        if(labels.labels.isEmpty()) {
+            return Collections.emptySet();
+        } else {
+            return new HashSet<String>(labels.labels);
+        }
+    }
+
+    private void written(ATEToken token) {
+        if(token.index > writeLookahead) writeLookahead = token.index;
+    }
+
+    /**
+     * Starts recording the effects of a top-level iteration so it can be replayed
+     * by the next parsing if it matches a rule.
+     */
+    private void beginIteration() {
+        RuleMemo memo = new RuleMemo();
+        memo.start = getPosition();
+        // The tokens of this iteration must not have been modified by a previous iteration
+        memo.clean = writeLookahead < memo.start;
+        memo.labelsBefore = copyLabels();
+        memo.referencesBase = references.size();
+        memo.blocksBase = blocks.size();
+        memo.actionsBase = actions.size();
+        memo.declsBase = decls.size();
+        memo.unresolvedBase = unresolvedReferences.size();
+        memo.importsBase = imports.size();
+        recording = memo;
+    }
+
+    private void endIteration() {
+        RuleMemo memo = recording;
+        recording = null;
+        if(memo == null || !memo.clean || imports.size() != memo.importsBase) return;
+
+        memo.rule = rules.get(rules.size()-1);
+        memo.end = getPosition();
+        memo.lookahead = getLookahead();
+        memo.labelsAfter = copyLabels();
+        memo.references = new ArrayList<ElementReference>(references.subList(memo.referencesBase, references.size()));
+        memo.blocks = new ArrayList<ElementBlock>(blocks.subList(memo.blocksBase, blocks.size()));
+        memo.actions = new ArrayList<ElementAction>(actions.subList(memo.actionsBase, actions.size()));
+        memo.decls = new ArrayList<ATEToken>(decls.subList(memo.declsBase, decls.size()));
+        memo.unresolvedReferences = new ArrayList<ATEToken>(unresolvedReferences.subList(memo.unresolvedBase, unresolvedReferences.size()));
+        for(ATEToken ref : memo.refs) {
+            // References located before the colon of the rule are not associated with any rule
+            memo.refsRules.add(refsToRules.get(ref));
+        }
+        memos.put(getTokens().get(memo.start), memo);
+    }
+
+    /**
+     * Replays the rule of the previous parsing that starts at the current token if all the
+     * tokens it examined are unchanged: the effects of the rule are applied without parsing it again.
+     *
+     * @return true if a rule has been replayed
+     */
+    private boolean replayRule() {
+        if(previousMemos.isEmpty() || T(0) == null) return false;
+
+        RuleMemo memo = previousMemos.get(T(0));
+        if(memo == null) return false;
+
+        final int position = getPosition();
+        if(writeLookahead >= position || !memo.labelsBefore.equals(labels.labels)) return false;
+        if(!isUnchanged(memo, position)) return false;
+
+        // Replay the modifications of the tokens
+        final int shift = position - memo.start;
+        final List<ATEToken> tokens = getTokens();
+        for(int w=0; w<memo.writeCount; w++) {
+            final int index = memo.writeIndexes[w]+shift;
+            for(int k=0; k<memo.writeLengths[w]; k++) {
+                ATEToken t = tokens.get(index+k);
+                if(memo.writeTypes[w] == -1) {
+                    t.scope = memo.writeScopes[w];
+                } else {
+                    t.type = memo.writeTypes[w];
+                }
+                written(t);
+            }
+        }
+
+        // Replay the elements created by the rule
+        final int referencesOffset = references.size()-memo.referencesBase;
+        final int blocksOffset = blocks.size()-memo.blocksBase;
+        final int actionsOffset = actions.size()-memo.actionsBase;
+
+        references.addAll(memo.references);
+        blocks.addAll(memo.blocks);
+        for(ElementAction action : memo.actions) {
+            action.actionNum += actionsOffset;
+            actions.add(action);
+        }
+        for(ATEToken decl : memo.decls) {
+            addDeclaration(decl);
+        }
+        unresolvedReferences.addAll(memo.unresolvedReferences);
+        for(int index=0; index<memo.refs.size(); index++) {
+            refsToRules.put(memo.refs.get(index), memo.refsRules.get(index));
+        }
+        memo.rule.moveIndexes(referencesOffset, blocksOffset, actionsOffset);
+        // The left recursion can depend on other rules: analyze it again on-demand
+        memo.rule.completed();
+        rules.add(memo.rule);
+        replayedRules.put(memo.rule, Boolean.TRUE);
+
+        labels.clear();
+        labels.labels.addAll(memo.labelsAfter);
+
+        // Update the memo to the new position of the rule
+        memo.start += shift;
+        memo.end += shift;
+        memo.lookahead += shift;
+        for(int w=0; w<memo.writeCount; w++) {
+            memo.writeIndexes[w] += shift;
+        }
+        memo.referencesBase += referencesOffset;
+        memo.blocksBase += blocksOffset;
+        memo.actionsBase += actionsOffset;
+        memo.declsBase = decls.size()-memo.decls.size();
+        memo.unresolvedBase = unresolvedReferences.size()-memo.unresolvedReferences.size();
+        memo.importsBase = imports.size();
+        memos.put(T(0), memo);
+
+        setLookahead(Math.max(getLookahead(), memo.lookahead));
+        seek(memo.end);
+        return true;
+    }
+
+    /**
+     * Returns true if all the tokens examined by the rule of the memo are the same
+     * as in the previous parsing.
+     */
+    private boolean isUnchanged(RuleMemo memo, int position) {
+        final List<ATEToken> tokens = getTokens();
+        final int previousSize = previousTokens.size();
+        int last = memo.lookahead;
+        if(last >= previousSize) {
+            // The rule depends on the end of the tokens
+            if(tokens.size()-position != previousSize-memo.start) return false;
+            last = previousSize-1;
+        } else if(position+last-memo.start >= tokens.size()) {
+            return false;
+        }
+
+        for(int index=memo.start; index<=last; index++) {
+            if(previousTokens.get(index) != tokens.get(position+index-memo.start)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the rules that have been added, removed or modified by comparing the rules
+     * of the previous parsing with the current ones.
+     */
+    private void computeChanges() {
+        changes = new GrammarSyntaxChanges(++parsing);
+
+        // The memos also contain the rules parsed again: only the replayed rules are reused
+        final Map<ElementRule,Boolean> reused = replayedRules;
+        Map<String,ElementRule> removed = new HashMap<String,ElementRule>();
+        for(ElementRule rule : previousRules) {
+            if(!reused.containsKey(rule)) {
+                changes.removedRules.add(rule);
+                removed.put(rule.name, rule);
+            }
+        }
+
+        for(ElementRule rule : rules) {
+            if(reused.containsKey(rule)) continue;
+
+            ElementRule previous = removed.remove(rule.name);
+            if(previous == null) {
+                changes.addedRules.add(rule);
+            } else {
+                changes.removedRules.remove(previous);
+                changes.modifiedRules.add(rule);
+            }
+        }
+    }
+
+    /** The effects of a top-level iteration that matched a rule */
+    private static class RuleMemo {
+
+        ElementRule rule;
+
+        int start;          // index of the first token
+        int end;            // index of the token after the rule
+        int lookahead;      // index of the furthest token examined
+        boolean clean;      // true if no previous iteration modified the tokens of the rule
+
+        Set<String> labelsBefore;
+        Set<String> labelsAfter;
+
+        int referencesBase;
+        int blocksBase;
+        int actionsBase;
+        int declsBase;
+        int unresolvedBase;
+        int importsBase;
+
+        List<ElementReference> references;
+        List<ElementBlock> blocks;
+        List<ElementAction> actions;
+        List<ATEToken> decls;
+        List<ATEToken> unresolvedReferences;
+
+        final List<ATEToken> refs = new ArrayList<ATEToken>();
+        final List<ElementRule> refsRules = new ArrayList<ElementRule>();
+
+        /** Modifications of the tokens: a type (or a scope if the type is -1) assigned
+         * to a run of consecutive tokens.
+         */
+        int[] writeIndexes = new int[16];
+        int[] writeLengths = new int[16];
+        int[] writeTypes = new int[16];
+        ATEScope[] writeScopes = new ATEScope[16];
+        int writeCount;
+
+        void addWrite(int index, int type, ATEScope scope) {
+            if(writeCount > 0) {
+                final int last = writeCount-1;
+                if(writeTypes[last] == type && writeScopes[last] == scope
+                        && writeIndexes[last]+writeLengths[last] == index)
+                {
+                    writeLengths[last]++;
+                    return;
+                }
+            }
+
+            if(writeCount == writeIndexes.length) {
+                final int capacity = writeCount*2;
+                int[] indexes = new int[capacity];
+                int[] lengths = new int[capacity];
+                int[] types = new int[capacity];
+                ATEScope[] scopes = new ATEScope[capacity];
+                System.arraycopy(writeIndexes, 0, indexes, 0, writeCount);
+                System.arraycopy(writeLengths, 0, lengths, 0, writeCount);
+                System.arraycopy(writeTypes, 0, types, 0, writeCount);
+                System.arraycopy(writeScopes, 0, scopes, 0, writeCount);
+                writeIndexes = indexes;
+                writeLengths = lengths;
+                writeTypes = types;
+                writeScopes = scopes;
+            }
+
+            writeIndexes[writeCount] = index;
+            writeLengths[writeCount] = 1;
+            writeTypes[writeCount] = type;
+            writeScopes[writeCount] = scope;
+            writeCount++;
+        }
+    }
+
     private static class LabelTable {
 
         Set<String> labels = new HashSet<String>();
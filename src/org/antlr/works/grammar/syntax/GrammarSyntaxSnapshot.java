@@ -0,0 +1,277 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.syntax;
+
+import org.antlr.works.ate.syntax.generic.ATESyntaxSnapshot;
+import org.antlr.works.ate.syntax.misc.ATEScope;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.element.*;
+
+import java.util.*;
+
+/**
+ * Result of the processing of a version of the grammar: in addition to the tokens,
+ * the snapshot contains copies of the elements found by the parser. The copies use
+ * the tokens of the snapshot and read their elements from the snapshot.
+ *
+ * A rule reused by the parser keeps the copy of the previous snapshot so the editor
+ * keeps its state (errors, folding, etc): the copy is moved to the tokens of this
+ * snapshot when the snapshot is published.
+ */
+public class GrammarSyntaxSnapshot extends ATESyntaxSnapshot implements GrammarSyntaxElements {
+
+    private final List<ElementRule> rules;
+    private final List<ElementGroup> groups;
+    private final List<ElementBlock> blocks;
+    private final List<ElementAction> actions;
+    private final List<ElementReference> references;
+    private final List<ElementImport> imports;
+    private final List<ATEToken> decls;
+    private final ElementGrammarName name;
+    private final GrammarSyntaxChanges changes;
+
+    /** Rules of the previous snapshots reused by this snapshot and their copy for this snapshot */
+    private final Map<ElementRule,ElementRule> reusedRules = new IdentityHashMap<ElementRule,ElementRule>();
+
+    /**
+     * Creates the snapshot in the thread of the processing.
+     *
+     * @param tokens The tokens of the parser
+     * @param previousCopies The copies of the rules of the parser in the previous snapshot
+     * @param copies Filled with the copies of the rules of the parser in this snapshot
+     */
+    GrammarSyntaxSnapshot(GrammarSyntaxEngine engine, int version, String text, List<ATEToken> tokens,
+                          Map<ElementRule,ElementRule> previousCopies, Map<ElementRule,ElementRule> copies)
+    {
+        super(engine, version, text, tokens);
+
+        GrammarSyntaxParser parser = (GrammarSyntaxParser) engine.getParser();
+        Copier copier = new Copier(tokens);
+
+        List<ElementRule> rules = new ArrayList<ElementRule>(parser.rules.size());
+        for(ElementRule rule : parser.rules) {
+            ElementRule copy = copier.copy(rule);
+            ElementRule previous = previousCopies.get(rule);
+            if(previous != null) {
+                reusedRules.put(previous, copy);
+                copy = previous;
+            }
+            copier.copies.put(rule, copy);
+            copies.put(rule, copy);
+            rules.add(copy);
+        }
+        this.rules = Collections.unmodifiableList(rules);
+
+        List<ElementBlock> blocks = new ArrayList<ElementBlock>(parser.blocks.size());
+        for(ElementBlock block : parser.blocks) {
+            blocks.add(copier.copy(block));
+        }
+        this.blocks = Collections.unmodifiableList(blocks);
+
+        List<ElementAction> actions = new ArrayList<ElementAction>(parser.actions.size());
+        for(ElementAction action : parser.actions) {
+            actions.add(copier.copy(action));
+        }
+        this.actions = Collections.unmodifiableList(actions);
+
+        List<ElementReference> references = new ArrayList<ElementReference>(parser.references.size());
+        for(ElementReference reference : parser.references) {
+            references.add(new ElementReference(copier.getRule(reference.rule), copier.getToken(reference.token)));
+        }
+        this.references = Collections.unmodifiableList(references);
+
+        List<ElementImport> imports = new ArrayList<ElementImport>(parser.imports.size());
+        for(ElementImport i : parser.imports) {
+            imports.add(new ElementImport(copier.getName(i.name), copier.getToken(i.token)));
+        }
+        this.imports = Collections.unmodifiableList(imports);
+
+        List<ElementGroup> groups = new ArrayList<ElementGroup>(parser.groups.size());
+        for(ElementGroup group : parser.groups) {
+            if(group.openGroup) {
+                groups.add(new ElementGroup(group.name, group.ruleIndex, copier.getToken(group.token)));
+            } else {
+                groups.add(new ElementGroup(group.ruleIndex, copier.getToken(group.token)));
+            }
+        }
+        this.groups = Collections.unmodifiableList(groups);
+
+        List<ATEToken> decls = new ArrayList<ATEToken>(parser.decls.size());
+        for(ATEToken decl : parser.decls) {
+            decls.add(copier.getToken(decl));
+        }
+        this.decls = Collections.unmodifiableList(decls);
+
+        this.name = copier.getName(parser.getName());
+        this.changes = engine.copyChanges(parser.getChanges(), previousCopies, copies);
+
+        // The scopes of the tokens are the blocks and the actions of the parser
+        for(ATEToken token : getTokens()) {
+            if(token.scope != null) {
+                Object scope = copier.copies.get(token.scope);
+                if(scope != null) {
+                    token.scope = (ATEScope) scope;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void published() {
+        for(Map.Entry<ElementRule,ElementRule> entry : reusedRules.entrySet()) {
+            entry.getKey().update(entry.getValue());
+        }
+    }
+
+    public List<ElementRule> getRules() {
+        return rules;
+    }
+
+    public List<ElementGroup> getGroups() {
+        return groups;
+    }
+
+    public List<ElementBlock> getBlocks() {
+        return blocks;
+    }
+
+    public List<ElementAction> getActions() {
+        return actions;
+    }
+
+    public List<ElementReference> getReferences() {
+        return references;
+    }
+
+    public List<ElementImport> getImports() {
+        return imports;
+    }
+
+    public List<ATEToken> getDecls() {
+        return decls;
+    }
+
+    public ElementGrammarName getName() {
+        return name;
+    }
+
+    /** Returns the rules added, removed or modified by the parsing of this version */
+    public GrammarSyntaxChanges getChanges() {
+        return changes;
+    }
+
+    /** Copies the elements of the parser: only used while the snapshot is created */
+    private class Copier {
+
+        /** The tokens of the parser: the copies have the same index in the snapshot */
+        final List<ATEToken> parserTokens;
+        /** The elements of the parser and their copy */
+        final Map<Object,Object> copies = new IdentityHashMap<Object,Object>();
+
+        Copier(List<ATEToken> parserTokens) {
+            this.parserTokens = parserTokens;
+        }
+
+        ATEToken getToken(ATEToken token) {
+            if(token == null)
+                return null;
+
+            if(token.index >= 0 && token.index < parserTokens.size() && parserTokens.get(token.index) == token) {
+                return GrammarSyntaxSnapshot.this.getTokens().get(token.index);
+            } else {
+                // Token of a previous parsing (for example the name of a grammar removed since)
+                return token.copy();
+            }
+        }
+
+        List<ATEToken> getTokens(List<ATEToken> tokens) {
+            if(tokens == null)
+                return null;
+
+            List<ATEToken> list = new ArrayList<ATEToken>(tokens.size());
+            for(ATEToken token : tokens) {
+                list.add(getToken(token));
+            }
+            return list;
+        }
+
+        ElementRule copy(ElementRule rule) {
+            return rule.copy(GrammarSyntaxSnapshot.this, getToken(rule.start), getToken(rule.colon), getToken(rule.end));
+        }
+
+        ElementRule getRule(ElementRule rule) {
+            if(rule == null)
+                return null;
+
+            ElementRule copy = (ElementRule) copies.get(rule);
+            if(copy == null) {
+                // Rule that has not been completely parsed (its elements are still listed)
+                copy = copy(rule);
+                copies.put(rule, copy);
+            }
+            return copy;
+        }
+
+        ElementBlock copy(ElementBlock block) {
+            ElementBlock copy = new ElementBlock(block.name, getToken(block.start));
+            copy.end = getToken(block.end);
+            copy.internalTokens = getTokens(block.internalTokens);
+            if(copy.internalTokens != null) {
+                copy.parse();
+            }
+            copies.put(block, copy);
+            return copy;
+        }
+
+        ElementAction copy(ElementAction action) {
+            ElementRule rule = getRule(action.rule);
+            ElementAction copy = new ElementAction(GrammarSyntaxSnapshot.this, rule, getToken(action.start));
+            copy.end = getToken(action.end);
+            copy.actionNum = action.actionNum;
+            copy.setScope(action.getScope() == action.rule ? rule : action.getScope());
+            copies.put(action, copy);
+            return copy;
+        }
+
+        ElementGrammarName getName(ElementGrammarName name) {
+            if(name == null)
+                return null;
+
+            ElementGrammarName copy = (ElementGrammarName) copies.get(name);
+            if(copy == null) {
+                copy = new ElementGrammarName(getToken(name.name), getToken(name.start), getToken(name.end), getToken(name.type));
+                copies.put(name, copy);
+            }
+            return copy;
+        }
+    }
+}
@@ -2,9 +2,13 @@ package org.antlr.works.menu;
 
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.debugger.DebuggerTab;
+import org.antlr.works.debugger.events.DBEventTraceWriter;
 import org.antlr.works.stats.StatisticsAW;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.StreamWatcher;
+import org.antlr.xjlib.appkit.utils.XJFileChooser;
+
+import java.io.File;
 
 /*
 
@@ -78,6 +82,32 @@ public class DebugMenu {
         window.getDebuggerTab().launchRemoteDebugger();
     }
 
+    public void openTrace() {
+        if(!XJFileChooser.shared().displayOpenDialog(window.getJavaContainer(), DBEventTraceWriter.EXTENSION, "Debugger trace", false))
+            return;
+
+        String file = XJFileChooser.shared().getSelectedFilePath();
+        if(file == null)
+            return;
+
+        window.getDebuggerTab().debuggerOpenTrace(new File(file));
+    }
+
+    public void saveTrace() {
+        if(!XJFileChooser.shared().displaySaveDialog(window.getJavaContainer(), DBEventTraceWriter.EXTENSION, "Debugger trace", false))
+            return;
+
+        String file = XJFileChooser.shared().getSelectedFilePath();
+        if(file == null)
+            return;
+
+        window.getDebuggerTab().debuggerSaveTrace(new File(file));
+    }
+
+    public boolean canSaveTrace() {
+        return window.getDebuggerTab().canSaveTrace();
+    }
+
     public void toggleInputTokens() {
         window.getDebuggerTab().toggleInputTokensBox();
         StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_DEBUGGER_TOGGLE_INPUT_TOKENS);
@@ -134,7 +134,15 @@ public class ExportMenu {
             return;
         }
 
-        saveImageToDisk(window.syntaxDiagramTab.getImage());
+        List<String> extensions = lookupAvailableImageFormat();
+        if(XJFileChooser.shared().displaySaveDialog(window.getJavaContainer(), extensions, extensions, false)) {
+            String file = XJFileChooser.shared().getSelectedFilePath();
+            try {
+                window.syntaxDiagramTab.writeImage(new File(file), file.substring(file.lastIndexOf(".")+1));
+            } catch (IOException e) {
+                XJAlert.display(window.getJavaContainer(), "Error", "Image \""+file+"\" cannot be saved because:\n"+e);
+            }
+        }
     }
 
     public void exportGViewAsImage(GView view) {
@@ -37,6 +37,7 @@ import org.antlr.works.generate.CodeGenerate;
 import org.antlr.works.generate.CodeGenerateDelegate;
 import org.antlr.works.grammar.CheckGrammar;
 import org.antlr.works.grammar.CheckGrammarDelegate;
+import org.antlr.works.grammar.antlr.GrammarError;
 import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.element.ElementGrammarName;
 import org.antlr.works.grammar.element.ElementRule;
@@ -186,6 +187,10 @@ public class GenerateMenu implements CodeGenerateDelegate, CheckGrammarDelegate
         // do nothing
     }
 
+    public void checkGrammarDidReportError(CheckGrammar source, GrammarError error, String ruleName) {
+        // do nothing
+    }
+
     public void checkGrammarDidEnd(CheckGrammar source, GrammarResult result) {
         if(result.getErrorCount() == 0) {
             generateCodeProcessContinued();
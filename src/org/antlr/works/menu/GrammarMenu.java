@@ -38,6 +38,7 @@ import org.antlr.works.grammar.CheckGrammar;
 import org.antlr.works.grammar.CheckGrammarDelegate;
 import org.antlr.works.grammar.RulesDependency;
 import org.antlr.works.grammar.TokensDFA;
+import org.antlr.works.grammar.antlr.GrammarError;
 import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.decisiondfa.DecisionDFA;
 import org.antlr.works.grammar.element.ElementGroup;
@@ -55,6 +56,7 @@ public class GrammarMenu implements CheckGrammarDelegate, XJDialogProgressDelega
 
     private final GrammarWindow window;    
     private CheckGrammar checkGrammar;
+    private int checkGrammarErrorCount;
     private boolean checkingGrammar;
 
     public GrammarMenu(GrammarWindow window) {
@@ -183,6 +185,19 @@ public class GrammarMenu implements CheckGrammarDelegate, XJDialogProgressDelega
 
     public void checkGrammarDidBegin(CheckGrammar source) {
         checkingGrammar = true;
+        checkGrammarErrorCount = 0;
+    }
+
+    public void checkGrammarDidReportError(CheckGrammar source, GrammarError error, String ruleName) {
+        if(!checkingGrammar) return;
+
+        checkGrammarErrorCount++;
+        StringBuilder info = new StringBuilder("Checking Grammar... ");
+        info.append(checkGrammarErrorCount).append(checkGrammarErrorCount > 1 ? " issues" : " issue").append(" found");
+        if(ruleName != null) {
+            info.append(" (last in rule ").append(ruleName).append(")");
+        }
+        window.setProgressInfo(info.toString());
     }
 
     public void checkGrammarDidEnd(CheckGrammar source, GrammarResult result) {
@@ -34,6 +34,7 @@ package org.antlr.works.prefs;
 import org.antlr.xjlib.appkit.app.XJApplication;
 import org.antlr.xjlib.appkit.app.XJPreferences;
 import org.antlr.xjlib.foundation.XJSystem;
+import org.antlr.xjlib.foundation.XJUtils;
 
 import java.awt.*;
 import java.util.Calendar;
@@ -55,6 +56,14 @@ public class AWPrefs {
     public static final String PREF_DEBUG_VERBOSE = "PREF_DEBUG_VERBOSE";
     public static final String PREF_DEBUG_DONT_OPTIMIZE_NFA = "PREF_DONT_OPTIMIZE_NFA";
 
+    /** Size in megabytes of the syntax diagrams cache kept in memory */
+    public static final String PREF_SD_CACHE_SIZE = "PREF_SD_CACHE_SIZE";
+    public static final int DEFAULT_SD_CACHE_SIZE = 16;
+
+    /** Directory where the syntax diagrams are cached between sessions (no disk cache if empty) */
+    public static final String PREF_SD_CACHE_PATH = "PREF_SD_CACHE_PATH";
+    public static final String DEFAULT_SD_CACHE_PATH = XJUtils.concatPath(XJUtils.concatPath(System.getProperty("user.home"), ".antlrworks"), "sdcache");
+
     public static final String PREF_DOT_TOOL_PATH = "PREF_DOT_TOOL_PATH";
     public static final String PREF_ANTLR3_OPTIONS = "PREF_ANTLR3_OPTIONS";
 
@@ -227,6 +236,13 @@ public class AWPrefs {
     public static final String PREF_DEBUGGER_ASK_GEN = "PREF_DEBUGGER_ASK_GEN";
     public static final boolean DEFAULT_DEBUGGER_ASK_GEN = false;
 
+    /** Run the debugged parser inside ANTLRWorks instead of an external Java process */
+    public static final String PREF_DEBUGGER_IN_PROCESS = "PREF_DEBUGGER_IN_PROCESS";
+    public static final boolean DEFAULT_DEBUGGER_IN_PROCESS = false;
+
+    /** Directory where each debugger session is traced (no trace if empty) */
+    public static final String PREF_DEBUGGER_TRACE_PATH = "PREF_DEBUGGER_TRACE_PATH";
+
     // Avanced
 
     public static final String PREF_ALERT_CHECK_GRAMMAR_SUCCESS = "PREF_ALERT_CHECK_GRAMMAR_SUCCESS";
@@ -235,6 +251,7 @@ public class AWPrefs {
     public static final String PREF_ALERT_INTERPRETER_LIMITATION = "PREF_ALERT_INTERPRETER_LIMITATION";
 
     public static final String PREF_CLEAR_CONSOLE_BEFORE_CHECK = "PREF_CLEAR_CONSOLE_BEFORE_CHECK";
+    public static final String PREF_CONCURRENT_ANALYSIS = "PREF_CONCURRENT_ANALYSIS";
 
     // Test Rig
     public static final String PREF_TEST_RIG_TEXT = "PREF_TEST_RIG_TEXT";
@@ -301,6 +318,14 @@ public class AWPrefs {
         return getPreferences().getBoolean(PREF_DEBUG_DONT_OPTIMIZE_NFA, false);
     }
 
+    public static int getSyntaxDiagramCacheSize() {
+        return getPreferences().getInt(PREF_SD_CACHE_SIZE, DEFAULT_SD_CACHE_SIZE);
+    }
+
+    public static String getSyntaxDiagramCachePath() {
+        return getPreferences().getString(PREF_SD_CACHE_PATH, DEFAULT_SD_CACHE_PATH);
+    }
+
     public static int getDebugDefaultLocalPort() {
         return getPreferences().getInt(PREF_DEBUG_LOCALPORT, DEFAULT_DEBUG_LOCALPORT);
     }
@@ -538,6 +563,10 @@ public class AWPrefs {
         return getPreferences().getBoolean(PREF_DEBUGGER_ASK_GEN, DEFAULT_DEBUGGER_ASK_GEN);
     }
 
+    public static boolean getDebuggerInProcess() {
+        return getPreferences().getBoolean(PREF_DEBUGGER_IN_PROCESS, DEFAULT_DEBUGGER_IN_PROCESS);
+    }
+
     public static XJPreferences getPreferences() {
         return XJApplication.shared().getPreferences();
     }
@@ -651,4 +680,16 @@ public class AWPrefs {
     public static boolean isClearConsoleBeforeCheckGrammar() {
         return getPreferences().getBoolean(PREF_CLEAR_CONSOLE_BEFORE_CHECK, false);
     }
+
+    public static boolean isConcurrentAnalysis() {
+        return getPreferences().getBoolean(PREF_CONCURRENT_ANALYSIS, true);
+    }
+
+    public static void setDebuggerTracePath(String path) {
+        getPreferences().setString(PREF_DEBUGGER_TRACE_PATH, path);
+    }
+
+    public static String getDebuggerTracePath() {
+        return getPreferences().getString(PREF_DEBUGGER_TRACE_PATH, "");
+    }
 }
@@ -179,6 +179,8 @@ public class ElementTemplateRule extends ElementTemplateScopable implements Comp
     }
 
     public void setItemIndex(int index) {
+        // The token keeps its attribute when moved in the text
+        start.materializeAttribute();
         start.start = index;
     }
 }
\ No newline at end of file
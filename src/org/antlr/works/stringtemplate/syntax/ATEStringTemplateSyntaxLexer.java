@@ -200,7 +200,7 @@ public class ATEStringTemplateSyntaxLexer extends ATESyntaxLexer {
             if(matchNewLine()) {
                 lineNumber++;
                 lineIndex = position+1;
-                lines.add(new ATELine(lineIndex));
+                addLine(new ATELine(lineIndex));
             }
         }
         return valid;
@@ -0,0 +1,101 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.utils;
+
+import org.antlr.tool.ErrorManager;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs a task of ANTLR in its own thread. ANTLR keeps the error listener and the error
+ * state per thread: the messages of the task are collected by the listener of this thread
+ * and merged into the listener and the error state of the thread that joins it. The maps of
+ * ANTLR holding these per-thread objects are not synchronized, so this thread registers and
+ * removes its listener only while the thread that started it is waiting for it.
+ */
+public abstract class ErrorListenerThread implements Runnable {
+
+    protected final ErrorListener listener = new ErrorListener();
+    private final Thread thread;
+
+    private ErrorManager.ErrorState errorState;
+
+    private final CountDownLatch registered = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    public ErrorListenerThread(String name) {
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    /** Starts the thread and waits until its error listener is registered */
+    public void start() throws InterruptedException {
+        thread.start();
+        registered.await();
+    }
+
+    public void run() {
+        ErrorManager.setErrorListener(listener);
+        errorState = ErrorManager.getErrorState();
+        registered.countDown();
+        try {
+            execute();
+        } finally {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+            ErrorManager.removeErrorListener();
+        }
+    }
+
+    /** Runs the task in this thread */
+    protected abstract void execute();
+
+    /** Waits for the task to complete and adds its messages to the error listener */
+    public void join(ErrorListener el) throws InterruptedException {
+        released.countDown();
+        thread.join();
+        el.infos.addAll(listener.infos);
+        el.errors.addAll(listener.errors);
+        el.warnings.addAll(listener.warnings);
+
+        // ANTLR checks that each message it formats was reported in the current thread
+        ErrorManager.ErrorState state = ErrorManager.getErrorState();
+        state.errors += errorState.errors;
+        state.warnings += errorState.warnings;
+        state.infos += errorState.infos;
+        state.errorMsgIDs.orInPlace(errorState.errorMsgIDs);
+        state.warningMsgIDs.orInPlace(errorState.warningMsgIDs);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.visualization;
+
+import org.antlr.tool.Grammar;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
+import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.visualization.graphics.graph.GGraph;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Renders the syntax diagrams of several rules in parallel without any window.
+ * Each worker thread uses its own SDGenerator (and therefore its own context, skin,
+ * factory and renderer): only the ANTLR grammars, which are created beforehand, are
+ * shared and they are only read.
+ */
+public class SDBatchRenderer {
+
+    private final GrammarEngine engine;
+    private final int threads;
+    private SDCache cache;
+
+    public SDBatchRenderer(GrammarEngine engine, int threads) {
+        this.engine = engine;
+        this.threads = Math.max(1, threads);
+    }
+
+    public void setCache(SDCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Renders each rule into 'outputDirectory/rule.format' and returns the result of each
+     * rule in the same order as the rules.
+     */
+    public List<Result> render(List<String> rules, final String format, final String outputDirectory) throws Exception {
+        // Create the grammars only once: the workers use them directly because the engine
+        // creates them again each time a rule is requested if they have any error.
+        ANTLRGrammarEngine antlrEngine = engine.getANTLRGrammarEngine();
+        antlrEngine.createGrammars();
+        final Grammar parserGrammar = antlrEngine.getParserGrammar();
+        final Grammar lexerGrammar = antlrEngine.getLexerGrammar();
+
+        final ThreadLocal<SDGenerator> generators = new ThreadLocal<SDGenerator>() {
+            @Override
+            protected SDGenerator initialValue() {
+                SDGenerator generator = new SDGenerator(engine);
+                generator.setCache(cache);
+                return generator;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, rules.size())));
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for(final String rule : rules) {
+                final Grammar grammar = ATEToken.isLexerName(rule) ? lexerGrammar : parserGrammar;
+                futures.add(executor.submit(new Callable<Result>() {
+                    public Result call() {
+                        return render(generators.get(), grammar, rule, format,
+                                XJUtils.concatPath(outputDirectory, rule+"."+format));
+                    }
+                }));
+            }
+
+            List<Result> results = new ArrayList<Result>();
+            for(Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result render(SDGenerator generator, Grammar grammar, String rule, String format, String file) {
+        Result result = new Result(rule, file);
+        try {
+            long t = System.nanoTime();
+            GGraph graph = generator.createGraph(grammar, rule);
+            result.buildTime = System.nanoTime()-t;
+
+            t = System.nanoTime();
+            generator.renderGraphToFile(graph, format, file);
+            result.renderTime = System.nanoTime()-t;
+        } catch (Throwable e) {
+            result.error = e;
+        }
+        return result;
+    }
+
+    public static class Result {
+
+        public final String rule;
+        public final String file;
+
+        /** Time in nanoseconds to build and lay out the graph */
+        public long buildTime;
+        /** Time in nanoseconds to draw and write the graph */
+        public long renderTime;
+        /** The error that prevented the diagram to be rendered, if any */
+        public Throwable error;
+
+        public Result(String rule, String file) {
+            this.rule = rule;
+            this.file = file;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.visualization;
+
+import org.antlr.grammar.v3.ANTLRParser;
+import org.antlr.runtime.tree.Tree;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Rule;
+import org.antlr.works.prefs.AWPrefs;
+import org.antlr.works.utils.Utils;
+import org.antlr.works.visualization.graphics.graph.GGraph;
+import org.antlr.works.visualization.graphics.graph.GGraphCodec;
+
+import java.io.*;
+import java.util.*;
+
+/** This class caches the syntax diagram of the rules. It is shared by all the windows: the
+ * key of a diagram only depends on the rule itself so the diagram survives the edition of
+ * the other rules and can be found again in another session in the cache directory.
+ *
+ * The diagrams are kept encoded (see GGraphCodec): each lookup returns a new graph that
+ * can be rendered in its own context. The encoded diagrams in memory are evicted in LRU
+ * order when their size exceeds the memory size. The directory is bounded the same way
+ * using the date of the files.
+ *
+ * The directory can be shared with other files (e.g. the output directory of the console):
+ * the cache only removes the files named after a key (see getKey) or the temporary files
+ * it creates for them.
+ */
+
+public class SDCache {
+
+    /** Size of the directory relative to the memory size */
+    public static final int DISK_SIZE_FACTOR = 4;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Length of a key: the hexadecimal SHA-1 digest returned by getKey */
+    private static final int KEY_LENGTH = 40;
+
+    private static SDCache shared;
+
+    private final File cacheDir;
+    private long memorySize;
+
+    private final Map<String,byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private long entriesSize = 0;
+
+    /** Size of the files in the directory or -1 if it hasn't been computed yet */
+    private long diskUsage = -1;
+
+    public static synchronized SDCache shared() {
+        if(shared == null) {
+            String path = AWPrefs.getSyntaxDiagramCachePath();
+            shared = new SDCache(path == null || path.length() == 0 ? null : new File(path), 0);
+        }
+        shared.setMemorySize(AWPrefs.getSyntaxDiagramCacheSize()*1024L*1024L);
+        return shared;
+    }
+
+    /** Creates a cache whose diagrams are also stored in the directory (if not null) */
+    public SDCache(File cacheDir, long memorySize) {
+        this.cacheDir = cacheDir;
+        this.memorySize = memorySize;
+    }
+
+    /** Returns the key of the diagram of the rule, or null if the rule doesn't exist. The key
+     * contains the tree of the rule, as parsed by ANTLR, and the signature of the elements it
+     * references: the name of a referenced rule is displayed whether or not it is defined and the
+     * label of a token depends on its type.
+     */
+    public static String getKey(Grammar g, String ruleName, boolean optimize) {
+        Rule r = g == null ? null : g.getRule(ruleName);
+        if(r == null || r.tree == null)
+            return null;
+
+        Set<String> references = new TreeSet<String>();
+        List<Tree> stack = new ArrayList<Tree>();
+        stack.add(r.tree);
+        while(!stack.isEmpty()) {
+            Tree t = stack.remove(stack.size()-1);
+            switch(t.getType()) {
+                case ANTLRParser.RULE_REF:
+                    references.add("rule "+t.getText()+" "+(g.getRule(t.getText()) != null));
+                    break;
+                case ANTLRParser.TOKEN_REF:
+                case ANTLRParser.STRING_LITERAL:
+                case ANTLRParser.CHAR_LITERAL:
+                    // The token types are renumbered when a literal is added anywhere in the grammar
+                    // but only their display name is rendered
+                    references.add("token "+t.getText()+" "+g.getTokenDisplayName(g.getTokenType(t.getText())));
+                    break;
+            }
+            for(int i=0; i<t.getChildCount(); i++) {
+                stack.add(t.getChild(i));
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(GGraphCodec.VERSION).append('\u0000');
+        sb.append(g.tool == null ? null : g.tool.VERSION).append('\u0000');
+        sb.append(optimize).append('\u0000');
+        sb.append(g.type).append('\u0000');
+        sb.append(ruleName).append('\u0000');
+        sb.append(r.tree.toStringTree()).append('\u0000');
+        for(String reference : references) {
+            sb.append(reference).append('\u0000');
+        }
+        return Utils.getDigest(sb.toString());
+    }
+
+    public synchronized void setMemorySize(long size) {
+        this.memorySize = size;
+        evict();
+    }
+
+    public synchronized long getMemoryUsage() {
+        return entriesSize;
+    }
+
+    /** Returns a new copy of the diagram or null if it isn't in the cache */
+    public synchronized GGraph get(String key) {
+        byte[] data = entries.get(key);
+        if(data == null) {
+            data = read(key);
+            if(data == null) return null;
+            put(key, data);
+        }
+
+        try {
+            return GGraphCodec.decode(data);
+        } catch (IOException e) {
+            remove(key);
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, GGraph graph) {
+        byte[] data;
+        try {
+            data = GGraphCodec.encode(graph);
+        } catch (IOException e) {
+            return;
+        }
+        put(key, data);
+        write(key, data);
+    }
+
+    public synchronized void remove(String key) {
+        byte[] data = entries.remove(key);
+        if(data != null)
+            entriesSize -= data.length;
+        if(cacheDir != null)
+            new File(cacheDir, key).delete();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        entriesSize = 0;
+        if(cacheDir != null) {
+            File[] files = listCacheFiles();
+            if(files != null) {
+                for(File file : files) {
+                    file.delete();
+                }
+            }
+            diskUsage = 0;
+        }
+    }
+
+    private void put(String key, byte[] data) {
+        byte[] previous = entries.put(key, data);
+        if(previous != null)
+            entriesSize -= previous.length;
+        entriesSize += data.length;
+        evict();
+    }
+
+    /** Removes the least recently used diagrams from the memory */
+    private void evict() {
+        Iterator<byte[]> iterator = entries.values().iterator();
+        while(entriesSize > memorySize && iterator.hasNext()) {
+            entriesSize -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    private byte[] read(String key) {
+        if(cacheDir == null) return null;
+
+        File file = new File(cacheDir, key);
+        if(!file.isFile()) return null;
+
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                byte[] data = new byte[(int)file.length()];
+                in.readFully(data);
+                // The most recently used files are the last ones to be removed
+                file.setLastModified(System.currentTimeMillis());
+                return data;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    /** Writes the diagram in the directory. Any error is ignored: the diagram will simply
+     * have to be created again in the next session.
+     */
+    private void write(String key, byte[] data) {
+        if(cacheDir == null) return;
+
+        File file = new File(cacheDir, key);
+        if(file.isFile()) return;
+
+        File temp = new File(cacheDir, key+TEMP_SUFFIX);
+        try {
+            cacheDir.mkdirs();
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            if(!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+
+        if(diskUsage >= 0)
+            diskUsage += data.length;
+        prune();
+    }
+
+    /** Removes the least recently used files of the cache when they exceed the size of the directory */
+    private void prune() {
+        long maxSize = memorySize*DISK_SIZE_FACTOR;
+        if(diskUsage >= 0 && diskUsage <= maxSize) return;
+
+        File[] files = listCacheFiles();
+        if(files == null) return;
+
+        diskUsage = 0;
+        for(File file : files) {
+            diskUsage += file.length();
+        }
+        if(diskUsage <= maxSize) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long ta = a.lastModified();
+                long tb = b.lastModified();
+                return ta < tb ? -1 : (ta == tb ? 0 : 1);
+            }
+        });
+        for(int i=0; i<files.length && diskUsage > maxSize; i++) {
+            long length = files[i].length();
+            if(files[i].delete())
+                diskUsage -= length;
+        }
+    }
+
+    /** Returns the files of the directory that belong to the cache or null if the directory
+     * cannot be listed.
+     */
+    private File[] listCacheFiles() {
+        return cacheDir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isFile() && isCacheFile(file.getName());
+            }
+        });
+    }
+
+    /** Returns true if the name is a key or the temporary file of a key */
+    private static boolean isCacheFile(String name) {
+        if(name.endsWith(TEMP_SUFFIX))
+            name = name.substring(0, name.length()-TEMP_SUFFIX.length());
+        if(name.length() != KEY_LENGTH) return false;
+
+        for(int i=0; i<name.length(); i++) {
+            char c = name.charAt(i);
+            if((c < '0' || c > '9') && (c < 'a' || c > 'f'))
+                return false;
+        }
+        return true;
+    }
+}
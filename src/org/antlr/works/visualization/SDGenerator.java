@@ -1,5 +1,6 @@
 package org.antlr.works.visualization;
 
+import org.antlr.tool.Grammar;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
@@ -51,6 +52,8 @@ public class SDGenerator implements GContextProvider {
     public GrammarEngine engine;
     public GContext context;
 
+    private SDCache cache;
+
     public SDGenerator(GrammarEngine engine) {
         this.engine = engine;
 
@@ -64,39 +67,101 @@ public class SDGenerator implements GContextProvider {
         encoder.write(graph);
     }
 
+    /** Uses the cache to avoid building again the graph of the rules that didn't change */
+    public void setCache(SDCache cache) {
+        this.cache = cache;
+    }
+
     public void renderRuleToEPSFile(String ruleName, String file) throws Exception {
-        GGraph graph = createGraph(ruleName);
+        renderGraphToEPSFile(createGraph(ruleName), file);
+    }
+
+    public void renderRuleToSVGFile(String ruleName, String file) throws Exception {
+        renderGraphToSVGFile(createGraph(ruleName), file);
+    }
+
+    public void renderRuleToBitmapFile(String ruleName, String imageFormat, String file) throws Exception {
+        renderGraphToBitmapFile(createGraph(ruleName), imageFormat, file);
+    }
+
+    /**
+     * Renders the graph in the specified format: 'eps', 'svg' or any bitmap format
+     * supported by ImageIO.
+     */
+    public void renderGraphToFile(GGraph graph, String format, String file) throws Exception {
+        if(format.equalsIgnoreCase("eps")) {
+            renderGraphToEPSFile(graph, file);
+        } else if(format.equalsIgnoreCase("svg")) {
+            renderGraphToSVGFile(graph, file);
+        } else {
+            renderGraphToBitmapFile(graph, format, file);
+        }
+    }
+
+    public void renderGraphToEPSFile(GGraph graph, String file) throws Exception {
         GEnginePS engine = new GEnginePS();
         context.setEngine(engine);
         graph.draw();
         XJUtils.writeStringToFile(engine.getPSText(), file);
     }
 
-    public void renderRuleToBitmapFile(String ruleName, String imageFormat, String file) throws Exception {
-        GGraph graph = createGraph(ruleName);
+    public void renderGraphToSVGFile(GGraph graph, String file) throws Exception {
+        GEngineSVG engine = new GEngineSVG();
+        context.setEngine(engine);
+        graph.draw();
+        XJUtils.writeStringToFile(engine.getSVGText(), file);
+    }
 
+    public void renderGraphToBitmapFile(final GGraph graph, String imageFormat, String file) throws Exception {
         int width = (int)(graph.getWidth()+1);
         int height = (int)(graph.getHeight()+1);
 
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-        Graphics2D g2d = (Graphics2D)image.getGraphics();
+        GPainter painter = new GPainter() {
+            public void paint(Graphics2D g2d) {
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
 
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+                context.setEngine(new GEngineGraphics());
+                context.setGraphics2D(g2d);
+                graph.draw();
+            }
+        };
 
-        context.setEngine(new GEngineGraphics());
-        context.setGraphics2D(g2d);
+        if(imageFormat.equalsIgnoreCase("png")) {
+            // Rendered by strip so the memory used doesn't depend on the size of the diagram
+            GPNGWriter.write(painter, width, height, new File(file));
+        } else {
+            BufferedImage image = GTileCache.createImage(width, height);
+            Graphics2D g2d = (Graphics2D)image.getGraphics();
+            painter.paint(g2d);
+            g2d.dispose();
 
-        g2d.setColor(Color.white);
-        g2d.fillRect(0, 0, width, height);
-        graph.draw();
-        g2d.dispose();
+            ImageIO.write(image, imageFormat, new File(file));
+        }
+    }
 
-        ImageIO.write(image, imageFormat, new File(file));
+    /** Builds and lays out the graph of the rule */
+    public GGraph createGraph(String ruleName) throws Exception {
+        return createGraph(engine.getANTLRGrammarEngine().getGrammarForRule(ruleName), ruleName);
     }
 
-    private GGraph createGraph(String ruleName) throws Exception {
-        GGraph graph = new GFactory().buildGraphsForRule(engine.getANTLRGrammarEngine(), ruleName);
+    /** Builds and lays out the graph of the rule of the specified grammar */
+    public GGraph createGraph(Grammar grammar, String ruleName) {
+        String key = null;
+        GGraph graph = null;
+        if(cache != null) {
+            key = SDCache.getKey(grammar, ruleName, true);
+            if(key != null)
+                graph = cache.get(key);
+        }
+        if(graph == null) {
+            graph = new GFactory().buildGraphsForRule(grammar, ruleName);
+            if(graph == null)
+                throw new IllegalArgumentException("Rule \""+ruleName+"\" not found");
+            if(key != null)
+                cache.put(key, graph);
+        }
+
         graph.setContext(context);
         graph.render(0,0);
         return graph;
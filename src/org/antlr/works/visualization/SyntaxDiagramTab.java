@@ -35,6 +35,7 @@ import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.editor.GrammarWindowTab;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
+import org.antlr.works.grammar.element.ElementReference;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 import org.antlr.works.prefs.AWPrefs;
@@ -51,9 +52,18 @@ import org.antlr.xjlib.appkit.utils.XJFileChooser;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class SyntaxDiagramTab extends GrammarWindowTab implements GContextProvider {
 
+    private static final int MAX_PRERENDER_RULES = 16;
+    private static final int MAX_PRERENDER_HISTORY = 8;
+
     protected VisualDrawing drawing;
 
     protected GContext context;
@@ -125,8 +135,52 @@ public class SyntaxDiagramTab extends GrammarWindowTab implements GContextProvid
     }
 
     public void setRule(ElementRule rule, boolean immediate) {
-        if(isEnabled())
+        if(isEnabled()) {
             drawing.setRule(rule, immediate);
+            drawing.setPrerenderRules(getPrerenderRules(rule));
+        }
+    }
+
+    /**
+     * Returns the rules the user is likely to visit next: the rules around the rule in the file,
+     * the rules it references and the recently visited rules.
+     */
+    private List<ElementRule> getPrerenderRules(ElementRule rule) {
+        Set<ElementRule> rules = new LinkedHashSet<ElementRule>();
+
+        List<ElementRule> allRules = window.getRules();
+        if(allRules != null) {
+            int index = allRules.indexOf(rule);
+            if(index > 0)
+                rules.add(allRules.get(index-1));
+            if(index != -1 && index < allRules.size()-1)
+                rules.add(allRules.get(index+1));
+        }
+
+        List<ElementReference> references = rule.getReferences();
+        if(references != null) {
+            for(ElementReference reference : references) {
+                ElementRule r = window.getGrammarEngine().getRuleWithName(reference.getName());
+                if(r != null)
+                    rules.add(r);
+            }
+        }
+
+        for(Integer position : window.goToHistory.getRecentPositions(MAX_PRERENDER_HISTORY)) {
+            ElementRule r = window.getEditorRules().getEnclosingRuleAtPosition(position);
+            if(r != null)
+                rules.add(r);
+        }
+
+        rules.remove(rule);
+
+        // The diagrams of the rules with errors must be computed on the main thread (see GrammarWindow)
+        List<ElementRule> prerenderRules = new ArrayList<ElementRule>();
+        for(ElementRule r : rules) {
+            if(!r.hasErrors() && prerenderRules.size() < MAX_PRERENDER_RULES)
+                prerenderRules.add(r);
+        }
+        return prerenderRules;
     }
 
     public void setPlaceholder(String placeholder) {
@@ -164,13 +218,17 @@ public class SyntaxDiagramTab extends GrammarWindowTab implements GContextProvid
     }
 
     public boolean canSaveImage() {
-        return getImage() != null;
+        return getCurrentGraph() != null;
     }
 
     public BufferedImage getImage() {
         return panel.getImageOfView();
     }
 
+    public void writeImage(File file, String format) throws IOException {
+        panel.writeImageOfView(file, format);
+    }
+
     public boolean canExportToBitmap() {
         return true;
     }
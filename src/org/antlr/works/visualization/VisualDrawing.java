@@ -33,22 +33,36 @@ package org.antlr.works.visualization;
 
 import org.antlr.analysis.NFAState;
 import org.antlr.works.ate.syntax.misc.ATEThread;
+import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.ErrorListener;
 import org.antlr.works.visualization.graphics.GFactory;
+import org.antlr.works.visualization.graphics.graph.GGraph;
 
 import javax.swing.*;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 public class VisualDrawing extends ATEThread {
 
+    /** Delay between two pre-rendered rules so the other tasks get a chance to run */
+    private static final int PRERENDER_DELAY = 100;
+
     protected SyntaxDiagramTab syntaxDiagramTab;
 
-    protected GFactory factory = new GFactory();
+    protected GFactory factory = new GFactory() {
+        @Override
+        protected boolean isCancelled() {
+            // Only the pre-rendering is cancelled: the graphs requested by the user are
+            // dropped anyway if the cache is cleared in the meantime
+            return prerendering && prerenderCancelled;
+        }
+    };
 
     protected String text;
     protected ElementRule rule;
@@ -58,6 +72,15 @@ public class VisualDrawing extends ATEThread {
     protected ElementRule threadLastProcessedRule;
 
     protected Map<ElementRule,List> cacheGraphs = new HashMap<ElementRule, List>();
+    /** Incremented each time the cache is cleared: the graphs created before are obsolete */
+    protected int cacheGeneration;
+
+    /** Rules whose graphs are created in the background when there is nothing else to do */
+    protected List<ElementRule> prerenderRules = new LinkedList<ElementRule>();
+    /** True while the thread is pre-rendering a rule (only accessed by the thread) */
+    private boolean prerendering;
+    /** Set when the grammar is edited to stop the pre-rendering between two graph builds */
+    private volatile boolean prerenderCancelled;
 
     public VisualDrawing(SyntaxDiagramTab syntaxDiagramTab) {
         this.syntaxDiagramTab = syntaxDiagramTab;
@@ -70,6 +93,12 @@ public class VisualDrawing extends ATEThread {
         syntaxDiagramTab = null;
     }
 
+    @Override
+    public Object getOwner() {
+        SyntaxDiagramTab tab = syntaxDiagramTab;
+        return tab == null ? null : tab.getWindow();
+    }
+
     public void toggleNFAOptimization() {
         factory.toggleNFAOptimization();
         clearCacheGraphs();
@@ -77,16 +106,36 @@ public class VisualDrawing extends ATEThread {
 
     public synchronized void setText(String text) {
         this.text = text;
+        // The rules are going to change: stop pre-rendering them
+        prerenderRules.clear();
+        prerenderCancelled = true;
         awakeThread(500);
     }
 
     public synchronized void setRule(ElementRule rule, boolean immediate) {
         this.rule = rule;
-        awakeThread(immediate?0:500);
+        // No need to wait if the graphs are ready
+        awakeThread(immediate || text == null && cacheGraphs.containsKey(rule)?0:500);
+    }
+
+    /**
+     * Sets the rules whose graphs should be created in the background once the current
+     * rule is displayed. Replaces the rules that have not been pre-rendered yet.
+     */
+    public synchronized void setPrerenderRules(List<ElementRule> rules) {
+        prerenderRules.clear();
+        for(ElementRule r : rules) {
+            if(!cacheGraphs.containsKey(r))
+                prerenderRules.add(r);
+        }
+        if(!prerenderRules.isEmpty() && !threadShouldProcess())
+            awakeThreadInBackground(PRERENDER_DELAY);
     }
 
     public synchronized void clearCacheGraphs() {
         cacheGraphs.clear();
+        cacheGeneration++;
+        prerenderCancelled = true;
     }
 
     /**
@@ -182,14 +231,86 @@ public class VisualDrawing extends ATEThread {
         refresh();
     }
 
-    protected synchronized void createGraphsForRule(ElementRule rule) throws Exception {
-        List graphs = cacheGraphs.get(rule);
-        if(graphs == null) {
-            factory.setOptimize(!AWPrefs.getDebugDontOptimizeNFA());
-            factory.setConsole(syntaxDiagramTab.getConsole());
-            graphs = factory.buildGraphsForRule(syntaxDiagramTab.getEngineGrammar(), rule.name, rule.errors);
-            if(graphs != null)
-                cacheGraphs.put(rule, graphs);
+    protected void createGraphsForRule(ElementRule rule) throws Exception {
+        // Don't hold the lock while the graphs are created so the main thread can continue
+        // to set the text and the rule in the meantime
+        int generation;
+        synchronized(this) {
+            if(cacheGraphs.containsKey(rule)) return;
+            generation = cacheGeneration;
+        }
+
+        List graphs = buildGraphsForRule(rule);
+        if(graphs != null) {
+            synchronized(this) {
+                // Drop the graphs if the cache was cleared in the meantime: they may have
+                // been created from the previous grammar
+                if(generation == cacheGeneration)
+                    cacheGraphs.put(rule, graphs);
+            }
+        }
+    }
+
+    protected List buildGraphsForRule(ElementRule rule) throws Exception {
+        List graphs = null;
+        synchronized(factory) {
+            ANTLRGrammarEngine engine = syntaxDiagramTab.getEngineGrammar();
+            boolean optimize = !AWPrefs.getDebugDontOptimizeNFA();
+
+            // The diagram of a rule without error only depends on the rule: look first in the
+            // shared cache. The diagrams of the errors depend on the analysis of the whole grammar.
+            String key = null;
+            if(!rule.hasErrors()) {
+                key = SDCache.getKey(engine.getGrammarForRule(rule.name), rule.name, optimize);
+                GGraph graph = key == null ? null : SDCache.shared().get(key);
+                if(graph != null)
+                    graphs = Collections.singletonList(graph);
+            }
+
+            if(graphs == null) {
+                factory.setOptimize(optimize);
+                factory.setConsole(syntaxDiagramTab.getConsole());
+                graphs = factory.buildGraphsForRule(engine, rule.name, rule.errors);
+                if(key != null && graphs != null && graphs.size() == 1 && graphs.get(0) instanceof GGraph)
+                    SDCache.shared().put(key, (GGraph)graphs.get(0));
+            }
+        }
+        return graphs;
+    }
+
+    private synchronized ElementRule nextPrerenderRule() {
+        prerenderCancelled = false;
+        while(!prerenderRules.isEmpty()) {
+            ElementRule r = prerenderRules.remove(0);
+            if(!cacheGraphs.containsKey(r))
+                return r;
+        }
+        return null;
+    }
+
+    /**
+     * Creates the graphs of one of the rules to pre-render and schedules the next one.
+     * Only one rule is processed per execution, at background priority: any request from
+     * the user supersedes the pre-rendering, which resumes afterward if the rules didn't
+     * change. An edit of the grammar stops the current execution between two graph builds.
+     */
+    private void threadPrerenderRule() {
+        ElementRule r = nextPrerenderRule();
+        if(r == null || !syntaxDiagramTab.getEngineGrammar().hasGrammar())
+            return;
+
+        prerendering = true;
+        try {
+            createGraphsForRule(r);
+        } catch (Exception e) {
+            // ignore: the error will be reported if the user selects the rule
+        } finally {
+            prerendering = false;
+        }
+
+        synchronized(this) {
+            if(!prerenderRules.isEmpty())
+                awakeThreadInBackground(PRERENDER_DELAY);
         }
     }
 
@@ -208,6 +329,13 @@ public class VisualDrawing extends ATEThread {
 
             // Process any rule
             threadProcessRule();
+
+            synchronized(this) {
+                if(!prerenderRules.isEmpty() && !threadShouldProcess())
+                    awakeThreadInBackground(PRERENDER_DELAY);
+            }
+        } else {
+            threadPrerenderRule();
         }
     }
 
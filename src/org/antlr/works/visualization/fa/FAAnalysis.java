@@ -32,7 +32,6 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.visualization.fa;
 
 import org.antlr.analysis.NFAState;
-import org.antlr.analysis.Transition;
 
 import java.util.*;
 
@@ -43,8 +42,8 @@ import java.util.*;
 
 public class FAAnalysis {
 
-    private Set processedStates = new HashSet();
-    private Map stateIncomingTransitionCount = new HashMap();
+    private Set<Object> processedStates = new HashSet<Object>();
+    private Map<Object,Integer> stateIncomingTransitionCount = new HashMap<Object,Integer>();
 
     public FAAnalysis() {
     }
@@ -72,53 +71,61 @@ public class FAAnalysis {
         recursiveAnalysis(state);
     }
 
+    /** The states are visited using an explicit stack instead of the recursion so
+     * that rules with thousands of alternatives or deep nesting do not overflow the stack.
+     */
+
     public void recursiveAnalysis(NFAState state) {
-        if(processedStates.contains(state))
-            return;
+        List<NFAState> stack = new ArrayList<NFAState>();
         processedStates.add(state);
-
-        for(int t=0; t<state.getNumberOfTransitions(); t++) {
-            Transition transition = state.transition(t);
-            addIncomingTransitionToState((NFAState)transition.target);
-            recursiveAnalysis((NFAState)transition.target);
+        stack.add(state);
+        while(!stack.isEmpty()) {
+            NFAState s = stack.remove(stack.size()-1);
+            for(int t=0; t<s.getNumberOfTransitions(); t++) {
+                NFAState target = (NFAState)s.transition(t).target;
+                addIncomingTransitionToState(target);
+                if(processedStates.add(target))
+                    stack.add(target);
+            }
         }
     }
 
     public void recursiveAnalysis(FAState state) {
-        if(processedStates.contains(state))
-            return;
+        List<FAState> stack = new ArrayList<FAState>();
         processedStates.add(state);
-
-        for(int t=0; t<state.getNumberOfTransitions(); t++) {
-            FATransition transition = state.transition(t);
-            addIncomingTransitionToState(transition.target);
-            recursiveAnalysis(transition.target);
+        stack.add(state);
+        while(!stack.isEmpty()) {
+            FAState s = stack.remove(stack.size()-1);
+            for(int t=0; t<s.getNumberOfTransitions(); t++) {
+                FAState target = s.transition(t).target;
+                addIncomingTransitionToState(target);
+                if(processedStates.add(target))
+                    stack.add(target);
+            }
         }
     }
 
     public void addIncomingTransitionToState(Object state) {
-        Integer i = (Integer)stateIncomingTransitionCount.get(state);
+        Integer i = stateIncomingTransitionCount.get(state);
         int count = 0;
         if(i != null)
-            count = i.intValue();
-        stateIncomingTransitionCount.put(state, new Integer(count+1));
+            count = i;
+        stateIncomingTransitionCount.put(state, count+1);
     }
 
     public int numberOfIncomingTransition(Object state) {
-        Integer i = (Integer)stateIncomingTransitionCount.get(state);
+        Integer i = stateIncomingTransitionCount.get(state);
         if(i == null)
             return 0;
         else
-            return i.intValue();
+            return i;
     }
     
     public String toString() {
         StringBuilder s = new StringBuilder();
-        Iterator iterator = stateIncomingTransitionCount.keySet().iterator();
-        while(iterator.hasNext()) {
-            NFAState key = (NFAState)iterator.next();
-            Integer count = (Integer)stateIncomingTransitionCount.get(key);
-            s.append(key.stateNumber+" = "+count.intValue()+"\n");
+        for(Map.Entry<Object,Integer> entry : stateIncomingTransitionCount.entrySet()) {
+            NFAState key = (NFAState)entry.getKey();
+            s.append(key.stateNumber+" = "+entry.getValue()+"\n");
         }
         return s.toString();
     }
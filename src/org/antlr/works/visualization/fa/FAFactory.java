@@ -53,6 +53,10 @@ public class FAFactory {
 
     protected int newStateNumber = State.INVALID_STATE_NUMBER-1;
 
+    /** States being built: used to detect the "loop" transitions */
+    protected Set<NFAState> currentPath = new HashSet<NFAState>();
+    protected List<Frame> stack = new ArrayList<Frame>();
+
     public FAFactory(Grammar g) {
         this.g = g;
     }
@@ -68,56 +72,60 @@ public class FAFactory {
 
     public FAState build(NFAState state) {
         processedStates.clear();
+        currentPath.clear();
+        stack.clear();
 
         // First compute the incoming transition for each state. This will be used later to
         // know if a state can be simplified or not.
         analysis.analyze(state);
-        return buildRecursiveState(state, new HashSet<NFAState>());
+
+        // The NFA is walked depth-first using an explicit stack of frames: the recursion
+        // used to overflow the stack with large rules and each transition was copying the
+        // set of the states along the current path.
+        FAState startState = buildState(state, new ArrayList<NFAState>(), null);
+        while(!stack.isEmpty()) {
+            Frame frame = stack.get(stack.size()-1);
+            if(!frame.next()) {
+                stack.remove(stack.size()-1);
+                frame.done();
+            }
+        }
+        return startState;
     }
 
-    public FAState buildRecursiveState(NFAState state, Set<NFAState> currentPath) {
-        if(processedStates.get(state) != null) {
-            FAState js = processedStates.get(state);
+    /** This method returns the GUI state of an NFA state. If the state has not been processed yet,
+     * a frame is pushed to build its transitions. The link, if any, is created between the parent
+     * state and this state once the state is built.
+     *
+     * The current path contains each built state until the transition of its parent, which
+     * owns the scope, has been fully processed (the scope is shared by all the states reached
+     * through the skipped states of a transition).
+     */
+
+    protected FAState buildState(NFAState state, List<NFAState> scope, Link link) {
+        FAState js = processedStates.get(state);
+        if(js != null) {
             if(currentPath.contains(state)) {
-                // Set this temporary flag to indicate to the parent method that
+                // Set this temporary flag to indicate to the link that
                 // the transition to be created has to be flagged as "loop".
                 js.loop = true;
             }
+            if(link != null)
+                link.connect(js);
             return js;
         }
 
-        FAState js = new FAState(state);
+        js = new FAState(state);
         processedStates.put(state, js);
         currentPath.add(state);
+        scope.add(state);
 
         if(state.isAcceptState()) {
             // Stop as soon as we reach an accepted state
-            return js;
-        }
-
-        for(int t=0; t<state.getNumberOfTransitions(); t++) {
-            FAState parentState = js;
-
-            Transition transition = state.transition(t);
-            NFAState target = (NFAState)transition.target;
-            if(targetStateIsInAnotherRule(transition)) {
-                target = targetStateOfTransition(transition);
-                parentState = createRuleReferenceState(parentState, transition, null);
-            }
-
-            if(transition.isEpsilon()) {
-                buildRecursiveSkipState(parentState, target, new HashSet<NFAState>(currentPath), new ArrayList<Integer>());
-            } else {
-                FAState targetState = buildRecursiveState(target, new HashSet<NFAState>(currentPath));
-                if(targetState.loop) {
-                    // Handle "loop" transition by creating a "normal" transition and assigning a flag
-                    // to this transition so when drawing it, we can draw the arrow at the right place
-                    // (in the reverse direction)
-                    targetState.addTransition(new FATransition(transition.label.toString(g), parentState), true);
-                    targetState.loop = false;
-                } else
-                    parentState.addTransition(new FATransition(transition.label.toString(g), targetState));
-            }
+            if(link != null)
+                link.connect(js);
+        } else {
+            stack.add(new StateFrame(state, js, link));
         }
         return js;
     }
@@ -126,36 +134,19 @@ public class FAFactory {
      *
      */
 
-    public void buildRecursiveSkipState(FAState parentState, NFAState state, Set<NFAState> currentPath, List<Integer> skippedStates) {
+    protected void buildSkipState(FAState parentState, NFAState state, List<NFAState> scope, SkippedStates skippedStates) {
         if(canBeSkipped(state)) {
-            // If the state can be skipped, apply recursively the same method for each transition(s)
+            // If the state can be skipped, apply the same method for each transition(s)
             // providing the parent state.
 
             // Record each skipped state. They will be added later to the transition that replace them
             Integer skippedState = state.stateNumber;
-            skippedStates.add(skippedState);
             skippedStatesMap.put(skippedState, parentState);
-
-            for(int t=0; t<state.getNumberOfTransitions(); t++) {
-                Transition transition = state.transition(t);
-                if(targetStateIsInAnotherRule(transition)) {
-                    NFAState target = targetStateOfTransition(transition);
-                    FAState ruleRefState = createRuleReferenceState(parentState, transition, skippedStates);
-                    buildRecursiveSkipState(ruleRefState, target, currentPath, new ArrayList<Integer>(skippedStates));
-                } else
-                    buildRecursiveSkipState(parentState, (NFAState)transition.target, currentPath, new ArrayList<Integer>(skippedStates));
-            }
+            stack.add(new SkipFrame(parentState, state, scope, new SkippedStates(skippedState, skippedStates)));
         } else {
-            // The state cannot be skipped. Build the remaining of the NFA...
-            FAState targetState = buildRecursiveState(state, currentPath);
-            // and then create the transition from the parentState to this current state
-            // (this is the simplification ;-))
-            if(targetState.loop) {
-                // See comment above (in the previous method)
-                targetState.addTransition(new FATransition(parentState, skippedStates), true);
-                targetState.loop = false;
-            } else
-                parentState.addTransition(new FATransition(targetState, skippedStates));
+            // The state cannot be skipped. Build the remaining of the NFA and then create
+            // the transition from the parentState to this current state (this is the simplification ;-))
+            buildState(state, scope, new Link(parentState, skippedStates));
         }
     }
 
@@ -272,4 +263,184 @@ public class FAFactory {
         }
         return state;
     }
+
+    protected abstract static class Frame {
+
+        /** Processes the next transition and returns false when there is none left */
+        public abstract boolean next();
+
+        public void done() {
+        }
+    }
+
+    /** Builds the transitions of a state that cannot be skipped
+     *
+     */
+
+    protected class StateFrame extends Frame {
+
+        protected NFAState state;
+        protected FAState js;
+        protected Link link;
+
+        protected int t = 0;
+        protected List<NFAState> scope = new ArrayList<NFAState>();
+
+        public StateFrame(NFAState state, FAState js, Link link) {
+            this.state = state;
+            this.js = js;
+            this.link = link;
+        }
+
+        @Override
+        public boolean next() {
+            // The previous transition has been fully built: its states are no longer on the current path
+            for(NFAState s : scope) {
+                currentPath.remove(s);
+            }
+            scope.clear();
+
+            if(t == state.getNumberOfTransitions())
+                return false;
+
+            FAState parentState = js;
+
+            Transition transition = state.transition(t++);
+            NFAState target = (NFAState)transition.target;
+            if(targetStateIsInAnotherRule(transition)) {
+                target = targetStateOfTransition(transition);
+                parentState = createRuleReferenceState(parentState, transition, null);
+            }
+
+            if(transition.isEpsilon()) {
+                buildSkipState(parentState, target, scope, null);
+            } else {
+                buildState(target, scope, new Link(parentState, transition.label.toString(g)));
+            }
+            return true;
+        }
+
+        @Override
+        public void done() {
+            if(link != null)
+                link.connect(js);
+        }
+    }
+
+    /** Follows the transitions of a skipped state
+     *
+     */
+
+    protected class SkipFrame extends Frame {
+
+        protected FAState parentState;
+        protected NFAState state;
+        protected List<NFAState> scope;
+        protected SkippedStates skippedStates;
+
+        protected int t = 0;
+
+        public SkipFrame(FAState parentState, NFAState state, List<NFAState> scope, SkippedStates skippedStates) {
+            this.parentState = parentState;
+            this.state = state;
+            this.scope = scope;
+            this.skippedStates = skippedStates;
+        }
+
+        @Override
+        public boolean next() {
+            if(t == state.getNumberOfTransitions())
+                return false;
+
+            Transition transition = state.transition(t++);
+            if(targetStateIsInAnotherRule(transition)) {
+                NFAState target = targetStateOfTransition(transition);
+                FAState ruleRefState = createRuleReferenceState(parentState, transition, SkippedStates.toList(skippedStates));
+                buildSkipState(ruleRefState, target, scope, skippedStates);
+            } else
+                buildSkipState(parentState, (NFAState)transition.target, scope, skippedStates);
+            return true;
+        }
+    }
+
+    /** Transition to create from the parent state once the target state is built
+     *
+     */
+
+    protected static class Link {
+
+        protected FAState parentState;
+        protected String label;
+        protected SkippedStates skippedStates;
+
+        public Link(FAState parentState, String label) {
+            this.parentState = parentState;
+            this.label = label;
+        }
+
+        public Link(FAState parentState, SkippedStates skippedStates) {
+            this.parentState = parentState;
+            this.skippedStates = skippedStates;
+        }
+
+        public void connect(FAState targetState) {
+            if(targetState.loop) {
+                // Handle "loop" transition by creating a "normal" transition and assigning a flag
+                // to this transition so when drawing it, we can draw the arrow at the right place
+                // (in the reverse direction)
+                targetState.addTransition(createTransition(parentState), true);
+                targetState.loop = false;
+            } else
+                parentState.addTransition(createTransition(targetState));
+        }
+
+        private FATransition createTransition(FAState targetState) {
+            if(label == null)
+                return new FATransition(targetState, SkippedStates.toList(skippedStates));
+            else
+                return new FATransition(label, targetState);
+        }
+    }
+
+    /** Immutable list of the skipped states along a path: the branches of a skipped state share
+     * their common prefix instead of each copying it. The array of the states is only created
+     * when the list is read.
+     */
+
+    protected static class SkippedStates extends AbstractList<Integer> {
+
+        protected Integer state;
+        protected SkippedStates previous;
+        protected int size;
+        protected Integer[] states;
+
+        public SkippedStates(Integer state, SkippedStates previous) {
+            this.state = state;
+            this.previous = previous;
+            this.size = previous == null ? 1 : previous.size+1;
+        }
+
+        public static List<Integer> toList(SkippedStates skippedStates) {
+            if(skippedStates == null)
+                return new ArrayList<Integer>();
+            else
+                return skippedStates;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if(states == null) {
+                states = new Integer[size];
+                for(SkippedStates s = this; s != null; s = s.previous) {
+                    states[s.size-1] = s.state;
+                }
+            }
+            return states[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
 }
@@ -57,6 +57,9 @@ public class FAState implements SSerializable {
     /** Temporary variable that is used by FAFactory to know when to build "loop" transition */
     public boolean loop = false;
 
+    /** Number of "loop" transitions, used to avoid scanning the transitions each time one is added */
+    private int loopTransitions = 0;
+
     public FAState(int stateNumber) {
         this.stateNumber = stateNumber;
     }
@@ -81,16 +84,26 @@ public class FAState implements SSerializable {
         transition.setSourceState(this);
         transition.setLoop(loop);
         transitions.add(transition);
+        if(loop)
+            loopTransitions++;
         sortTransitions();
     }
 
     private void sortTransitions() {
-        if(transitions.size()<=1)
+        if(transitions.size()<=1 || loopTransitions == 0)
             return;
 
         // We assume here that only one transition is a loop. This transition should always be
         // located at the end of the list.
 
+        int last = transitions.size()-1;
+        if(loopTransitions == 1) {
+            // The loop transition is either the new one or the one before
+            if(!transitions.get(last).loop)
+                Collections.swap(transitions, last-1, last);
+            return;
+        }
+
         for(int t=0; t<transitions.size(); t++) {
             FATransition transition = transitions.get(t);
             if(transition.loop && t<transitions.size()-1) {
@@ -66,13 +66,21 @@ public class GFactory {
         this.console = console;
     }
 
+    /** Called between two graph builds: returns true to stop building the graphs of the
+     * rule, in which case null is returned instead of the graphs.
+     */
+    protected boolean isCancelled() {
+        return false;
+    }
+
     public List buildGraphsForRule(ANTLRGrammarEngine antlrEngineGrammar, String rule, List<GrammarError> errors) throws Exception {
         if(antlrEngineGrammar == null)
             return null;
         
-        if(errors == null || errors.size() == 0)
-            return Collections.singletonList(buildGraphsForRule(antlrEngineGrammar, rule));
-        else
+        if(errors == null || errors.size() == 0) {
+            GGraph graph = buildGraphsForRule(antlrEngineGrammar, rule);
+            return graph == null && isCancelled() ? null : Collections.singletonList(graph);
+        } else
             return buildGraphsForErrors(antlrEngineGrammar, rule, errors);
     }
 
@@ -81,7 +89,18 @@ public class GFactory {
         if(startState == null)
             return null;
 
-        FAState state = new FAFactory(antlrEngineGrammar.getGrammarForRule(rule)).buildNFA(startState, optimize);
+        return buildGraphsForRule(antlrEngineGrammar.getGrammarForRule(rule), rule);
+    }
+
+    public GGraph buildGraphsForRule(Grammar grammar, String rule) {
+        NFAState startState = grammar == null ? null : grammar.getRuleStartState(rule);
+        if(startState == null)
+            return null;
+
+        FAState state = new FAFactory(grammar).buildNFA(startState, optimize);
+        if(isCancelled())
+            return null;
+
         GGraph graph = renderer.render(state);
         graph.setName(rule);
 
@@ -92,7 +111,10 @@ public class GFactory {
         List<GGraphGroup> graphs = new ArrayList<GGraphGroup>();
 
         for (GrammarError error : errors) {
-            graphs.add(buildGraphGroup(antlrEngineGrammar.getGrammarForRule(rule), error));
+            GGraphGroup group = buildGraphGroup(antlrEngineGrammar.getGrammarForRule(rule), error);
+            if(group == null)
+                return null;
+            graphs.add(group);
         }
 
         return graphs;
@@ -103,6 +125,9 @@ public class GFactory {
         List<GGraph> graphs = new ArrayList<GGraph>();
         FAFactory factory = new FAFactory(grammar);
         for (String rule : error.rules) {
+            if(isCancelled())
+                return null;
+
             NFAState startState = grammar.getRuleStartState(rule);
             FAState state = factory.buildNFA(startState, optimize);
 
@@ -0,0 +1,180 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.visualization.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a drawing as a PNG image by rendering it strip by strip and compressing each
+ * strip as soon as it is rendered, so the memory used doesn't depend on the height
+ * of the drawing.
+ */
+public class GPNGWriter {
+
+    /** Maximum number of pixels rendered at once */
+    private static final int MAX_STRIP_PIXELS = 1024*1024;
+
+    private static final byte[] SIGNATURE = { (byte)137, 80, 78, 71, 13, 10, 26, 10 };
+
+    public static void write(GPainter painter, int width, int height, File file) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            write(painter, width, height, os);
+        } finally {
+            os.close();
+        }
+    }
+
+    public static void write(GPainter painter, int width, int height, OutputStream os) throws IOException {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid image size "+width+"x"+height);
+
+        DataOutputStream out = new DataOutputStream(os);
+        out.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(header);
+        dos.writeInt(width);
+        dos.writeInt(height);
+        dos.writeByte(8);   // bit depth
+        dos.writeByte(2);   // color type: RGB
+        dos.writeByte(0);   // compression method
+        dos.writeByte(0);   // filter method
+        dos.writeByte(0);   // no interlace
+        writeChunk(out, "IHDR", header.toByteArray(), header.size());
+
+        int stripHeight = Math.max(1, Math.min(height, MAX_STRIP_PIXELS/width));
+        BufferedImage strip = new BufferedImage(width, stripHeight, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte)strip.getRaster().getDataBuffer()).getData();
+        byte[] row = new byte[1+3*width];
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        DeflaterOutputStream data = new DeflaterOutputStream(new ChunkOutputStream(out, "IDAT"), deflater);
+        try {
+            for(int y = 0; y < height; y += stripHeight) {
+                Graphics2D g = strip.createGraphics();
+                g.setColor(Color.white);
+                g.fillRect(0, 0, width, stripHeight);
+                g.translate(0, -y);
+                painter.paint(g);
+                g.dispose();
+
+                for(int line = 0; line < stripHeight && y+line < height; line++) {
+                    // Filter type None followed by the RGB samples (the strip is stored as BGR)
+                    row[0] = 0;
+                    int offset = line*3*width;
+                    for(int i = 0; i < width; i++) {
+                        row[1+3*i] = pixels[offset+3*i+2];
+                        row[2+3*i] = pixels[offset+3*i+1];
+                        row[3+3*i] = pixels[offset+3*i];
+                    }
+                    data.write(row);
+                }
+            }
+            data.close();
+        } finally {
+            deflater.end();
+            strip.flush();
+        }
+
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int)crc.getValue());
+    }
+
+    /** Splits the compressed data into chunks of the specified type */
+    private static class ChunkOutputStream extends OutputStream {
+
+        private static final int CHUNK_SIZE = 64*1024;
+
+        private final DataOutputStream out;
+        private final String type;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int length = 0;
+
+        public ChunkOutputStream(DataOutputStream out, String type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if(length == buffer.length)
+                flushChunk();
+            buffer[length++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while(len > 0) {
+                if(length == buffer.length)
+                    flushChunk();
+                int count = Math.min(len, buffer.length-length);
+                System.arraycopy(b, off, buffer, length, count);
+                length += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if(length > 0) {
+                writeChunk(out, type, buffer, length);
+                length = 0;
+            }
+        }
+
+        /** Writes the remaining data but doesn't close the underlying stream */
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.visualization.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches a drawing as fixed-size tiles so only the tiles intersecting the visible area
+ * are rendered and kept in memory, whatever the size of the drawing. The least recently
+ * drawn tiles are discarded once the cache is full. The cache is sized from the visible
+ * area (see setVisibleSize) so that it always keeps the visible tiles and the tiles around.
+ */
+public class GTileCache {
+
+    public static final int TILE_SIZE = 256;
+    public static final int DEFAULT_MIN_TILES = 16;
+
+    /** Number of visible areas kept in the cache */
+    public static final int VISIBLE_FACTOR = 2;
+
+    private final Map<Point,BufferedImage> tiles;
+    private final int minTiles;
+    private int maxTiles;
+    private int width;
+    private int height;
+
+    public GTileCache() {
+        this(DEFAULT_MIN_TILES);
+    }
+
+    /** Creates a cache that keeps at least the specified number of tiles */
+    public GTileCache(int minTiles) {
+        this.minTiles = minTiles;
+        this.maxTiles = minTiles;
+        tiles = new LinkedHashMap<Point, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Point, BufferedImage> eldest) {
+                if(size() > maxTiles) {
+                    eldest.getValue().flush();
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+    }
+
+    /**
+     * Sizes the cache for a visible area of the specified size (in the coordinates of the
+     * drawing). It has to be called again when the visible area is resized or zoomed.
+     */
+    public void setVisibleSize(int width, int height) {
+        maxTiles = Math.max(minTiles, VISIBLE_FACTOR*getTileCount(width, height));
+
+        Iterator<BufferedImage> iterator = tiles.values().iterator();
+        while(tiles.size() > maxTiles && iterator.hasNext()) {
+            iterator.next().flush();
+            iterator.remove();
+        }
+    }
+
+    public int getMaxTiles() {
+        return maxTiles;
+    }
+
+    /** Returns the maximum number of tiles intersecting an area of the specified size */
+    public static int getTileCount(int width, int height) {
+        if(width <= 0 || height <= 0)
+            return 0;
+
+        // An area that isn't aligned on the tiles intersects one more column and row
+        int columns = (width+TILE_SIZE-2)/TILE_SIZE+1;
+        int rows = (height+TILE_SIZE-2)/TILE_SIZE+1;
+        return columns*rows;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isEmpty() {
+        return tiles.isEmpty();
+    }
+
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    /** Discards all the tiles */
+    public void invalidate() {
+        for(BufferedImage tile : tiles.values()) {
+            tile.flush();
+        }
+        tiles.clear();
+    }
+
+    /** Discards all the tiles and sets the size of the drawing */
+    public void invalidate(int width, int height) {
+        invalidate();
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Draws the tiles intersecting the clip of the graphics context. The missing tiles are
+     * rendered using the painter or left blank if the painter is null.
+     */
+    public void paint(Graphics2D g, GPainter painter) {
+        Rectangle area = new Rectangle(0, 0, width, height);
+        Rectangle clip = g.getClipBounds();
+        if(clip != null)
+            area = area.intersection(clip);
+        if(area.isEmpty())
+            return;
+
+        int firstColumn = area.x/TILE_SIZE;
+        int lastColumn = (area.x+area.width-1)/TILE_SIZE;
+        int firstRow = area.y/TILE_SIZE;
+        int lastRow = (area.y+area.height-1)/TILE_SIZE;
+
+        Map<Point,BufferedImage> visibleTiles = new HashMap<Point, BufferedImage>();
+        Rectangle missing = null;
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int column = firstColumn; column <= lastColumn; column++) {
+                Point key = new Point(column, row);
+                BufferedImage tile = tiles.get(key);
+                if(tile != null) {
+                    visibleTiles.put(key, tile);
+                } else if(painter != null) {
+                    Rectangle bounds = new Rectangle(column*TILE_SIZE, row*TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                    missing = missing == null ? bounds : missing.union(bounds);
+                }
+            }
+        }
+
+        if(missing != null) {
+            renderTiles(missing, painter, visibleTiles);
+        }
+
+        for(Map.Entry<Point,BufferedImage> entry : visibleTiles.entrySet()) {
+            Point key = entry.getKey();
+            g.drawImage(entry.getValue(), key.x*TILE_SIZE, key.y*TILE_SIZE, null);
+        }
+    }
+
+    /**
+     * Renders the area covering the missing tiles in one pass (the painter draws the whole
+     * drawing each time it is called) and cuts it into tiles.
+     */
+    private void renderTiles(Rectangle area, GPainter painter, Map<Point,BufferedImage> visibleTiles) {
+        BufferedImage image = createImage(area.width, area.height);
+        Graphics2D g = image.createGraphics();
+        g.translate(-area.x, -area.y);
+        painter.paint(g);
+        g.dispose();
+
+        for(int y = area.y; y < area.y+area.height; y += TILE_SIZE) {
+            for(int x = area.x; x < area.x+area.width; x += TILE_SIZE) {
+                Point key = new Point(x/TILE_SIZE, y/TILE_SIZE);
+                if(visibleTiles.containsKey(key))
+                    continue;
+
+                BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_3BYTE_BGR);
+                Graphics2D gTile = tile.createGraphics();
+                gTile.drawImage(image, area.x-x, area.y-y, null);
+                gTile.dispose();
+
+                tiles.put(key, tile);
+                visibleTiles.put(key, tile);
+            }
+        }
+        image.flush();
+    }
+
+    /** Creates a white image of the specified size */
+    public static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.white);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+}
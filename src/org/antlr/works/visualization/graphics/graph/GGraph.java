@@ -77,6 +77,11 @@ public class GGraph extends GGraphAbstract implements SSerializable {
         this.nodes = nodes;
     }
 
+    /** Returns the dimension of the graph without the rule name */
+    GDimension getGraphDimension() {
+        return dimension;
+    }
+
     public GDimension getDimension() {
         GDimension d = new GDimension(dimension);
         if(context.isShowRuleName()) {
@@ -0,0 +1,337 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.visualization.graphics.graph;
+
+import org.antlr.works.visualization.fa.FAState;
+import org.antlr.works.visualization.fa.FATransition;
+import org.antlr.works.visualization.graphics.primitive.GDimension;
+import org.antlr.works.visualization.graphics.primitive.GPoint;
+import org.antlr.works.visualization.graphics.shape.GLink;
+import org.antlr.works.visualization.graphics.shape.GNode;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** This class encodes a rendered graph (its nodes, links and the GUI NFA they represent) into
+ * a compact binary form and decodes it back. Each object is written once and referenced by its
+ * index, without recursion, so large rules can be encoded as well.
+ *
+ * The literals of the positions and dimensions are encoded as is: they don't depend on the
+ * context (skin, zoom) used later to render the graph.
+ */
+
+public class GGraphCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int NULL = -1;
+    private static final int NEW_STRING = -2;
+
+    private final Map<String,Integer> strings = new HashMap<String, Integer>();
+    private final List<String> stringsList = new ArrayList<String>();
+
+    public static byte[] encode(GGraph graph) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes)));
+        new GGraphCodec().write(graph, out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    public static GGraph decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(data))));
+        try {
+            return new GGraphCodec().read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void write(GGraph graph, DataOutputStream out) throws IOException {
+        out.writeInt(VERSION);
+
+        // Collect the states and the transitions reachable from the nodes
+        List<FAState> states = new ArrayList<FAState>();
+        Map<FAState,Integer> statesIndex = new IdentityHashMap<FAState, Integer>();
+        List<FATransition> transitions = new ArrayList<FATransition>();
+        Map<FATransition,Integer> transitionsIndex = new IdentityHashMap<FATransition, Integer>();
+        for(GNode node : graph.nodes) {
+            addState(node.state, states, statesIndex);
+        }
+        for(int i=0; i<states.size(); i++) {
+            for(FATransition transition : states.get(i).transitions) {
+                addTransition(transition, transitions, transitionsIndex);
+                addState(transition.target, states, statesIndex);
+            }
+        }
+        for(GNode node : graph.nodes) {
+            for(GLink link : node.links) {
+                addTransition(link.transition, transitions, transitionsIndex);
+            }
+        }
+        for(int i=0; i<transitions.size(); i++) {
+            FATransition transition = transitions.get(i);
+            addState(transition.source, states, statesIndex);
+            addState(transition.target, states, statesIndex);
+        }
+
+        out.writeInt(states.size());
+        for(FAState state : states) {
+            out.writeInt(state.stateNumber);
+            out.writeBoolean(state.acceptedState);
+            writeString(state.enclosingRuleName, out);
+            writeString(state.externalRuleRefName, out);
+            out.writeBoolean(state.loop);
+        }
+
+        out.writeInt(transitions.size());
+        for(FATransition transition : transitions) {
+            writeIndex(transition.source, statesIndex, out);
+            writeString(transition.label, out);
+            writeIndex(transition.target, statesIndex, out);
+            out.writeBoolean(transition.loop);
+            out.writeBoolean(transition.externalRuleRef);
+            if(transition.skippedStates == null) {
+                out.writeInt(NULL);
+            } else {
+                out.writeInt(transition.skippedStates.size());
+                for(Integer s : transition.skippedStates) {
+                    out.writeInt(s);
+                }
+            }
+        }
+
+        for(FAState state : states) {
+            out.writeInt(state.transitions.size());
+            for(FATransition transition : state.transitions) {
+                writeIndex(transition, transitionsIndex, out);
+            }
+        }
+
+        Map<GNode,Integer> nodesIndex = new IdentityHashMap<GNode, Integer>();
+        for(GNode node : graph.nodes) {
+            nodesIndex.put(node, nodesIndex.size());
+        }
+
+        out.writeInt(graph.nodes.size());
+        for(GNode node : graph.nodes) {
+            writeIndex(node.state, statesIndex, out);
+            writePoint(node.position, out);
+            writeDimension(node.nodeDimension, out);
+            writeDimension(node.linkDimension, out);
+            out.writeBoolean(node.lastNodeOfRule);
+        }
+        for(GNode node : graph.nodes) {
+            out.writeInt(node.links.size());
+            for(GLink link : node.links) {
+                writeIndex(link.transition, transitionsIndex, out);
+                writeIndex(link.target, nodesIndex, out);
+                writeDimension(link.branchDim, out);
+                writePoint(link.virtualPosition, out);
+                out.writeBoolean(link.last);
+            }
+        }
+
+        writeString(graph.name, out);
+        writeDimension(graph.getGraphDimension(), out);
+    }
+
+    private GGraph read(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if(version != VERSION)
+            throw new IOException("Unsupported graph version "+version);
+
+        FAState[] states = new FAState[in.readInt()];
+        for(int i=0; i<states.length; i++) {
+            FAState state = new FAState(in.readInt());
+            state.acceptedState = in.readBoolean();
+            state.enclosingRuleName = readString(in);
+            state.externalRuleRefName = readString(in);
+            state.loop = in.readBoolean();
+            states[i] = state;
+        }
+
+        FATransition[] transitions = new FATransition[in.readInt()];
+        for(int i=0; i<transitions.length; i++) {
+            FAState source = readElement(states, in);
+            String label = readString(in);
+            FATransition transition = new FATransition(label, readElement(states, in));
+            transition.setSourceState(source);
+            transition.setLoop(in.readBoolean());
+            transition.setExternalRuleRef(in.readBoolean());
+            int count = in.readInt();
+            if(count != NULL) {
+                transition.skippedStates = new ArrayList<Integer>(count);
+                for(int s=0; s<count; s++) {
+                    transition.skippedStates.add(in.readInt());
+                }
+            }
+            transitions[i] = transition;
+        }
+
+        for(FAState state : states) {
+            int count = in.readInt();
+            for(int t=0; t<count; t++) {
+                state.transitions.add(readElement(transitions, in));
+            }
+        }
+
+        GNode[] nodes = new GNode[in.readInt()];
+        for(int i=0; i<nodes.length; i++) {
+            GNode node = new GNode();
+            node.setState(readElement(states, in));
+            node.position = readPoint(in);
+            node.nodeDimension = readDimension(in);
+            node.linkDimension = readDimension(in);
+            node.lastNodeOfRule = in.readBoolean();
+            nodes[i] = node;
+        }
+        for(GNode node : nodes) {
+            int count = in.readInt();
+            for(int l=0; l<count; l++) {
+                GLink link = new GLink();
+                link.transition = readElement(transitions, in);
+                link.target = readElement(nodes, in);
+                link.branchDim = readDimension(in);
+                link.virtualPosition = readPoint(in);
+                link.last = in.readBoolean();
+                node.addLink(link);
+            }
+        }
+
+        GGraph graph = new GGraph();
+        String name = readString(in);
+        graph.setDimension(readDimension(in));
+        graph.setNodes(new ArrayList<GNode>(Arrays.asList(nodes)));
+        if(name != null)
+            graph.setName(name);
+        return graph;
+    }
+
+    private static void addState(FAState state, List<FAState> states, Map<FAState,Integer> index) {
+        if(state != null && !index.containsKey(state)) {
+            index.put(state, states.size());
+            states.add(state);
+        }
+    }
+
+    private static void addTransition(FATransition transition, List<FATransition> transitions, Map<FATransition,Integer> index) {
+        if(transition != null && !index.containsKey(transition)) {
+            index.put(transition, transitions.size());
+            transitions.add(transition);
+        }
+    }
+
+    private static <T> void writeIndex(T object, Map<T,Integer> index, DataOutputStream out) throws IOException {
+        Integer i = object == null ? null : index.get(object);
+        out.writeInt(i == null ? NULL : i);
+    }
+
+    private static <T> T readElement(T[] elements, DataInputStream in) throws IOException {
+        int index = in.readInt();
+        if(index == NULL)
+            return null;
+        if(index < 0 || index >= elements.length)
+            throw new IOException("Invalid index "+index);
+        return elements[index];
+    }
+
+    private void writeDimension(GDimension dimension, DataOutputStream out) throws IOException {
+        out.writeBoolean(dimension != null);
+        if(dimension != null) {
+            writeString(dimension.width, out);
+            writeString(dimension.up, out);
+            writeString(dimension.down, out);
+        }
+    }
+
+    private GDimension readDimension(DataInputStream in) throws IOException {
+        if(!in.readBoolean())
+            return null;
+        String width = readString(in);
+        String up = readString(in);
+        return new GDimension(width, up, readString(in));
+    }
+
+    private void writePoint(GPoint point, DataOutputStream out) throws IOException {
+        out.writeBoolean(point != null);
+        if(point != null) {
+            writeString(point.x, out);
+            writeString(point.y, out);
+        }
+    }
+
+    private GPoint readPoint(DataInputStream in) throws IOException {
+        if(!in.readBoolean())
+            return null;
+        GPoint point = new GPoint();
+        point.x = readString(in);
+        point.y = readString(in);
+        return point;
+    }
+
+    /** Each string is written once: the literals of the positions and dimensions are often shared */
+    private void writeString(String s, DataOutputStream out) throws IOException {
+        if(s == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        Integer index = strings.get(s);
+        if(index != null) {
+            out.writeInt(index);
+            return;
+        }
+        strings.put(s, strings.size());
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(NEW_STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int index = in.readInt();
+        if(index == NULL)
+            return null;
+        if(index == NEW_STRING) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            String s = new String(bytes, "UTF-8");
+            stringsList.add(s);
+            return s;
+        }
+        if(index < 0 || index >= stringsList.size())
+            throw new IOException("Invalid string index "+index);
+        return stringsList.get(index);
+    }
+}
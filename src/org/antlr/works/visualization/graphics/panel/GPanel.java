@@ -56,6 +56,8 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 public class GPanel implements XJNotificationObserver {
@@ -123,6 +125,10 @@ public class GPanel implements XJNotificationObserver {
         return view.getImage();
     }
 
+    public void writeImageOfView(File file, String format) throws IOException {
+        view.writeImage(file, format);
+    }
+
     public void createPanel() {
         if(rule == null)
             return;
@@ -33,6 +33,9 @@ package org.antlr.works.visualization.graphics.panel;
 
 import org.antlr.works.ate.ATEUtilities;
 import org.antlr.works.visualization.graphics.GContext;
+import org.antlr.works.visualization.graphics.GPNGWriter;
+import org.antlr.works.visualization.graphics.GPainter;
+import org.antlr.works.visualization.graphics.GTileCache;
 import org.antlr.works.visualization.graphics.graph.GGraphAbstract;
 import org.antlr.works.visualization.graphics.graph.GGraphGroup;
 import org.antlr.works.visualization.graphics.path.GPath;
@@ -42,10 +45,13 @@ import org.antlr.xjlib.appkit.menu.XJMenuItem;
 import org.antlr.xjlib.appkit.menu.XJMenuItemDelegate;
 import org.antlr.xjlib.appkit.utils.XJSmoothScrolling;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -56,7 +62,15 @@ public class GView extends JPanel implements XJMenuItemDelegate {
     protected boolean cachedImageResize = false;
 
     protected String placeholder;
-    protected BufferedImage cachedImage = null;
+
+    /** The graph is cached as tiles so only the visible part is rendered and kept in memory */
+    protected GTileCache cachedTiles = new GTileCache();
+    protected GPainter painter = new GPainter() {
+        public void paint(Graphics2D g) {
+            ATEUtilities.prepareForText(g);
+            render(g);
+        }
+    };
 
     protected List graphs = new ArrayList();
     protected int currentGraphIndex = 0;
@@ -140,7 +154,7 @@ public class GView extends JPanel implements XJMenuItemDelegate {
     }
 
     public void cacheInvalidate() {
-        cachedImage = null;
+        cachedTiles.invalidate();
     }
 
     public void cacheRerender() {
@@ -154,15 +168,27 @@ public class GView extends JPanel implements XJMenuItemDelegate {
     public BufferedImage getImage() {
         if(getCurrentGraph() == null) return null;
         
-        BufferedImage image = new BufferedImage(getPaintWidth(), getPaintHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage image = GTileCache.createImage(getPaintWidth(), getPaintHeight());
         Graphics2D g = (Graphics2D)image.getGraphics();
-        g.setColor(Color.white);
-        g.fillRect(0, 0, getPaintWidth(), getPaintHeight());
         render(g);
         g.dispose();
         return image;
     }
 
+    /**
+     * Writes the image of the current graph. The PNG images are rendered and encoded by strip
+     * so very large graphs can be exported without allocating the whole image.
+     */
+    public void writeImage(File file, String format) throws IOException {
+        if(getCurrentGraph() == null) return;
+
+        if(format.equalsIgnoreCase("png")) {
+            GPNGWriter.write(painter, getPaintWidth(), getPaintHeight(), file);
+        } else {
+            ImageIO.write(getImage(), format, file);
+        }
+    }
+
     public boolean setNextGraph() {
         currentGraphIndex++;
         if(currentGraphIndex>=graphs.size()) {
@@ -324,43 +350,37 @@ public class GView extends JPanel implements XJMenuItemDelegate {
         int height = getPaintHeight();
 
         if(useCachedImage) {
-            boolean sizeChanged = cachedImage != null && (cachedImage.getWidth() != width || cachedImage.getHeight() != height);
-
-            if(sizeChanged) {
-                // Discard the cache image only if it already exists and if the cachedImageResize flag is false.
-                // The cachedImageResize flag indicates, if true, that we should use the cachedImage
-                // instead of re-creating a new one (useful for fast live resize).
-                if(!cachedImageResize && cachedImage != null) {
-                    cachedImage.flush();
-                    cachedImage = null;
-                }
-            }
+            boolean sizeChanged = cachedTiles.getWidth() != width || cachedTiles.getHeight() != height;
 
-            if(cachedImage == null) {
-                // Create a new cache image.
-                cachedImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-                Graphics2D gCache = (Graphics2D)cachedImage.getGraphics();
-                ATEUtilities.prepareForText(gCache);
-                gCache.setColor(Color.white);
-                gCache.fillRect(0, 0, width, height);
-                render(gCache);
-                gCache.dispose();
-            } else if(cachedImageRerender) {
-                // Only render the cachedImage without re-creating it again
-                Graphics2D gCache = (Graphics2D)cachedImage.getGraphics();
-                ATEUtilities.prepareForText(gCache);
-                gCache.setColor(Color.white);
-                gCache.fillRect(0, 0, width, height);
-                render(gCache);
-                gCache.dispose();
+            // The cachedImageResize flag indicates, if true, that we should scale the tiles already
+            // rendered instead of rendering the graph again (useful for fast live resize).
+            boolean scaleTiles = sizeChanged && cachedImageResize && !cachedTiles.isEmpty();
+
+            if(sizeChanged && !scaleTiles || cachedImageRerender) {
+                cachedTiles.invalidate(width, height);
                 cachedImageRerender = false;
             }
-        }
 
-        if(cachedImage == null)
+            // The cache keeps the tiles of the visible area (in the coordinates of the tiles)
+            Rectangle visible = getVisibleRect();
+            if(scaleTiles) {
+                cachedTiles.setVisibleSize(visible.width*cachedTiles.getWidth()/width,
+                        visible.height*cachedTiles.getHeight()/height);
+            } else {
+                cachedTiles.setVisibleSize(visible.width, visible.height);
+            }
+
+            Graphics2D gTiles = (Graphics2D)g.create();
+            if(scaleTiles) {
+                gTiles.scale((double)width/cachedTiles.getWidth(), (double)height/cachedTiles.getHeight());
+                cachedTiles.paint(gTiles, null);
+            } else {
+                cachedTiles.paint(gTiles, painter);
+            }
+            gTiles.dispose();
+        } else {
             render((Graphics2D)g);
-        else
-            g.drawImage(cachedImage, 0, 0, width, height, null);
+        }
 
         if(!cachedImageResize && getCurrentGraph() instanceof GGraphGroup) {
             // Draw the selected segment of a path (and only if we are not resizing using only the cached image)
@@ -0,0 +1,189 @@
+package org.antlr.xjlib.appkit.swing;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.ImageObserver;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Graphics2D producing a SVG document. Like XJGraphics2DPS, the text is drawn using its
+ * outline so the document doesn't depend on the fonts installed. Images are not supported.
+ */
+public class XJGraphics2DSVG extends XJGraphics2DPS {
+
+    protected StringBuilder svg = new StringBuilder();
+
+    public XJGraphics2DSVG() {
+        setColor(Color.black);
+    }
+
+    public String getSVGText() {
+        if(svg.length() == 0) {
+            upperLeftCorner.setLocation(0, 0);
+            lowerRightCorner.setLocation(0, 0);
+        }
+
+        // Apply margins
+        int x = upperLeftCorner.x - marginWidth;
+        int y = upperLeftCorner.y - marginHeight;
+        int width = lowerRightCorner.x - upperLeftCorner.x + 2*marginWidth;
+        int height = lowerRightCorner.y - upperLeftCorner.y + 2*marginHeight;
+
+        StringBuilder doc = new StringBuilder();
+        doc.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>").append(NEWLINE);
+        doc.append("<!-- Creator: XJGraphics2DSVG -->").append(NEWLINE);
+        doc.append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\"");
+        doc.append(" width=\"").append(width).append("\" height=\"").append(height).append("\"");
+        doc.append(" viewBox=\"").append(x).append(" ").append(y).append(" ").append(width).append(" ").append(height).append("\">");
+        doc.append(NEWLINE);
+        doc.append(svg);
+        doc.append("</svg>").append(NEWLINE);
+        return doc.toString();
+    }
+
+    @Override
+    public void psDrawShape(Shape s, boolean fill) {
+        double coord[] = new double[6];
+
+        // Transform the shape
+        s = transform.createTransformedShape(s);
+
+        // Update the bounding box
+        Rectangle2D r = s.getBounds2D();
+        upperLeftCorner.x = (int) Math.min(upperLeftCorner.x, Math.floor(r.getMinX()));
+        upperLeftCorner.y = (int) Math.min(upperLeftCorner.y, Math.floor(r.getMinY()));
+        lowerRightCorner.x = (int) Math.max(lowerRightCorner.x, Math.ceil(r.getMaxX()));
+        lowerRightCorner.y = (int) Math.max(lowerRightCorner.y, Math.ceil(r.getMaxY()));
+
+        StringBuilder path = new StringBuilder();
+        PathIterator iter = s.getPathIterator(null);
+        while(!iter.isDone()) {
+            switch(iter.currentSegment(coord)) {
+                case PathIterator.SEG_MOVETO:
+                    appendSegment(path, "M", coord, 1);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    appendSegment(path, "L", coord, 1);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    appendSegment(path, "Q", coord, 2);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    appendSegment(path, "C", coord, 3);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    path.append("Z");
+                    break;
+            }
+            iter.next();
+        }
+        if(path.length() == 0)
+            return;
+
+        svg.append("<path d=\"").append(path).append("\"");
+        if(fill) {
+            if(iter.getWindingRule() == PathIterator.WIND_EVEN_ODD)
+                svg.append(" fill-rule=\"evenodd\"");
+            appendColor("fill", getColor());
+        } else {
+            svg.append(" fill=\"none\"");
+            appendColor("stroke", getColor());
+            appendStroke();
+        }
+        svg.append("/>").append(NEWLINE);
+    }
+
+    private void appendSegment(StringBuilder path, String command, double[] coord, int points) {
+        path.append(command);
+        for(int i=0; i<points; i++) {
+            if(i > 0)
+                path.append(" ");
+            path.append(df.format(coord[2*i])).append(" ").append(df.format(coord[2*i+1]));
+        }
+    }
+
+    private void appendColor(String attribute, Color c) {
+        svg.append(" ").append(attribute).append("=\"rgb(");
+        svg.append(c.getRed()).append(",").append(c.getGreen()).append(",").append(c.getBlue()).append(")\"");
+        if(c.getAlpha() < 255)
+            svg.append(" ").append(attribute).append("-opacity=\"").append(df.format(c.getAlpha()/255.0)).append("\"");
+    }
+
+    private void appendStroke() {
+        if(!(stroke instanceof BasicStroke))
+            return;
+
+        BasicStroke bs = (BasicStroke)stroke;
+        svg.append(" stroke-width=\"").append(df.format(bs.getLineWidth())).append("\"");
+        switch(bs.getEndCap()) {
+            case BasicStroke.CAP_BUTT: svg.append(" stroke-linecap=\"butt\""); break;
+            case BasicStroke.CAP_ROUND: svg.append(" stroke-linecap=\"round\""); break;
+            case BasicStroke.CAP_SQUARE: svg.append(" stroke-linecap=\"square\""); break;
+        }
+        switch(bs.getLineJoin()) {
+            case BasicStroke.JOIN_MITER:
+                svg.append(" stroke-linejoin=\"miter\" stroke-miterlimit=\"").append(df.format(Math.max(1, bs.getMiterLimit()))).append("\"");
+                break;
+            case BasicStroke.JOIN_ROUND: svg.append(" stroke-linejoin=\"round\""); break;
+            case BasicStroke.JOIN_BEVEL: svg.append(" stroke-linejoin=\"bevel\""); break;
+        }
+        float[] dash = bs.getDashArray();
+        if(dash != null && dash.length > 0) {
+            svg.append(" stroke-dasharray=\"").append(arrayToString(dash)).append("\"");
+            svg.append(" stroke-dashoffset=\"").append(df.format(bs.getDashPhase())).append("\"");
+        }
+    }
+
+    @Override
+    public void setColor(Color c) {
+        // The color is set on each element
+        this.color = c;
+    }
+
+    @Override
+    public void setStroke(Stroke s) {
+        // The stroke is set on each element
+        this.stroke = s;
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer) {
+        return false;
+    }
+
+    @Override
+    public Graphics create() {
+        return new XJGraphics2DSVG();
+    }
+
+}
@@ -50,6 +50,8 @@ public abstract class AbstractTest extends TestCase {
     private GrammarEngine engine = new GrammarEngineImpl(new MyGrammarEngineDelegate());
     private String text;
     private String vocabFile;
+    private String grammarFileName;
+    private Tool tool;
 
     @Override
     protected void setUp() throws Exception {
@@ -57,13 +59,22 @@ public abstract class AbstractTest extends TestCase {
     }
 
     public void parseFile(String fileName) throws IOException {
-        this.text = getTextFromFile(fileName);
-        engine.getSyntaxEngine().setDelegate(new MySyntaxEngineDelegate());
-        engine.getSyntaxEngine().processSyntax();
+        parseText(getTextFromFile(fileName));
+    }
+
+    public void parseText(String text) {
+        processText(text);
         engine.parserCompleted();
         engine.updateAll();
     }
 
+    /** Processes the syntax of the text without updating the properties of the grammar */
+    public void processText(String text) {
+        this.text = text;
+        engine.getSyntaxEngine().setDelegate(new MySyntaxEngineDelegate());
+        engine.getSyntaxEngine().processSyntax();
+    }
+
     public String getResourceFile(String fileName) {
         return getClass().getResource(fileName).getFile();
     }
@@ -80,6 +91,14 @@ public abstract class AbstractTest extends TestCase {
         return engine;
     }
 
+    public void setGrammarFileName(String grammarFileName) {
+        this.grammarFileName = grammarFileName;
+    }
+
+    public void setANTLRTool(Tool tool) {
+        this.tool = tool;
+    }
+
     public GrammarSyntaxEngine getSyntaxEngine() {
         return engine.getSyntaxEngine();
     }
@@ -96,11 +115,11 @@ public abstract class AbstractTest extends TestCase {
         }
 
         public Tool getANTLRTool() {
-            return null;
+            return tool;
         }
 
         public String getGrammarFileName() {
-            return null;
+            return grammarFileName;
         }
 
         public String getGrammarText() {
@@ -0,0 +1,128 @@
+package org.antlr.works.test.bench;
+
+import org.antlr.works.debugger.driver.DBDriver;
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.test.ut.MockDebugServer;
+
+import java.util.Collections;
+import java.util.Random;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Measures the debugger without interface on synthetic event streams sent by a local
+ * mock remote parser: recording throughput, memory per event and latency of the steps
+ * and seeks once all the events are recorded.
+ *
+ * Usage: java org.antlr.works.test.bench.DebuggerBenchmark [eventCount...]
+ * (default 10000 1000000 10000000)
+ */
+public class DebuggerBenchmark {
+
+    private static final int STEPS = 200;
+    private static final int SEEKS = 50;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int[] sizes = { 10000, 1000000, 10000000 };
+        if(args.length > 0) {
+            sizes = new int[args.length];
+            for(int i=0; i<args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("events\trecord (events/s)\tstore (bytes/event)\theap (bytes/event)\tstep (ms)\tseek avg (ms)\tseek max (ms)");
+        for(int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) throws Exception {
+        MockDebugServer server = new MockDebugServer(MockDebugServer.getTokenCountForEvents(size));
+        DBDriver driver = new DBDriver(MockDebugServer.GRAMMAR_FILE_NAME, "grammar T;");
+        driver.setTimeout(24L * 3600 * 1000);
+
+        long heap = usedMemory();
+        server.start();
+        if(!driver.connect("localhost", server.getPort())) {
+            System.out.println(size+"\tcannot connect to the mock parser");
+            return;
+        }
+
+        // Record and play all the events
+        long t = System.nanoTime();
+        driver.goToEnd();
+        double recordTime = (System.nanoTime() - t) / 1e9;
+        server.join();
+
+        int count = driver.getEventCount();
+        double heapPerEvent = (double)(usedMemory() - heap) / count;
+        double storePerEvent = (double)driver.getRecorder().getEventStoreSize() / count;
+
+        // Step backward then forward on the consumed tokens, from the end
+        driver.setBreakEvents(Collections.singleton(DBEvent.CONSUME_TOKEN));
+        t = System.nanoTime();
+        for(int i=0; i<STEPS; i++) {
+            driver.stepBackward();
+        }
+        for(int i=0; i<STEPS; i++) {
+            driver.stepForward();
+        }
+        double stepTime = (System.nanoTime() - t) / 1e6 / (2 * STEPS);
+
+        // Seek to random positions
+        Random random = new Random(0);
+        double seekTotal = 0;
+        double seekMax = 0;
+        for(int i=0; i<SEEKS; i++) {
+            t = System.nanoTime();
+            driver.goToPosition(random.nextInt(count));
+            double time = (System.nanoTime() - t) / 1e6;
+            seekTotal += time;
+            seekMax = Math.max(seekMax, time);
+        }
+
+        driver.close();
+
+        System.out.println(String.format("%d\t%.0f\t%.1f\t%.1f\t%.3f\t%.3f\t%.3f", count, count / recordTime,
+                storePerEvent, heapPerEvent, stepTime, seekTotal / SEEKS, seekMax));
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i=0; i<3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,189 @@
+package org.antlr.works.test.bench;
+
+import org.antlr.Tool;
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.grammar.element.ElementReference;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.grammar.engine.GrammarEngineDelegate;
+import org.antlr.works.grammar.engine.GrammarEngineImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Compares the cost of the element lookups done at each caret movement using a scan
+ * of the lists and using the position index, for an increasing number of rules.
+ *
+ * Usage: java org.antlr.works.test.bench.PositionIndexBenchmark [ruleCount...]
+ * (default 100 1000 5000)
+ */
+public class PositionIndexBenchmark {
+
+    private static final int POSITIONS = 2000;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int[] counts = { 100, 1000, 5000 };
+        if(args.length > 0) {
+            counts = new int[args.length];
+            for(int i=0; i<args.length; i++) {
+                counts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for(int count : counts) {
+            run(count);
+        }
+    }
+
+    private static void run(int count) {
+        final String text = createGrammar(count);
+        GrammarEngine engine = createEngine(text);
+
+        int length = text.length();
+        int step = Math.max(1, length/POSITIONS);
+
+        long scan = Long.MAX_VALUE;
+        long index = Long.MAX_VALUE;
+        int queries = 0;
+        for(int run = 0; run < RUNS; run++) {
+            long t = System.nanoTime();
+            queries = 0;
+            for(int pos = 0; pos < length; pos += step) {
+                ElementRule rule = scanRule(engine, pos);
+                scanReference(engine, pos);
+                if(rule != null) scanReferencesInRule(engine, rule);
+                queries++;
+            }
+            scan = Math.min(scan, System.nanoTime()-t);
+
+            t = System.nanoTime();
+            for(int pos = 0; pos < length; pos += step) {
+                ElementRule rule = engine.getRuleAtPosition(pos);
+                engine.getReferenceAtPosition(pos);
+                if(rule != null) engine.getReferencesInRule(rule);
+            }
+            index = Math.min(index, System.nanoTime()-t);
+        }
+
+        System.out.println("Caret movement with "+count+" rules: "+(scan/queries)+" ns per position with a scan, "
+                +(index/queries)+" ns per position with the index");
+    }
+
+    private static GrammarEngine createEngine(final String text) {
+        GrammarEngine engine = new GrammarEngineImpl(new GrammarEngineDelegate() {
+            public String getGrammarFileName() {
+                return null;
+            }
+
+            public String getGrammarText() {
+                return text;
+            }
+
+            public String getTokenVocabFile(String name) {
+                return null;
+            }
+
+            public Tool getANTLRTool() {
+                return null;
+            }
+
+            public void reportError(String error) {
+                System.err.println(error);
+            }
+
+            public void reportError(Exception e) {
+                e.printStackTrace();
+            }
+
+            public void gotoToRule(String grammar, String name) {
+            }
+
+            public void engineAnalyzeCompleted() {
+            }
+        });
+        engine.getSyntaxEngine().setDelegate(new ATESyntaxEngineDelegate() {
+            public void ateEngineBeforeParsing() {
+            }
+
+            public void ateEngineAfterParsing() {
+            }
+
+            public String getText() {
+                return text;
+            }
+        });
+        engine.getSyntaxEngine().processSyntax();
+        engine.parserCompleted();
+        engine.updateAll();
+        return engine;
+    }
+
+    private static String createGrammar(int count) {
+        StringBuilder sb = new StringBuilder("grammar Bench;\n\n");
+        for(int i=0; i<count; i++) {
+            sb.append("rule").append(i).append("\n\t:\t");
+            sb.append("rule").append((i+1) % count).append(" ID");
+            sb.append("\n\t|\t'(' rule").append((i*7) % count).append(" ')'");
+            sb.append("\n\t;\n\n");
+        }
+        sb.append("ID : 'a'..'z'+ ;\n");
+        return sb.toString();
+    }
+
+    private static ElementRule scanRule(GrammarEngine engine, int pos) {
+        for(ElementRule r : engine.getRules()) {
+            if(r.containsIndex(pos))
+                return r;
+        }
+        return null;
+    }
+
+    private static ElementReference scanReference(GrammarEngine engine, int pos) {
+        for(ElementReference r : engine.getReferences()) {
+            if(r.containsIndex(pos))
+                return r;
+        }
+        return null;
+    }
+
+    private static List<ElementReference> scanReferencesInRule(GrammarEngine engine, ElementRule rule) {
+        List<ElementReference> refs = new ArrayList<ElementReference>();
+        for(ElementReference r : engine.getReferences()) {
+            if(r.rule == rule)
+                refs.add(r);
+        }
+        return refs;
+    }
+}
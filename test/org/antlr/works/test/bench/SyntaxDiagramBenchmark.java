@@ -0,0 +1,142 @@
+package org.antlr.works.test.bench;
+
+import org.antlr.Tool;
+import org.antlr.analysis.NFAState;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Rule;
+import org.antlr.works.test.TestConstants;
+import org.antlr.works.visualization.fa.FAFactory;
+import org.antlr.works.visualization.fa.FAState;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Measures the time taken by FAFactory to build the syntax diagram NFA of each rule of
+ * the syntax diagram test grammars and of a synthetic lexer grammar with a keyword rule
+ * made of a large number of alternatives.
+ *
+ * Usage: java org.antlr.works.test.bench.SyntaxDiagramBenchmark [alternativeCount...]
+ * (default 2000)
+ */
+public class SyntaxDiagramBenchmark {
+
+    private static final String[] GRAMMARS = { "sd/expr/expr.g", "sd/vsql/vsql.g" };
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = { 2000 };
+        if(args.length > 0) {
+            sizes = new int[args.length];
+            for(int i=0; i<args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("grammar\trules\tstates\tbuild (ms)\tslowest rule\tslowest rule (ms)");
+        for(String name : GRAMMARS) {
+            String file = SyntaxDiagramBenchmark.class.getResource(TestConstants.PREFIX+name).getFile();
+            run(name, XJUtils.getStringFromFile(file));
+        }
+        for(int size : sizes) {
+            run("keywords-"+size, createKeywordGrammar(size));
+        }
+    }
+
+    private static void run(String name, String text) throws Exception {
+        Grammar g = new Grammar(new Tool(), text);
+        g.buildNFA();
+
+        // The first runs are used to warm up the virtual machine
+        double total = 0;
+        double slowestTime = 0;
+        String slowestRule = null;
+        int states = 0;
+        for(int run=0; run<RUNS*2; run++) {
+            states = 0;
+            for(Rule r : g.getRules()) {
+                NFAState startState = g.getRuleStartState(r.name);
+                if(startState == null)
+                    continue;
+
+                long t = System.nanoTime();
+                FAState state = new FAFactory(g).buildNFA(startState, true);
+                double time = (System.nanoTime() - t) / 1e6;
+                states += countStates(state);
+
+                if(run < RUNS)
+                    continue;
+                total += time;
+                if(time > slowestTime) {
+                    slowestTime = time;
+                    slowestRule = r.name;
+                }
+            }
+        }
+
+        System.out.println(String.format("%s\t%d\t%d\t%.3f\t%s\t%.3f", name, g.getRules().size(), states,
+                total / RUNS, slowestRule, slowestTime));
+    }
+
+    private static int countStates(FAState start) {
+        Set<FAState> states = new HashSet<FAState>();
+        List<FAState> stack = new ArrayList<FAState>();
+        states.add(start);
+        stack.add(start);
+        while(!stack.isEmpty()) {
+            FAState state = stack.remove(stack.size()-1);
+            for(int t=0; t<state.getNumberOfTransitions(); t++) {
+                FAState target = state.transition(t).target;
+                if(states.add(target))
+                    stack.add(target);
+            }
+        }
+        return states.size();
+    }
+
+    /** Returns a lexer grammar whose KEYWORD rule has the specified number of alternatives */
+    private static String createKeywordGrammar(int alternatives) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("lexer grammar Keywords;\n\n");
+        sb.append("KEYWORD\n");
+        for(int i=0; i<alternatives; i++) {
+            sb.append(i == 0 ? "    : " : "    | ");
+            sb.append("'keyword").append(i).append("'\n");
+        }
+        sb.append("    ;\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,131 @@
+package org.antlr.works.test.bench;
+
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.test.TestConstants;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * Measures the memory allocated by the syntax processing of a large grammar. The "eager"
+ * measure creates the attribute of every token like the lexer used to do, the "lazy" measure
+ * only creates the attributes requested by the parser.
+ *
+ * Usage: java org.antlr.works.test.bench.TokenAllocationBenchmark [copies...]
+ * (default 20)
+ */
+public class TokenAllocationBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int[] copies = { 20 };
+        if(args.length > 0) {
+            copies = new int[args.length];
+            for(int i=0; i<args.length; i++) {
+                copies[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        if(getAllocatedBytes() < 0) {
+            System.out.println("Allocation measurement not supported by this virtual machine");
+            return;
+        }
+
+        String file = TokenAllocationBenchmark.class.getResource(TestConstants.MANTRA).getFile();
+        String grammar = XJUtils.getStringFromFile(file);
+        for(int count : copies) {
+            StringBuilder sb = new StringBuilder();
+            for(int i=0; i<count; i++) {
+                sb.append(grammar);
+            }
+            run(sb.toString());
+        }
+    }
+
+    private static void run(final String text) {
+        GrammarSyntaxEngine engine = new GrammarSyntaxEngine();
+        engine.setDelegate(new ATESyntaxEngineDelegate() {
+            public void ateEngineBeforeParsing() {
+            }
+
+            public void ateEngineAfterParsing() {
+            }
+
+            public String getText() {
+                return text;
+            }
+        });
+        // Tokenize the whole text each time: the reused tokens would keep their attributes
+        engine.setIncrementalLexing(false);
+
+        // Warm-up
+        engine.processSyntax();
+
+        long eager = Long.MAX_VALUE;
+        long lazy = Long.MAX_VALUE;
+        for(int i=0; i<RUNS; i++) {
+            long before = getAllocatedBytes();
+            engine.processSyntax();
+            for(ATEToken t : engine.getTokens()) {
+                t.getAttribute();
+            }
+            eager = Math.min(eager, getAllocatedBytes()-before);
+
+            before = getAllocatedBytes();
+            engine.processSyntax();
+            lazy = Math.min(lazy, getAllocatedBytes()-before);
+        }
+
+        System.out.println("Syntax processing of "+text.length()+" characters ("+engine.getTokens().size()+" tokens): "
+                +(eager/1024)+" KB with all attributes, "+(lazy/1024)+" KB with on-demand attributes");
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread or -1 if not supported.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            // Extension of the HotSpot virtual machines
+            Method m = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+            return (Long) m.invoke(bean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.runtime.BaseRecognizer;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.DebugEventSocketProxy;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/** Remote parser sending a synthetic stream of debug events. Each token is sent as
+ * enterRule, location, LT, consumeToken, consumeHiddenToken and exitRule.
+ */
+public class MockDebugServer implements Runnable {
+
+    public static final String GRAMMAR_FILE_NAME = "T.g";
+    public static final String RULE_NAME = "r";
+
+    /** Number of events sent for each token */
+    public static final int EVENTS_PER_TOKEN = 6;
+
+    private final int port;
+    private final int tokenCount;
+    private Thread thread;
+    private Exception error;
+
+    public MockDebugServer(int tokenCount) throws IOException {
+        this.port = getFreePort();
+        this.tokenCount = tokenCount;
+    }
+
+    /** Returns the number of tokens needed to send at least the number of events */
+    public static int getTokenCountForEvents(int eventCount) {
+        return Math.max(1, (eventCount - 2 + EVENTS_PER_TOKEN - 1) / EVENTS_PER_TOKEN);
+    }
+
+    /** Returns the total number of events sent, including commence and terminate */
+    public int getEventCount() {
+        return tokenCount * EVENTS_PER_TOKEN + 2;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void start() {
+        thread = new Thread(this, "Mock Debug Server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Exception join() throws InterruptedException {
+        thread.join();
+        return error;
+    }
+
+    public void run() {
+        DebugEventSocketProxy proxy = new DebugEventSocketProxy(new MockRecognizer(), port, null);
+        try {
+            proxy.handshake();
+        } catch (IOException e) {
+            error = e;
+            return;
+        }
+
+        proxy.commence();
+        for(int i=0; i<tokenCount; i++) {
+            Token token = createToken(2*i, 4, Token.DEFAULT_CHANNEL, "t"+i, i);
+            Token hidden = createToken(2*i+1, 5, Token.HIDDEN_CHANNEL, " ", i);
+
+            proxy.enterRule(GRAMMAR_FILE_NAME, RULE_NAME);
+            proxy.location(2, 0);
+            proxy.LT(1, token);
+            proxy.consumeToken(token);
+            proxy.consumeHiddenToken(hidden);
+            proxy.exitRule(GRAMMAR_FILE_NAME, RULE_NAME);
+        }
+        proxy.terminate();
+    }
+
+    private static Token createToken(int index, int type, int channel, String text, int line) {
+        CommonToken token = new CommonToken(type, text);
+        token.setTokenIndex(index);
+        token.setChannel(channel);
+        token.setLine(line+1);
+        token.setCharPositionInLine(0);
+        return token;
+    }
+
+    private static int getFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static class MockRecognizer extends BaseRecognizer {
+
+        @Override
+        public String getSourceName() {
+            return "mock";
+        }
+
+        @Override
+        public String getGrammarFileName() {
+            return GRAMMAR_FILE_NAME;
+        }
+    }
+}
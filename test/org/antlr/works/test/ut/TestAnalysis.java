@@ -0,0 +1,109 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.Tool;
+import org.antlr.tool.Message;
+import org.antlr.works.grammar.antlr.ANTLRGrammarAnalysisListener;
+import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
+import org.antlr.works.grammar.antlr.GrammarError;
+import org.antlr.works.grammar.antlr.GrammarResult;
+import org.antlr.works.test.AbstractTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestAnalysis extends AbstractTest {
+
+    private static final String GRAMMAR =
+            "grammar T;\n" +
+            "a : b | c ;\n" +
+            "b : ID INT ;\n" +
+            "c : ID INT ;\n" +
+            "ID : ('a'..'z')+ ;\n" +
+            "KEY : 'if' ;\n" +
+            "INT : ('0'..'9')+ ;\n" +
+            "NUM : ('0'..'9')+ ;\n";
+
+    private final List<String> streamedRules = Collections.synchronizedList(new ArrayList<String>());
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        setGrammarFileName("T.g");
+        setANTLRTool(new Tool());
+        parseText(GRAMMAR);
+    }
+
+    public void testConcurrentAnalysis() throws Exception {
+        List<String> serial = analyze(false);
+        List<String> concurrent = analyze(true);
+
+        // parser: non-determinism and unreachable alternative, lexer: unreachable tokens
+        assertEquals(3, serial.size());
+        assertEquals("same messages in the same order", serial, concurrent);
+    }
+
+    public void testStreamedErrors() throws Exception {
+        List<String> messages = analyze(true);
+
+        // each message is streamed with the rule of its decision
+        assertEquals(messages.size(), streamedRules.size());
+        assertEquals(2, Collections.frequency(streamedRules, "a"));
+        assertTrue(streamedRules.contains("Tokens"));
+
+        // the rules are marked with the streamed errors once the analysis completes
+        assertEquals(2, getEngine().getRuleWithName("a").getErrors().size());
+    }
+
+    private List<String> analyze(boolean concurrent) throws Exception {
+        streamedRules.clear();
+
+        ANTLRGrammarEngine antlr = getEngine().getANTLRGrammarEngine();
+        antlr.markDirty();
+        antlr.setConcurrentAnalysis(concurrent);
+        GrammarResult result = antlr.analyze(new ANTLRGrammarAnalysisListener() {
+            public void analysisDidReportError(GrammarError error, String ruleName) {
+                streamedRules.add(ruleName);
+            }
+        });
+
+        List<String> messages = new ArrayList<String>();
+        for(Message m : result.getWarnings()) {
+            messages.add(m.toString());
+        }
+        for(Message m : result.getErrors()) {
+            messages.add(m.toString());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,108 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener.ProxyToken;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tivo.DBBreakpointMatcher;
+import org.antlr.works.debugger.tivo.DBRuleBreakpoint;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.utils.NumberSet;
+
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestBreakpointMatcher extends AbstractTest {
+
+    public void testEventsAndBreakpoints() {
+        Map<Integer, Set<String>> lines = new HashMap<Integer, Set<String>>();
+        lines.put(9, new HashSet<String>(Arrays.asList("T")));
+        BitSet tokens = new BitSet();
+        tokens.set(3);
+
+        DBBreakpointMatcher matcher = new DBBreakpointMatcher(new NumberSet(DBEvent.CONSUME_TOKEN),
+                lines, tokens, false, null);
+
+        assertEquals(DBEvent.COMMENCE, matcher.match(new DBEvent(DBEvent.COMMENCE), false, true));
+        assertEquals(DBEvent.NO_EVENT, matcher.match(location(10, "U"), false, true));
+        assertEquals(DBEvent.LOCATION, matcher.match(location(10, "T"), false, true));
+        assertEquals(DBEvent.NO_EVENT, matcher.match(location(10, "T"), true, true));
+
+        // consume breaks only on the default channel unless a breakpoint is set on the token
+        assertEquals(DBEvent.CONSUME_TOKEN, matcher.match(consume(1, Token.DEFAULT_CHANNEL), false, true));
+        assertEquals(DBEvent.NO_EVENT, matcher.match(consume(2, Token.HIDDEN_CHANNEL), false, true));
+        assertEquals(DBEvent.CONSUME_TOKEN, matcher.match(consume(3, Token.HIDDEN_CHANNEL), false, true));
+
+        assertEquals(DBEvent.NO_EVENT, matcher.match(new DBEventEnterRule("T.g", "a"), false, true));
+    }
+
+    public void testRuleBreakpoints() {
+        DBRuleBreakpoint any = new DBRuleBreakpoint(null, "a");
+        DBRuleBreakpoint lookahead = new DBRuleBreakpoint("T", "b", 4, 2);
+        DBBreakpointMatcher matcher = new DBBreakpointMatcher(new NumberSet(), null, null, false,
+                Arrays.asList(any, lookahead));
+
+        assertEquals(DBEvent.ENTER_RULE, matcher.match(enterRule("a"), false, true));
+        assertEquals(DBEvent.NO_EVENT, matcher.match(enterRule("a"), false, false));
+        assertEquals(1, any.getHits());
+
+        // LT(1) of the type but before the second hit
+        assertEquals(DBEvent.NO_EVENT, matcher.match(enterRule("b"), false, true));
+        assertEquals(DBEvent.NO_EVENT, matcher.match(lt(1, 4), false, true));
+        // LT(1) of another type
+        assertEquals(DBEvent.NO_EVENT, matcher.match(enterRule("b"), false, true));
+        assertEquals(DBEvent.NO_EVENT, matcher.match(lt(2, 4), false, true));
+        assertEquals(DBEvent.NO_EVENT, matcher.match(lt(1, 5), false, true));
+        // second hit
+        assertEquals(DBEvent.NO_EVENT, matcher.match(enterRule("b"), false, true));
+        assertEquals(DBEvent.LT, matcher.match(lt(1, 4), false, true));
+        assertEquals(2, lookahead.getHits());
+    }
+
+    private DBEvent location(int line, String grammarName) {
+        DBEvent event = new DBEventLocation(line, 0);
+        event.setGrammarName(grammarName);
+        return event;
+    }
+
+    private DBEvent consume(int index, int channel) {
+        return new DBEventConsumeToken(new ProxyToken(index, 4, channel, 1, 0, "t"));
+    }
+
+    private DBEvent enterRule(String name) {
+        return new DBEventEnterRule("/tmp/T.g", name);
+    }
+
+    private DBEvent lt(int i, int type) {
+        return new DBEventLT(i, new ProxyToken(0, type, Token.DEFAULT_CHANNEL, 1, 0, "t"));
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.works.debugger.local.DBBuildCache;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.utils.Utils;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestBuildCache extends AbstractTest {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("awcache", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        XJUtils.deleteDirectory(dir.getPath());
+    }
+
+    private static void write(String text, String file) throws Exception {
+        new File(file).getParentFile().mkdirs();
+        XJUtils.writeStringToFile(text, file);
+    }
+
+    public void testKeys() {
+        assertEquals(DBBuildCache.getKey(Arrays.asList("grammar T;", "r")), DBBuildCache.getKey(Arrays.asList("grammar T;", "r")));
+        assertFalse(DBBuildCache.getKey(Arrays.asList("grammar T;", "r")).equals(DBBuildCache.getKey(Arrays.asList("grammar T;", "s"))));
+        // the inputs are not simply concatenated
+        assertFalse(DBBuildCache.getKey(Arrays.asList("ab", "c")).equals(DBBuildCache.getKey(Arrays.asList("a", "bc"))));
+        assertFalse(DBBuildCache.getKey(Arrays.asList((String)null)).equals(DBBuildCache.getKey(Arrays.asList(""))));
+    }
+
+    public void testStoreAndRestore() throws Exception {
+        String output = new File(dir, "output").getPath();
+        String classes = XJUtils.concatPath(output, "classes");
+        write("class TParser {}", XJUtils.concatPath(output, "TParser.java"));
+        write("parser", XJUtils.concatPath(classes, "TParser.class"));
+        write("dfa", XJUtils.concatPath(classes, "org/t/TParser$DFA1.class"));
+
+        DBBuildCache cache = new DBBuildCache(output);
+        assertFalse(cache.restore("k", output, classes));
+        cache.store("k", Collections.singletonList(new File(output, "TParser.java")), classes, DBBuildCache.listFiles(classes, null));
+        assertTrue(cache.contains("k"));
+
+        XJUtils.deleteDirectory(classes);
+        new File(output, "TParser.java").delete();
+
+        assertTrue(cache.restore("k", output, classes));
+        assertEquals("class TParser {}", Utils.stringFromFile(XJUtils.concatPath(output, "TParser.java")));
+        assertEquals("parser", Utils.stringFromFile(XJUtils.concatPath(classes, "TParser.class")));
+        assertEquals("dfa", Utils.stringFromFile(XJUtils.concatPath(classes, "org/t/TParser$DFA1.class")));
+        assertEquals(1, DBBuildCache.listFiles(classes, "TParser$").size());
+    }
+
+    public void testPrune() throws Exception {
+        String output = new File(dir, "output").getPath();
+        String classes = XJUtils.concatPath(output, "classes");
+        new File(classes).mkdirs();
+
+        DBBuildCache cache = new DBBuildCache(output);
+        List<String> keys = new ArrayList<String>();
+        for(int i = 0; i <= DBBuildCache.MAX_ENTRIES; i++) {
+            String key = "k"+i;
+            keys.add(key);
+            cache.store(key, Collections.<File>emptyList(), classes, Collections.<File>emptyList());
+            // make sure the entries are ordered by date
+            new File(new File(output, DBBuildCache.CACHE_DIR), key).setLastModified(1000000L*(i+1));
+        }
+        cache.store("last", Collections.<File>emptyList(), classes, Collections.<File>emptyList());
+
+        assertFalse(cache.contains(keys.get(0)));
+        assertFalse(cache.contains(keys.get(1)));
+        assertTrue(cache.contains(keys.get(2)));
+        assertTrue(cache.contains("last"));
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.Tool;
+import org.antlr.tool.ErrorManager;
+import org.antlr.works.generate.CodeGenerateTool;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.utils.ErrorListener;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.util.Arrays;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestCodeGenerate extends AbstractTest {
+
+    private File dir;
+    private ErrorListener el;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("awgen", "");
+        dir.delete();
+        dir.mkdirs();
+
+        // Tool.process() doesn't generate anything if errors were reported before in this thread
+        ErrorManager.resetErrorState();
+
+        el = new ErrorListener();
+        el.setPrintToConsole(false);
+        ErrorManager.setErrorListener(el);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ErrorManager.removeErrorListener();
+        XJUtils.deleteDirectory(dir.getPath());
+    }
+
+    public void testCombinedGrammar() throws Exception {
+        String grammar = copyGrammar("calc.g");
+
+        new Tool(new String[] { "-debug", "-o", path("process"), grammar }).process();
+        CodeGenerateTool.getShared(new String[] { "-debug", "-o", path("tool") }).generate(grammar);
+
+        assertFalse(el.hasErrors());
+        String[] expected = new File(path("process")).list();
+        String[] generated = new File(path("tool")).list();
+        Arrays.sort(expected);
+        Arrays.sort(generated);
+        assertEquals(Arrays.asList("calc.tokens", "calcLexer.java", "calcParser.java"), Arrays.asList(expected));
+        assertEquals(Arrays.asList(expected), Arrays.asList(generated));
+    }
+
+    public void testErrorsAreNotKept() throws Exception {
+        String invalid = path("invalid.g");
+        XJUtils.writeStringToFile("grammar invalid;\na : b ;\n", invalid);
+        CodeGenerateTool tool = CodeGenerateTool.getShared(new String[] { "-o", path("out") });
+        tool.generate(invalid);
+        assertTrue(el.hasErrors());
+
+        el.clear();
+        tool.generate(copyGrammar("calc.g"));
+        assertFalse(el.hasErrors());
+        assertTrue(new File(path("out"), "calcParser.java").exists());
+    }
+
+    private String path(String name) {
+        return new File(dir, name).getPath();
+    }
+
+    private String copyGrammar(String name) throws Exception {
+        String file = path(name);
+        XJUtils.writeStringToFile(getTextFromFile("../files/"+name), file);
+        return file;
+    }
+
+}
@@ -0,0 +1,138 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.works.debugger.driver.DBDriver;
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.tivo.DBRuleBreakpoint;
+import org.antlr.works.test.AbstractTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestDebuggerDriver extends AbstractTest {
+
+    private MockDebugServer server;
+    private DBDriver driver;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new MockDebugServer(10);
+        server.start();
+        driver = new DBDriver(MockDebugServer.GRAMMAR_FILE_NAME, "grammar T;");
+        driver.setTimeout(20000);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        driver.close();
+    }
+
+    public void testStepping() throws Exception {
+        assertTrue(driver.connect("localhost", server.getPort()));
+        assertEquals(DBEvent.COMMENCE, driver.getEvent().getEventType());
+
+        driver.setBreakEvents(Collections.singleton(DBEvent.CONSUME_TOKEN));
+        DBEvent event = driver.stepForward();
+        assertEquals(DBEvent.CONSUME_TOKEN, event.getEventType());
+        assertEquals(4, driver.getEventPosition());
+        assertEquals(Arrays.asList(MockDebugServer.RULE_NAME), driver.getRuleStack());
+        assertEquals(0, driver.getInputProcessor().getCurrentTokenIndex());
+
+        event = driver.stepForward();
+        assertEquals(DBEvent.CONSUME_TOKEN, event.getEventType());
+        assertEquals(4 + MockDebugServer.EVENTS_PER_TOKEN, driver.getEventPosition());
+
+        event = driver.stepBackward();
+        assertEquals(DBEvent.CONSUME_TOKEN, event.getEventType());
+        assertEquals(4, driver.getEventPosition());
+
+        event = driver.goToEnd();
+        assertEquals(DBEvent.TERMINATE, event.getEventType());
+        assertEquals(server.getEventCount(), driver.getEventCount());
+        assertTrue(driver.getRuleStack().isEmpty());
+
+        event = driver.goToPosition(7);
+        assertEquals(DBEvent.ENTER_RULE, event.getEventType());
+        assertEquals(Arrays.asList(MockDebugServer.RULE_NAME), driver.getRuleStack());
+
+        assertNull(server.join());
+    }
+
+    public void testRuleBreakpoint() throws Exception {
+        driver.addRuleBreakpoint(new DBRuleBreakpoint(null, MockDebugServer.RULE_NAME, DBRuleBreakpoint.ANY_TOKEN, 3));
+        assertTrue(driver.connect("localhost", server.getPort()));
+
+        DBEvent event = driver.stepForward();
+        assertEquals(DBEvent.ENTER_RULE, event.getEventType());
+        assertEquals(1 + 2*MockDebugServer.EVENTS_PER_TOKEN, driver.getEventPosition());
+
+        driver.fastForward();
+        driver.stop();
+        assertEquals(server.getEventCount(), driver.getEventCount());
+    }
+
+    public void testRuleBreakpointAfterStepBackward() throws Exception {
+        DBRuleBreakpoint breakpoint = new DBRuleBreakpoint(null, MockDebugServer.RULE_NAME, DBRuleBreakpoint.ANY_TOKEN, 3);
+        driver.addRuleBreakpoint(breakpoint);
+        assertTrue(driver.connect("localhost", server.getPort()));
+        driver.setBreakEvents(Collections.singleton(DBEvent.CONSUME_TOKEN));
+
+        DBEvent event = driver.stepForward();
+        assertEquals(DBEvent.CONSUME_TOKEN, event.getEventType());
+        assertEquals(4, driver.getEventPosition());
+
+        event = driver.stepForward();
+        assertEquals(DBEvent.CONSUME_TOKEN, event.getEventType());
+
+        event = driver.stepForward();
+        assertEquals(DBEvent.ENTER_RULE, event.getEventType());
+        assertEquals(1 + 2*MockDebugServer.EVENTS_PER_TOKEN, driver.getEventPosition());
+        assertEquals(3, breakpoint.getHits());
+
+        // The events played again after a step backward are not counted again
+        event = driver.stepBackward();
+        assertEquals(DBEvent.CONSUME_TOKEN, event.getEventType());
+        event = driver.stepForward();
+        assertEquals(DBEvent.CONSUME_TOKEN, event.getEventType());
+        assertEquals(4 + 2*MockDebugServer.EVENTS_PER_TOKEN, driver.getEventPosition());
+        assertEquals(3, breakpoint.getHits());
+
+        event = driver.stepForward();
+        assertEquals(DBEvent.ENTER_RULE, event.getEventType());
+        assertEquals(1 + 3*MockDebugServer.EVENTS_PER_TOKEN, driver.getEventPosition());
+        assertEquals(4, breakpoint.getHits());
+
+        driver.fastForward();
+        driver.stop();
+        assertEquals(server.getEventCount(), driver.getEventCount());
+    }
+}
@@ -0,0 +1,195 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.MismatchedTokenException;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener.ProxyToken;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener.ProxyTree;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tree.DBTreeToken;
+import org.antlr.works.test.AbstractTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestEventStore extends AbstractTest {
+
+    public void testAllEvents() {
+        List<DBEvent> events = createEvents(1);
+        DBEventStore store = new DBEventStore();
+        store.addAll(events);
+
+        assertEquals(events.size(), store.size());
+        for(int i=0; i<events.size(); i++) {
+            assertEvent(events.get(i), store.get(i));
+        }
+    }
+
+    public void testRandomAccess() {
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        DBEventStore store = new DBEventStore();
+        // enough events to fill several buffers
+        for(int i=0; i<20000; i++) {
+            for(DBEvent event : createEvents(i)) {
+                events.add(event);
+                store.add(event);
+            }
+        }
+        assertTrue(store.getEncodedSize() > 2*(1 << 20));
+
+        for(int i=events.size()-1; i>=0; i-=7) {
+            assertEvent(events.get(i), store.get(i));
+        }
+        for(int i=0; i<events.size(); i++) {
+            assertEvent(events.get(i), store.get(i));
+        }
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.getEncodedSize());
+    }
+
+    public void testTrace() throws Exception {
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        DBEventStore store = new DBEventStore();
+        for(int i=0; i<100; i++) {
+            events.addAll(createEvents(i));
+        }
+        store.addAll(events.subList(0, 1000));
+
+        // the events recorded before the trace is started are written too
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        DBEventTraceWriter streamWriter = new DBEventTraceWriter(streamed, "T.g", "digest");
+        store.setTraceWriter(streamWriter);
+        store.addAll(events.subList(1000, events.size()));
+        store.setTraceWriter(null);
+        streamWriter.close();
+
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        DBEventTraceWriter saveWriter = new DBEventTraceWriter(saved, "T.g", "digest");
+        store.writeTrace(saveWriter);
+        saveWriter.close();
+
+        // the hidden tokens are CommonToken kept on the heap
+        assertEquals(100, streamWriter.getSkippedEvents());
+        assertEquals(100, saveWriter.getSkippedEvents());
+        assertTrue(saved.toByteArray().length < store.getEncodedSize());
+
+        for(ByteArrayOutputStream trace : new ByteArrayOutputStream[] { streamed, saved }) {
+            DBEventTraceReader reader = new DBEventTraceReader(new ByteArrayInputStream(trace.toByteArray()));
+            assertEquals("T.g", reader.getGrammarFileName());
+            assertEquals("digest", reader.getGrammarFingerprint());
+
+            DBEventStore loaded = new DBEventStore();
+            loaded.readTrace(reader);
+            assertEquals(events.size() - 100, loaded.size());
+
+            int index = 0;
+            for(DBEvent event : events) {
+                if(event.getEventType() != DBEvent.CONSUME_HIDDEN_TOKEN) {
+                    assertEvent(event, loaded.get(index++));
+                }
+            }
+        }
+    }
+
+    public void testTruncatedTrace() throws Exception {
+        DBEventStore store = new DBEventStore();
+        for(int i=0; i<100; i++) {
+            for(DBEvent event : createEvents(i)) {
+                if(event.getEventType() != DBEvent.CONSUME_HIDDEN_TOKEN) {
+                    store.add(event);
+                }
+            }
+        }
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        DBEventTraceWriter writer = new DBEventTraceWriter(saved, "T.g", "digest");
+        store.writeTrace(writer);
+        writer.close();
+
+        byte[] bytes = saved.toByteArray();
+        byte[] truncated = new byte[bytes.length*2/3];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        DBEventStore loaded = new DBEventStore();
+        loaded.readTrace(new DBEventTraceReader(new ByteArrayInputStream(truncated)));
+        assertTrue(loaded.size() > 0);
+        assertTrue(loaded.size() < store.size());
+        for(int i=0; i<loaded.size(); i++) {
+            assertEvent(store.get(i), loaded.get(i));
+        }
+    }
+
+    private void assertEvent(DBEvent expected, DBEvent actual) {
+        assertEquals(expected.getEventType(), actual.getEventType());
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.getGrammarName(), actual.getGrammarName());
+    }
+
+    private List<DBEvent> createEvents(int i) {
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        events.add(new DBEvent(DBEvent.COMMENCE));
+        events.add(new DBEventEnterRule("/tmp/T"+(i%3)+".g", "rule"+(i%10)));
+        events.add(new DBEventLocation(i, i % 80));
+        events.add(new DBEventEnterDecision(i % 5));
+        events.add(new DBEventLT(1, new ProxyToken(i, 4, 0, i, 2, "id"+(i%100))));
+        events.add(new DBEventConsumeToken(new ProxyToken(i, 4, 0, i, 2, null)));
+        events.add(new DBEventConsumeHiddenToken(new CommonToken(5, "ws")));
+        events.add(new DBEventLT(2, new DBTreeToken(new ProxyTree(i, 4, i, 3, i, "tree"))));
+        events.add(new DBEventMark(i));
+        events.add(new DBEventRewind());
+        events.add(new DBEventRewind(-i));
+        events.add(new DBEventBeginBacktrack(2));
+        events.add(new DBEventEndBacktrack(2, i % 2 == 0));
+        events.add(new DBEventNilNode(i));
+        events.add(new DBEventErrorNode(i, "error", 0));
+        events.add(new DBEventCreateNode(i, i));
+        events.add(new DBEventCreateNode(i, "node", 4));
+        events.add(new DBEventBecomeRoot(i, i+1));
+        events.add(new DBEventAddChild(i, i+1));
+        events.add(new DBEventSetTokenBoundaries(i, i-1, Integer.MAX_VALUE));
+        events.add(new DBEventExitDecision(i % 5));
+        events.add(new DBEventEnterSubRule(i));
+        events.add(new DBEventEnterAlt(1));
+        events.add(new DBEventExitSubRule(i));
+        events.add(new DBEventRecognitionException(new MismatchedTokenException()));
+        events.add(new DBEventExitRule("/tmp/T.g", "rule"));
+        events.add(new DBEvent(DBEvent.TERMINATE));
+        for(DBEvent event : events) {
+            event.setGrammarName("T"+(i%3));
+        }
+        return events;
+    }
+
+}
@@ -0,0 +1,313 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngine;
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.ate.syntax.generic.ATESyntaxSnapshot;
+import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATELineIndex;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.element.ElementAction;
+import org.antlr.works.grammar.element.ElementReference;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.grammar.syntax.GrammarSyntaxChanges;
+import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.grammar.syntax.GrammarSyntaxParser;
+import org.antlr.works.stringtemplate.syntax.ATEStringTemplateSyntaxEngine;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.test.TestConstants;
+
+import java.util.*;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestIncrementalLexer extends AbstractTest {
+
+    private static final String[] SNIPPETS = {
+            "a", "rule", " ", "\n", "\r\n", "'", "\"", "\\", "//", "/*", "*/", "->", "<<", ">>",
+            ":", ";", "|", "(", ")", "{", "}", "[", "]", "@", "$", "::=", "<!", "!>", "x:y", "'a'..'z'"
+    };
+
+    private int reusedRules;
+
+    public void testGrammarRandomEdits() throws Exception {
+        assertRandomEdits(new GrammarSyntaxEngine(), new GrammarSyntaxEngine(), getTextFromFile(TestConstants.MANTRA), 300);
+        assertRandomEdits(new GrammarSyntaxEngine(), new GrammarSyntaxEngine(), getTextFromFile(TestConstants.BLOCKS), 300);
+        assertTrue("rules reused by the parser", reusedRules > 0);
+    }
+
+    public void testPropertiesRandomEdits() throws Exception {
+        Random random = new Random(4321);
+        StringBuilder sb = new StringBuilder(getTextFromFile(TestConstants.MANTRA));
+        parseText(sb.toString());
+
+        int incrementalUpdates = 0;
+        for(int i=0; i<200; i++) {
+            int offset = random.nextInt(sb.length()+1);
+            if(random.nextBoolean()) {
+                sb.insert(offset, SNIPPETS[random.nextInt(SNIPPETS.length)]);
+            } else {
+                sb.delete(offset, Math.min(offset+random.nextInt(12), sb.length()));
+            }
+
+            processText(sb.toString());
+            if(random.nextInt(10) == 0) {
+                // The properties are not always updated after each parsing
+                continue;
+            }
+            GrammarEngine engine = getEngine();
+            GrammarSyntaxChanges changes = engine.parserCompleted();
+            engine.updateAll();
+            if(changes != null) {
+                incrementalUpdates++;
+            }
+            assertSameProperties("edit "+i, engine);
+        }
+        assertTrue("incremental updates", incrementalUpdates > 0);
+    }
+
+    public void testStringTemplateRandomEdits() throws Exception {
+        String text = "group test;\n\nfoo(a, b) ::= <<\n<a> and $b$ <! comment !>\n>>\n\nbar() ::= \"<foo()>\"\n";
+        assertRandomEdits(new ATEStringTemplateSyntaxEngine(), new ATEStringTemplateSyntaxEngine(), text, 300);
+    }
+
+    public void testSnapshotVersions() throws Exception {
+        StringBuilder sb = new StringBuilder("grammar t;\na : B ;\n");
+        GrammarSyntaxEngine engine = new GrammarSyntaxEngine();
+        engine.setDelegate(new Delegate(sb));
+        engine.processSyntax();
+
+        ATESyntaxSnapshot first = engine.getSnapshot();
+        assertTrue(engine.isCurrent(first));
+        assertEquals(1, engine.getGrammarSnapshot().getRules().size());
+
+        // The background processing of the new text is not yet published
+        sb.append("b : a ;\n");
+        engine.textChanged(sb.length()-8, 8);
+        assertFalse(engine.isCurrent(first));
+        ATESyntaxSnapshot second = engine.processSyntax(sb.toString(), engine.getVersion());
+        assertSame(first, engine.getSnapshot());
+        assertEquals(1, engine.getGrammarSnapshot().getRules().size());
+
+        assertTrue(engine.publish(second));
+        assertTrue(engine.isCurrent(second));
+        assertEquals(2, engine.getGrammarSnapshot().getRules().size());
+
+        // A stale result is never published over a more recent one
+        assertFalse(engine.publish(first));
+        assertSame(second, engine.getSnapshot());
+    }
+
+    private void assertRandomEdits(ATESyntaxEngine incremental, ATESyntaxEngine full, String text, int edits) {
+        Random random = new Random(1234);
+        StringBuilder sb = new StringBuilder(text);
+
+        Delegate delegate = new Delegate(sb);
+        incremental.setDelegate(delegate);
+        full.setDelegate(delegate);
+        full.setIncrementalLexing(false);
+
+        incremental.processSyntax();
+        for(int i=0; i<edits; i++) {
+            // apply a few edits before processing the syntax again
+            int count = 1 + random.nextInt(3);
+            for(int e=0; e<count; e++) {
+                int offset = random.nextInt(sb.length()+1);
+                if(random.nextBoolean() || sb.length() == 0) {
+                    String s = SNIPPETS[random.nextInt(SNIPPETS.length)];
+                    sb.insert(offset, s);
+                    incremental.textChanged(offset, s.length());
+                } else {
+                    int length = Math.min(random.nextInt(12), sb.length()-offset);
+                    sb.delete(offset, offset+length);
+                    incremental.textChanged(offset, -length);
+                }
+            }
+            incremental.processSyntax();
+            full.processSyntax();
+            assertSameSyntax("edit "+i, full, incremental);
+            if(incremental instanceof GrammarSyntaxEngine) {
+                assertSameGrammar("edit "+i, (GrammarSyntaxParser)full.getParser(), (GrammarSyntaxParser)incremental.getParser());
+            }
+        }
+    }
+
+    private void assertSameProperties(String message, GrammarEngine engine) {
+        List<ElementRule> rules = engine.getRules();
+        Map<String,ElementRule> rulesByName = new HashMap<String, ElementRule>();
+        Set<ElementRule> duplicates = new HashSet<ElementRule>();
+        for(ElementRule rule : rules) {
+            ElementRule first = rulesByName.get(rule.name);
+            if(first == null) {
+                rulesByName.put(rule.name, rule);
+            } else {
+                duplicates.add(first);
+                duplicates.add(rule);
+            }
+        }
+        assertEquals(message+": duplicates", duplicates, new HashSet<ElementRule>(engine.getDuplicateRules()));
+
+        for(ElementRule rule : rules) {
+            String m = message+": rule "+rule.name;
+            assertSame(m, rulesByName.get(rule.name), engine.getRuleWithName(rule.name));
+            assertSame(m, rule, engine.getRuleAtPosition(rule.getStartIndex()));
+            assertSame(m, engine, rule.getEngine());
+
+            List<ElementReference> refs = new ArrayList<ElementReference>();
+            for(ElementReference ref : engine.getReferences()) {
+                if(ref.rule == rule) refs.add(ref);
+            }
+            assertEquals(m, refs, engine.getReferencesInRule(rule));
+        }
+
+        for(ElementReference ref : engine.getReferences()) {
+            assertSame(message+": reference "+ref.token, ref, engine.getReferenceAtPosition(ref.token.getStartIndex()));
+        }
+    }
+
+    private void assertSameGrammar(String message, GrammarSyntaxParser expected, GrammarSyntaxParser actual) {
+        assertEquals(message+": rules", expected.rules.size(), actual.rules.size());
+        for(int i=0; i<expected.rules.size(); i++) {
+            ElementRule e = expected.rules.get(i);
+            ElementRule a = actual.rules.get(i);
+            String m = message+": rule "+e.name;
+            assertEquals(m, e.name, a.name);
+            assertEquals(m, e.start, a.start);
+            assertEquals(m, e.colon, a.colon);
+            assertEquals(m, e.end, a.end);
+            assertEquals(m, referenceTokens(e.getReferences()), referenceTokens(a.getReferences()));
+            assertEquals(m, e.getBlocks() == null ? 0 : e.getBlocks().size(), a.getBlocks() == null ? 0 : a.getBlocks().size());
+            assertEquals(m, actionTokens(e.getActions()), actionTokens(a.getActions()));
+            if(!actual.getChanges().isNew(a)) {
+                reusedRules++;
+            }
+        }
+
+        assertEquals(message+": references", expected.references.size(), actual.references.size());
+        for(int i=0; i<expected.references.size(); i++) {
+            ElementReference e = expected.references.get(i);
+            ElementReference a = actual.references.get(i);
+            assertEquals(message+": reference "+i, e.token, a.token);
+            assertEquals(message+": reference "+i, e.rule == null ? null : e.rule.name, a.rule == null ? null : a.rule.name);
+        }
+
+        assertEquals(message+": actions", expected.actions.size(), actual.actions.size());
+        for(int i=0; i<expected.actions.size(); i++) {
+            ElementAction e = expected.actions.get(i);
+            ElementAction a = actual.actions.get(i);
+            assertEquals(message+": action "+i, e.actionNum, a.actionNum);
+            assertEquals(message+": action "+i, e.start, a.start);
+            assertEquals(message+": action "+i, e.end, a.end);
+        }
+
+        assertEquals(message+": blocks", expected.blocks.size(), actual.blocks.size());
+        assertEquals(message+": decls", expected.decls, actual.decls);
+    }
+
+    private static List<ATEToken> referenceTokens(List<ElementReference> references) {
+        List<ATEToken> tokens = new ArrayList<ATEToken>();
+        if(references != null) {
+            for(ElementReference r : references) {
+                tokens.add(r.token);
+            }
+        }
+        return tokens;
+    }
+
+    private static List<ATEToken> actionTokens(List<ElementAction> actions) {
+        List<ATEToken> tokens = new ArrayList<ATEToken>();
+        if(actions != null) {
+            for(ElementAction a : actions) {
+                tokens.add(a.start);
+            }
+        }
+        return tokens;
+    }
+
+    private void assertSameSyntax(String message, ATESyntaxEngine expected, ATESyntaxEngine actual) {
+        List<ATELine> expectedLines = expected.getLines();
+        List<ATELine> actualLines = actual.getLines();
+        assertEquals(message+": lines", expectedLines.size(), actualLines.size());
+        for(int i=0; i<expectedLines.size(); i++) {
+            assertEquals(message+": line "+i, expectedLines.get(i).position, actualLines.get(i).position);
+        }
+        assertEquals(message+": max lines", expected.getMaxLines(), actual.getMaxLines());
+
+        ATELineIndex lineIndex = actual.getLineIndex();
+        assertEquals(message+": line index", actualLines.size(), lineIndex.size());
+        for(int i=0; i<actualLines.size(); i++) {
+            int position = actualLines.get(i).position;
+            assertEquals(message+": line index "+i, position, lineIndex.getLineStart(i));
+            assertEquals(message+": line at "+position, i, lineIndex.getLineIndexAt(position));
+        }
+
+        List<ATEToken> expectedTokens = expected.getTokens();
+        List<ATEToken> actualTokens = actual.getTokens();
+        assertEquals(message+": tokens", expectedTokens.size(), actualTokens.size());
+        for(int i=0; i<expectedTokens.size(); i++) {
+            ATEToken e = expectedTokens.get(i);
+            ATEToken a = actualTokens.get(i);
+            String m = message+": token "+i+" "+e;
+            assertEquals(m, e, a);
+            assertEquals(m, e.getAttribute(), a.getAttribute());
+            assertEquals(m, e.index, a.index);
+            assertEquals(m, e.scope == null, a.scope == null);
+            assertEquals(m, e.startLineNumber, a.startLineNumber);
+            assertEquals(m, e.endLineNumber, a.endLineNumber);
+            assertEquals(m, e.startLineIndex, a.startLineIndex);
+            assertEquals(m, e.endLineIndex, a.endLineIndex);
+            assertSame(m, e.getText(), a.getText());
+        }
+    }
+
+    private static class Delegate implements ATESyntaxEngineDelegate {
+
+        private final StringBuilder text;
+        private String cache;
+
+        public Delegate(StringBuilder text) {
+            this.text = text;
+        }
+
+        public void ateEngineBeforeParsing() {
+        }
+
+        public void ateEngineAfterParsing() {
+        }
+
+        public String getText() {
+            if(cache == null || !cache.contentEquals(text)) {
+                cache = text.toString();
+            }
+            return cache;
+        }
+    }
+}
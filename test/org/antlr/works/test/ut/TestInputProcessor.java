@@ -0,0 +1,235 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.input.DBInputProcessor;
+import org.antlr.works.debugger.input.DBInputProcessorToken;
+import org.antlr.works.debugger.input.DBInputTextTokenInfo;
+import org.antlr.works.prefs.AWPrefs;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.utils.TextPane;
+
+import javax.swing.*;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.StyleConstants;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestInputProcessor extends AbstractTest {
+
+    private static final int TOKEN_COUNT = 600;
+
+    private TextPane textPane;
+    private DBInputProcessorToken processor;
+
+    /** Runs the test in the event thread: the text pane is laid out by the events of its viewport */
+    @Override
+    public void runBare() throws Throwable {
+        final Throwable[] error = new Throwable[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                try {
+                    TestInputProcessor.super.runBare();
+                } catch (Throwable t) {
+                    error[0] = t;
+                }
+            }
+        });
+        if(error[0] != null)
+            throw error[0];
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        textPane = new TextPane();
+        processor = new DBInputProcessorToken(null, textPane);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        processor.close();
+    }
+
+    public void testOutOfOrderInserts() {
+        List<Integer> indexes = new ArrayList<Integer>();
+        for(int index=0; index<TOKEN_COUNT; index++) {
+            indexes.add(index);
+        }
+        Random random = new Random(5);
+        Collections.shuffle(indexes, random);
+
+        // Render the text between the insertions so the new tokens shift the tokens already in the text
+        for(int index : indexes) {
+            processor.LT(createToken(index));
+            if(random.nextInt(20) == 0)
+                processor.render();
+        }
+        processor.render();
+
+        assertEquals(getText(TOKEN_COUNT), textPane.getText());
+        int offset = 0;
+        for(int index=0; index<TOKEN_COUNT; index++) {
+            DBInputTextTokenInfo info = processor.getTokenInfoAtTokenIndex(index);
+            assertEquals(index, info.token.getTokenIndex());
+            assertEquals(offset, info.start);
+            offset += getTokenText(index).length();
+            assertEquals(offset, info.end);
+        }
+    }
+
+    public void testTokenAtOffset() {
+        for(int index=TOKEN_COUNT-1; index>=0; index--) {
+            processor.consumeToken(createToken(index), DBInputProcessor.TOKEN_NORMAL);
+        }
+        // The offsets are not known until the tokens are inserted in the text
+        assertNull(processor.getTokenInfoAtPositionIndex(0));
+        processor.render();
+
+        String text = textPane.getText();
+        int index = 0;
+        for(int offset=0; offset<text.length(); offset++) {
+            DBInputTextTokenInfo info = processor.getTokenInfoAtPositionIndex(offset);
+            if(offset == processor.getTokenInfoAtTokenIndex(index).end)
+                index++;
+            assertEquals(index, info.token.getTokenIndex());
+            assertTrue(info.start <= offset && offset < info.end);
+        }
+        assertNull(processor.getTokenInfoAtPositionIndex(text.length()));
+    }
+
+    public void testRewind() {
+        for(int index=0; index<10; index++) {
+            processor.consumeToken(createToken(index), index == 9 ? DBInputProcessor.TOKEN_DEAD : DBInputProcessor.TOKEN_NORMAL);
+        }
+        processor.LT(createToken(10));
+        processor.render();
+        assertEquals(10, processor.getCurrentTokenIndex());
+        for(int index=0; index<9; index++) {
+            assertColor(AWPrefs.getConsumedTokenColor(), index);
+        }
+        assertColor(AWPrefs.getDeadTokenColor(), 9);
+        assertColor(AWPrefs.getLookaheadTokenColor(), 10);
+        assertTrue(StyleConstants.isItalic(getAttributes(10)));
+
+        // The tokens from the rewind index are displayed again as not consumed
+        processor.rewind(4);
+        processor.render();
+        assertEquals(4, processor.getCurrentTokenIndex());
+        for(int index=0; index<4; index++) {
+            assertColor(AWPrefs.getConsumedTokenColor(), index);
+        }
+        for(int index=4; index<=10; index++) {
+            assertColor(AWPrefs.getNonConsumedTokenColor(), index);
+        }
+        assertFalse(StyleConstants.isItalic(getAttributes(10)));
+
+        // Consuming the tokens again after the rewind styles them again
+        processor.consumeToken(createToken(4), DBInputProcessor.TOKEN_NORMAL);
+        processor.render();
+        assertColor(AWPrefs.getConsumedTokenColor(), 4);
+        assertColor(AWPrefs.getNonConsumedTokenColor(), 5);
+
+        processor.rewindAll();
+        processor.render();
+        assertEquals(-1, processor.getCurrentTokenIndex());
+        for(int index=0; index<=10; index++) {
+            assertColor(AWPrefs.getNonConsumedTokenColor(), index);
+        }
+        // The tokens are kept in the text
+        assertEquals(getText(11), textPane.getText());
+    }
+
+    public void testVisibleAttributes() throws Exception {
+        JScrollPane scrollPane = new JScrollPane(textPane);
+        scrollPane.setSize(200, 100);
+        layout(scrollPane);
+
+        for(int index=0; index<TOKEN_COUNT; index++) {
+            processor.consumeToken(createToken(index), DBInputProcessor.TOKEN_NORMAL);
+        }
+        processor.render();
+        layout(scrollPane);
+
+        // Only the visible tokens are styled
+        processor.rewindAll();
+        processor.render();
+        assertColor(AWPrefs.getNonConsumedTokenColor(), 0);
+        assertColor(AWPrefs.getConsumedTokenColor(), TOKEN_COUNT-3);
+
+        // The other tokens are styled when they become visible
+        Rectangle visible = scrollPane.getViewport().getViewRect();
+        textPane.scrollRectToVisible(textPane.modelToView(processor.getTokenInfoAtTokenIndex(TOKEN_COUNT-3).start));
+        assertFalse(visible.equals(scrollPane.getViewport().getViewRect()));
+        assertColor(AWPrefs.getNonConsumedTokenColor(), TOKEN_COUNT-3);
+    }
+
+    private static void layout(JScrollPane scrollPane) {
+        // The scroll pane is not displayed: it is not laid out when validated
+        scrollPane.doLayout();
+        scrollPane.getViewport().doLayout();
+    }
+
+    private void assertColor(Color color, int index) {
+        assertEquals("token "+index, color, StyleConstants.getForeground(getAttributes(index)));
+    }
+
+    private AttributeSet getAttributes(int index) {
+        DBInputTextTokenInfo info = processor.getTokenInfoAtTokenIndex(index);
+        return textPane.getStyledDocument().getCharacterElement(info.start).getAttributes();
+    }
+
+    private static Token createToken(int index) {
+        CommonToken token = new CommonToken(1, getTokenText(index));
+        token.setTokenIndex(index);
+        return token;
+    }
+
+    private static String getTokenText(int index) {
+        switch(index % 3) {
+            case 0: return "t"+index;
+            case 1: return " ";
+            default: return index % 7 == 0 ? "\n" : "\t";
+        }
+    }
+
+    private static String getText(int tokenCount) {
+        StringBuilder sb = new StringBuilder();
+        for(int index=0; index<tokenCount; index++) {
+            sb.append(getTokenText(index));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.works.editor.EditorInspector;
+import org.antlr.works.editor.EditorInspectorItem;
+import org.antlr.works.test.AbstractTest;
+
+import java.util.ArrayList;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestInspector extends AbstractTest {
+
+    private static final String GRAMMAR = "grammar t;\n"
+            + "a : a B | c \"x\" ;\n"
+            + "b : C ;\n"
+            + "b : d ;\n"
+            + "e : f e | g ;\n"
+            + "f : B? ;\n"
+            + "B : 'b' ;\n"
+            + "C : 'c' ;\n";
+
+    private String fileName = "t.g";
+
+    public void testCache() throws Exception {
+        parseText(GRAMMAR);
+        EditorInspector inspector = new EditorInspector(getEngine(), null, new Delegate());
+
+        List<EditorInspectorItem> errors = inspector.getErrors();
+        // Undefined references c, d and g, invalid literal "x", duplicate rules b
+        assertEquals(6, errors.size());
+        assertSame(errors, inspector.getErrors());
+        List<EditorInspectorItem> warnings = inspector.getWarnings();
+        assertSame(warnings, inspector.getWarnings());
+
+        // The diagnostics are computed again only once the inspector is notified
+        parseText(GRAMMAR+"c : B ;\n");
+        assertSame(errors, inspector.getErrors());
+        inspector.grammarDidParse();
+        assertEquals(5, inspector.getErrors().size());
+        assertNotSame(warnings, inspector.getWarnings());
+
+        // The analysis only invalidates the warnings
+        errors = inspector.getErrors();
+        warnings = inspector.getWarnings();
+        inspector.grammarDidAnalyze();
+        assertSame(errors, inspector.getErrors());
+        assertNotSame(warnings, inspector.getWarnings());
+
+        // The grammar name depends on the name of the file
+        fileName = "u.g";
+        assertEquals(6, inspector.getErrors().size());
+    }
+
+    public void testItemsAtIndex() throws Exception {
+        StringBuilder sb = new StringBuilder(GRAMMAR);
+        for(int i=0; i<200; i++) {
+            sb.append("r").append(i).append(" : r").append(i).append(" X | u").append(i % 7).append(" \"y\" ;\n");
+            if(i % 10 == 0) {
+                sb.append("r").append(i).append(" : Y ;\n");
+            }
+        }
+        parseText(sb.toString());
+        EditorInspector inspector = new EditorInspector(getEngine(), null, new Delegate());
+
+        List<EditorInspectorItem> all = new ArrayList<EditorInspectorItem>();
+        all.addAll(inspector.getErrors());
+        all.addAll(inspector.getWarnings());
+        all.addAll(inspector.getDecisionDFAs());
+        assertTrue(all.size() > 400);
+
+        for(int index=-1; index<=getText().length(); index++) {
+            // Same items, in the same order, as a scan of each category
+            List<EditorInspectorItem> expected = new ArrayList<EditorInspectorItem>();
+            for(EditorInspectorItem item : all) {
+                if(index >= item.startIndex && index <= item.endIndex) {
+                    expected.add(item);
+                }
+            }
+            assertEquals("items at "+index, expected, inspector.getAllItemsAtIndex(index));
+        }
+    }
+
+    private class Delegate extends MockInspectorDelegate {
+
+        @Override
+        public String getFileName() {
+            return fileName;
+        }
+    }
+}
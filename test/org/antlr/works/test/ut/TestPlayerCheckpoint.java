@@ -0,0 +1,417 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.runtime.ClassicToken;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.driver.DBDriverInputProcessor;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
+import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
+import org.antlr.works.debugger.tivo.DBPlayerDelegate;
+import org.antlr.works.debugger.tree.DBASTModel;
+import org.antlr.works.debugger.tree.DBParseTreeModel;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.utils.Console;
+
+import javax.swing.tree.TreeNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestPlayerCheckpoint extends AbstractTest {
+
+    private static final String GRAMMAR_FILE_NAME = "T.g";
+    private static final int EVENT_COUNT = 3000;
+    private static final int CHECKPOINT_INTERVAL = 50;
+
+    public void testRestoreCheckpoint() {
+        List<DBEvent> events = new EventGenerator(new Random(7)).generate(EVENT_COUNT);
+
+        Player player = new Player();
+        player.player.setCheckpointInterval(CHECKPOINT_INTERVAL);
+        player.player.setCheckpointBudget(5000);
+        player.player.resetPlayEvents(true);
+        player.player.playEvents(events, events.size(), false);
+
+        assertTrue(player.player.getCheckpointCount() > 0);
+        assertTrue("the checkpoints were not thinned", player.player.getCheckpointInterval() > CHECKPOINT_INTERVAL);
+
+        Random random = new Random(11);
+        for(int i=0; i<50; i++) {
+            // Move backward: the nearest checkpoint is restored and the events after it are replayed
+            int position = 1 + random.nextInt(events.size());
+            player.player.playEvents(events, position, true);
+            assertEquals("position "+position, replay(events, position), player.dump());
+
+            // Then move forward from the restored state
+            position = Math.min(events.size(), position + random.nextInt(4*CHECKPOINT_INTERVAL));
+            player.player.playEvents(events, position, false);
+            assertEquals("position "+position, replay(events, position), player.dump());
+        }
+        assertTrue(player.messages.toString(), player.messages.isEmpty());
+    }
+
+    public void testRestoreCheckpointTwice() {
+        List<DBEvent> events = new EventGenerator(new Random(3)).generate(EVENT_COUNT);
+
+        Player player = new Player();
+        player.player.setCheckpointInterval(CHECKPOINT_INTERVAL);
+        player.player.resetPlayEvents(true);
+        player.player.playEvents(events, events.size(), false);
+
+        // Restoring a checkpoint must not share the trees with it: playing the events after
+        // the first restore would otherwise modify the checkpoint used by the second restore
+        int position = events.size() / 2 + 1;
+        String expected = replay(events, position);
+        player.player.playEvents(events, position, true);
+        assertEquals(expected, player.dump());
+        player.player.playEvents(events, events.size(), false);
+        player.player.playEvents(events, position, true);
+        assertEquals(expected, player.dump());
+        assertTrue(player.messages.toString(), player.messages.isEmpty());
+    }
+
+    /** Returns the state of a player that played the events directly, without checkpoint */
+    private static String replay(List<DBEvent> events, int position) {
+        Player player = new Player();
+        player.player.setCheckpointInterval(events.size() + 1);
+        player.player.resetPlayEvents(true);
+        player.player.playEvents(events, position, false);
+        assertTrue(player.messages.toString(), player.messages.isEmpty());
+        return player.dump();
+    }
+
+    /** Player delegate keeping the same state as the debugger: the rule stack, the parse tree and the AST */
+    private static class Player implements DBPlayerDelegate, Console {
+
+        final DBPlayer player = new DBPlayer(this);
+        final DBDriverInputProcessor processor = new DBDriverInputProcessor();
+        final Stack<String> rules = new Stack<String>();
+        final DBParseTreeModel parseTreeModel = new DBParseTreeModel(null);
+        final DBASTModel astModel = new DBASTModel(null);
+        final List<String> messages = new ArrayList<String>();
+
+        Player() {
+            player.setInputBuffer(processor);
+        }
+
+        String dump() {
+            StringBuilder sb = new StringBuilder();
+            DBPlayerContextInfo info = player.getContextInfo();
+            sb.append("context ").append(info.subrule).append(info.decision).append(info.mark).append(info.backtrack).append('\n');
+            sb.append("token ").append(processor.getCurrentTokenIndex()).append('\n');
+            sb.append("stack ").append(rules).append('\n');
+
+            dumpParseTree(sb, parseTreeModel.getRootRule(), 0);
+            for(int index=0; index<parseTreeModel.backtrackStack.size(); index++) {
+                DBParseTreeModel.Backtrack backtrack = parseTreeModel.backtrackStack.get(index);
+                sb.append("backtrack ").append(backtrack.level).append(' ').append(backtrack.nodes).append('\n');
+            }
+
+            for(int index=0; index<astModel.getRuleCount(); index++) {
+                DBASTModel.Rule rule = astModel.getRuleAtIndex(index);
+                sb.append("ast ").append(rule.name).append('\n');
+                for (DBASTModel.ASTNode root : rule.getRoots()) {
+                    dumpAST(sb, root, 1);
+                }
+            }
+            sb.append("nodes ").append(new java.util.TreeMap<Integer, DBASTModel.ASTNode>(astModel.nodesMap).keySet()).append('\n');
+            return sb.toString();
+        }
+
+        void dumpParseTree(StringBuilder sb, TreeNode node, int depth) {
+            DBParseTreeModel.ParseTreeNode n = (DBParseTreeModel.ParseTreeNode)node;
+            indent(sb, depth).append(n).append(' ').append(n.getColor()).append(' ').append(n.getLocation());
+            int rule = parseTreeModel.rules.indexOf(n);
+            if(rule != -1)
+                sb.append(" rule ").append(rule);
+            if(n == parseTreeModel.getLastNode())
+                sb.append(" last");
+            sb.append('\n');
+            for(int index=0; index<n.getChildCount(); index++) {
+                dumpParseTree(sb, n.getChildAt(index), depth+1);
+            }
+        }
+
+        void dumpAST(StringBuilder sb, DBASTModel.ASTNode node, int depth) {
+            indent(sb, depth).append(node.id).append(' ').append(node.nil ? "nil" : node.toString());
+            sb.append(" parent ").append(node.parentNode == null ? -1 : node.parentNode.id);
+            if(astModel.nodesMap.get(node.id) == node)
+                sb.append(" mapped");
+            sb.append('\n');
+            for(int index=0; index<node.getChildCount(); index++) {
+                dumpAST(sb, (DBASTModel.ASTNode)node.getChildAt(index), depth+1);
+            }
+        }
+
+        static StringBuilder indent(StringBuilder sb, int depth) {
+            for(int i=0; i<depth; i++) {
+                sb.append("  ");
+            }
+            return sb;
+        }
+
+        public Console getConsole() {
+            return this;
+        }
+
+        public void resetGUI() {
+            rules.clear();
+            parseTreeModel.clear();
+            astModel.clear();
+        }
+
+        public void saveGUIState(DBPlayerCheckpoint checkpoint) {
+            checkpoint.stackState = new ArrayList<String>(rules);
+            checkpoint.parseTreeState = parseTreeModel.saveState();
+            checkpoint.astState = astModel.saveState();
+        }
+
+        @SuppressWarnings("unchecked")
+        public void restoreGUIState(DBPlayerCheckpoint checkpoint) {
+            rules.clear();
+            rules.addAll((List<String>)checkpoint.stackState);
+            parseTreeModel.restoreState(checkpoint.parseTreeState);
+            astModel.restoreState(checkpoint.astState);
+        }
+
+        public void addEvent(DBEvent event, DBPlayerContextInfo info) {
+        }
+
+        public void resetGrammarLocation() {
+        }
+
+        public void setGrammarLocation(DBEventLocation location) {
+        }
+
+        public void playerSetLocation(DBEventLocation location) {
+            parseTreeModel.setLocation(location);
+        }
+
+        public void playerPushRule(DBEventEnterRule rule) {
+            rules.push(rule.name);
+            parseTreeModel.pushRule(rule.name);
+            astModel.pushRule(rule.name);
+        }
+
+        public void playerPopRule(DBEventExitRule rule) {
+            rules.pop();
+            parseTreeModel.popRule();
+            astModel.popRule();
+        }
+
+        public void playerConsumeToken(Token token) {
+            parseTreeModel.addToken(token);
+        }
+
+        public void playerRecognitionException(Exception e) {
+            parseTreeModel.addException(e);
+        }
+
+        public void playerBeginBacktrack(int level) {
+            parseTreeModel.beginBacktrack(level);
+        }
+
+        public void playerEndBacktrack(int level, boolean success) {
+            parseTreeModel.endBacktrack(level, success);
+        }
+
+        public void playerNilNode(int id) {
+            astModel.nilNode(id);
+        }
+
+        public void playerErrorNode(int id, String text) {
+            astModel.errorNode(id, text);
+        }
+
+        public void playerCreateNode(int id, Token token) {
+            astModel.createNode(id, token);
+        }
+
+        public void playerCreateNode(int id, String text, int type) {
+            astModel.createNode(id, new ClassicToken(type, text));
+        }
+
+        public void playerBecomeRoot(int newRootID, int oldRootID) {
+            astModel.becomeRoot(newRootID, oldRootID);
+        }
+
+        public void playerAddChild(int rootID, int childID) {
+            astModel.addChild(rootID, childID);
+        }
+
+        public void playerSetTokenBoundaries(int id, int startIndex, int stopIndex) {
+        }
+
+        public void setMode(int mode) {
+        }
+
+        public void println(String s) {
+            messages.add(s);
+        }
+
+        public void println(String s, int level) {
+            messages.add(s);
+        }
+
+        public void println(Throwable e) {
+            messages.add(e.toString());
+        }
+
+        public void print(String string, int level) {
+            messages.add(string);
+        }
+
+        public void print(Throwable e) {
+            messages.add(e.toString());
+        }
+    }
+
+    /** Generates the events of a parser building an AST with random rules, lookaheads and backtracking */
+    private static class EventGenerator {
+
+        private static final int MAX_DEPTH = 6;
+
+        final Random random;
+        final List<DBEvent> events = new ArrayList<DBEvent>();
+        int tokenIndex = 0;
+        int nodeID = 0;
+        int decision = 0;
+        int line = 1;
+
+        EventGenerator(Random random) {
+            this.random = random;
+        }
+
+        List<DBEvent> generate(int count) {
+            while(events.size() < count) {
+                rule(0);
+            }
+            return events;
+        }
+
+        /** Returns the id of the root node of the rule */
+        int rule(int depth) {
+            String name = "r"+random.nextInt(5);
+            events.add(new DBEventEnterRule(GRAMMAR_FILE_NAME, name));
+            location();
+            int root = nodeID++;
+            events.add(new DBEventNilNode(root));
+            int elements = 1 + random.nextInt(6);
+            for(int i=0; i<elements; i++) {
+                switch(random.nextInt(depth < MAX_DEPTH ? 5 : 4)) {
+                    case 0:
+                        root = consume(root);
+                        break;
+                    case 1:
+                        lookahead();
+                        break;
+                    case 2:
+                        backtrack();
+                        break;
+                    case 3:
+                        root = subrule(root);
+                        break;
+                    case 4:
+                        events.add(new DBEventAddChild(root, rule(depth+1)));
+                        break;
+                }
+            }
+            location();
+            events.add(new DBEventExitRule(GRAMMAR_FILE_NAME, name));
+            return root;
+        }
+
+        int subrule(int root) {
+            int d = decision++;
+            events.add(new DBEventEnterSubRule(d));
+            events.add(new DBEventEnterDecision(d));
+            events.add(new DBEventLT(1, createToken(tokenIndex)));
+            events.add(new DBEventExitDecision(d));
+            root = consume(root);
+            events.add(new DBEventExitSubRule(d));
+            return root;
+        }
+
+        /** Consumes a token and adds its node to the tree. Returns the root of the tree. */
+        int consume(int root) {
+            location();
+            Token token = createToken(tokenIndex++);
+            events.add(new DBEventConsumeToken(token));
+            int node = nodeID++;
+            events.add(new DBEventCreateNode(node, token.getTokenIndex()));
+            if(random.nextBoolean()) {
+                events.add(new DBEventAddChild(root, node));
+                return root;
+            } else {
+                events.add(new DBEventBecomeRoot(node, root));
+                return node;
+            }
+        }
+
+        void lookahead() {
+            int d = decision++;
+            events.add(new DBEventEnterDecision(d));
+            events.add(new DBEventLT(1, createToken(tokenIndex)));
+            events.add(new DBEventMark(d));
+            events.add(new DBEventConsumeToken(createToken(tokenIndex)));
+            events.add(new DBEventRewind(d));
+            events.add(new DBEventExitDecision(d));
+        }
+
+        void backtrack() {
+            int d = decision++;
+            events.add(new DBEventEnterDecision(d));
+            events.add(new DBEventBeginBacktrack(1));
+            events.add(new DBEventMark(d));
+            events.add(new DBEventConsumeToken(createToken(tokenIndex)));
+            events.add(new DBEventConsumeHiddenToken(createToken(tokenIndex+1)));
+            events.add(new DBEventConsumeToken(createToken(tokenIndex+2)));
+            events.add(new DBEventRewind(d));
+            events.add(new DBEventEndBacktrack(1, random.nextBoolean()));
+            events.add(new DBEventExitDecision(d));
+        }
+
+        void location() {
+            events.add(new DBEventLocation(line++, random.nextInt(40)));
+        }
+
+        Token createToken(int index) {
+            CommonToken token = new CommonToken(1 + index % 5, "t"+index);
+            token.setTokenIndex(index);
+            return token;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.works.grammar.element.ElementReference;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.test.AbstractTest;
+
+import java.util.ArrayList;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * The element lookups done at each caret movement using the position index return the
+ * same elements as a scan of the lists.
+ */
+public class TestPositionIndex extends AbstractTest {
+
+    private static final int[] RULE_COUNTS = { 1, 100, 1000 };
+    private static final int POSITIONS = 2000;
+
+    public void testCaretMovement() throws Exception {
+        for(int count : RULE_COUNTS) {
+            parseText(createGrammar(count));
+            GrammarEngine engine = getEngine();
+            assertEquals(count+1, engine.getNumberOfRules());
+
+            int length = getText().length();
+            int step = Math.max(1, length/POSITIONS);
+
+            // The index has to return the same elements as a scan of the lists
+            for(int pos = 0; pos < length; pos += step) {
+                ElementRule rule = scanRule(engine, pos);
+                assertSame("rule at "+pos, rule, engine.getRuleAtPosition(pos));
+                assertSame("reference at "+pos, scanReference(engine, pos), engine.getReferenceAtPosition(pos));
+                if(rule != null) {
+                    assertEquals("references of "+rule.name, scanReferencesInRule(engine, rule), engine.getReferencesInRule(rule));
+                    assertSame(rule, engine.getRuleWithName(rule.name));
+                }
+            }
+
+            // Positions outside of the text
+            assertNull(engine.getRuleAtPosition(-1));
+            assertNull(engine.getRuleAtPosition(length+10));
+            assertNull(engine.getReferenceAtPosition(length+10));
+        }
+    }
+
+    private static String createGrammar(int count) {
+        StringBuilder sb = new StringBuilder("grammar Bench;\n\n");
+        for(int i=0; i<count; i++) {
+            sb.append("rule").append(i).append("\n\t:\t");
+            sb.append("rule").append((i+1) % count).append(" ID");
+            sb.append("\n\t|\t'(' rule").append((i*7) % count).append(" ')'");
+            sb.append("\n\t;\n\n");
+        }
+        sb.append("ID : 'a'..'z'+ ;\n");
+        return sb.toString();
+    }
+
+    private static ElementRule scanRule(GrammarEngine engine, int pos) {
+        for(ElementRule r : engine.getRules()) {
+            if(r.containsIndex(pos))
+                return r;
+        }
+        return null;
+    }
+
+    private static ElementReference scanReference(GrammarEngine engine, int pos) {
+        for(ElementReference r : engine.getReferences()) {
+            if(r.containsIndex(pos))
+                return r;
+        }
+        return null;
+    }
+
+    private static List<ElementReference> scanReferencesInRule(GrammarEngine engine, ElementRule rule) {
+        List<ElementReference> refs = new ArrayList<ElementReference>();
+        for(ElementReference r : engine.getReferences()) {
+            if(r.rule == rule)
+                refs.add(r);
+        }
+        return refs;
+    }
+}
@@ -0,0 +1,182 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.works.ate.syntax.misc.ATEScheduler;
+import org.antlr.works.ate.syntax.misc.ATEThread;
+import org.antlr.works.test.AbstractTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestScheduler extends AbstractTest {
+
+    public void testCoalescing() throws Exception {
+        ATEScheduler scheduler = new ATEScheduler(2);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountingThread thread = new CountingThread(scheduler, gate);
+
+        thread.awakeThread(0);
+        assertTrue(thread.awaitStarted());
+
+        // Requested while running: the requests are replaced by the most recent one
+        for(int i=0; i<10; i++) {
+            thread.awakeThread(0);
+        }
+        gate.countDown();
+        assertTrue(thread.await(2));
+
+        assertEquals(2, thread.runs.get());
+        assertEquals(11, scheduler.getSubmittedCount());
+        assertEquals(9, scheduler.getSupersededCount());
+        assertEquals(2, scheduler.getExecutedCount());
+    }
+
+    public void testSkip() throws Exception {
+        // A single worker executes the dispatched requests in order
+        ATEScheduler scheduler = new ATEScheduler(1);
+        CountingThread skipped = new CountingThread(scheduler, null);
+        CountingThread other = new CountingThread(scheduler, null);
+
+        skipped.awakeThread(10);
+        skipped.skip();
+        // Dispatched after the skipped request would have been
+        other.awakeThread(50);
+        assertTrue(other.await(1));
+
+        assertEquals(0, skipped.runs.get());
+        assertEquals(1, scheduler.getDroppedCount());
+        assertEquals(1, scheduler.getExecutedCount());
+    }
+
+    public void testNoConcurrentExecution() throws Exception {
+        ATEScheduler scheduler = new ATEScheduler(4);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountingThread thread = new CountingThread(scheduler, gate);
+
+        thread.awakeThread(0);
+        assertTrue(thread.awaitStarted());
+        // Requested while running: executed once the current execution is completed
+        thread.awakeThread(0);
+        thread.awakeThread(0);
+        gate.countDown();
+        assertTrue(thread.await(2));
+
+        assertEquals(2, thread.runs.get());
+        assertEquals(1, thread.maxConcurrent.get());
+    }
+
+    public void testBackgroundPriority() throws Exception {
+        // A single worker is busy while the requests are dispatched
+        ATEScheduler scheduler = new ATEScheduler(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountingThread busy = new CountingThread(scheduler, gate);
+        busy.awakeThread(0);
+        assertTrue(busy.awaitStarted());
+
+        List<CountingThread> order = Collections.synchronizedList(new ArrayList<CountingThread>());
+        CountingThread background = new CountingThread(scheduler, null);
+        background.owner = "window";
+        background.order = order;
+        CountingThread foreground = new CountingThread(scheduler, null);
+        foreground.owner = "window";
+        foreground.order = order;
+        CountingThread other = new CountingThread(scheduler, null);
+        other.order = order;
+        scheduler.setForegroundOwner("window");
+
+        // A background request is executed last, even if its owner is in the foreground
+        background.awakeThreadInBackground(0);
+        other.awakeThread(0);
+        foreground.awakeThread(0);
+        gate.countDown();
+        assertTrue(background.await(1));
+
+        assertEquals(Arrays.asList(foreground, other, background), order);
+    }
+
+    private static class CountingThread extends ATEThread {
+
+        final AtomicInteger runs = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final Semaphore started = new Semaphore(0);
+        final Semaphore completed = new Semaphore(0);
+        final CountDownLatch gate;
+        Object owner;
+        List<CountingThread> order;
+
+        /**
+         * @param gate If not null, each execution waits for this latch before completing
+         */
+        public CountingThread(ATEScheduler scheduler, CountDownLatch gate) {
+            this.gate = gate;
+            setScheduler(scheduler);
+            start();
+        }
+
+        @Override
+        public Object getOwner() {
+            return owner;
+        }
+
+        /** Waits until an execution of the task has started */
+        public boolean awaitStarted() throws InterruptedException {
+            return started.tryAcquire(5, TimeUnit.SECONDS);
+        }
+
+        /** Waits until the task has been executed the specified number of times */
+        public boolean await(int count) throws InterruptedException {
+            return completed.tryAcquire(count, 5, TimeUnit.SECONDS);
+        }
+
+        protected void threadRun() throws Exception {
+            int c = concurrent.incrementAndGet();
+            maxConcurrent.set(Math.max(maxConcurrent.get(), c));
+            started.release();
+            if(gate != null) {
+                gate.await();
+            }
+            concurrent.decrementAndGet();
+            runs.incrementAndGet();
+            if(order != null) {
+                order.add(this);
+            }
+            completed.release();
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package org.antlr.works.test.ut;
 
+import org.antlr.Tool;
+import org.antlr.tool.Grammar;
 import org.antlr.works.test.AbstractTest;
 import org.antlr.works.test.TestConstants;
+import org.antlr.works.visualization.fa.FAFactory;
+import org.antlr.works.visualization.fa.FAState;
 import org.antlr.xjlib.foundation.XJUtils;
 
+import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;/*
 
 [The "BSD licence"]
@@ -47,6 +52,45 @@ public class TestSyntaxDiagram extends AbstractTest {
   //      assertSD("expr", "expr");
     }
 
+    public void testManyAlternatives() throws Exception {
+        int alternatives = 5000;
+        StringBuilder sb = new StringBuilder("lexer grammar Keywords;\n\nKEYWORD\n");
+        for(int i=0; i<alternatives; i++) {
+            sb.append(i == 0 ? "    : " : "    | ").append("'keyword").append(i).append("'\n");
+        }
+        sb.append("    ;\n");
+
+        Grammar g = new Grammar(new Tool(), sb.toString());
+        g.buildNFA();
+        FAState state = new FAFactory(g).buildNFA(g.getRuleStartState("KEYWORD"), true);
+        while(state.isSingle()) {
+            state = state.getNextFirstState();
+        }
+        assertEquals(alternatives, state.getNumberOfTransitions());
+        // Each alternative skips the alternative states of the previous ones
+        assertEquals(alternatives-1, state.transition(alternatives-1).skippedStates.size());
+    }
+
+    public void testBatch() throws Exception {
+        String source = getResourceFile(TestConstants.PREFIX+"sd/expr/expr.g");
+        File output = File.createTempFile("expr-sd", "");
+        output.delete();
+
+        try {
+            String[] args = new String[] { "-f", source, "-sd", "svg", "-o", output.getAbsolutePath(), "-j", "3" };
+            org.antlr.works.Console.main(args);
+
+            for(String rule : new String[] { "rule", "prog", "stat", "expr", "multExpr", "atom", "ID", "INT", "NEWLINE", "WS" }) {
+                File file = new File(output, rule+".svg");
+                assertTrue(rule, file.exists());
+                // Must be a well-formed document
+                DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+            }
+        } finally {
+            XJUtils.deleteDirectory(output.getAbsolutePath());
+        }
+    }
+
     private void assertSD(String folder, String name) throws Exception {
         // Read the grammar file
         String source = getResourceFile(TestConstants.PREFIX+"sd/"+folder+"/"+name+".g");
@@ -0,0 +1,228 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.Tool;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Rule;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.test.TestConstants;
+import org.antlr.works.utils.Utils;
+import org.antlr.works.visualization.SDCache;
+import org.antlr.works.visualization.VisualDrawing;
+import org.antlr.works.visualization.fa.FAFactory;
+import org.antlr.works.visualization.graphics.GRenderer;
+import org.antlr.works.visualization.graphics.graph.GGraph;
+import org.antlr.works.visualization.graphics.graph.GGraphCodec;
+import org.antlr.works.visualization.serializable.SXMLEncoder;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestSyntaxDiagramCache extends AbstractTest {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("sdcache", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        XJUtils.deleteDirectory(dir.getPath());
+    }
+
+    private String getExprText() throws Exception {
+        return getTextFromFile(TestConstants.PREFIX+"sd/expr/expr.g").replaceAll("\r\n", "\n");
+    }
+
+    private static Grammar createGrammar(String text) throws Exception {
+        Grammar g = new Grammar(new Tool(), text);
+        g.buildNFA();
+        return g;
+    }
+
+    private static GGraph createGraph(Grammar g, String rule) {
+        GGraph graph = new GRenderer().render(new FAFactory(g).buildNFA(g.getRuleStartState(rule), true));
+        graph.setName(rule);
+        return graph;
+    }
+
+    private static String serialize(GGraph graph) {
+        SXMLEncoder encoder = new SXMLEncoder();
+        encoder.write(graph);
+        return encoder.toString();
+    }
+
+    public void testCodec() throws Exception {
+        Grammar g = createGrammar(getExprText());
+        for(Rule r : g.getRules()) {
+            GGraph graph = createGraph(g, r.name);
+            GGraph decoded = GGraphCodec.decode(GGraphCodec.encode(graph));
+            assertEquals(r.name, serialize(graph), serialize(decoded));
+            assertEquals(r.name, decoded.name);
+        }
+    }
+
+    public void testKey() throws Exception {
+        String text = getExprText();
+        Grammar g = createGrammar(text);
+        String key = SDCache.getKey(g, "stat", true);
+        assertNotNull(key);
+        assertNull(SDCache.getKey(g, "undefined", true));
+        assertFalse(key.equals(SDCache.getKey(g, "stat", false)));
+
+        // Editing another rule or the layout of the rule doesn't change the key
+        Grammar edited = createGrammar(text.replace("'*' e=atom", "'*' e=atom | '/' e=atom").replace("|   NEWLINE", "|\n\tNEWLINE"));
+        assertEquals(key, SDCache.getKey(edited, "stat", true));
+        assertFalse(SDCache.getKey(g, "multExpr", true).equals(SDCache.getKey(edited, "multExpr", true)));
+
+        // Editing the rule does
+        edited = createGrammar(text.replace("|   NEWLINE", "|   NEWLINE NEWLINE"));
+        assertFalse(key.equals(SDCache.getKey(edited, "stat", true)));
+    }
+
+    public void testCache() throws Exception {
+        Grammar g = createGrammar(getExprText());
+        GGraph stat = createGraph(g, "stat");
+        GGraph atom = createGraph(g, "atom");
+        String statKey = SDCache.getKey(g, "stat", true);
+        String atomKey = SDCache.getKey(g, "atom", true);
+        int size = GGraphCodec.encode(stat).length;
+
+        // Only one diagram fits in memory
+        SDCache cache = new SDCache(dir, size+1);
+        cache.put(statKey, stat);
+        cache.put(atomKey, atom);
+        assertTrue(cache.getMemoryUsage() <= size+1);
+
+        GGraph cached = cache.get(statKey);
+        assertNotSame(stat, cached);
+        assertEquals(serialize(stat), serialize(cached));
+        assertEquals(serialize(atom), serialize(cache.get(atomKey)));
+        assertNull(cache.get(SDCache.getKey(g, "expr", true)));
+
+        // The diagrams are found again by another cache using the same directory
+        cache = new SDCache(dir, size+1);
+        assertEquals(serialize(stat), serialize(cache.get(statKey)));
+
+        cache.clear();
+        assertNull(cache.get(statKey));
+    }
+
+    public void testCacheKeepsOtherFiles() throws Exception {
+        // The directory is also the output directory of the diagrams
+        File diagram = new File(dir, "stat.png");
+        XJUtils.writeStringToFile("diagram", diagram.getPath());
+        File other = new File(dir, "0123456789012345678901234567890123456789.png");
+        XJUtils.writeStringToFile("diagram", other.getPath());
+        File stale = new File(dir, Utils.getDigest("stale")+".tmp");
+        XJUtils.writeStringToFile("data", stale.getPath());
+
+        Grammar g = createGrammar(getExprText());
+        GGraph stat = createGraph(g, "stat");
+        GGraph atom = createGraph(g, "atom");
+
+        // The directory is pruned once the second diagram is written
+        SDCache cache = new SDCache(dir, 1);
+        cache.put(SDCache.getKey(g, "stat", true), stat);
+        cache.put(SDCache.getKey(g, "atom", true), atom);
+        assertTrue(diagram.isFile());
+        assertTrue(other.isFile());
+        assertFalse(stale.exists());
+
+        cache.clear();
+        assertTrue(diagram.isFile());
+        assertTrue(other.isFile());
+        assertEquals(2, dir.listFiles().length);
+    }
+
+    public void testClearWhileCreating() throws Exception {
+        final Drawing drawing = new Drawing();
+        final ElementRule rule = new ElementRule("stat");
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    drawing.createGraphs(rule);
+                } catch (Exception e) {
+                    // the graph is not cached
+                }
+            }
+        });
+        thread.start();
+        assertTrue(drawing.building.await(10, TimeUnit.SECONDS));
+
+        // The grammar changes while the graphs are created: they must not be cached
+        drawing.clearCacheGraphs();
+        drawing.release.countDown();
+        thread.join();
+        assertFalse(drawing.isCached(rule));
+
+        drawing.createGraphs(rule);
+        assertTrue(drawing.isCached(rule));
+        drawing.stop();
+    }
+
+    /** Drawing creating empty graphs once it is released */
+    private static class Drawing extends VisualDrawing {
+
+        final CountDownLatch building = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Drawing() {
+            super(null);
+        }
+
+        void createGraphs(ElementRule rule) throws Exception {
+            createGraphsForRule(rule);
+        }
+
+        synchronized boolean isCached(ElementRule rule) {
+            return cacheGraphs.containsKey(rule);
+        }
+
+        @Override
+        protected List buildGraphsForRule(ElementRule rule) throws Exception {
+            building.countDown();
+            release.await();
+            return Collections.emptyList();
+        }
+    }
+}
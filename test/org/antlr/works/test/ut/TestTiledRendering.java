@@ -0,0 +1,141 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.visualization.graphics.GPNGWriter;
+import org.antlr.works.visualization.graphics.GPainter;
+import org.antlr.works.visualization.graphics.GTileCache;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestTiledRendering extends AbstractTest {
+
+    private static final GPainter PAINTER = new GPainter() {
+        public void paint(Graphics2D g) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.blue);
+            for(int i = 0; i < 40; i++) {
+                g.drawLine(i*75, 0, 3000-i*50, 1000);
+                g.drawOval(i*70, i*20, 120, 80);
+            }
+            g.setColor(Color.red);
+            g.drawString("syntax diagram", 500, 500);
+        }
+    };
+
+    private static BufferedImage render(int width, int height) {
+        BufferedImage image = GTileCache.createImage(width, height);
+        Graphics2D g = image.createGraphics();
+        PAINTER.paint(g);
+        g.dispose();
+        return image;
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual, Rectangle area) {
+        for(int y = area.y; y < area.y+area.height; y++) {
+            for(int x = area.x; x < area.x+area.width; x++) {
+                if(expected.getRGB(x, y) != actual.getRGB(x, y))
+                    fail("Pixel ("+x+","+y+") differs");
+            }
+        }
+    }
+
+    public void testTileCache() throws Exception {
+        BufferedImage expected = render(3000, 1000);
+
+        // The visible area needs more tiles than the cache can keep
+        GTileCache cache = new GTileCache(4);
+        cache.invalidate(3000, 1000);
+        Rectangle visible = new Rectangle(300, 200, 700, 500);
+
+        BufferedImage image = GTileCache.createImage(3000, 1000);
+        Graphics2D g = image.createGraphics();
+        g.setClip(visible);
+        cache.paint(g, PAINTER);
+        g.dispose();
+
+        assertSamePixels(expected, image, visible);
+        assertEquals(4, cache.getTileCount());
+    }
+
+    public void testTileCacheSizedFromVisibleArea() throws Exception {
+        GTileCache cache = new GTileCache();
+        cache.invalidate(4000, 3000);
+
+        // A 2560x1440 area not aligned on the tiles intersects 11x7 tiles
+        Rectangle visible = new Rectangle(100, 100, 2560, 1440);
+        assertEquals(77, GTileCache.getTileCount(visible.width, visible.height));
+        cache.setVisibleSize(visible.width, visible.height);
+        assertEquals(2*77, cache.getMaxTiles());
+
+        final int[] renderings = new int[1];
+        GPainter painter = new GPainter() {
+            public void paint(Graphics2D g) {
+                renderings[0]++;
+                PAINTER.paint(g);
+            }
+        };
+
+        BufferedImage image = GTileCache.createImage(4000, 3000);
+        Graphics2D g = image.createGraphics();
+        g.setClip(visible);
+        cache.paint(g, painter);
+        assertEquals(1, renderings[0]);
+        assertEquals(77, cache.getTileCount());
+
+        // All the visible tiles are kept: painting again doesn't render anything
+        cache.paint(g, painter);
+        g.dispose();
+        assertEquals(1, renderings[0]);
+        assertSamePixels(render(4000, 3000), image, visible);
+
+        // A smaller visible area shrinks the cache
+        cache.setVisibleSize(256, 256);
+        assertEquals(GTileCache.DEFAULT_MIN_TILES, cache.getMaxTiles());
+        assertEquals(GTileCache.DEFAULT_MIN_TILES, cache.getTileCount());
+    }
+
+    public void testPNGWriter() throws Exception {
+        // Large enough to be rendered in several strips
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GPNGWriter.write(PAINTER, 3000, 1000, out);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(3000, image.getWidth());
+        assertEquals(1000, image.getHeight());
+        assertSamePixels(render(3000, 1000), image, new Rectangle(0, 0, 3000, 1000));
+    }
+}
@@ -0,0 +1,105 @@
+package org.antlr.works.test.ut;
+
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.test.TestConstants;
+
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+/**
+ * The attributes of the tokens are created on demand from their position in the text.
+ */
+public class TestTokenAttributes extends AbstractTest {
+
+    public void testAttributes() throws Exception {
+        parseFile(TestConstants.MANTRA);
+        String text = getText();
+        for(ATEToken t : getSyntaxEngine().getTokens()) {
+            String s = text.substring(t.start, t.end);
+            assertTrue(t.toString(), t.attributeEquals(s));
+            assertTrue(t.toString(), t.attributeStartsWith(s.substring(0, s.length()/2)));
+            assertFalse(t.toString(), t.attributeEquals(s+"x"));
+            assertEquals(s, t.getAttribute());
+            assertTrue(t.toString(), t.attributeEquals(s));
+        }
+    }
+
+    public void testSingleCharacterAttributes() throws Exception {
+        parseText("grammar t;\na : ( B | C ) ;\nb : ( a ) ;\n");
+        ATEToken first = null;
+        for(ATEToken t : getSyntaxEngine().getTokens()) {
+            if(!t.attributeEquals("(")) continue;
+
+            if(first == null) {
+                first = t;
+            } else {
+                // The attributes of the single character tokens are shared
+                assertSame(first.getAttribute(), t.getAttribute());
+            }
+        }
+        assertNotNull(first);
+    }
+
+    public void testMovedRuleKeepsName() throws Exception {
+        parseText("grammar t;\nalpha : B ;\nbeta : alpha ;\n");
+        List<ElementRule> rules = getEngine().getRules();
+        assertEquals(2, rules.size());
+
+        // Moving the rule (like the gutter does when the text is modified) keeps its name
+        ElementRule rule = rules.get(0);
+        rule.setItemIndex(rule.getItemIndex()+3);
+        assertEquals("alpha", rule.start.getAttribute());
+        assertTrue(rule.start.attributeEquals("alpha"));
+    }
+
+    public void testIncrementalLexingKeepsAttributes() throws Exception {
+        parseText("grammar t;\nalpha : B ;\nbeta : alpha ;\n");
+        ElementRule beta = getEngine().getRules().get(1);
+        ATEToken start = beta.start;
+        assertEquals("beta", start.getAttribute());
+        final int position = start.start;
+
+        // The rule is reused by the parser and moved to the copy of its token in the new snapshot
+        parseText("grammar t;\nalpha : B C D ;\nbeta : alpha ;\n");
+        ElementRule rule = getEngine().getRules().get(1);
+        assertSame(beta, rule);
+        assertNotSame(start, rule.start);
+        assertEquals("beta", rule.start.getAttribute());
+        assertEquals(getText().indexOf("beta"), rule.start.start);
+
+        // The token of the previous snapshot has not been moved by the incremental lexer
+        assertEquals(position, start.start);
+        assertEquals("beta", start.getAttribute());
+    }
+}